@@ -0,0 +1,80 @@
+package benchmarks.wurstscript;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import tests.wurstscript.tests.StdLib;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Inputs for the benchmarks.
+ * <p>
+ * The programs are taken from the testscripts folder (the same files as used by the RealWorldExamples tests)
+ * and are compiled together with the standard library, so the benchmarks must be run from the
+ * de.peeeq.wurstscript folder (the jmh gradle task does this).
+ */
+final class BenchmarkInput {
+
+    static final String TEST_DIR = "./testscripts/concept/";
+
+    private BenchmarkInput() {
+    }
+
+    /**
+     * reads a file from the testscripts folder or, for .j files, from the resources (common.j and blizzard.j)
+     */
+    static String readSource(String name) throws IOException {
+        return Files.asCharSource(sourceFile(name), Charsets.UTF_8).read();
+    }
+
+    static File sourceFile(String name) {
+        if (name.endsWith(".j")) {
+            return new File(BenchmarkInput.class.getClassLoader().getResource(name).getFile());
+        }
+        return new File(TEST_DIR + name);
+    }
+
+    /**
+     * creates a compiler for the given test script, which uses the standard library
+     */
+    static WurstCompilerJassImpl compiler(String file, String... args) {
+        RunArgs runArgs = new RunArgs().with("-lib", StdLib.getLib()).with(args);
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, new WurstGuiCliImpl(), null, runArgs);
+        compiler.loadFiles(sourceFile("common.j"), sourceFile("blizzard.j"), sourceFile(file));
+        return compiler;
+    }
+
+    /**
+     * parses the given test script and the used packages of the standard library
+     */
+    static WurstModel parse(WurstCompilerJassImpl compiler) {
+        WurstModel model = compiler.parseFiles();
+        checkNoErrors(compiler.getErrorHandler().getGui());
+        return model;
+    }
+
+    /**
+     * parses, checks and translates the given test script to the intermediate language
+     */
+    static ImProg translateToIm(WurstCompilerJassImpl compiler) {
+        WurstModel model = parse(compiler);
+        compiler.checkProg(model);
+        checkNoErrors(compiler.getErrorHandler().getGui());
+        ImProg prog = compiler.translateProgToIm(model);
+        checkNoErrors(compiler.getErrorHandler().getGui());
+        return prog;
+    }
+
+    static void checkNoErrors(WurstGui gui) {
+        if (gui.getErrorCount() > 0) {
+            throw gui.getErrorList().get(0);
+        }
+    }
+}
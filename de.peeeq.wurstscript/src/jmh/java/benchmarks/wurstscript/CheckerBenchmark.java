@@ -0,0 +1,39 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.ast.WurstModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Type checks a test script together with the used packages of the standard library.
+ * <p>
+ * The checker caches its results in attributes of the AST, so each measurement parses the program again
+ * and runs the check only once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CheckerBenchmark {
+
+    @Param({"ListsTest.wurst", "ObjectRecycler.wurst"})
+    public String file;
+
+    private WurstCompilerJassImpl compiler;
+    private WurstModel model;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        compiler = BenchmarkInput.compiler(file);
+        model = BenchmarkInput.parse(compiler);
+    }
+
+    @Benchmark
+    public boolean check() {
+        return compiler.checkProg(model, model);
+    }
+}
@@ -0,0 +1,101 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.jassinterpreter.providers.HashtableProvider;
+import de.peeeq.wurstscript.intermediatelang.ILconstBool;
+import de.peeeq.wurstscript.intermediatelang.ILconstInt;
+import de.peeeq.wurstscript.intermediatelang.IlConstHandle;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hashtable natives of the interpreter, which are heavily used by the Table package of the standard library.
+ * <p>
+ * Each benchmark performs the operation for all entries of a table with the given number of parent keys,
+ * each of which has 10 child keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HashtableProviderBenchmark {
+
+    private static final int CHILD_KEYS = 10;
+
+    @Param({"10", "1000"})
+    public int parentKeys;
+
+    private HashtableProvider provider;
+    private ILconstInt[] keys;
+    private IlConstHandle filledTable;
+
+    @Setup
+    public void setup() {
+        // the hashtable natives do not use the interpreter, so a small program is sufficient
+        WurstCompilerJassImpl compiler = BenchmarkInput.compiler("OverrideTest.wurst");
+        ImProg prog = BenchmarkInput.translateToIm(compiler);
+        ILInterpreter interpreter = new ILInterpreter(prog, compiler.getErrorHandler().getGui(), null, false);
+        provider = new HashtableProvider(interpreter);
+        keys = new ILconstInt[Math.max(parentKeys, CHILD_KEYS)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ILconstInt.create(i);
+        }
+        filledTable = provider.InitHashtable();
+        fill(filledTable);
+    }
+
+    private void fill(IlConstHandle ht) {
+        for (int p = 0; p < parentKeys; p++) {
+            for (int c = 0; c < CHILD_KEYS; c++) {
+                provider.Save(ht, keys[p], keys[c], keys[c]);
+            }
+        }
+    }
+
+    @Benchmark
+    public IlConstHandle saveInteger() {
+        IlConstHandle ht = provider.InitHashtable();
+        fill(ht);
+        return ht;
+    }
+
+    @Benchmark
+    public void overwriteInteger() {
+        fill(filledTable);
+    }
+
+    @Benchmark
+    public void loadInteger(Blackhole bh) {
+        for (int p = 0; p < parentKeys; p++) {
+            for (int c = 0; c < CHILD_KEYS; c++) {
+                bh.consume(provider.LoadInteger(filledTable, keys[p], keys[c]));
+            }
+        }
+    }
+
+    @Benchmark
+    public void haveSavedInteger(Blackhole bh) {
+        for (int p = 0; p < parentKeys; p++) {
+            for (int c = 0; c < CHILD_KEYS; c++) {
+                ILconstBool b = provider.HaveSavedInteger(filledTable, keys[p], keys[c]);
+                bh.consume(b);
+            }
+        }
+    }
+
+    @Benchmark
+    public IlConstHandle flushChildHashtable() {
+        IlConstHandle ht = provider.InitHashtable();
+        fill(ht);
+        for (int p = 0; p < parentKeys; p++) {
+            provider.FlushChildHashtable(ht, keys[p]);
+        }
+        return ht;
+    }
+}
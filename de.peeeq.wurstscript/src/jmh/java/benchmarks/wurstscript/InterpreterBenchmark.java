@@ -0,0 +1,63 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.jassinterpreter.ReflectionNativeProvider;
+import de.peeeq.wurstio.languageserver.requests.RunTests;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import de.peeeq.wurstscript.jassinterpreter.TestSuccessException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs test scripts with the interpreter for the intermediate language.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    /**
+     * test scripts, which call testSuccess in their main function
+     */
+    @Param({"ListsTest.wurst", "VecTest.wurst"})
+    public String file;
+
+    private WurstGui gui;
+    private ImProg prog;
+
+    @Setup
+    public void setup() {
+        WurstCompilerJassImpl compiler = BenchmarkInput.compiler(file);
+        prog = BenchmarkInput.translateToIm(compiler);
+        gui = compiler.getErrorHandler().getGui();
+    }
+
+    /**
+     * runs the main function of the script
+     */
+    @Benchmark
+    public void runMain() {
+        ILInterpreter interpreter = new ILInterpreter(prog, gui, null, false);
+        interpreter.addNativeProvider(new ReflectionNativeProvider(interpreter));
+        try {
+            interpreter.executeFunction("main", null);
+        } catch (TestSuccessException e) {
+            return;
+        }
+        throw new Error("Succeed function not called");
+    }
+
+    /**
+     * runs all test functions in the program, which includes the tests of the used packages from the standard library
+     */
+    @Benchmark
+    public RunTests.TestResult runTests() {
+        return new RunTests(null, 0, 0).runTests(prog, null, null);
+    }
+}
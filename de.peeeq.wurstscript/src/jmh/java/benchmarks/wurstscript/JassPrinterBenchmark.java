@@ -0,0 +1,43 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.jassAst.JassProg;
+import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the jass code of a test script compiled together with the standard library.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JassPrinterBenchmark {
+
+    @Param({"ListsTest.wurst", "ObjectRecycler.wurst"})
+    public String file;
+
+    @Param({"true", "false"})
+    public boolean withSpace;
+
+    private JassProg prog;
+
+    @Setup
+    public void setup() {
+        WurstCompilerJassImpl compiler = BenchmarkInput.compiler(file, "-inline", "-localOptimizations");
+        BenchmarkInput.translateToIm(compiler);
+        prog = compiler.transformProgToJass();
+        BenchmarkInput.checkNoErrors(compiler.getErrorHandler().getGui());
+    }
+
+    @Benchmark
+    public StringBuilder print() {
+        StringBuilder sb = new StringBuilder();
+        new JassPrinter(withSpace, prog).printProg(sb);
+        return sb;
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.translation.imoptimizer.ImOptimizer;
+import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a single pass of the local optimizations on a program, which is translated without optimizations.
+ * <p>
+ * Passes change the program, so each measurement translates the program again and runs the pass only once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OptimizerBenchmark {
+
+    @Param({"ListsTest.wurst"})
+    public String file;
+
+    /**
+     * the class name of the pass, the list must contain all passes of {@link ImOptimizer#getLocalPasses()} in the same order
+     */
+    @Param({"ConstantAndCopyPropagation", "UselessFunctionCallsRemover", "GlobalsInliner", "PureFunctionEvaluator",
+            "BranchMerger", "SimpleRewrites", "LoopOptimizer", "TempMerger", "LocalMerger"})
+    public String pass;
+
+    private WurstCompilerJassImpl compiler;
+    private OptimizerPass optimizerPass;
+
+    @Setup(Level.Trial)
+    public void findPass() {
+        for (OptimizerPass p : ImOptimizer.getLocalPasses()) {
+            if (p.getClass().getSimpleName().equals(pass)) {
+                optimizerPass = p;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown optimizer pass " + pass);
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        compiler = BenchmarkInput.compiler(file);
+        BenchmarkInput.translateToIm(compiler);
+        // brings the program into the form expected by the local optimizations (flat and without tuples)
+        compiler.transformProgToJass();
+    }
+
+    @Benchmark
+    public int optimize() {
+        return optimizerPass.optimize(compiler.getImTranslator());
+    }
+}
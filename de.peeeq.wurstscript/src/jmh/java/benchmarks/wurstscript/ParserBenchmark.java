@@ -0,0 +1,44 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstscript.WurstParser;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses single files. The .j files are parsed with the jass parser, all other files with the wurst parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"common.j", "blizzard.j", "knockback.wurst", "escaperdata.wurst", "ObjectRecycler.wurst"})
+    public String file;
+
+    private String source;
+
+    @Setup
+    public void setup() throws IOException {
+        source = BenchmarkInput.readSource(file);
+    }
+
+    @Benchmark
+    public CompilationUnit parse() {
+        WurstGui gui = new WurstGuiCliImpl();
+        WurstParser parser = new WurstParser(new ErrorHandler(gui), gui);
+        if (file.endsWith(".j")) {
+            return parser.parseJass(new StringReader(source), file, true);
+        }
+        return parser.parse(new StringReader(source), file, true);
+    }
+}
@@ -0,0 +1,422 @@
+package de.peeeq.wurstio;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.WurstOperator;
+import de.peeeq.wurstscript.ast.Ast;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.parser.WPos;
+import de.peeeq.wurstscript.utils.LineOffsets;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compact binary format for parsed compilation units.
+ * <p>
+ * The format is derived from the AST specification (wurstscript.parseq), which is read from the classpath:
+ * An element is written as the name of its type followed by its children, or its constructor arguments in
+ * the order of the specification. Strings and line offsets are only written on their first occurrence,
+ * later occurrences refer to them by index.
+ * <p>
+ * Only the results of the parser can be written, elements with references or resolved types are rejected.
+ */
+public class AstSnapshot {
+
+    private static final int MAGIC = 0x57415354;
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int NO_LINE_OFFSETS = -1;
+    private static final int DUMMY_LINE_OFFSETS = -2;
+    /**
+     * maximum length of strings and line offset tables, so that a corrupt snapshot cannot cause huge allocations
+     */
+    private static final int MAX_LENGTH = 1 << 24;
+
+    private static @Nullable Schema schema;
+
+    /**
+     * @return true, if the AST specification could be loaded
+     */
+    public static boolean isSupported() {
+        return getSchema() != null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the compilation unit contains elements, which cannot be written
+     */
+    public static void write(CompilationUnit cu, OutputStream out) throws IOException {
+        Schema s = getSchema();
+        if (s == null) {
+            throw new IllegalArgumentException("AST specification not available.");
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeUTF(cu.getFile());
+        new SnapshotWriter(s, data).writeElement(cu);
+        data.flush();
+    }
+
+    /**
+     * @param file         the file of the read compilation unit, replaces the file it was written with
+     * @param errorHandler the error handler of the read compilation unit
+     */
+    public static CompilationUnit read(InputStream in, String file, ErrorHandler errorHandler) throws IOException {
+        Schema s = getSchema();
+        if (s == null) {
+            throw new IOException("AST specification not available.");
+        }
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a snapshot of the current format.");
+        }
+        String oldFile = data.readUTF();
+        Object result = new SnapshotReader(s, data, oldFile, file, errorHandler).readElement();
+        if (!(result instanceof CompilationUnit)) {
+            throw new IOException("Snapshot does not contain a compilation unit.");
+        }
+        CompilationUnit cu = (CompilationUnit) result;
+        cu.setFile(file);
+        return cu;
+    }
+
+    private static void checkLength(int length) {
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Cannot write more than " + MAX_LENGTH + " elements.");
+        }
+    }
+
+    private static synchronized @Nullable Schema getSchema() {
+        Schema s = schema;
+        if (s == null) {
+            InputStream spec = AstSnapshot.class.getResourceAsStream("/wurstscript.parseq");
+            if (spec == null) {
+                return null;
+            }
+            try (Reader reader = new InputStreamReader(spec, Charsets.UTF_8)) {
+                s = new Schema(CharStreams.toString(reader));
+            } catch (IOException | ClassNotFoundException e) {
+                WLogger.info(e);
+                return null;
+            }
+            schema = s;
+        }
+        return s;
+    }
+
+    private static class Param {
+        private final String type;
+        private final Method getter;
+
+        Param(String type, Method getter) {
+            this.type = type;
+            this.getter = getter;
+        }
+    }
+
+    /**
+     * the element types of the AST specification with their constructor arguments
+     */
+    private static class Schema {
+        private static final Pattern LIST_PATTERN = Pattern.compile("^\\s*(\\w+)\\s*\\*\\s*(\\w+)", Pattern.MULTILINE);
+        private static final Pattern CONSTRUCTOR_PATTERN = Pattern.compile("(\\w+)\\s*\\(([^)]*)\\)");
+
+        private final Set<String> listTypes = new HashSet<>();
+        private final Map<String, List<Param>> constructors = new HashMap<>();
+        private final Map<String, Method> factories = new HashMap<>();
+        private final Map<Class<?>, String> typeNames = new HashMap<>();
+
+        Schema(String spec) throws ClassNotFoundException {
+            int start = spec.indexOf("abstract syntax:");
+            int end = spec.indexOf("attributes:");
+            spec = spec.substring(Math.max(start, 0), end < 0 ? spec.length() : end).replaceAll("//[^\\n]*", "");
+            Matcher m = LIST_PATTERN.matcher(spec);
+            while (m.find()) {
+                listTypes.add(m.group(1));
+            }
+            m = CONSTRUCTOR_PATTERN.matcher(spec);
+            while (m.find()) {
+                String name = m.group(1);
+                Class<?> c = astClass(name);
+                List<Param> params = new ArrayList<>();
+                for (String p : m.group(2).split(",")) {
+                    p = p.trim();
+                    if (p.isEmpty()) {
+                        continue;
+                    }
+                    int i = p.lastIndexOf(' ');
+                    String paramName = p.substring(i + 1);
+                    try {
+                        Method getter = c.getMethod("get" + Character.toUpperCase(paramName.charAt(0)) + paramName.substring(1));
+                        params.add(new Param(p.substring(0, i).trim(), getter));
+                    } catch (NoSuchMethodException e) {
+                        throw new ClassNotFoundException("No getter for " + paramName + " in " + name, e);
+                    }
+                }
+                constructors.put(name, params);
+            }
+            for (Method method : Ast.class.getMethods()) {
+                List<Param> params = constructors.get(method.getName());
+                if (params != null && method.getParameterCount() == params.size()) {
+                    factories.put(method.getName(), method);
+                } else if (listTypes.contains(method.getName())
+                        && (method.getParameterCount() == 0 || method.getParameterCount() == 1 && method.isVarArgs())) {
+                    factories.put(method.getName(), method);
+                }
+            }
+            for (String name : listTypes) {
+                typeNames.put(astClass(name), name);
+            }
+            for (String name : constructors.keySet()) {
+                typeNames.put(astClass(name), name);
+            }
+        }
+
+        private static Class<?> astClass(String name) throws ClassNotFoundException {
+            return Class.forName(Ast.class.getPackage().getName() + "." + name);
+        }
+
+        String typeName(Element e) {
+            for (Class<?> i : e.getClass().getInterfaces()) {
+                String name = typeNames.get(i);
+                if (name != null) {
+                    return name;
+                }
+            }
+            throw new IllegalArgumentException("Unknown element type " + e.getClass());
+        }
+
+        Method factory(String typeName) throws IOException {
+            Method m = factories.get(typeName);
+            if (m == null) {
+                throw new IOException("Unknown element type " + typeName);
+            }
+            return m;
+        }
+    }
+
+    private static class SnapshotWriter {
+        private final Schema schema;
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<LineOffsets, Integer> lineOffsets = new IdentityHashMap<>();
+
+        SnapshotWriter(Schema schema, DataOutputStream out) {
+            this.schema = schema;
+            this.out = out;
+        }
+
+        void writeElement(Element e) throws IOException {
+            String typeName = schema.typeName(e);
+            writeString(typeName);
+            if (schema.listTypes.contains(typeName)) {
+                out.writeInt(e.size());
+                for (int i = 0; i < e.size(); i++) {
+                    writeElement(e.get(i));
+                }
+                return;
+            }
+            for (Param p : schema.constructors.get(typeName)) {
+                Object value;
+                try {
+                    value = p.getter.invoke(e);
+                } catch (IllegalAccessException | InvocationTargetException ex) {
+                    throw new IllegalArgumentException(ex);
+                }
+                writeValue(p.type, value);
+            }
+        }
+
+        private void writeValue(String type, Object value) throws IOException {
+            switch (type) {
+                case "de.peeeq.wurstscript.parser.WPos":
+                    writePos((WPos) value);
+                    break;
+                case "String":
+                    writeString((String) value);
+                    break;
+                case "boolean":
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case "de.peeeq.wurstscript.WurstOperator":
+                    writeString(((WurstOperator) value).name());
+                    break;
+                case "de.peeeq.wurstscript.attributes.ErrorHandler":
+                    // replaced when reading
+                    break;
+                default:
+                    if (!(value instanceof Element) || type.contains(".") || type.startsWith("ref ")) {
+                        throw new IllegalArgumentException("Cannot write value of type " + type);
+                    }
+                    writeElement((Element) value);
+            }
+        }
+
+        private void writePos(WPos pos) throws IOException {
+            writeString(pos.getFile());
+            LineOffsets lo = pos.getLineOffsets();
+            if (lo == null) {
+                out.writeInt(NO_LINE_OFFSETS);
+            } else if (lo == LineOffsets.dummy) {
+                out.writeInt(DUMMY_LINE_OFFSETS);
+            } else {
+                Integer index = lineOffsets.get(lo);
+                if (index != null) {
+                    out.writeInt(index);
+                } else {
+                    index = lineOffsets.size();
+                    lineOffsets.put(lo, index);
+                    out.writeInt(index);
+                    int[] offsets = lo.toArray();
+                    checkLength(offsets.length);
+                    out.writeInt(offsets.length);
+                    for (int offset : offsets) {
+                        out.writeInt(offset);
+                    }
+                }
+            }
+            out.writeInt(pos.getLeftPos());
+            out.writeInt(pos.getRightPos());
+        }
+
+        private void writeString(String s) throws IOException {
+            Integer index = strings.get(s);
+            if (index != null) {
+                out.writeInt(index);
+            } else {
+                index = strings.size();
+                strings.put(s, index);
+                out.writeInt(index);
+                byte[] bytes = s.getBytes(Charsets.UTF_8);
+                checkLength(bytes.length);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static class SnapshotReader {
+        private final Schema schema;
+        private final DataInputStream in;
+        private final String oldFile;
+        private final String file;
+        private final ErrorHandler errorHandler;
+        private final List<String> strings = new ArrayList<>();
+        private final List<LineOffsets> lineOffsets = new ArrayList<>();
+
+        SnapshotReader(Schema schema, DataInputStream in, String oldFile, String file, ErrorHandler errorHandler) {
+            this.schema = schema;
+            this.in = in;
+            this.oldFile = oldFile;
+            this.file = file;
+            this.errorHandler = errorHandler;
+        }
+
+        @SuppressWarnings("unchecked")
+        Object readElement() throws IOException {
+            String typeName = readString();
+            Method factory = schema.factory(typeName);
+            try {
+                if (schema.listTypes.contains(typeName)) {
+                    Object list = factory.getParameterCount() == 0
+                            ? factory.invoke(null)
+                            : factory.invoke(null, java.lang.reflect.Array.newInstance(factory.getParameterTypes()[0].getComponentType(), 0));
+                    int size = in.readInt();
+                    for (int i = 0; i < size; i++) {
+                        ((Collection<Object>) list).add(readElement());
+                    }
+                    return list;
+                }
+                List<Param> params = schema.constructors.get(typeName);
+                Object[] args = new Object[params.size()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readValue(params.get(i).type);
+                }
+                return factory.invoke(null, args);
+            } catch (IllegalAccessException | InvocationTargetException | ClassCastException e) {
+                throw new IOException("Could not create element of type " + typeName, e);
+            }
+        }
+
+        private Object readValue(String type) throws IOException {
+            switch (type) {
+                case "de.peeeq.wurstscript.parser.WPos":
+                    return readPos();
+                case "String":
+                    return readString();
+                case "boolean":
+                    return in.readBoolean();
+                case "de.peeeq.wurstscript.WurstOperator":
+                    try {
+                        return WurstOperator.valueOf(readString());
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException(e);
+                    }
+                case "de.peeeq.wurstscript.attributes.ErrorHandler":
+                    return errorHandler;
+                default:
+                    return readElement();
+            }
+        }
+
+        private String readFileName(String s) {
+            return s.equals(oldFile) ? file : s;
+        }
+
+        private WPos readPos() throws IOException {
+            String posFile = readFileName(readString());
+            LineOffsets lo;
+            int index = in.readInt();
+            if (index == NO_LINE_OFFSETS) {
+                lo = null;
+            } else if (index == DUMMY_LINE_OFFSETS) {
+                lo = LineOffsets.dummy;
+            } else if (index >= 0 && index < lineOffsets.size()) {
+                lo = lineOffsets.get(index);
+            } else if (index == lineOffsets.size()) {
+                int[] offsets = new int[readLength()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = in.readInt();
+                }
+                lo = LineOffsets.fromArray(offsets);
+                lineOffsets.add(lo);
+            } else {
+                throw new IOException("Invalid line offsets index " + index);
+            }
+            int left = in.readInt();
+            int right = in.readInt();
+            return new WPos(posFile, lo, left, right);
+        }
+
+        private String readString() throws IOException {
+            int index = in.readInt();
+            if (index >= 0 && index < strings.size()) {
+                return strings.get(index);
+            } else if (index != strings.size()) {
+                throw new IOException("Invalid string index " + index);
+            }
+            byte[] bytes = new byte[readLength()];
+            in.readFully(bytes);
+            String s = new String(bytes, Charsets.UTF_8);
+            strings.add(s);
+            return s;
+        }
+
+        private int readLength() throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_LENGTH) {
+                throw new IOException("Invalid length " + length);
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package de.peeeq.wurstio;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import de.peeeq.wurstscript.CompileTimeInfo;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of parsed compilation units for files which rarely change (common.j, blizzard.j and libraries).
+ * <p>
+ * The snapshots are stored in the format of {@link AstSnapshot}.
+ * The name of a snapshot is a hash of the file content, the compiler version and the parser settings,
+ * so outdated snapshots are never used.
+ */
+public class AstSnapshotCache {
+
+    private final File folder;
+
+    public AstSnapshotCache(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * @return the key of the snapshot for a file with the given content
+     */
+    public static String key(byte[] content, boolean hasCommonJ) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putBytes(content);
+        hasher.putUnencodedChars(CompileTimeInfo.version);
+        hasher.putInt(AstSnapshot.FORMAT_VERSION);
+        hasher.putBoolean(hasCommonJ);
+        return hasher.hash().toString();
+    }
+
+    private File snapshotFile(String key) {
+        return new File(folder, key + ".ast");
+    }
+
+    /**
+     * @return the cached compilation unit or null if there is no valid snapshot for the given key
+     */
+    public @Nullable CompilationUnit load(String key, String file, ErrorHandler errorHandler) {
+        File snapshot = snapshotFile(key);
+        if (!snapshot.exists()) {
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+            return AstSnapshot.read(in, file, errorHandler);
+        } catch (IOException | RuntimeException e) {
+            // corrupt snapshots can also cause exceptions in the factory methods of the AST
+            WLogger.info("Could not read AST snapshot " + snapshot + " for " + file);
+            WLogger.info(e);
+            //noinspection ResultOfMethodCallIgnored
+            snapshot.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given compilation unit, which must be the unchanged result of the parser.
+     * The snapshot is written to a temporary file first, so that concurrent readers never see incomplete snapshots.
+     */
+    public void store(String key, CompilationUnit cu) {
+        if (!AstSnapshot.isSupported()) {
+            return;
+        }
+        File snapshot = snapshotFile(key);
+        File temp = null;
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            folder.mkdirs();
+            temp = File.createTempFile(key, ".tmp", folder);
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                AstSnapshot.write(cu, out);
+            }
+            try {
+                Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            WLogger.info("Could not write AST snapshot for " + cu.getFile());
+            WLogger.info(e);
+        } finally {
+            if (temp != null) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+}
@@ -5,19 +5,28 @@ import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.ast.CompilationUnit;
 import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ILStackFrame;
 import de.peeeq.wurstscript.jassAst.JassProg;
 import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import de.peeeq.wurstscript.luaAst.LuaCompilationUnit;
+import de.peeeq.wurstscript.translation.lua.printing.LuaPrinter;
 import de.peeeq.wurstscript.utils.Utils;
 import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -39,6 +48,82 @@ public class CompilationProcess {
     }
 
     @Nullable CharSequence doCompilation(@Nullable MpqEditor mpqEditor) throws IOException {
+        WurstCompilerJassImpl compiler = translateToIm(mpqEditor);
+        if (compiler == null) {
+            return null;
+        }
+
+        JassProg jassProg = timeTaker.measure("Transform program to Jass",
+                () -> compiler.transformProgToJass());
+
+        if (jassProg == null || gui.getErrorCount() > 0) {
+            return null;
+        }
+
+        boolean withSpace;
+        withSpace = !runArgs.isOptimize();
+
+        // the validation runs in parallel with printing:
+        CompletableFuture<List<CompileError>> validation = runArgs.isDisablePjass()
+                ? CompletableFuture.completedFuture(Collections.emptyList())
+                : compiler.startJassValidation(jassProg);
+
+        gui.sendProgress("Printing Jass");
+
+        JassPrinter printer = new JassPrinter(withSpace, jassProg);
+        CharSequence mapScript = timeTaker.measure("Print Jass",
+                () -> printer.printProg());
+
+        // output to file
+        File outputMapscript = timeTaker.measure("Print Jass",
+                () -> writeMapscript(mapScript));
+
+        List<CompileError> jassErrors = timeTaker.measure("Validate Jass",
+                () -> validation.join());
+        for (CompileError err : jassErrors) {
+            gui.sendError(err);
+        }
+        timeTaker.printReport();
+        timeTaker.writeProfile(outputMapscript.getAbsoluteFile().getParentFile());
+        if (!jassErrors.isEmpty()) return null;
+        return mapScript;
+    }
+
+    /**
+     * Translates the program to Lua.
+     * The script is printed directly to the output file, without building the whole script in memory first.
+     *
+     * @return the file containing the Lua script or null, if there were errors
+     */
+    @Nullable File doLuaCompilation(@Nullable MpqEditor mpqEditor) throws IOException {
+        WurstCompilerJassImpl compiler = translateToIm(mpqEditor);
+        if (compiler == null) {
+            return null;
+        }
+
+        LuaCompilationUnit luaCode = timeTaker.measure("Transform program to Lua",
+                () -> compiler.transformProgToLua());
+
+        if (luaCode == null || gui.getErrorCount() > 0) {
+            return null;
+        }
+
+        gui.sendProgress("Printing Lua");
+        File outputScript = getOutputFile("output.lua");
+        timeTaker.measure("Print Lua",
+                () -> writeLuaScript(luaCode, outputScript));
+
+        timeTaker.printReport();
+        timeTaker.writeProfile(outputScript.getAbsoluteFile().getParentFile());
+        return outputScript;
+    }
+
+    /**
+     * parses and checks the program, translates it to the intermediate language and runs tests and compiletime functions
+     *
+     * @return the compiler or null, if there were errors
+     */
+    private @Nullable WurstCompilerJassImpl translateToIm(@Nullable MpqEditor mpqEditor) {
         WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(timeTaker, null, gui, mpqEditor, runArgs);
         gui.sendProgress("Check input map");
         if (mpqEditor != null && !mpqEditor.canWrite()) {
@@ -73,8 +158,6 @@ public class CompilationProcess {
             return null;
         }
 
-        File mapFile = compiler.getMapFile();
-
         if (runArgs.isRunTests()) {
             timeTaker.measure("Run tests",
                     () -> runTests(compiler));
@@ -82,58 +165,79 @@ public class CompilationProcess {
 
         timeTaker.measure("Run compiletime functions",
                 () -> compiler.runCompiletime());
+        return compiler;
+    }
 
-        JassProg jassProg = timeTaker.measure("Transform program to Jass",
-                () -> compiler.transformProgToJass());
-
-        if (jassProg == null || gui.getErrorCount() > 0) {
-            return null;
+    /**
+     * Only parses and typechecks the program.
+     * Compilation units which did not change since the last run (including the packages they import)
+     * are not checked again, their diagnostics are taken from the diagnostics cache.
+     *
+     * @return the errors and warnings of the complete program
+     */
+    public Collection<DiagnosticsCache.Diagnostic> doTypecheckOnly() {
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(timeTaker, null, gui, null, runArgs);
+        for (String file : runArgs.getFiles()) {
+            compiler.loadFiles(file);
         }
+        WurstModel model = timeTaker.measure("parse files",
+                () -> compiler.parseFiles());
 
-        boolean withSpace;
-        withSpace = !runArgs.isOptimize();
+        Set<DiagnosticsCache.Diagnostic> result = new LinkedHashSet<>();
+        if (model == null || gui.getErrorCount() > 0) {
+            addDiagnostics(result, gui.getErrorList());
+            addDiagnostics(result, gui.getWarningList());
+            return result;
+        }
 
-        gui.sendProgress("Printing Jass");
+        DiagnosticsCache cache = DiagnosticsCache.load(new File(runArgs.getDiagnosticsCacheFile()));
+        Map<CompilationUnit, String> hashes = timeTaker.measure("Hash files",
+                () -> DiagnosticsCache.computeHashes(model));
+        List<CompilationUnit> toCheck = new ArrayList<>();
+        for (CompilationUnit cu : model) {
+            String hash = hashes.get(cu);
+            List<DiagnosticsCache.Diagnostic> cached = hash == null ? null : cache.get(cu.getFile(), hash);
+            if (cached == null) {
+                toCheck.add(cu);
+            } else {
+                result.addAll(cached);
+            }
+        }
+        WLogger.info("Checking " + toCheck.size() + " of " + model.size() + " compilation units.");
 
-        JassPrinter printer = new JassPrinter(withSpace, jassProg);
-        CharSequence mapScript = timeTaker.measure("Print Jass",
-                () -> printer.printProg());
+        boolean complete = toCheck.isEmpty() || timeTaker.measure("Typecheck program",
+                () -> compiler.checkProg(model, toCheck));
 
-        // output to file
-        File outputMapscript = timeTaker.measure("Print Jass",
-                () -> writeMapscript(mapScript));
+        List<DiagnosticsCache.Diagnostic> fresh = new ArrayList<>();
+        addDiagnostics(fresh, gui.getErrorList());
+        addDiagnostics(fresh, gui.getWarningList());
+        result.addAll(fresh);
 
-        if (!runArgs.isDisablePjass()) {
-            boolean pjassOk = timeTaker.measure("Run PJass",
-                    () -> runPjass(outputMapscript));
-            if (pjassOk) return null;
+        if (complete) {
+            for (CompilationUnit cu : toCheck) {
+                String hash = hashes.get(cu);
+                if (hash != null) {
+                    List<DiagnosticsCache.Diagnostic> cuDiagnostics = fresh.stream()
+                            .filter(d -> d.getFile().equals(cu.getFile()))
+                            .collect(Collectors.toList());
+                    cache.put(cu.getFile(), hash, cuDiagnostics);
+                }
+            }
+            cache.retainFiles(model.stream().map(CompilationUnit::getFile).collect(Collectors.toSet()));
+            cache.save();
         }
-        timeTaker.printReport();
-        return mapScript;
+        return result;
     }
 
-    private boolean runPjass(File outputMapscript) {
-        Pjass.Result pJassResult = Pjass.runPjass(outputMapscript);
-        WLogger.info(pJassResult.getMessage());
-        if (!pJassResult.isOk()) {
-            for (CompileError err : pJassResult.getErrors()) {
-                gui.sendError(err);
-            }
-            return true;
+    private static void addDiagnostics(Collection<DiagnosticsCache.Diagnostic> result, List<CompileError> errors) {
+        for (CompileError err : errors) {
+            result.add(DiagnosticsCache.Diagnostic.fromError(err));
         }
-        return false;
     }
 
     private File writeMapscript(CharSequence mapScript) {
         gui.sendProgress("Writing output file");
-        File outputMapscript;
-        if (runArgs.getOutFile() != null) {
-            outputMapscript = new File(runArgs.getOutFile());
-        } else {
-            //outputMapscript = File.createTempFile("outputMapscript", ".j");
-            outputMapscript = new File("./temp/output.j");
-        }
-        outputMapscript.getParentFile().mkdirs();
+        File outputMapscript = getOutputFile("output.j");
         try {
             FileUtils.write(mapScript, outputMapscript);
             return outputMapscript;
@@ -142,6 +246,25 @@ public class CompilationProcess {
         }
     }
 
+    private void writeLuaScript(LuaCompilationUnit luaCode, File outputScript) {
+        try (Writer w = Files.newBufferedWriter(outputScript.toPath(), StandardCharsets.UTF_8)) {
+            LuaPrinter.printProg(luaCode, w);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private File getOutputFile(String defaultName) {
+        File outputFile;
+        if (runArgs.getOutFile() != null) {
+            outputFile = new File(runArgs.getOutFile());
+        } else {
+            outputFile = new File("./temp/" + defaultName);
+        }
+        outputFile.getAbsoluteFile().getParentFile().mkdirs();
+        return outputFile;
+    }
+
     private void runTests(WurstCompilerJassImpl compiler) {
         PrintStream out = System.out;
         // tests
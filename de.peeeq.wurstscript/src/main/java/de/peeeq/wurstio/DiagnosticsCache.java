@@ -0,0 +1,229 @@
+package de.peeeq.wurstio;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.CompileTimeInfo;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.WImport;
+import de.peeeq.wurstscript.ast.WPackage;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.parser.WPos;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Persistent cache for the diagnostics of each compilation unit, used by the typecheck only mode (-checkOnly).
+ * <p>
+ * The diagnostics of a compilation unit are stored together with a hash of the compilation unit
+ * and of all compilation units it depends on (the transitively imported packages and all Jass files).
+ * When none of these files changed, the compilation unit does not have to be checked again.
+ */
+public class DiagnosticsCache {
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private final File cacheFile;
+    private final CacheData data;
+
+    private DiagnosticsCache(File cacheFile, CacheData data) {
+        this.cacheFile = cacheFile;
+        this.data = data;
+    }
+
+    /**
+     * A diagnostic in the format used in the cache and for the JSON output
+     */
+    public static class Diagnostic {
+        final String file;
+        final int line;
+        final int column;
+        final int endLine;
+        final int endColumn;
+        final String severity;
+        final String message;
+
+        Diagnostic(String file, int line, int column, int endLine, int endColumn, String severity, String message) {
+            this.file = file;
+            this.line = line;
+            this.column = column;
+            this.endLine = endLine;
+            this.endColumn = endColumn;
+            this.severity = severity;
+            this.message = message;
+        }
+
+        public static Diagnostic fromError(CompileError err) {
+            WPos pos = err.getSource();
+            return new Diagnostic(pos.getFile(), pos.getLine(), pos.getStartColumn(), pos.getEndLine(), pos.getEndColumn(),
+                    err.getErrorType().toString().toLowerCase(), err.getMessage());
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public boolean isError() {
+            return severity.equals("error");
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Diagnostic that = (Diagnostic) o;
+            return line == that.line
+                    && column == that.column
+                    && endLine == that.endLine
+                    && endColumn == that.endColumn
+                    && file.equals(that.file)
+                    && severity.equals(that.severity)
+                    && message.equals(that.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, line, column, endLine, endColumn, severity, message);
+        }
+    }
+
+    private static class Entry {
+        String hash;
+        List<Diagnostic> diagnostics;
+
+        Entry(String hash, List<Diagnostic> diagnostics) {
+            this.hash = hash;
+            this.diagnostics = diagnostics;
+        }
+    }
+
+    private static class CacheData {
+        String version = CompileTimeInfo.version;
+        Map<String, Entry> entries = new TreeMap<>();
+    }
+
+    public static DiagnosticsCache load(File cacheFile) {
+        CacheData data = null;
+        if (cacheFile.exists()) {
+            try {
+                data = gson.fromJson(Files.toString(cacheFile, Charsets.UTF_8), CacheData.class);
+            } catch (IOException | JsonParseException e) {
+                WLogger.info("Could not read diagnostics cache " + cacheFile);
+                WLogger.info(e);
+            }
+        }
+        if (data == null || data.entries == null || !CompileTimeInfo.version.equals(data.version)) {
+            // diagnostics of an other compiler version might be different
+            data = new CacheData();
+        }
+        return new DiagnosticsCache(cacheFile, data);
+    }
+
+    public void save() {
+        try {
+            cacheFile.getAbsoluteFile().getParentFile().mkdirs();
+            FileUtils.write(gson.toJson(data), cacheFile);
+        } catch (IOException e) {
+            WLogger.severe(e);
+        }
+    }
+
+    /**
+     * @return the cached diagnostics of the given file or null if there are none for the given hash
+     */
+    public @Nullable List<Diagnostic> get(String file, String hash) {
+        Entry entry = data.entries.get(file);
+        if (entry == null || !entry.hash.equals(hash)) {
+            return null;
+        }
+        return entry.diagnostics;
+    }
+
+    public void put(String file, String hash, List<Diagnostic> diagnostics) {
+        data.entries.put(file, new Entry(hash, diagnostics));
+    }
+
+    /**
+     * removes the entries for files which are no longer part of the program
+     */
+    public void retainFiles(Set<String> files) {
+        data.entries.keySet().retainAll(files);
+    }
+
+    /**
+     * Computes the hash of each compilation unit including its dependencies.
+     * Compilation units, which are not read from a file, have no hash and are not cached.
+     */
+    public static Map<CompilationUnit, String> computeHashes(WurstModel model) {
+        Map<CompilationUnit, String> fileHashes = new HashMap<>();
+        Map<String, CompilationUnit> packages = new HashMap<>();
+        List<CompilationUnit> jassFiles = new ArrayList<>();
+        for (CompilationUnit cu : model) {
+            File file = new File(cu.getFile());
+            if (file.isFile()) {
+                try {
+                    fileHashes.put(cu, Files.asByteSource(file).hash(Hashing.sha256()).toString());
+                } catch (IOException e) {
+                    WLogger.info(e);
+                }
+            }
+            for (WPackage p : cu.getPackages()) {
+                packages.put(p.getName(), cu);
+            }
+            if (cu.getPackages().isEmpty()) {
+                jassFiles.add(cu);
+            }
+        }
+
+        Map<CompilationUnit, String> result = new HashMap<>();
+        nextCu:
+        for (CompilationUnit cu : model) {
+            Set<CompilationUnit> dependencies = new HashSet<>(jassFiles);
+            Deque<CompilationUnit> todo = new ArrayDeque<>();
+            todo.add(cu);
+            while (!todo.isEmpty()) {
+                CompilationUnit c = todo.poll();
+                if (!dependencies.add(c) && c != cu) {
+                    continue;
+                }
+                for (WPackage p : c.getPackages()) {
+                    for (WImport imp : p.getImports()) {
+                        CompilationUnit imported = packages.get(imp.getPackagename());
+                        if (imported != null && !dependencies.contains(imported)) {
+                            todo.add(imported);
+                        }
+                    }
+                }
+            }
+            List<String> depFiles = new ArrayList<>();
+            for (CompilationUnit dep : dependencies) {
+                String hash = fileHashes.get(dep);
+                if (hash == null) {
+                    continue nextCu;
+                }
+                depFiles.add(dep.getFile() + " " + hash);
+            }
+            Collections.sort(depFiles);
+            Hasher hasher = Hashing.sha256().newHasher();
+            for (String depFile : depFiles) {
+                hasher.putString(depFile, Charsets.UTF_8).putChar('\n');
+            }
+            result.put(cu, hasher.hash().toString());
+        }
+        return result;
+    }
+
+    public static String toJson(Collection<Diagnostic> diagnostics) {
+        return gson.toJson(diagnostics);
+    }
+}
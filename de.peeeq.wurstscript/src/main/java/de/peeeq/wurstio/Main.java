@@ -4,7 +4,6 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.io.Files;
-import de.peeeq.wurstio.Pjass.Result;
 import de.peeeq.wurstio.compilationserver.WurstServer;
 import de.peeeq.wurstio.gui.AboutDialog;
 import de.peeeq.wurstio.gui.WurstGuiImpl;
@@ -14,6 +13,7 @@ import de.peeeq.wurstio.languageserver.requests.RunTests;
 import de.peeeq.wurstio.map.importer.ImportFile;
 import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstio.mpq.MpqEditorFactory;
+import de.peeeq.wurstio.mpq.MpqTransaction;
 import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstio.utils.W3Utils;
 import de.peeeq.wurstscript.*;
@@ -21,6 +21,7 @@ import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ILStackFrame;
 import de.peeeq.wurstscript.jassAst.JassProg;
 import de.peeeq.wurstscript.jassprinter.JassPrinter;
@@ -37,6 +38,7 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 
@@ -112,6 +114,17 @@ public class Main {
                 return;
             }
 
+            if (runArgs.isCheckOnly()) {
+                // only the JSON diagnostics are printed to stdout, so do not use the cli gui here
+                CompilationProcess compilationProcess = new CompilationProcess(new WurstGuiLogger(), runArgs);
+                Collection<DiagnosticsCache.Diagnostic> diagnostics = compilationProcess.doTypecheckOnly();
+                System.out.println(DiagnosticsCache.toJson(diagnostics));
+                if (diagnostics.stream().anyMatch(DiagnosticsCache.Diagnostic::isError)) {
+                    System.exit(1);
+                }
+                return;
+            }
+
             if (runArgs.isGui()) {
                 gui = new WurstGuiImpl();
                 // use the error reporting with GUI
@@ -136,14 +149,29 @@ public class Main {
 
                 CompilationProcess compilationProcess = new CompilationProcess(gui, runArgs);
 
-                if (mapFilePath != null) {
+                if (runArgs.isLua()) {
+                    if (mapFilePath != null) {
+                        try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(new File(mapFilePath))) {
+                            File luaScript = compilationProcess.doLuaCompilation(mpqEditor);
+                            if (luaScript != null) {
+                                gui.sendProgress("Writing to map");
+                                MpqTransaction transaction = mpqEditor.beginTransaction();
+                                transaction.insertFile("war3map.lua", luaScript);
+                                transaction.commit();
+                            }
+                        }
+                    } else {
+                        compilationProcess.doLuaCompilation(null);
+                    }
+                } else if (mapFilePath != null) {
                     try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(new File(mapFilePath))) {
                         CharSequence mapScript = compilationProcess.doCompilation(mpqEditor);
                         if (mapScript != null) {
                             gui.sendProgress("Writing to map");
-                            mpqEditor.deleteFile("war3map.j");
                             byte[] war3map = mapScript.toString().getBytes(Charsets.UTF_8);
-                            mpqEditor.insertFile("war3map.j", war3map);
+                            MpqTransaction transaction = mpqEditor.beginTransaction();
+                            transaction.insertFile("war3map.j", war3map);
+                            transaction.commit();
                         }
                     }
                 } else {
@@ -0,0 +1,224 @@
+package de.peeeq.wurstio;
+
+import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.PackageOrGlobal;
+import de.peeeq.wurstscript.ast.WPackage;
+import de.peeeq.wurstscript.jassIm.Element;
+import de.peeeq.wurstscript.jassIm.ElementWithTrace;
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Attributes the costs of compiling a program to the packages, where the costs originate.
+ * <p>
+ * Elements of the intermediate language are attributed via their trace to the package,
+ * which contains the source code the element was translated from.
+ * Specialized copies of generic functions and classes are attributed to the package of the generic definition.
+ * <p>
+ * The check and translation times are measured per compilation unit.
+ * Attributes are computed lazily, so these times can include work for imported packages.
+ */
+public class PackageCosts {
+
+    /**
+     * the columns of the report
+     */
+    public enum Column {
+        CHECK_MS("check ms"),
+        TRANSLATE_MS("translate ms"),
+        IM_ELEMENTS("im elements"),
+        SPECIALIZED_FUNCTIONS("specialized functions"),
+        SPECIALIZED_CLASSES("specialized classes"),
+        SPECIALIZED_ELEMENTS("specialized im elements"),
+        FINAL_IM_ELEMENTS("optimized im elements"),
+        JASS_FUNCTIONS("jass functions"),
+        JASS_CHARS("jass chars");
+
+        private final String title;
+
+        Column(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    private static final String UNKNOWN = "<unknown>";
+
+    private final Map<String, long[]> costs = new TreeMap<>();
+
+    private void add(String packageName, Column column, long value) {
+        costs.computeIfAbsent(packageName, p -> new long[Column.values().length])[column.ordinal()] += value;
+    }
+
+    public long get(String packageName, Column column) {
+        long[] c = costs.get(packageName);
+        return c == null ? 0 : c[column.ordinal()];
+    }
+
+    public Set<String> getPackages() {
+        return Collections.unmodifiableSet(costs.keySet());
+    }
+
+    public void addCheckTime(CompilationUnit cu, long nanos) {
+        add(packageName(cu), Column.CHECK_MS, nanos);
+    }
+
+    public void addTranslationTime(CompilationUnit cu, long nanos) {
+        add(packageName(cu), Column.TRANSLATE_MS, nanos);
+    }
+
+    /**
+     * counts the elements of the program directly after the translation to the intermediate language
+     */
+    public void countImElements(ImProg prog) {
+        countImElements(prog, Column.IM_ELEMENTS);
+    }
+
+    /**
+     * counts the elements of the program after all transformations and optimizations
+     */
+    public void countFinalImElements(ImProg prog) {
+        countImElements(prog, Column.FINAL_IM_ELEMENTS);
+    }
+
+    private void countImElements(ImProg prog, Column column) {
+        for (int i = 0; i < prog.size(); i++) {
+            countElements(prog.get(i), UNKNOWN, column);
+        }
+    }
+
+    /**
+     * elements without a trace belong to the same package as their parent
+     */
+    private void countElements(Element e, String parentPackage, Column column) {
+        String p = parentPackage;
+        if (e instanceof ElementWithTrace) {
+            String tracePackage = packageName(e);
+            if (!tracePackage.equals(UNKNOWN)) {
+                p = tracePackage;
+            }
+        }
+        add(p, column, 1);
+        for (int i = 0; i < e.size(); i++) {
+            countElements(e.get(i), p, column);
+        }
+    }
+
+    /**
+     * @param generic     the generic function or class
+     * @param specialized the specialized copy
+     */
+    public void addSpecialization(Element generic, Element specialized, boolean isClass) {
+        String p = packageName(generic);
+        add(p, isClass ? Column.SPECIALIZED_CLASSES : Column.SPECIALIZED_FUNCTIONS, 1);
+        add(p, Column.SPECIALIZED_ELEMENTS, size(specialized));
+    }
+
+    private static int size(Element e) {
+        int count = 1;
+        for (int i = 0; i < e.size(); i++) {
+            count += size(e.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * @param f     the function of the intermediate language
+     * @param chars the number of characters of the jass function generated for f
+     */
+    public void addJassFunction(ImFunction f, int chars) {
+        String p = packageName(f);
+        add(p, Column.JASS_FUNCTIONS, 1);
+        add(p, Column.JASS_CHARS, chars);
+    }
+
+    private static String packageName(Element e) {
+        return packageName(e.attrTrace());
+    }
+
+    private static String packageName(de.peeeq.wurstscript.ast.Element e) {
+        @Nullable PackageOrGlobal p = e.attrNearestPackage();
+        if (p instanceof WPackage) {
+            return ((WPackage) p).getName();
+        } else if (p instanceof CompilationUnit) {
+            return packageName((CompilationUnit) p);
+        }
+        return UNKNOWN;
+    }
+
+    private static String packageName(CompilationUnit cu) {
+        if (cu.getPackages().size() == 1) {
+            return cu.getPackages().get(0).getName();
+        }
+        return new File(cu.getFile()).getName();
+    }
+
+    private static long value(long[] c, Column column) {
+        long v = c[column.ordinal()];
+        if (column == Column.CHECK_MS || column == Column.TRANSLATE_MS) {
+            return v / 1000000;
+        }
+        return v;
+    }
+
+    private List<Map.Entry<String, long[]>> sortedBy(Column column) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(costs.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[column.ordinal()]).reversed());
+        return entries;
+    }
+
+    /**
+     * the costs as comma separated values, one line per package, sorted by the given column (largest first)
+     */
+    public String toCsv(Column sortColumn) {
+        StringBuilder sb = new StringBuilder("package");
+        for (Column c : Column.values()) {
+            sb.append(",").append(c.getTitle());
+        }
+        sb.append("\n");
+        for (Map.Entry<String, long[]> e : sortedBy(sortColumn)) {
+            sb.append(e.getKey());
+            for (Column c : Column.values()) {
+                sb.append(",").append(value(e.getValue(), c));
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * the given number of packages with the highest value in the given column
+     */
+    public String summary(Column sortColumn, int limit) {
+        StringBuilder sb = new StringBuilder("Packages by " + sortColumn.getTitle() + ":\n");
+        List<Map.Entry<String, long[]>> entries = sortedBy(sortColumn);
+        for (Map.Entry<String, long[]> e : entries.subList(0, Math.min(limit, entries.size()))) {
+            sb.append(e.getKey()).append(": ").append(value(e.getValue(), sortColumn)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * writes the costs as csv file sorted by the generated jass size and logs the most expensive packages
+     */
+    public void write(File file) {
+        try {
+            FileUtils.write(toCsv(Column.JASS_CHARS), file);
+        } catch (IOException e) {
+            WLogger.severe(e);
+        }
+        WLogger.info(summary(Column.CHECK_MS, 10));
+        WLogger.info(summary(Column.SPECIALIZED_ELEMENTS, 10));
+        WLogger.info(summary(Column.JASS_CHARS, 10));
+    }
+}
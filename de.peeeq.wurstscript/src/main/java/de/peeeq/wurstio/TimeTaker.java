@@ -1,8 +1,20 @@
 package de.peeeq.wurstio;
 
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.management.ThreadMXBean;
+import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -25,6 +37,25 @@ public interface TimeTaker {
 
     void printReport();
 
+    /**
+     * reports a statistic of the translation process, which is printed together with the run times
+     */
+    default void reportStatistic(String name, String value) {
+    }
+
+    /**
+     * adds the given value to a counter of the currently measured step (e.g. the number of optimizations done)
+     */
+    default void addCounter(String name, long value) {
+    }
+
+    /**
+     * writes the recorded profile to the given folder in the Chrome trace event format (wurst-profile.json)
+     * and in the collapsed stack format used for flame graphs (wurst-profile.folded)
+     */
+    default void writeProfile(File folder) {
+    }
+
 
     class Default implements TimeTaker {
 
@@ -47,62 +78,249 @@ public interface TimeTaker {
         }
     }
 
+    /**
+     * Records the measured steps as a tree of spans with nanosecond resolution.
+     * For each span the bytes allocated by the compiling thread are recorded, if the JVM supports it.
+     */
     class Recording implements TimeTaker {
-        private int nesting = 0;
-        private String currentPhaseDescription;
-        private long currentPhaseStart;
-        private Map<String, Long> accumulatedTimes = new LinkedHashMap<>();
-
-        public <T> T measure(String name, Supplier<T> f) {
-            name = withNesting(name);
-            nesting++;
-            accumulatedTimes.putIfAbsent(name, 0L);
-            long time = System.currentTimeMillis();
-            T result = f.get();
-            long duration = System.currentTimeMillis() - time;
-            reportDuration(name, duration);
-            nesting--;
-            return result;
-        }
+        private final @Nullable ThreadMXBean allocationBean = allocationBean();
+        private final Span root;
+        private Span current;
+        private @Nullable Span currentPhase;
+        private Map<String, String> statistics = new LinkedHashMap<>();
 
-        private String withNesting(String name) {
-            return Utils.repeat(' ', nesting) + name;
+        public Recording() {
+            root = new Span("total", null, System.nanoTime(), allocatedBytes());
+            current = root;
         }
 
-        private void reportDuration(String name, long duration) {
-            accumulatedTimes.put(name, accumulatedTimes.getOrDefault(name, 0L) + duration);
+        public <T> T measure(String name, Supplier<T> f) {
+            Span span = begin(name);
+            try {
+                return f.get();
+            } finally {
+                end(span);
+            }
         }
 
-
         @Override
         public void beginPhase(String description) {
-            if (currentPhaseDescription != null) {
+            if (currentPhase != null) {
                 endPhase();
             }
-            description = withNesting(description);
-            nesting++;
-            accumulatedTimes.putIfAbsent(description, 0L);
-            currentPhaseDescription = description;
-            currentPhaseStart = System.currentTimeMillis();
+            currentPhase = begin(description);
         }
 
         @Override
         public void endPhase() {
-            if (currentPhaseDescription == null) {
+            Span phase = currentPhase;
+            if (phase == null) {
                 return;
             }
-            long duration = System.currentTimeMillis() - currentPhaseStart;
-            reportDuration(currentPhaseDescription, duration);
-            nesting--;
-            currentPhaseDescription = null;
+            end(phase);
+            currentPhase = null;
+        }
+
+        private Span begin(String name) {
+            Span span = new Span(name, current, System.nanoTime(), allocatedBytes());
+            current.children.add(span);
+            current = span;
+            return span;
+        }
+
+        private void end(Span span) {
+            long time = System.nanoTime();
+            long allocated = allocatedBytes();
+            // also end the spans which were not ended inside of this span (e.g. phases after an exception)
+            while (current != root) {
+                Span s = current;
+                s.durationNanos = time - s.startNanos;
+                s.allocatedBytes = allocated - s.startAllocated;
+                current = s.parent;
+                if (s == currentPhase) {
+                    currentPhase = null;
+                }
+                if (s == span) {
+                    return;
+                }
+            }
+        }
+
+        private long allocatedBytes() {
+            ThreadMXBean bean = allocationBean;
+            if (bean == null) {
+                return 0;
+            }
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        private static @Nullable ThreadMXBean allocationBean() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof ThreadMXBean) {
+                ThreadMXBean b = (ThreadMXBean) bean;
+                if (b.isThreadAllocatedMemorySupported()) {
+                    b.setThreadAllocatedMemoryEnabled(true);
+                    return b;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void reportStatistic(String name, String value) {
+            statistics.put(name, value);
+        }
+
+        @Override
+        public void addCounter(String name, long value) {
+            current.counters.merge(name, value, Long::sum);
+        }
+
+        private void finishRoot() {
+            root.durationNanos = System.nanoTime() - root.startNanos;
+            root.allocatedBytes = allocatedBytes() - root.startAllocated;
         }
 
         @Override
         public void printReport() {
-            System.out.println("#############################");
-            System.out.println("Run times:");
-            for (Map.Entry<String, Long> e : accumulatedTimes.entrySet()) {
-                System.out.println(e.getKey() + ": " + e.getValue() + "ms");
+            System.out.println(report());
+        }
+
+        /**
+         * the run times as text, where steps with the same name and parent are summed up
+         */
+        public String report() {
+            finishRoot();
+            StringBuilder sb = new StringBuilder();
+            sb.append("#############################\n");
+            sb.append("Run times:\n");
+            for (Span s : mergeByName(root.children)) {
+                appendReport(sb, s, 0);
+            }
+            if (!statistics.isEmpty()) {
+                sb.append("Statistics:\n");
+                for (Map.Entry<String, String> e : statistics.entrySet()) {
+                    sb.append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+                }
+            }
+            return sb.toString();
+        }
+
+        private void appendReport(StringBuilder sb, Span s, int nesting) {
+            sb.append(Utils.repeat(' ', nesting)).append(s.name).append(": ")
+                    .append(String.format("%.3fms", s.durationNanos / 1e6));
+            if (allocationBean != null) {
+                sb.append(String.format(", %.1fMB allocated", s.allocatedBytes / 1e6));
+            }
+            s.counters.forEach((k, v) -> sb.append(", ").append(k).append(": ").append(v));
+            sb.append("\n");
+            for (Span c : mergeByName(s.children)) {
+                appendReport(sb, c, nesting + 1);
+            }
+        }
+
+        private static List<Span> mergeByName(List<Span> spans) {
+            Map<String, Span> merged = new LinkedHashMap<>();
+            for (Span s : spans) {
+                Span m = merged.computeIfAbsent(s.name, n -> new Span(n, s.parent, s.startNanos, 0));
+                m.durationNanos += s.durationNanos;
+                m.allocatedBytes += s.allocatedBytes;
+                m.children.addAll(s.children);
+                s.counters.forEach((k, v) -> m.counters.merge(k, v, Long::sum));
+            }
+            return new ArrayList<>(merged.values());
+        }
+
+        @Override
+        public void writeProfile(File folder) {
+            finishRoot();
+            folder.mkdirs();
+            File traceFile = new File(folder, "wurst-profile.json");
+            File foldedFile = new File(folder, "wurst-profile.folded");
+            try {
+                FileUtils.write(chromeTrace(), traceFile);
+                FileUtils.write(collapsedStacks(), foldedFile);
+                WLogger.info("Profile written to " + traceFile + " and " + foldedFile);
+            } catch (IOException e) {
+                WLogger.severe(e);
+            }
+        }
+
+        /**
+         * the spans as complete events in the Chrome trace event format (can be opened with chrome://tracing)
+         */
+        public String chromeTrace() {
+            JsonArray events = new JsonArray();
+            addTraceEvents(events, root);
+            JsonObject trace = new JsonObject();
+            trace.add("traceEvents", events);
+            trace.addProperty("displayTimeUnit", "ms");
+            JsonObject metadata = new JsonObject();
+            statistics.forEach(metadata::addProperty);
+            trace.add("otherData", metadata);
+            return new GsonBuilder().setPrettyPrinting().create().toJson(trace);
+        }
+
+        private void addTraceEvents(JsonArray events, Span s) {
+            JsonObject event = new JsonObject();
+            event.addProperty("name", s.name);
+            event.addProperty("cat", "wurst");
+            event.addProperty("ph", "X");
+            event.addProperty("ts", (s.startNanos - root.startNanos) / 1e3);
+            event.addProperty("dur", s.durationNanos / 1e3);
+            event.addProperty("pid", 1);
+            event.addProperty("tid", 1);
+            JsonObject args = new JsonObject();
+            if (allocationBean != null) {
+                args.addProperty("allocatedBytes", s.allocatedBytes);
+            }
+            s.counters.forEach(args::addProperty);
+            event.add("args", args);
+            events.add(event);
+            for (Span c : s.children) {
+                addTraceEvents(events, c);
+            }
+        }
+
+        /**
+         * the self time of each stack of spans in microseconds, one stack per line (input format of flamegraph.pl)
+         */
+        public String collapsedStacks() {
+            Map<String, Long> stacks = new LinkedHashMap<>();
+            addCollapsedStacks(stacks, root, root.name);
+            StringBuilder sb = new StringBuilder();
+            stacks.forEach((stack, micros) -> {
+                if (micros > 0) {
+                    sb.append(stack).append(" ").append(micros).append("\n");
+                }
+            });
+            return sb.toString();
+        }
+
+        private void addCollapsedStacks(Map<String, Long> stacks, Span s, String stack) {
+            long selfTime = s.durationNanos;
+            for (Span c : s.children) {
+                selfTime -= c.durationNanos;
+                addCollapsedStacks(stacks, c, stack + ";" + c.name.replace(';', ','));
+            }
+            stacks.merge(stack, Math.max(0, selfTime) / 1000, Long::sum);
+        }
+
+        private static class Span {
+            private final String name;
+            private final @Nullable Span parent;
+            private final long startNanos;
+            private final long startAllocated;
+            private long durationNanos;
+            private long allocatedBytes;
+            private final List<Span> children = new ArrayList<>();
+            private final Map<String, Long> counters = new LinkedHashMap<>();
+
+            Span(String name, @Nullable Span parent, long startNanos, long startAllocated) {
+                this.name = name;
+                this.parent = parent;
+                this.startNanos = startNanos;
+                this.startAllocated = startAllocated;
             }
         }
 
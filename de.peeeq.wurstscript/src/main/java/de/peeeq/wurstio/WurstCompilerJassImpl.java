@@ -2,7 +2,9 @@ package de.peeeq.wurstio;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.*;
+import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
 import de.peeeq.wurstio.languageserver.requests.RequestFailedException;
 import de.peeeq.wurstio.map.importer.ImportFile;
@@ -13,15 +15,25 @@ import de.peeeq.wurstscript.*;
 import de.peeeq.wurstscript.ast.*;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.frotty.jassValidator.JassDeclarations;
+import de.peeeq.wurstscript.frotty.jassValidator.JassValidator;
 import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.jassAst.JassFunction;
+import de.peeeq.wurstscript.jassAst.JassFunctionOrNative;
 import de.peeeq.wurstscript.jassAst.JassProg;
 import de.peeeq.wurstscript.jassIm.ImCompiletimeExpr;
+import de.peeeq.wurstscript.jassIm.ImFunction;
 import de.peeeq.wurstscript.jassIm.ImProg;
 import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import de.peeeq.wurstscript.luaAst.LuaCompilationUnit;
 import de.peeeq.wurstscript.parser.WPos;
 import de.peeeq.wurstscript.translation.imoptimizer.ImOptimizer;
 import de.peeeq.wurstscript.translation.imtojass.ImToJassTranslator;
 import de.peeeq.wurstscript.translation.imtranslation.*;
+import de.peeeq.wurstscript.translation.lua.optimizer.LuaOptimizer;
+import de.peeeq.wurstscript.translation.lua.translation.LuaTranslator;
+import de.peeeq.wurstscript.types.SubtypeCache;
 import de.peeeq.wurstscript.utils.LineOffsets;
 import de.peeeq.wurstscript.utils.NotNullList;
 import de.peeeq.wurstscript.utils.TempDir;
@@ -32,6 +44,10 @@ import org.eclipse.lsp4j.MessageType;
 import java.io.*;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.google.common.io.Files.asCharSink;
 import static de.peeeq.wurstio.CompiletimeFunctionRunner.FunctionFlagToRun.CompiletimeFunctions;
@@ -48,6 +64,7 @@ public class WurstCompilerJassImpl implements WurstCompiler {
     private @Nullable File projectFolder;
     private ErrorHandler errorHandler;
     private @Nullable Map<String, File> libCache = null;
+    private final Map<File, List<String>> libImportCache = new HashMap<>();
     private @Nullable ImProg imProg;
     private List<File> parsedFiles = Lists.newArrayList();
     private final WurstParser parser;
@@ -56,6 +73,11 @@ public class WurstCompilerJassImpl implements WurstCompiler {
     private List<File> dependencies = Lists.newArrayList();
     private final @Nullable MpqEditor mapFileMpq;
     private TimeTaker timeTaker;
+    private final @Nullable PackageCosts packageCosts;
+    private final @Nullable AstSnapshotCache astSnapshotCache;
+    private @Nullable File commonJFile;
+    private @Nullable File blizzardJFile;
+    private Map<JassFunction, WPos> jassFunctionSources = Collections.emptyMap();
 
     public WurstCompilerJassImpl(@Nullable File projectFolder, WurstGui gui, @Nullable MpqEditor mapFileMpq, RunArgs runArgs) {
         this(new TimeTaker.Default(), projectFolder, gui, mapFileMpq, runArgs);
@@ -70,6 +92,16 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         this.parser = new WurstParser(errorHandler, gui);
         this.checker = new WurstChecker(gui, errorHandler);
         this.mapFileMpq = mapFileMpq;
+        this.packageCosts = runArgs.getPackageCostsFile() == null ? null : new PackageCosts();
+        checker.setPackageCosts(packageCosts);
+        String astCacheFolder = runArgs.getAstCacheFolder();
+        if (astCacheFolder != null) {
+            this.astSnapshotCache = new AstSnapshotCache(new File(astCacheFolder));
+        } else if (projectFolder != null) {
+            this.astSnapshotCache = new AstSnapshotCache(new File(projectFolder, "_build/astCache"));
+        } else {
+            this.astSnapshotCache = null;
+        }
     }
 
     @Override
@@ -230,7 +262,11 @@ public class WurstCompilerJassImpl implements WurstCompiler {
                 if (file.getName().endsWith("common.j")) {
                     hasCommonJ = true;
                 }
-                compilationUnits.add(parseFile(file));
+                if (isStandardJassFile(file)) {
+                    compilationUnits.add(parseLibraryFile(file));
+                } else {
+                    compilationUnits.add(parseFile(file));
+                }
             }
         }
         for (Entry<String, Reader> in : otherInputs.entrySet()) {
@@ -276,6 +312,9 @@ public class WurstCompilerJassImpl implements WurstCompiler {
 
     /**
      * this method scans for unsatisfied imports and tries to find them in the lib-path
+     * <p>
+     * The library files reachable via imports are determined by scanning the headers of the files,
+     * so that they can be parsed in parallel before the imports are resolved.
      */
     public void addImportedLibs(List<CompilationUnit> compilationUnits) {
         Set<String> packages = Sets.newLinkedHashSet();
@@ -288,17 +327,18 @@ public class WurstCompilerJassImpl implements WurstCompiler {
             }
         }
 
+        Map<String, CompletableFuture<ParsedLib>> parsedLibs = parseReachableLibs(packages, imports);
         for (WImport imp : imports) {
-            resolveImport(compilationUnits, packages, imp);
+            resolveImport(compilationUnits, packages, parsedLibs, imp);
         }
 
     }
 
-    private void resolveImport(List<CompilationUnit> compilationUnits, Set<String> packages, WImport imp) throws CompileError {
+    private void resolveImport(List<CompilationUnit> compilationUnits, Set<String> packages, Map<String, CompletableFuture<ParsedLib>> parsedLibs, WImport imp) throws CompileError {
         //		WLogger.info("resolving import: " + imp.getPackagename());
         if (!packages.contains(imp.getPackagename())) {
             if (getLibs().containsKey(imp.getPackagename())) {
-                CompilationUnit lib = loadLibPackage(compilationUnits, imp.getPackagename());
+                CompilationUnit lib = loadLibPackage(compilationUnits, parsedLibs, imp.getPackagename());
                 boolean foundPackage = false;
                 for (WPackage p : lib.getPackages()) {
                     packages.add(p.getName());
@@ -306,7 +346,7 @@ public class WurstCompilerJassImpl implements WurstCompiler {
                         foundPackage = true;
                     }
                     for (WImport i : p.getImports()) {
-                        resolveImport(compilationUnits, packages, i);
+                        resolveImport(compilationUnits, packages, parsedLibs, i);
                     }
                 }
                 if (!foundPackage) {
@@ -328,19 +368,158 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         }
     }
 
-    private CompilationUnit loadLibPackage(List<CompilationUnit> compilationUnits, String imp) {
+    private CompilationUnit loadLibPackage(List<CompilationUnit> compilationUnits, Map<String, CompletableFuture<ParsedLib>> parsedLibs, String imp) {
         File file = getLibs().get(imp);
         if (file == null) {
             gui.sendError(new CompileError(new WPos("", null, 0, 0), "Could not find lib-package " + imp + ". Are you missing your wurst.dependencies file?"));
             return Ast.CompilationUnit("", errorHandler, Ast.JassToplevelDeclarations(), Ast.WPackages());
         } else {
-            CompilationUnit lib = parseFile(file);
+            CompletableFuture<ParsedLib> parsed = parsedLibs.remove(imp);
+            CompilationUnit lib = parsed == null ? parseLibraryFile(file) : reportParsedLib(file, join(parsed));
             lib.setFile(file.getAbsolutePath());
             compilationUnits.add(lib);
             return lib;
         }
     }
 
+    /**
+     * a parsed library file together with the errors found while parsing
+     */
+    private static class ParsedLib {
+        private final CompilationUnit cu;
+        private final ErrorHandler errorHandler;
+        private final WurstGui gui;
+
+        ParsedLib(CompilationUnit cu, ErrorHandler errorHandler, WurstGui gui) {
+            this.cu = cu;
+            this.errorHandler = errorHandler;
+            this.gui = gui;
+        }
+    }
+
+    /**
+     * Finds the library files, which are reachable via the given imports, by scanning the package and import
+     * declarations in the file headers (breadth first).
+     * A parse job is started for each reachable file as soon as it is discovered.
+     * The header scan can find more imports than the parser (e.g. imports in block comments),
+     * so not all parsed files are necessarily used.
+     */
+    private Map<String, CompletableFuture<ParsedLib>> parseReachableLibs(Set<String> packages, Collection<WImport> imports) {
+        Map<String, CompletableFuture<ParsedLib>> result = new HashMap<>();
+        Set<String> visited = new HashSet<>(packages);
+        Deque<String> todo = new ArrayDeque<>();
+        for (WImport imp : imports) {
+            todo.add(imp.getPackagename());
+        }
+        while (!todo.isEmpty()) {
+            String name = todo.poll();
+            if (!visited.add(name)) {
+                continue;
+            }
+            File file = getLibs().get(name);
+            if (file == null) {
+                continue;
+            }
+            boolean commonJ = hasCommonJ;
+            result.put(name, CompletableFuture.supplyAsync(() -> parseLib(file, commonJ)));
+            todo.addAll(scanImports(file));
+        }
+        return result;
+    }
+
+    private static final Pattern IMPORT_PATTERN = Pattern.compile("^\\s*import\\s+(?:public\\s+)?(?:initlater\\s+)?(\\w+)", Pattern.MULTILINE);
+
+    /**
+     * the names of the packages imported in the given file
+     */
+    private List<String> scanImports(File file) {
+        return libImportCache.computeIfAbsent(file, f -> {
+            List<String> result = new ArrayList<>();
+            try (Reader reader = FileReading.getFileReader(f)) {
+                Matcher m = IMPORT_PATTERN.matcher(CharStreams.toString(reader));
+                while (m.find()) {
+                    result.add(m.group(1));
+                }
+            } catch (IOException e) {
+                // the error is reported when the file is parsed
+            }
+            return result;
+        });
+    }
+
+    private static boolean isStandardJassFile(File file) {
+        String name = file.getName().toLowerCase();
+        return name.equals("common.j") || name.equals("blizzard.j");
+    }
+
+    /**
+     * Parses a file, which is not part of the project (e.g. common.j or a library package).
+     * If available, the parse result is loaded from the snapshot cache instead.
+     */
+    public CompilationUnit parseLibraryFile(File file) {
+        if (file.isDirectory()) {
+            throw new Error("Is a directory: " + file);
+        }
+        return reportParsedLib(file, parseLib(file, hasCommonJ));
+    }
+
+    /**
+     * Parses a library file using a separate parser and error handler, so that this can run in a different thread.
+     * Files without syntax errors are stored in the snapshot cache.
+     */
+    private ParsedLib parseLib(File file, boolean commonJ) {
+        WurstGui libGui = new WurstGuiLogger();
+        ErrorHandler libErrorHandler = new ErrorHandler(libGui);
+        AstSnapshotCache cache = astSnapshotCache;
+        String key = null;
+        if (cache != null) {
+            try {
+                key = AstSnapshotCache.key(java.nio.file.Files.readAllBytes(file.toPath()), commonJ);
+                CompilationUnit cu = cache.load(key, file.getAbsolutePath(), libErrorHandler);
+                if (cu != null) {
+                    return new ParsedLib(cu, libErrorHandler, libGui);
+                }
+            } catch (IOException e) {
+                // the error is reported by the parser
+            }
+        }
+        WurstParser libParser = new WurstParser(libErrorHandler, libGui);
+        CompilationUnit cu = parseFile(file, libParser, libGui, commonJ);
+        if (cache != null && key != null && libGui.getErrorsAndWarnings().isEmpty()) {
+            cache.store(key, cu);
+        }
+        return new ParsedLib(cu, libErrorHandler, libGui);
+    }
+
+    private static ParsedLib join(CompletableFuture<ParsedLib> parsed) {
+        try {
+            return parsed.join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new Error(e.getCause());
+        }
+    }
+
+    /**
+     * reports the errors of a parsed library file
+     */
+    private CompilationUnit reportParsedLib(File file, ParsedLib lib) {
+        parsedFiles.add(file);
+        gui.sendProgress("Parsing File " + file.getName());
+        lib.cu.setCuErrorHandler(errorHandler);
+        Set<CompileError> handlerErrors = Sets.newIdentityHashSet();
+        handlerErrors.addAll(lib.errorHandler.getErrors());
+        handlerErrors.addAll(lib.errorHandler.getWarnings());
+        for (CompileError err : lib.gui.getErrorsAndWarnings()) {
+            if (handlerErrors.contains(err)) {
+                errorHandler.sendError(err);
+            } else {
+                gui.sendError(err);
+            }
+        }
+        return lib.cu;
+    }
+
     public Map<String, File> getLibs() {
         Map<String, File> lc = libCache;
         if (lc == null) {
@@ -376,7 +555,10 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         checkProg(model, model);
     }
 
-    public void checkProg(WurstModel model, List<CompilationUnit> toCheck) {
+    /**
+     * @return false, if the checks were aborted before validating the compilation units because of earlier errors
+     */
+    public boolean checkProg(WurstModel model, List<CompilationUnit> toCheck) {
         for (CompilationUnit cu : toCheck) {
             Preconditions.checkNotNull(cu);
             if (!model.contains(cu)) {
@@ -384,8 +566,19 @@ public class WurstCompilerJassImpl implements WurstCompiler {
                 throw new ModelChangedException();
             }
         }
+        // cached subtype relations might refer to outdated attributes:
+        SubtypeCache.clear();
 
-        checker.checkProg(model, toCheck);
+        return checker.checkProg(model, toCheck);
+    }
+
+    /**
+     * prepares a model for the translation, which was already checked without errors (e.g. by the language server)
+     */
+    public void prepareCheckedProg(WurstModel model) {
+        // cached subtype relations might refer to outdated attributes:
+        SubtypeCache.clear();
+        checker.prepareCheckedProg(model);
     }
 
     public JassProg transformProgToJass() {
@@ -396,13 +589,29 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         int stage = 2;
         // eliminate
         beginPhase(2, "Eliminate generics");
-        new EliminateGenerics(imTranslator2, imProg2).transform();
+        EliminateGenerics eliminateGenerics = new EliminateGenerics(imTranslator2, imProg2);
+        eliminateGenerics.transform();
+        PackageCosts costs = packageCosts;
+        if (costs != null) {
+            eliminateGenerics.getSpecializedFunctions().forEach((generic, specialized) -> costs.addSpecialization(generic, specialized, false));
+            eliminateGenerics.getSpecializedClasses().forEach((generic, specialized) -> costs.addSpecialization(generic, specialized, true));
+        }
         printDebugImProg("./test-output/im " + stage++ + "_genericsEliminated.im");
 
         // eliminate classes
         beginPhase(2, "translate classes");
 
-        new EliminateClasses(imTranslator2, imProg2, !runArgs.isUncheckedDispatch()).eliminateClasses();
+        EliminateClasses eliminateClasses = new EliminateClasses(imTranslator2, imProg2, !runArgs.isUncheckedDispatch(),
+                runArgs.getRecyclingStrategy(), runArgs.getFieldLayout(), !runArgs.isNoDebugMessages());
+        eliminateClasses.eliminateClasses();
+        String devirtualizationReport = eliminateClasses.getDevirtualization().report();
+        WLogger.info("devirtualized " + devirtualizationReport);
+        timeTaker.reportStatistic("devirtualized method calls", devirtualizationReport);
+        ClassFieldLayout fieldLayout = eliminateClasses.getFieldLayout();
+        if (fieldLayout != null) {
+            WLogger.info("class fields: " + fieldLayout.report());
+            timeTaker.reportStatistic("class fields", fieldLayout.report());
+        }
         imTranslator2.assertProperties();
         printDebugImProg("./test-output/im " + stage++ + "_classesEliminated.im");
 
@@ -449,7 +658,10 @@ public class WurstCompilerJassImpl implements WurstCompiler {
 
         // remove cycles:
         beginPhase(8, "remove cyclic functions");
-        new CyclicFunctionRemover(imTranslator2, imProg2).work();
+        CyclicFunctionRemover cyclicFunctionRemover = new CyclicFunctionRemover(imTranslator2, imProg2, runArgs.isCycleIndirection());
+        cyclicFunctionRemover.work();
+        WLogger.info("cyclic functions: " + cyclicFunctionRemover.report());
+        timeTaker.reportStatistic("cyclic functions", cyclicFunctionRemover.report());
 
         printDebugImProg("./test-output/im " + stage++ + "_nocyc.im");
 
@@ -495,14 +707,116 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         getImTranslator().calculateCallRelationsAndUsedVariables();
         ImToJassTranslator translator =
                 new ImToJassTranslator(getImProg(), getImTranslator().getCalledFunctions(), getImTranslator().getMainFunc(), getImTranslator().getConfFunc());
-        prog = translator.translate();
+        JassProg jassProg = translator.translate();
+        prog = jassProg;
+        jassFunctionSources = new HashMap<>();
+        for (ImFunction f : getImProg().getFunctions()) {
+            JassFunctionOrNative jassFunction = translator.getTranslatedFunction(f);
+            if (jassFunction instanceof JassFunction) {
+                jassFunctionSources.put((JassFunction) jassFunction, f.attrTrace().attrSource());
+            }
+        }
         if (errorHandler.getErrorCount() > 0) {
             prog = null;
+        } else if (costs != null) {
+            writePackageCosts(costs, translator, jassProg);
         }
         timeTaker.endPhase();
         return prog;
     }
 
+    /**
+     * Translates the program to Lua.
+     * Classes, tuples and function references are kept, since Lua supports them directly,
+     * and there is no need to remove cyclic functions or to set local variables to null.
+     */
+    public @Nullable LuaCompilationUnit transformProgToLua() {
+        ImTranslator imTranslator2 = getImTranslator();
+        ImProg imProg2 = getImProg();
+        imTranslator2.assertProperties();
+        checkNoCompiletimeExpr(imProg2);
+        int stage = 2;
+        beginPhase(2, "Eliminate generics");
+        new EliminateGenerics(imTranslator2, imProg2).transform();
+        printDebugImProg("./test-output/lua/im " + stage++ + "_genericsEliminated.im");
+
+        new VarargEliminator(imProg2).run();
+        printDebugImProg("./test-output/lua/im " + stage++ + "_varargEliminated.im");
+        if (runArgs.isNoDebugMessages()) {
+            beginPhase(3, "remove debug messages");
+            DebugMessageRemover.removeDebugMessages(imProg2);
+        }
+        imTranslator2.assertProperties();
+
+        ImOptimizer optimizer = new ImOptimizer(timeTaker, imTranslator2);
+        if (runArgs.isInline()) {
+            beginPhase(5, "inlining");
+            optimizer.doInlining();
+            imTranslator2.assertProperties();
+            printDebugImProg("./test-output/lua/im " + stage++ + "_afterinline.im");
+        }
+
+        beginPhase(9, "flatten");
+        imProg2.flatten(imTranslator2);
+        optimizer.removeGarbage();
+        printDebugImProg("./test-output/lua/im " + stage++ + "_flat.im");
+
+        if (runArgs.isLocalOptimizations()) {
+            beginPhase(10, "local optimizations");
+            optimizer.localOptimizationsLua();
+            printDebugImProg("./test-output/lua/im " + stage++ + "_afterlocalopts.im");
+        }
+
+        beginPhase(13, "translate to lua");
+        LuaTranslator luaTranslator = new LuaTranslator(imProg2, imTranslator2);
+        LuaCompilationUnit luaCode = luaTranslator.translate();
+        beginPhase(14, "optimize lua");
+        new LuaOptimizer(timeTaker).optimize(luaCode, luaTranslator.getConstantTables());
+        timeTaker.endPhase();
+        if (errorHandler.getErrorCount() > 0) {
+            return null;
+        }
+        return luaCode;
+    }
+
+    private void writePackageCosts(PackageCosts costs, ImToJassTranslator translator, JassProg jassProg) {
+        costs.countFinalImElements(getImProg());
+        JassPrinter printer = new JassPrinter(!runArgs.isOptimize(), jassProg);
+        for (ImFunction f : getImProg().getFunctions()) {
+            JassFunctionOrNative jassFunction = translator.getTranslatedFunction(f);
+            if (jassFunction instanceof JassFunction) {
+                StringBuilder sb = new StringBuilder();
+                printer.printFunction(sb, (JassFunction) jassFunction);
+                costs.addJassFunction(f, sb.length());
+            }
+        }
+        String file = runArgs.getPackageCostsFile();
+        if (file != null) {
+            costs.write(new File(file));
+        }
+    }
+
+    /**
+     * Starts the validation of the generated Jass program, so that it can run in parallel with printing the program.
+     * The program is validated against the common.j and blizzard.j of the project, if available.
+     * Errors are reported at the source of the function, from which the erroneous Jass function was generated.
+     */
+    public CompletableFuture<List<CompileError>> startJassValidation(JassProg jassProg) {
+        File commonJ = commonJFile;
+        File blizzardJ = blizzardJFile;
+        Map<JassFunction, WPos> functionSources = jassFunctionSources;
+        return CompletableFuture.supplyAsync(() -> {
+            JassValidator validator = new JassValidator(JassDeclarations.standard(commonJ, blizzardJ), functionSources,
+                    new WPos("war3map.j", LineOffsets.dummy, 0, 0));
+            List<CompileError> result = new ArrayList<>();
+            for (CompileError err : validator.validateProg(jassProg)) {
+                result.add(new CompileError(err.getSource(),
+                        "This is a bug in the Wurst Compiler. Please report it. The generated Jass code is invalid: " + err.getMessage()));
+            }
+            return result;
+        });
+    }
+
     public void checkNoCompiletimeExpr(ImProg prog) {
         prog.accept(new ImProg.DefaultVisitor() {
             @Override
@@ -513,7 +827,7 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         });
     }
 
-    private ImTranslator getImTranslator() {
+    public ImTranslator getImTranslator() {
         final ImTranslator t = imTranslator;
         if (t != null) {
             return t;
@@ -525,8 +839,22 @@ public class WurstCompilerJassImpl implements WurstCompiler {
     public @Nullable ImProg translateProgToIm(WurstModel root) {
         beginPhase(1, "to intermediate lang");
         // translate wurst to intermediate lang:
+        for (CompilationUnit cu : root) {
+            File file = new File(cu.getFile());
+            if (file.getName().equalsIgnoreCase("common.j")) {
+                commonJFile = file;
+            } else if (file.getName().equalsIgnoreCase("blizzard.j")) {
+                blizzardJFile = file;
+            }
+        }
         imTranslator = new ImTranslator(root, errorHandler.isUnitTestMode());
-        imProg = getImTranslator().translateProg();
+        getImTranslator().setPackageCosts(packageCosts);
+        ImProg translated = getImTranslator().translateProg();
+        imProg = translated;
+        PackageCosts costs = packageCosts;
+        if (costs != null) {
+            costs.countImElements(translated);
+        }
         int stage = 1;
         printDebugImProg("./test-output/im " + stage++ + ".im");
         timeTaker.endPhase();
@@ -637,24 +965,32 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         parsedFiles.add(file);
 
         gui.sendProgress("Parsing File " + file.getName());
+        return parseFile(file, parser, gui, hasCommonJ);
+    }
+
+    private static CompilationUnit parseFile(File file, WurstParser parser, WurstGui gui, boolean hasCommonJ) {
         String source = file.getAbsolutePath();
         try (Reader reader = FileReading.getFileReader(file)) {
             // scanning
-            return parse(source, reader);
+            return parse(parser, source, reader, hasCommonJ);
 
         } catch (CompileError e) {
             gui.sendError(e);
-            return emptyCompilationUnit();
+            return parser.emptyCompilationUnit();
         } catch (FileNotFoundException e) {
             gui.sendError(new CompileError(new WPos(source, LineOffsets.dummy, 0, 0), "File not found."));
-            return emptyCompilationUnit();
+            return parser.emptyCompilationUnit();
         } catch (IOException e) {
             gui.sendError(new CompileError(new WPos(source, LineOffsets.dummy, 0, 0), "Could not read file."));
-            return emptyCompilationUnit();
+            return parser.emptyCompilationUnit();
         }
     }
 
     public CompilationUnit parse(String fileName, Reader reader) {
+        return parse(parser, fileName, reader, hasCommonJ);
+    }
+
+    private static CompilationUnit parse(WurstParser parser, String fileName, Reader reader, boolean hasCommonJ) {
         if (fileName.endsWith(".j")) {
             return parser.parseJass(reader, fileName, hasCommonJ);
         }
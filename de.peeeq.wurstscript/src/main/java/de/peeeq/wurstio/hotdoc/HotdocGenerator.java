@@ -2,37 +2,53 @@ package de.peeeq.wurstio.hotdoc;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import de.peeeq.wurstio.WurstCompilerJassImpl;
-import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.CompileTimeInfo;
 import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.ast.*;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import de.peeeq.wurstscript.parser.WPos;
 import de.peeeq.wurstscript.utils.Utils;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.Renderable;
 import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Properties;
-
-import static com.google.common.io.Files.asCharSink;
-
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Generates html documentation for the packages of a Wurst project.
+ * <p>
+ * Pages are rendered concurrently and written directly to the output files.
+ * The hashes of the rendered content are stored in a manifest in the output folder,
+ * so that on the next run only the pages of changed packages are rendered again.
+ */
 public class HotdocGenerator {
 
+    private static final String MANIFEST_FILE = "hotdoc-manifest.json";
+    private static final String INDEX_FILE = "index.html";
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
     private List<String> files;
     private File outputfolder;
-    //	private WurstModel model;
-//	private ArrayList<WPackage> packages;
     private VelocityEngine ve;
+    private Template documentTemplate;
+    private Template packageTemplate;
     private Template variableTemplate;
     private Template navbarTemplate;
     private Template structureTemplate;
@@ -46,6 +62,8 @@ public class HotdocGenerator {
         p.setProperty("resource.loader", "class");
         p.setProperty("class.resource.loader.class", "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
         ve.init(p);
+        documentTemplate = ve.getTemplate("/hotdoc/document.html");
+        packageTemplate = ve.getTemplate("/hotdoc/package.html");
         variableTemplate = ve.getTemplate("/hotdoc/var.html");
         navbarTemplate = ve.getTemplate("/hotdoc/navbar.html");
         structureTemplate = ve.getTemplate("/hotdoc/structure.html");
@@ -57,14 +75,7 @@ public class HotdocGenerator {
             for (String f : files) {
                 WLogger.info("	input: " + f);
             }
-            if (outputfolder.exists()) {
-                // clean folder
-                for (File f : outputfolder.listFiles()) {
-                    if (f.getName().endsWith(".html")) {
-                        f.delete();
-                    }
-                }
-            } else {
+            if (!outputfolder.exists()) {
                 if (!outputfolder.mkdirs()) {
                     throw new Error("could not create output directory");
                 }
@@ -100,14 +111,17 @@ public class HotdocGenerator {
             if (packages.size() == 0) {
                 throw new RuntimeException("Cannot generate for empty model: " + files.get(0));
             }
-            WLogger.info("Found " + packages.size() + "´packages.");
+            WLogger.info("Found " + packages.size() + " packages.");
             packages.sort(Comparator.comparing(o -> o.getSource().shortFile()));
 
-            createIndex(packages);
+            // attributes are not thread safe, so the content of all pages is collected before rendering
+            List<PackageDoc> packageDocs = new ArrayList<>();
             for (WPackage p : packages) {
-                createPackageDoc(p, packages);
+                packageDocs.add(getPackageDoc(p));
             }
             gui.clearErrors();
+
+            writePages(packageDocs);
         } catch (Throwable t) {
             System.err.println("Error in creating documentation: ");
             t.printStackTrace();
@@ -115,79 +129,136 @@ public class HotdocGenerator {
         }
     }
 
-    private void createIndex(List<WPackage> packages) {
-        Template t = ve.getTemplate("/hotdoc/document.html");
-
-        VelocityContext context = new VelocityContext();
-        context.put("title", "HotDoc Wurst Documentation");
-        context.put("navbar", getNavbarWithHighlight(null, packages));
-        context.put("content", "");
-        String s = render(t, context);
-        WLogger.info(s);
-        // TODO
+    /**
+     * Renders the index and package pages concurrently.
+     * Pages, whose hash did not change since the last run, are not rendered again.
+     */
+    private void writePages(List<PackageDoc> packageDocs) throws IOException {
+        File manifestFile = new File(outputfolder, MANIFEST_FILE);
+        Manifest oldManifest = Manifest.load(manifestFile);
+        Manifest newManifest = new Manifest();
+
+        String navbarHash = hash(h -> {
+            for (PackageDoc p : packageDocs) {
+                h.putString(p.getName(), Charsets.UTF_8).putChar('\n');
+                h.putString(p.getSource().shortFile(), Charsets.UTF_8).putChar('\n');
+            }
+        });
+
+        List<CompletableFuture<Void>> jobs = new ArrayList<>();
+        int skipped = 0;
+        newManifest.pages.put(INDEX_FILE, navbarHash);
+        if (oldManifest.isUpToDate(outputfolder, INDEX_FILE, navbarHash)) {
+            skipped++;
+        } else {
+            jobs.add(CompletableFuture.runAsync(() -> createIndex(packageDocs)));
+        }
+        for (PackageDoc p : packageDocs) {
+            String fileName = p.getName() + ".html";
+            String pageHash = hash(h -> {
+                h.putString(navbarHash, Charsets.UTF_8);
+                p.putHash(h);
+            });
+            newManifest.pages.put(fileName, pageHash);
+            if (oldManifest.isUpToDate(outputfolder, fileName, pageHash)) {
+                skipped++;
+            } else {
+                jobs.add(CompletableFuture.runAsync(() -> createPackageDoc(p, packageDocs)));
+            }
+        }
         try {
-            FileUtils.write(render(t, context), new File(outputfolder + "/index.html"));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            CompletableFuture.allOf(jobs.toArray(new CompletableFuture[0])).join();
+        } finally {
+            // remove the pages of packages which no longer exist
+            File[] existingFiles = outputfolder.listFiles();
+            if (existingFiles != null) {
+                for (File f : existingFiles) {
+                    if (f.getName().endsWith(".html") && !newManifest.pages.containsKey(f.getName())) {
+                        f.delete();
+                    }
+                }
+            }
+            for (CompletableFuture<Void> job : jobs) {
+                if (job.isCompletedExceptionally()) {
+                    // pages might be incomplete, so everything is rendered again on the next run
+                    newManifest.pages.clear();
+                }
+            }
+            newManifest.save(manifestFile);
         }
-
+        WLogger.info("Wrote " + jobs.size() + " pages, " + skipped + " pages were up to date.");
     }
 
-    private void createPackageDoc(WPackage pack, List<WPackage> packages) {
+    private static String hash(Consumer<Hasher> f) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(CompileTimeInfo.version, Charsets.UTF_8).putChar('\n');
+        f.accept(hasher);
+        return hasher.hash().toString();
+    }
 
-        Template t = ve.getTemplate("/hotdoc/document.html");
+    private void createIndex(List<PackageDoc> packages) {
+        VelocityContext context = new VelocityContext();
+        context.put("title", "HotDoc Wurst Documentation");
+        context.put("navbar", renderable(navbarContext(null, packages), navbarTemplate));
+        context.put("content", "");
+        writePage(INDEX_FILE, context);
+    }
 
+    private void createPackageDoc(PackageDoc pack, List<PackageDoc> packages) {
         VelocityContext context = new VelocityContext();
         context.put("title", pack.getName() + " HotDoc Wurst Documentation");
-        context.put("navbar", getNavbarWithHighlight(pack, packages));
-        context.put("content", getPackageContent(pack));
-        String s = render(t, context);
-        WLogger.info(s);
-        // TODO
-        try {
-            FileUtils.write(render(t, context), new File(outputfolder + "/" + pack.getName() + ".html"));
+        context.put("navbar", renderable(navbarContext(pack, packages), navbarTemplate));
+        context.put("content", (Renderable) (ctxt, writer) -> {
+            VelocityContext packageContext = new VelocityContext();
+            packageContext.put("currentPackage", pack);
+            packageTemplate.merge(packageContext, writer);
+            for (DocEntry e : pack.entries) {
+                e.template.merge(e.toContext(), writer);
+            }
+            return true;
+        });
+        writePage(pack.getName() + ".html", context);
+    }
+
+    private void writePage(String fileName, VelocityContext context) {
+        try (Writer writer = Files.newBufferedWriter(new File(outputfolder, fileName).toPath(), Charsets.UTF_8)) {
+            documentTemplate.merge(context, writer);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
     }
 
-    private String getPackageContent(WPackage pack) {
-        Template t = ve.getTemplate("/hotdoc/package.html");
-        VelocityContext context = new VelocityContext();
-        context.put("currentPackage", pack);
-        StringWriter writer = new StringWriter();
-        t.merge(context, writer);
-
-        documentVars(getElements(pack, VarDef.class), writer, false);
-        documentFuncs(getElements(pack, FunctionDefinition.class), writer, false);
-        documentStructures(pack, writer);
+    private static Renderable renderable(VelocityContext context, Template template) {
+        return (ctxt, writer) -> {
+            template.merge(context, writer);
+            return true;
+        };
+    }
 
-        return writer.toString();
+    private PackageDoc getPackageDoc(WPackage pack) {
+        PackageDoc result = new PackageDoc(pack.getName(), new DocSource(pack.getSource()));
+        documentVars(getElements(pack, VarDef.class), result.entries, false);
+        documentFuncs(getElements(pack, FunctionDefinition.class), result.entries, false);
+        documentStructures(pack, result.entries);
+        return result;
     }
 
-    private void documentStructures(WPackage pack, StringWriter writer) {
+    private void documentStructures(WPackage pack, List<DocEntry> entries) {
         List<StructureDef> sorted = Utils.sortByName(getElements(pack, StructureDef.class));
         for (StructureDef v : sorted) {
             if (!v.attrIsPublic()) {
                 continue;
             }
 
-            VelocityContext context = new VelocityContext();
-            context.put("name", Utils.printElement(v));
-            context.put("type", "");
-            context.put("comment", v.attrComment());
-            context.put("source", v.getSource());
-
-            structureTemplate.merge(context, writer);
+            entries.add(new DocEntry(structureTemplate, Utils.printElement(v), "", v.attrComment(), v.getSource()));
 
-            documentVars(v.getVars(), writer, true);
-            documentFuncs(v.getMethods(), writer, true);
+            documentVars(v.getVars(), entries, true);
+            documentFuncs(v.getMethods(), entries, true);
         }
 
     }
 
-    private <T extends FunctionDefinition> void documentFuncs(List<T> funcs, StringWriter writer, boolean includeNonPublic) {
+    private <T extends FunctionDefinition> void documentFuncs(List<T> funcs, List<DocEntry> entries, boolean includeNonPublic) {
         funcs = Utils.sortByName(funcs);
         for (FunctionDefinition f : funcs) {
             if (!f.attrIsPublic()) {
@@ -196,8 +267,6 @@ public class HotdocGenerator {
                 }
             }
 
-            VelocityContext context = new VelocityContext();
-
             StringBuilder descr = new StringBuilder();
             descr.append("function ");
             if (f instanceof ExtensionFuncDef) {
@@ -223,16 +292,11 @@ public class HotdocGenerator {
                 descr.append(f.attrReturnTyp());
             }
 
-            context.put("name", descr);
-            context.put("type", "");
-            context.put("comment", f.attrComment());
-            context.put("source", f.getSource());
-
-            variableTemplate.merge(context, writer);
+            entries.add(new DocEntry(variableTemplate, descr.toString(), "", f.attrComment(), f.getSource()));
         }
     }
 
-    private <T extends VarDef> void documentVars(List<T> vardefs, StringWriter writer, boolean includeNonPublic) {
+    private <T extends VarDef> void documentVars(List<T> vardefs, List<DocEntry> entries, boolean includeNonPublic) {
         List<T> sorted = Utils.sortByName(vardefs);
         for (VarDef v : sorted) {
             if (!v.attrIsPublic()) {
@@ -241,20 +305,13 @@ public class HotdocGenerator {
                 }
             }
 
-            VelocityContext context = new VelocityContext();
-            context.put("name", v.getName());
-            context.put("type", v.attrTyp());
-            context.put("comment", v.attrComment());
-            context.put("source", v.getSource());
-
-            variableTemplate.merge(context, writer);
+            entries.add(new DocEntry(variableTemplate, v.getName(), v.attrTyp().toString(), v.attrComment(), v.getSource()));
         }
     }
 
     private <T> List<T> getElements(WPackage pack, Class<T> clazz) {
         List<T> result = Lists.newArrayList();
         for (WEntity e : pack.getElements()) {
-            WLogger.info(Utils.printElement(e));
             if (clazz.isAssignableFrom(e.getClass())) {
                 @SuppressWarnings("unchecked")
                 T t = (T) e;
@@ -264,18 +321,132 @@ public class HotdocGenerator {
         return result;
     }
 
-    private String render(Template t, VelocityContext context) {
-        StringWriter writer = new StringWriter();
-        t.merge(context, writer);
-        String s = writer.toString();
-        return s;
-    }
-
-    private String getNavbarWithHighlight(@Nullable WPackage pack, List<WPackage> packages) {
+    private VelocityContext navbarContext(@Nullable PackageDoc pack, List<PackageDoc> packages) {
         VelocityContext context = new VelocityContext();
         context.put("packages", packages);
         context.put("currentPackage", pack);
-        return render(navbarTemplate, context);
+        return context;
+    }
+
+    /**
+     * The position of a documented element, as used by the templates.
+     * Line numbers are computed in advance, so that pages can be rendered without accessing the AST.
+     */
+    public static class DocSource {
+        private final String shortFile;
+        private final int line;
+
+        DocSource(WPos pos) {
+            this.shortFile = pos.shortFile();
+            this.line = pos.getLine();
+        }
+
+        public String shortFile() {
+            return shortFile;
+        }
+
+        public int getLine() {
+            return line;
+        }
+    }
+
+    /**
+     * A documented element of a package, rendered with the given template
+     */
+    private static class DocEntry {
+        private final Template template;
+        private final String name;
+        private final String type;
+        private final String comment;
+        private final DocSource source;
+
+        DocEntry(Template template, String name, String type, String comment, WPos source) {
+            this.template = template;
+            this.name = name;
+            this.type = type;
+            this.comment = comment;
+            this.source = new DocSource(source);
+        }
+
+        VelocityContext toContext() {
+            VelocityContext context = new VelocityContext();
+            context.put("name", name);
+            context.put("type", type);
+            context.put("comment", comment);
+            context.put("source", source);
+            return context;
+        }
+
+        void putHash(Hasher h) {
+            h.putString(template.getName(), Charsets.UTF_8).putChar('\n');
+            h.putString(name, Charsets.UTF_8).putChar('\n');
+            h.putString(type, Charsets.UTF_8).putChar('\n');
+            h.putString(comment, Charsets.UTF_8).putChar('\n');
+            h.putString(source.shortFile(), Charsets.UTF_8).putChar('\n');
+            h.putInt(source.getLine());
+        }
+    }
+
+    /**
+     * The content of the page of a package
+     */
+    public static class PackageDoc {
+        private final String name;
+        private final DocSource source;
+        private final List<DocEntry> entries = new ArrayList<>();
+
+        PackageDoc(String name, DocSource source) {
+            this.name = name;
+            this.source = source;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public DocSource getSource() {
+            return source;
+        }
+
+        void putHash(Hasher h) {
+            h.putString(name, Charsets.UTF_8).putChar('\n');
+            h.putString(source.shortFile(), Charsets.UTF_8).putChar('\n');
+            for (DocEntry e : entries) {
+                e.putHash(h);
+            }
+        }
+    }
+
+    /**
+     * The hashes of the pages written by the last run, stored in the output folder
+     */
+    private static class Manifest {
+        Map<String, String> pages = new TreeMap<>();
+
+        static Manifest load(File file) {
+            Manifest result = null;
+            if (file.exists()) {
+                try {
+                    result = gson.fromJson(new String(Files.readAllBytes(file.toPath()), Charsets.UTF_8), Manifest.class);
+                } catch (IOException | JsonParseException e) {
+                    WLogger.info("Could not read hotdoc manifest: " + e);
+                }
+            }
+            if (result == null || result.pages == null) {
+                result = new Manifest();
+            }
+            return result;
+        }
+
+        void save(File file) throws IOException {
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), Charsets.UTF_8)) {
+                gson.toJson(this, writer);
+            }
+        }
+
+        boolean isUpToDate(File outputfolder, String fileName, String hash) {
+            return hash.equals(pages.get(fileName)) && new File(outputfolder, fileName).exists();
+        }
     }
 
 
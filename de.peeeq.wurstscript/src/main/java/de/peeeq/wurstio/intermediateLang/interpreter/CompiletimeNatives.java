@@ -30,10 +30,8 @@ public class CompiletimeNatives extends ReflectionBasedNativeProvider implements
     public ILconstTuple createObjectDefinition(ILconstString fileType, ILconstInt newUnitId, ILconstInt deriveFrom) {
         ObjectFile unitStore = globalState.getDataStore(fileType.getVal());
         ObjectTable modifiedTable = unitStore.getModifiedTable();
-        for (ObjectDefinition od : modifiedTable.getObjectDefinitions()) {
-            if (od.getNewObjectId() == newUnitId.getVal()) {
-                globalState.compilationError("Object definition with id " + ObjectHelper.objectIdIntToString(newUnitId.getVal()) + " already exists.");
-            }
+        if (modifiedTable.contains(newUnitId.getVal())) {
+            globalState.compilationError("Object definition with id " + ObjectHelper.objectIdIntToString(newUnitId.getVal()) + " already exists.");
         }
         ObjectDefinition objDef = new ObjectDefinition(modifiedTable, deriveFrom.getVal(), newUnitId.getVal());
         // mark object with special field
@@ -117,12 +115,11 @@ public class CompiletimeNatives extends ReflectionBasedNativeProvider implements
 
     private <T> void modifyObject(ObjectDefinition od, ILconstString modification, VariableType<T> variableType, int level, int datapointer, T value) {
         String modificationId = modification.getVal();
-        for (ObjectModification<?> m : od.getModifications()) {
-            if (m.getModificationId().equals(modificationId) && m.getLevelCount() == level) {
-                ObjectModification<T> m2 = m.castTo(value);
-                m2.setData(value);
-                return;
-            }
+        ObjectModification<?> m = od.getModification(modificationId, level);
+        if (m != null) {
+            ObjectModification<T> m2 = m.castTo(value);
+            m2.setData(value);
+            return;
         }
         // create new modification:
         od.add(ObjectModification.create(od, modificationId, variableType, level, datapointer, value));
@@ -2,7 +2,11 @@ package de.peeeq.wurstio.intermediateLang.interpreter;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import de.peeeq.wurstio.mpq.MpqEditor;
+import de.peeeq.wurstio.mpq.MpqTransaction;
 import de.peeeq.wurstio.objectreader.*;
 import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstscript.WLogger;
@@ -17,7 +21,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import static com.google.common.io.Files.asCharSink;
@@ -25,9 +29,15 @@ import static com.google.common.io.Files.asCharSink;
 public class ProgramStateIO extends ProgramState {
 
     private static final int GENERATED_BY_WURST = 42;
+    private static final String W3O_FILE_NAME = "wurstCreatedObjects.w3o";
+    private static final String HASHES_FILE_NAME = "wurstObjectHashes.txt";
     private @Nullable ImStmt lastStatement;
     private @Nullable final MpqEditor mpqEditor;
     private final Map<ObjectFileType, ObjectFile> dataStoreMap = Maps.newLinkedHashMap();
+    /**
+     * hashes of the object files as they were extracted from the map
+     */
+    private final Map<ObjectFileType, HashCode> mapContentHashes = Maps.newHashMap();
     private int id = 0;
     private final Map<String, ObjectDefinition> objDefinitions = Maps.newLinkedHashMap();
     private PrintStream outStream = System.err;
@@ -99,6 +109,7 @@ public class ProgramStateIO extends ProgramState {
             try {
                 if (mpqEditor.hasFile(fileName)) {
                     byte[] w3_ = mpqEditor.extractFile(fileName);
+                    mapContentHashes.put(filetype, Hashing.sha256().hashBytes(w3_));
                     dataStore = new ObjectFile(w3_, filetype);
                     replaceTrigStrings(dataStore);
                 } else {
@@ -149,19 +160,13 @@ public class ProgramStateIO extends ProgramState {
     }
 
     private void deleteWurstObjects(ObjectFile unitStore) {
-        Iterator<ObjectDefinition> it = unitStore.getModifiedTable().getObjectDefinitions().iterator();
-        while (it.hasNext()) {
-            ObjectDefinition od = it.next();
-            for (ObjectModification<?> om : od.getModifications()) {
-                if (om.getModificationId().equals("wurs") && om instanceof ObjectModificationInt) {
-                    ObjectModificationInt om2 = (ObjectModificationInt) om;
-                    if (om2.getData() == GENERATED_BY_WURST) {
-                        it.remove();
-                        break;
-                    }
-                }
-            }
-        }
+        unitStore.getModifiedTable().removeIf(ProgramStateIO::isWurstObject);
+    }
+
+    private static boolean isWurstObject(ObjectDefinition od) {
+        ObjectModification<?> om = od.getModification("wurs", 0);
+        return om instanceof ObjectModificationInt
+                && ((ObjectModificationInt) om).getData() == GENERATED_BY_WURST;
     }
 
 
@@ -180,21 +185,80 @@ public class ProgramStateIO extends ProgramState {
     public void writeBack(boolean inject) {
         gui.sendProgress("Writing back generated objects");
 
+        File folder = getObjectEditingOutputFolder();
+        Map<String, String> oldHashes = readObjectHashes(folder);
+        Map<String, String> newHashes = Maps.newLinkedHashMap();
+        @Nullable MpqTransaction transaction = inject && mpqEditor != null ? mpqEditor.beginTransaction() : null;
         for (ObjectFileType fileType : ObjectFileType.values()) {
             WLogger.info("Writing back " + fileType);
             ObjectFile dataStore = getDataStore(fileType);
             if (!dataStore.isEmpty()) {
-                WLogger.info("Writing back filetype " + fileType);
-                writebackObjectFile(dataStore, fileType, inject);
+                HashCode hash = dataStore.contentHash();
+                newHashes.put(fileType.getExt(), hash.toString());
+                boolean unchanged = hash.toString().equals(oldHashes.get(fileType.getExt()));
+                WLogger.info("Writing back filetype " + fileType + (unchanged ? " (unchanged)" : ""));
+                writebackObjectFile(dataStore, fileType, inject, transaction, unchanged, hash);
             } else {
                 WLogger.info("Writing back empty for " + fileType);
             }
         }
-        writeW3oFile();
+        if (transaction != null) {
+            try {
+                transaction.commit();
+            } catch (Exception e) {
+                WLogger.severe(e);
+                throw new Error(e);
+            }
+        }
+        if (!newHashes.equals(oldHashes) || !new File(folder, W3O_FILE_NAME).exists()) {
+            writeW3oFile();
+        }
+        writeObjectHashes(folder, newHashes);
+    }
+
+    /**
+     * reads the hashes of the object files written in the previous build,
+     * each line has the form 'ext hash'
+     */
+    private Map<String, String> readObjectHashes(@Nullable File folder) {
+        Map<String, String> result = Maps.newLinkedHashMap();
+        if (folder == null) {
+            return result;
+        }
+        File hashFile = new File(folder, HASHES_FILE_NAME);
+        if (!hashFile.exists()) {
+            return result;
+        }
+        try {
+            List<String> lines = Files.readLines(hashFile, Charsets.UTF_8);
+            for (String line : lines) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 2) {
+                    result.put(parts[0], parts[1]);
+                }
+            }
+        } catch (IOException e) {
+            WLogger.info("Could not read object hashes");
+            WLogger.info(e);
+        }
+        return result;
+    }
+
+    private void writeObjectHashes(@Nullable File folder, Map<String, String> hashes) {
+        if (folder == null) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        hashes.forEach((ext, hash) -> sb.append(ext).append(" ").append(hash).append("\n"));
+        try {
+            FileUtils.write(sb, new File(folder, HASHES_FILE_NAME));
+        } catch (IOException e) {
+            WLogger.severe(e);
+        }
     }
 
     private void writeW3oFile() {
-        File objFile = new File(getObjectEditingOutputFolder(), "wurstCreatedObjects.w3o");
+        File objFile = new File(getObjectEditingOutputFolder(), W3O_FILE_NAME);
         try (BinaryDataOutputStream objFileStream = new BinaryDataOutputStream(objFile, true)) {
             objFileStream.writeInt(1); // version
             for (ObjectFileType fileType : ObjectFileType.values()) {
@@ -211,22 +275,33 @@ public class ProgramStateIO extends ProgramState {
         }
     }
 
-    private void writebackObjectFile(ObjectFile dataStore, ObjectFileType fileType, boolean inject) throws Error {
+    /**
+     * writes the object file to the text export and stages it for injection into the map.
+     * When the content is unchanged since the last build, the text export is kept,
+     * and when the map already contains the same object file, it is not inserted again.
+     */
+    private void writebackObjectFile(ObjectFile dataStore, ObjectFileType fileType, boolean inject, @Nullable MpqTransaction transaction, boolean unchanged, HashCode hash) throws Error {
         try {
             File folder = getObjectEditingOutputFolder();
 
-            byte[] w3u = dataStore.writeToByteArray();
-
             // wurst exported objects
-            FileUtils.write(dataStore.exportToWurst(fileType), new File(folder, "WurstExportedObjects_" + fileType.getExt() + ".wurst.txt"));
+            File exportFile = new File(folder, "WurstExportedObjects_" + fileType.getExt() + ".wurst.txt");
+            if (!unchanged || !exportFile.exists()) {
+                FileUtils.write(dataStore.exportToWurst(fileType), exportFile);
+            }
 
             if (inject) {
-                if (mpqEditor == null) {
+                if (transaction == null) {
                     throw new RuntimeException("Map file must be given with '-injectobjects' option.");
                 }
+                if (hash.equals(mapContentHashes.get(fileType))) {
+                    WLogger.info("Map already contains " + fileType + ", skipping injection");
+                    return;
+                }
                 String filenameInMpq = "war3map." + fileType.getExt();
 
-                mpqEditor.insertFile(filenameInMpq, w3u);
+                byte[] w3u = dataStore.writeToByteArray();
+                transaction.insertFile(filenameInMpq, w3u);
             }
         } catch (Exception e) {
             WLogger.severe(e);
@@ -113,7 +113,7 @@ public class StringProvider extends Provider {
     public ILconstString StringCase(ILconstString string, ILconstBool upperCase) {
         return new ILconstString(
                 upperCase.getVal() ?
-                        string.getVal().toUpperCase()
-                        : string.getVal().toLowerCase());
+                        string.getVal().toUpperCase(Locale.ROOT)
+                        : string.getVal().toLowerCase(Locale.ROOT));
     }
 }
@@ -0,0 +1,190 @@
+package de.peeeq.wurstio.languageserver;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.ast.*;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.parser.WPos;
+import de.peeeq.wurstscript.utils.LineOffsets;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.StringReader;
+import java.util.function.Function;
+
+/**
+ * Reparses only the top-level declaration affected by an edit.
+ * <p>
+ * An edit can be handled incrementally, when it lies completely inside a single
+ * entity of a (non-indented) package and does not add or remove lines starting at column 0.
+ * Lines starting at column 0 are the points where the lexer is back in its initial state
+ * (no open indentation blocks), so the text of the entity can be parsed on its own.
+ * The new entity is then spliced into the existing compilation unit and the positions
+ * of all following elements are shifted.
+ * <p>
+ * In all other cases (and whenever the partial parse reports an error or warning)
+ * this returns null and the caller has to parse the complete file.
+ */
+class IncrementalReparser {
+
+    private final Function<WurstGui, WurstCompilerJassImpl> compilerFactory;
+
+    IncrementalReparser(Function<WurstGui, WurstCompilerJassImpl> compilerFactory) {
+        this.compilerFactory = compilerFactory;
+    }
+
+    /**
+     * tries to update the given compilation unit to the new contents
+     *
+     * @return the updated compilation unit (the same object as cu), or null if a full parse is required
+     */
+    @Nullable CompilationUnit reparse(CompilationUnit cu, String oldContents, String newContents) {
+        if (!cu.getFile().endsWith(".wurst")) {
+            return null;
+        }
+        int minLen = Math.min(oldContents.length(), newContents.length());
+        int changeStart = 0;
+        while (changeStart < minLen && oldContents.charAt(changeStart) == newContents.charAt(changeStart)) {
+            changeStart++;
+        }
+        int suffix = 0;
+        while (suffix < minLen - changeStart
+                && oldContents.charAt(oldContents.length() - 1 - suffix) == newContents.charAt(newContents.length() - 1 - suffix)) {
+            suffix++;
+        }
+        int oldChangeEnd = oldContents.length() - suffix;
+        int delta = newContents.length() - oldContents.length();
+
+        for (WPackage p : cu.getPackages()) {
+            WEntities elements = p.getElements();
+            for (int i = 0; i < elements.size(); i++) {
+                WEntity e = elements.get(i);
+                int declStart = e.getSource().getLeftPos();
+                if (declStart > changeStart) {
+                    // entities are sorted by position, so no later entity can contain the change
+                    return null;
+                }
+                if (!isLineStart(oldContents, declStart)) {
+                    return null;
+                }
+                int declEnd = nextTopLevelLine(oldContents, Math.max(declStart, e.getSource().getRightPos() - 1));
+                if (i + 1 < elements.size() && declEnd > elements.get(i + 1).getSource().getLeftPos()) {
+                    return null;
+                }
+                if (oldChangeEnd >= declEnd && declEnd < oldContents.length()) {
+                    // change does not end in this entity
+                    // (a change ending exactly at the start of the next entity changes that entity)
+                    continue;
+                }
+                return reparseEntity(cu, p, i, newContents, declStart, declEnd, delta);
+            }
+        }
+        return null;
+    }
+
+    private @Nullable CompilationUnit reparseEntity(CompilationUnit cu, WPackage p, int index, String newContents,
+                                                    int declStart, int oldDeclEnd, int delta) {
+        int newDeclEnd = oldDeclEnd + delta;
+        if (declStart >= newDeclEnd || isWhitespace(newContents.charAt(declStart))) {
+            return null;
+        }
+        // the edit must not start a new top-level declaration:
+        if (nextTopLevelLine(newContents, declStart + 1) < newDeclEnd) {
+            return null;
+        }
+        // the next entity must still start a top-level line:
+        if (newDeclEnd < newContents.length()
+                && (!isLineStart(newContents, newDeclEnd) || isWhitespace(newContents.charAt(newDeclEnd)))) {
+            return null;
+        }
+
+        String header = "package " + p.getName() + "\n";
+        String text = header + newContents.substring(declStart, newDeclEnd);
+        WurstGui gui = new WurstGuiLogger();
+        CompilationUnit partial = compilerFactory.apply(gui).parse(cu.getFile(), new StringReader(text));
+        if (!gui.getErrorsAndWarnings().isEmpty()
+                || partial.getPackages().size() != 1
+                || partial.getPackages().get(0).getElements().size() != 1) {
+            return null;
+        }
+        WEntity newEntity = partial.getPackages().get(0).getElements().get(0);
+        newEntity.setParent(null);
+
+        LineOffsets lineOffsets = computeLineOffsets(newContents);
+        // shift the old elements before splicing, so that the new entity is not shifted twice:
+        updatePositions(cu, pos -> pos >= oldDeclEnd ? pos + delta : pos, lineOffsets);
+        int entityShift = declStart - header.length();
+        updatePositions(newEntity, pos -> pos + entityShift, lineOffsets);
+        p.getElements().set(index, newEntity);
+        WLogger.info("incrementally reparsed " + cu.getFile() + " at " + declStart);
+        return cu;
+    }
+
+    private static boolean isLineStart(String contents, int pos) {
+        return pos == 0 || contents.charAt(pos - 1) == '\n';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    /**
+     * returns the start of the first line after pos, which starts with a non-whitespace character,
+     * or the length of the contents, if there is no such line
+     */
+    private static int nextTopLevelLine(String contents, int pos) {
+        int i = contents.indexOf('\n', Math.max(0, pos));
+        while (i >= 0 && i + 1 < contents.length()) {
+            if (!isWhitespace(contents.charAt(i + 1))) {
+                return i + 1;
+            }
+            i = contents.indexOf('\n', i + 1);
+        }
+        return contents.length();
+    }
+
+    /**
+     * computes the line offsets in the same way as the lexer does,
+     * i.e. for each line the position of the newline character ending it
+     */
+    static LineOffsets computeLineOffsets(String contents) {
+        LineOffsets lineOffsets = new LineOffsets();
+        int line = 1;
+        for (int i = 0; i < contents.length(); i++) {
+            if (contents.charAt(i) == '\n') {
+                lineOffsets.set(line, i);
+                line++;
+            }
+        }
+        lineOffsets.set(line, contents.length());
+        return lineOffsets;
+    }
+
+    private static void updatePositions(Element e, Function<Integer, Integer> shift, LineOffsets lineOffsets) {
+        if (e instanceof AstElementWithSource) {
+            AstElementWithSource s = (AstElementWithSource) e;
+            s.setSource(updatePosition(s.getSource(), shift, lineOffsets));
+        }
+        if (e instanceof SomeSuperConstructorCall) {
+            SomeSuperConstructorCall c = (SomeSuperConstructorCall) e;
+            c.setKeywordSource(updatePosition(c.getKeywordSource(), shift, lineOffsets));
+        }
+        if (e instanceof ExprClosure) {
+            ExprClosure c = (ExprClosure) e;
+            c.setArrowSource(updatePosition(c.getArrowSource(), shift, lineOffsets));
+        }
+        for (int i = 0; i < e.size(); i++) {
+            updatePositions(e.get(i), shift, lineOffsets);
+        }
+    }
+
+    private static WPos updatePosition(WPos pos, Function<Integer, Integer> shift, LineOffsets lineOffsets) {
+        int left = shift.apply(pos.getLeftPos());
+        if (pos.isArtificial()) {
+            // keep artificial positions artificial
+            return new WPos(pos.getFile(), lineOffsets, left, left - (pos.getLeftPos() - pos.getRightPos()));
+        }
+        return new WPos(pos.getFile(), lineOffsets, left, shift.apply(pos.getRightPos()));
+    }
+
+}
@@ -46,6 +46,16 @@ public interface ModelManager {
 
     boolean hasErrors();
 
+    /**
+     * @return true, if the current model was type checked without errors and has not been changed since then
+     */
+    boolean isCheckedWithoutErrors();
+
+    /**
+     * @return the index of the symbols of the current model
+     */
+    WorkspaceSymbolIndex getSymbolIndex();
+
     static WurstModel copy(WurstModel model) {
         WurstModel m = model.copy();
         // clear all module instantiations, since they might include old stuff
@@ -13,6 +13,7 @@ import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.gui.WurstGuiLogger;
 import de.peeeq.wurstscript.parser.WPos;
+import de.peeeq.wurstscript.types.SubtypeCache;
 import de.peeeq.wurstscript.utils.LineOffsets;
 import de.peeeq.wurstscript.utils.Utils;
 import org.eclipse.jdt.annotation.Nullable;
@@ -45,9 +46,23 @@ public class ModelManagerImpl implements ModelManager {
     // hashcode for each compilation unit content as string
     private Map<WFile, Integer> fileHashcodes = new HashMap<>();
 
+    // last parsed content for each compilation unit, used for incremental reparsing
+    private Map<WFile, String> fileContents = new HashMap<>();
+
+    private final IncrementalReparser incrementalReparser = new IncrementalReparser(this::getCompiler);
+
     // file for each compilation unit
     private WeakHashMap<CompilationUnit, WFile> compilationunitFile = new WeakHashMap<>();
 
+    // increased with each change of the model
+    private long modelRevision = 0;
+    // the revision of the model, when it was last checked without errors, or -1
+    private long checkedRevision = -1;
+    // true, if the whole model was checked since the last clean
+    private boolean completelyChecked = false;
+
+    private final WorkspaceSymbolIndex symbolIndex = new WorkspaceSymbolIndex();
+
     public ModelManagerImpl(File projectPath, BufferManager bufferManager) {
         this.projectPath = projectPath;
         this.bufferManager = bufferManager;
@@ -73,15 +88,20 @@ public class ModelManagerImpl implements ModelManager {
         }
 
         syncCompilationUnitContent(resource, "");
+        modelRevision++;
         return model.removeIf(cu -> wFile(cu).equals(resource));
     }
 
     @Override
     public void clean() {
         fileHashcodes.clear();
+        fileContents.clear();
         parseErrors.clear();
         model = null;
         dependencies.clear();
+        modelRevision++;
+        completelyChecked = false;
+        symbolIndex.clear();
         WLogger.info("Clean done.");
     }
 
@@ -214,6 +234,7 @@ public class ModelManagerImpl implements ModelManager {
         }
         List<CompilationUnit> cleared = new ArrayList<>(toCheck);
         model2.clearAttributesLocal();
+        SubtypeCache.clear();
         Set<String> packageNames = Sets.newHashSet();
         for (CompilationUnit cu : toCheck) {
             cu.clearAttributes();
@@ -267,8 +288,10 @@ public class ModelManagerImpl implements ModelManager {
     private void doTypeCheck(WurstGui gui) {
         WurstCompilerJassImpl comp = getCompiler(gui);
         long time = System.currentTimeMillis();
+        completelyChecked = false;
         if (gui.getErrorCount() > 0) {
             reportErrorsForProject("build project, doTypecheck, early", gui);
+            updateCheckedRevision(gui);
             WLogger.info("finished typechecking* in " + (System.currentTimeMillis() - time) + "ms");
             return;
         }
@@ -281,12 +304,40 @@ public class ModelManagerImpl implements ModelManager {
         try {
             model2.clearAttributes();
             comp.addImportedLibs(model2);
-            comp.checkProg(model2);
+            completelyChecked = comp.checkProg(model2, model2);
         } catch (CompileError e) {
             gui.sendError(e);
         }
         WLogger.info("finished typechecking in " + (System.currentTimeMillis() - time) + "ms");
         reportErrorsForProject("build project, doTypecheck, end", gui);
+        updateCheckedRevision(gui);
+    }
+
+    /**
+     * remembers the current revision of the model as checked, if the whole model is known to be free of errors
+     */
+    private void updateCheckedRevision(WurstGui gui) {
+        if (completelyChecked && gui.getErrorCount() == 0 && !hasErrors()) {
+            checkedRevision = modelRevision;
+        } else {
+            checkedRevision = -1;
+        }
+    }
+
+    @Override
+    public WorkspaceSymbolIndex getSymbolIndex() {
+        WurstModel model2 = model;
+        if (model2 == null) {
+            symbolIndex.clear();
+        } else {
+            symbolIndex.update(model2, modelRevision);
+        }
+        return symbolIndex;
+    }
+
+    @Override
+    public boolean isCheckedWithoutErrors() {
+        return model != null && checkedRevision == modelRevision;
     }
 
     private void reportErrorsForProject(String extra, WurstGui gui) {
@@ -334,6 +385,9 @@ public class ModelManagerImpl implements ModelManager {
     private void updateModel(CompilationUnit cu, WurstGui gui) {
         WLogger.info("update model with " + cu.getFile());
         parseErrors.put(wFile(cu), new ArrayList<>(gui.getErrorsAndWarnings()));
+        modelRevision++;
+        // the compilation unit might have been changed in place by the incremental parser:
+        symbolIndex.markChanged(cu);
 
         WurstModel model2 = model;
         if (model2 == null) {
@@ -381,11 +435,9 @@ public class ModelManagerImpl implements ModelManager {
 
         WurstCompilerJassImpl comp = new WurstCompilerJassImpl(projectPath, gui, null, RunArgs.defaults());
 
-        try (InputStreamReader reader = new FileReader(sourceFile)) {
-            CompilationUnit cu = comp.parse(sourceFile.getAbsolutePath(), reader);
-            cu.setFile(getCanonicalPath(sourceFile));
-            return cu;
-        }
+        CompilationUnit cu = comp.parseLibraryFile(sourceFile);
+        cu.setFile(getCanonicalPath(sourceFile));
+        return cu;
     }
 
     private File getBuildDir() {
@@ -400,6 +452,7 @@ public class ModelManagerImpl implements ModelManager {
                 return;
             }
             m.clearAttributes();
+            modelRevision++;
             comp.addImportedLibs(m);
         } catch (CompileError e) {
             gui.sendError(e);
@@ -483,11 +536,15 @@ public class ModelManagerImpl implements ModelManager {
 
         WLogger.info("replace CU " + filename);
         WurstGui gui = new WurstGuiLogger();
-        WurstCompilerJassImpl c = getCompiler(gui);
-        CompilationUnit cu = c.parse(filename.toString(), new StringReader(contents));
-        cu.setFile(filename.toString());
+        CompilationUnit cu = reparseIncrementally(filename, contents);
+        if (cu == null) {
+            WurstCompilerJassImpl c = getCompiler(gui);
+            cu = c.parse(filename.toString(), new StringReader(contents));
+            cu.setFile(filename.toString());
+        }
         updateModel(cu, gui);
         fileHashcodes.put(filename, contents.hashCode());
+        fileContents.put(filename, contents);
         if (reportErrors) {
             WLogger.info("found " + gui.getErrorCount() + " errors in file " + filename);
             reportErrors("sync cu " + filename, filename, gui.getErrorsAndWarnings());
@@ -495,6 +552,23 @@ public class ModelManagerImpl implements ModelManager {
         return cu;
     }
 
+    /**
+     * tries to only reparse the changed declaration of an already parsed compilation unit
+     *
+     * @return the updated compilation unit or null, if the file has to be parsed completely
+     */
+    private @Nullable CompilationUnit reparseIncrementally(WFile filename, String contents) {
+        String oldContents = fileContents.get(filename);
+        if (oldContents == null || !parseErrors.getOrDefault(filename, Collections.emptyList()).isEmpty()) {
+            return null;
+        }
+        CompilationUnit oldCu = getCompilationUnit(filename);
+        if (oldCu == null) {
+            return null;
+        }
+        return incrementalReparser.reparse(oldCu, oldContents, contents);
+    }
+
     @Override
     public CompilationUnit getCompilationUnit(WFile filename) {
         List<CompilationUnit> matches = getCompilationUnits(Collections.singletonList(filename));
@@ -555,10 +629,11 @@ public class ModelManagerImpl implements ModelManager {
         toCheck = new ArrayList<>(addPackageDependencies(toCheck, oldPackages, model2));
 
         List<CompilationUnit> clearedCUs = Collections.emptyList();
+        boolean complete = false;
         try {
             clearedCUs = clearAttributes(toCheck);
             comp.addImportedLibs(model2);
-            comp.checkProg(model2, toCheck);
+            complete = comp.checkProg(model2, toCheck);
         } catch (ModelChangedException e) {
             // model changed, early return
             return;
@@ -567,6 +642,11 @@ public class ModelManagerImpl implements ModelManager {
         }
         List<WFile> fileNames = getfileNames(clearedCUs);
         reportErrorsForFiles(fileNames, gui);
+        if (complete) {
+            updateCheckedRevision(gui);
+        } else {
+            checkedRevision = -1;
+        }
     }
 
     private Set<CompilationUnit> addPackageDependencies(List<CompilationUnit> toCheck, Set<String> oldPackages, WurstModel model) {
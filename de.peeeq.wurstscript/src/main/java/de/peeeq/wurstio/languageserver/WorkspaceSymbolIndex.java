@@ -0,0 +1,387 @@
+package de.peeeq.wurstio.languageserver;
+
+import de.peeeq.wurstscript.ast.*;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
+
+import java.util.*;
+
+/**
+ * An index of the symbols of all compilation units in the model for the workspace symbol search.
+ * <p>
+ * The symbols of a compilation unit are collected when the index is used for the first time after the unit was
+ * replaced or changed, so a search does not walk the whole model and only allocates the returned results.
+ * <p>
+ * Names are matched case insensitive by prefix, camel humps (e.g. "gux" matches "GetUnitX"), substring and
+ * subsequence. Better kinds of matches are ranked higher.
+ * A query of the form "Container.name" additionally filters by the container of the symbol.
+ */
+public class WorkspaceSymbolIndex {
+
+    private static final int SCORE_EXACT = 1000;
+    private static final int SCORE_PREFIX = 800;
+    private static final int SCORE_CAMEL_HUMPS = 600;
+    private static final int SCORE_SUBSTRING = 400;
+    private static final int SCORE_SUBSEQUENCE = 200;
+
+    static class Entry {
+        private final String name;
+        private final String containerName;
+        private final SymbolKind kind;
+        private final Location location;
+
+        Entry(String name, String containerName, SymbolKind kind, Location location) {
+            this.name = name;
+            this.containerName = containerName;
+            this.kind = kind;
+            this.location = location;
+        }
+
+        SymbolInformation toSymbolInformation() {
+            return new SymbolInformation(name, kind, location, containerName);
+        }
+    }
+
+    private Map<CompilationUnit, List<Entry>> entries = new IdentityHashMap<>();
+    private final Set<CompilationUnit> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long indexedRevision = -1;
+
+    /**
+     * marks a compilation unit, which was changed in place, so that its symbols are collected again
+     */
+    public void markChanged(CompilationUnit cu) {
+        changed.add(cu);
+    }
+
+    /**
+     * Updates the index to contain the symbols of the given model.
+     * Only compilation units which were added or changed since the last update are visited.
+     *
+     * @param modelRevision a number which changes whenever the model changes
+     */
+    public void update(WurstModel model, long modelRevision) {
+        if (modelRevision == indexedRevision) {
+            return;
+        }
+        Map<CompilationUnit, List<Entry>> newEntries = new IdentityHashMap<>();
+        for (CompilationUnit cu : model) {
+            List<Entry> cuEntries = entries.get(cu);
+            if (cuEntries == null || changed.contains(cu)) {
+                cuEntries = collectEntries(cu);
+            }
+            newEntries.put(cu, cuEntries);
+        }
+        entries = newEntries;
+        changed.clear();
+        indexedRevision = modelRevision;
+    }
+
+    public void clear() {
+        entries = new IdentityHashMap<>();
+        changed.clear();
+        indexedRevision = -1;
+    }
+
+    public int size() {
+        int size = 0;
+        for (List<Entry> cuEntries : entries.values()) {
+            size += cuEntries.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the symbols matching the query, best matches first
+     */
+    public List<SymbolInformation> search(String query, int limit) {
+        String containerQuery = "";
+        String nameQuery = query.trim();
+        int dot = nameQuery.lastIndexOf('.');
+        if (dot >= 0) {
+            containerQuery = nameQuery.substring(0, dot);
+            nameQuery = nameQuery.substring(dot + 1);
+        }
+        // the worst of the best results is at the head of the queue:
+        PriorityQueue<ScoredEntry> best = new PriorityQueue<>(Comparator.reverseOrder());
+        for (List<Entry> cuEntries : entries.values()) {
+            for (Entry e : cuEntries) {
+                if (!containerQuery.isEmpty() && score(e.containerName, containerQuery) < 0) {
+                    continue;
+                }
+                int score = nameQuery.isEmpty() ? 0 : score(e.name, nameQuery);
+                if (score < 0) {
+                    continue;
+                }
+                if (best.size() < limit) {
+                    best.add(new ScoredEntry(e, score));
+                } else if (!best.isEmpty() && compare(best.peek(), e, score) > 0) {
+                    best.poll();
+                    best.add(new ScoredEntry(e, score));
+                }
+            }
+        }
+        List<ScoredEntry> sorted = new ArrayList<>(best);
+        Collections.sort(sorted);
+        List<SymbolInformation> result = new ArrayList<>(sorted.size());
+        for (ScoredEntry s : sorted) {
+            result.add(s.entry.toSymbolInformation());
+        }
+        return result;
+    }
+
+    private static class ScoredEntry implements Comparable<ScoredEntry> {
+        private final Entry entry;
+        private final int score;
+
+        ScoredEntry(Entry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+
+        /**
+         * better matches are smaller
+         */
+        @Override
+        public int compareTo(ScoredEntry o) {
+            return -compare(o, entry, score);
+        }
+    }
+
+    /**
+     * @return a positive number if the given entry is a better match than s
+     */
+    private static int compare(ScoredEntry s, Entry e, int score) {
+        if (score != s.score) {
+            return Integer.compare(score, s.score);
+        }
+        if (e.name.length() != s.entry.name.length()) {
+            return Integer.compare(s.entry.name.length(), e.name.length());
+        }
+        int c = s.entry.name.compareTo(e.name);
+        if (c != 0) {
+            return c;
+        }
+        return s.entry.containerName.compareTo(e.containerName);
+    }
+
+    /**
+     * @return the score of the name for the given query or -1 if the name does not match
+     */
+    public static int score(String name, String query) {
+        if (query.length() > name.length()) {
+            return -1;
+        }
+        if (name.regionMatches(true, 0, query, 0, query.length())) {
+            if (name.length() == query.length()) {
+                return SCORE_EXACT + (name.equals(query) ? 1 : 0);
+            }
+            return SCORE_PREFIX - Math.min(name.length() - query.length(), 100);
+        }
+        int humps = camelHumps(name, query);
+        if (humps >= 0) {
+            return SCORE_CAMEL_HUMPS - Math.min(humps, 100);
+        }
+        int pos = indexOfIgnoreCase(name, query);
+        if (pos >= 0) {
+            return SCORE_SUBSTRING - Math.min(pos, 100);
+        }
+        int gaps = subsequenceGaps(name, query);
+        if (gaps >= 0) {
+            return SCORE_SUBSEQUENCE - Math.min(gaps, 100);
+        }
+        return -1;
+    }
+
+    private static boolean isHumpStart(String name, int i) {
+        if (i == 0) {
+            return true;
+        }
+        char prev = name.charAt(i - 1);
+        char c = name.charAt(i);
+        return prev == '_' && c != '_'
+                || Character.isUpperCase(c) && !Character.isUpperCase(prev)
+                || Character.isDigit(c) && !Character.isDigit(prev);
+    }
+
+    private static boolean equalsIgnoreCase(char a, char b) {
+        return Character.toLowerCase(a) == Character.toLowerCase(b);
+    }
+
+    /**
+     * Matches the query against the camel humps of the name:
+     * every character of the query either continues the current hump or starts one of the following humps.
+     *
+     * @return the number of skipped humps or -1 if the name does not match
+     */
+    private static int camelHumps(String name, String query) {
+        int skipped = 0;
+        int i = 0;
+        for (int q = 0; q < query.length(); q++) {
+            char c = query.charAt(q);
+            if (q > 0 && i < name.length() && !isHumpStart(name, i) && equalsIgnoreCase(name.charAt(i), c)) {
+                // continue the current hump
+                i++;
+                continue;
+            }
+            // find the next hump starting with c
+            while (i < name.length() && !(isHumpStart(name, i) && equalsIgnoreCase(name.charAt(i), c))) {
+                if (isHumpStart(name, i)) {
+                    skipped++;
+                }
+                i++;
+            }
+            if (i >= name.length()) {
+                return -1;
+            }
+            i++;
+        }
+        return skipped;
+    }
+
+    private static int indexOfIgnoreCase(String name, String query) {
+        for (int i = 0; i + query.length() <= name.length(); i++) {
+            if (name.regionMatches(true, i, query, 0, query.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of characters between the matched characters or -1 if the query is no subsequence of the name
+     */
+    private static int subsequenceGaps(String name, String query) {
+        int gaps = 0;
+        int i = 0;
+        for (int q = 0; q < query.length(); q++) {
+            int start = i;
+            while (i < name.length() && !equalsIgnoreCase(name.charAt(i), query.charAt(q))) {
+                i++;
+            }
+            if (i >= name.length()) {
+                return -1;
+            }
+            if (q > 0) {
+                gaps += i - start;
+            }
+            i++;
+        }
+        return gaps;
+    }
+
+    private static List<Entry> collectEntries(CompilationUnit cu) {
+        List<Entry> result = new ArrayList<>();
+        for (WPackage p : cu.getPackages()) {
+            result.add(new Entry(p.getName(), "", SymbolKind.Package, Convert.errorLocation(p)));
+            for (WEntity e : p.getElements()) {
+                addEntriesForEntity(result, p.getName(), e);
+            }
+        }
+        return result;
+    }
+
+    private static void addEntriesForEntity(List<Entry> result, String containerName, WEntity e) {
+        e.match(new WEntity.MatcherVoid() {
+            private void add(String name, SymbolKind kind) {
+                result.add(new Entry(name, containerName, kind, Convert.errorLocation(e)));
+            }
+
+            @Override
+            public void case_ExtensionFuncDef(ExtensionFuncDef extensionFuncDef) {
+                add(extensionFuncDef.getName(), SymbolKind.Function);
+            }
+
+            @Override
+            public void case_ClassDef(ClassDef classDef) {
+                String name = classDef.getName();
+                add(name, SymbolKind.Class);
+                for (ClassDef c : classDef.getInnerClasses()) {
+                    addEntriesForEntity(result, containerName + "." + name, c);
+                }
+                for (FuncDef f : classDef.getMethods()) {
+                    addEntriesForEntity(result, containerName + "." + name, f);
+                }
+                for (GlobalVarDef v : classDef.getVars()) {
+                    addEntriesForEntity(result, containerName + "." + name, v);
+                }
+            }
+
+            @Override
+            public void case_InterfaceDef(InterfaceDef interfaceDef) {
+                String name = interfaceDef.getName();
+                add(name, SymbolKind.Interface);
+                for (FuncDef f : interfaceDef.getMethods()) {
+                    addEntriesForEntity(result, containerName + "." + name, f);
+                }
+                for (GlobalVarDef v : interfaceDef.getVars()) {
+                    addEntriesForEntity(result, containerName + "." + name, v);
+                }
+            }
+
+            @Override
+            public void case_ModuleInstanciation(ModuleInstanciation moduleInstanciation) {
+
+            }
+
+            @Override
+            public void case_NativeType(NativeType nativeType) {
+                add(nativeType.getName(), SymbolKind.Class);
+            }
+
+            @Override
+            public void case_InitBlock(InitBlock initBlock) {
+                add("init", SymbolKind.Function);
+            }
+
+            @Override
+            public void case_TupleDef(TupleDef tupleDef) {
+                add(tupleDef.getName(), SymbolKind.Class);
+            }
+
+            @Override
+            public void case_FuncDef(FuncDef funcDef) {
+                SymbolKind kind = funcDef.attrIsDynamicClassMember() ? SymbolKind.Method : SymbolKind.Function;
+                add(funcDef.getName(), kind);
+            }
+
+            @Override
+            public void case_NativeFunc(NativeFunc nativeFunc) {
+                add(nativeFunc.getName(), SymbolKind.Function);
+            }
+
+            @Override
+            public void case_GlobalVarDef(GlobalVarDef g) {
+                SymbolKind kind = g.attrIsDynamicClassMember() ? SymbolKind.Field : SymbolKind.Variable;
+                add(g.getName(), kind);
+            }
+
+            @Override
+            public void case_EnumDef(EnumDef enumDef) {
+                add(enumDef.getName(), SymbolKind.Class);
+            }
+
+            @Override
+            public void case_TypeParamDef(TypeParamDef typeParamDef) {
+                add(typeParamDef.getName(), SymbolKind.Class);
+            }
+
+            @Override
+            public void case_ModuleDef(ModuleDef moduleDef) {
+                String name = moduleDef.getName();
+                add(name, SymbolKind.Class);
+                for (ClassDef c : moduleDef.getInnerClasses()) {
+                    addEntriesForEntity(result, containerName + "." + name, c);
+                }
+                for (FuncDef f : moduleDef.getMethods()) {
+                    addEntriesForEntity(result, containerName + "." + name, f);
+                }
+                for (GlobalVarDef v : moduleDef.getVars()) {
+                    addEntriesForEntity(result, containerName + "." + name, v);
+                }
+            }
+
+
+        });
+    }
+}
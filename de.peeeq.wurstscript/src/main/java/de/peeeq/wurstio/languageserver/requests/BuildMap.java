@@ -6,6 +6,7 @@ import de.peeeq.wurstio.languageserver.ModelManager;
 import de.peeeq.wurstio.languageserver.WFile;
 import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstio.mpq.MpqEditorFactory;
+import de.peeeq.wurstio.mpq.MpqTransaction;
 import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.ast.CompilationUnit;
@@ -21,6 +22,8 @@ import org.eclipse.lsp4j.MessageType;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Created by peter on 16.05.16.
@@ -43,10 +46,11 @@ public class BuildMap extends MapRequest {
 
 
     @Override
-    public Object execute(ModelManager modelManager) throws IOException {
+    public CompletableFuture<Object> executeAsync(ModelManager modelManager) throws IOException {
         if (modelManager.hasErrors()) {
             throw new RequestFailedException(MessageType.Error, "Fix errors in your code before building a release.");
         }
+        waitForRunningBuild();
 
         WurstProjectConfigData projectConfig = WurstProjectConfig.INSTANCE.loadProject(workspaceRoot.getFile().toPath().resolve(FILE_NAME));
         if(projectConfig == null) {
@@ -57,6 +61,7 @@ public class BuildMap extends MapRequest {
         // TODO use normal compiler for this, avoid code duplication
         WLogger.info("buildMap " + map.getAbsolutePath() + " " + compileArgs);
         WurstGui gui = new WurstGuiImpl(workspaceRoot.getFile().getAbsolutePath());
+        CompletableFuture<Object> result;
         try {
             if (!map.exists()) {
                 throw new RequestFailedException(MessageType.Error, map.getAbsolutePath() + " does not exist.");
@@ -76,7 +81,7 @@ public class BuildMap extends MapRequest {
             Files.copy(map, targetMap);
 
             // first compile the script:
-            File compiledScript = compileScript(gui, modelManager, compileArgs, targetMap, map);
+            CompletableFuture<File> compiledScript = compileScript(gui, modelManager, compileArgs, targetMap, map);
 
             WurstModel model = modelManager.getModel();
             if (model == null || model.stream().noneMatch((CompilationUnit cu) -> cu.getFile().endsWith("war3map.j"))) {
@@ -86,27 +91,44 @@ public class BuildMap extends MapRequest {
             }
 
 
-            // then inject the script into the map
-            gui.sendProgress("Injecting mapscript");
-            try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(targetMap)) {
-                mpqEditor.deleteFile("war3map.j");
-                mpqEditor.insertFile("war3map.j", compiledScript);
+            result = compiledScript.thenApply(script -> {
+                try {
+                    // then inject the script into the map
+                    gui.sendProgress("Injecting mapscript");
+                    try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(targetMap)) {
+                        MpqTransaction transaction = mpqEditor.beginTransaction();
+                        transaction.insertFile("war3map.j", script);
+                        transaction.commit();
+                    }
+
+                    gui.sendProgress("Applying Map Config...");
+                    applyProjectConfig(projectConfig, targetMap);
+                    gui.sendProgress("Done.");
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+                return "ok"; // TODO
+            });
+        } catch (Throwable e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+        return setRunningBuild(result.handle((res, err) -> {
+            gui.sendFinished();
+            if (err == null) {
+                return res;
+            }
+            Throwable e = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            if (e instanceof CompileError) {
+                WLogger.info(e);
+                throw new RequestFailedException(MessageType.Error, "There was an error when compiling the map:\n" + e);
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else if (e instanceof Error) {
+                throw (Error) e;
             }
-
-            gui.sendProgress("Applying Map Config...");
-            applyProjectConfig(projectConfig, targetMap);
-            gui.sendProgress("Done.");
-        } catch (CompileError e) {
-            WLogger.info(e);
-            throw new RequestFailedException(MessageType.Error, "There was an error when compiling the map:\n" + e);
-        } catch (RuntimeException e) {
-            throw e;
-        } catch (final Exception e) {
             throw new RuntimeException(e);
-        } finally {
-            gui.sendFinished();
-        }
-        return "ok"; // TODO
+        }));
     }
 
     private void applyProjectConfig(WurstProjectConfigData projectConfig, File targetMap) throws IOException {
@@ -122,8 +144,9 @@ public class BuildMap extends MapRequest {
                 File w3iFile = new File("w3iFile");
                 w3I.write(w3iFile);
 
-                mpq.deleteFile("war3map.w3i");
-                mpq.insertFile("war3map.w3i", java.nio.file.Files.readAllBytes(w3iFile.toPath()));
+                MpqTransaction transaction = mpq.beginTransaction();
+                transaction.insertFile("war3map.w3i", java.nio.file.Files.readAllBytes(w3iFile.toPath()));
+                transaction.commit();
                 w3iFile.delete();
             } catch (Exception e) {
                 throw new RuntimeException(e);
@@ -136,7 +159,7 @@ public class BuildMap extends MapRequest {
         mapHeader.writeToMapFile(targetMap);
     }
 
-    private File compileScript(WurstGui gui, ModelManager modelManager, List<String> compileArgs, File mapCopy, File origMap) throws Exception {
+    private CompletableFuture<File> compileScript(WurstGui gui, ModelManager modelManager, List<String> compileArgs, File mapCopy, File origMap) throws Exception {
         gui.sendProgress("Compiling mapscript");
         RunArgs runArgs = new RunArgs(compileArgs);
         print("Compile Script : ");
@@ -162,13 +185,16 @@ public class BuildMap extends MapRequest {
         }
 
         WurstModel model = modelManager.getModel();
+        // the model is not validated again, if it did not change since it was last checked without errors
+        boolean modelChecked = modelManager.isCheckedWithoutErrors();
         if (safeCompilation != SafetyLevel.QuickAndDirty) {
             // compilation will alter the model (e.g. remove unused imports), 
             // so it is safer to create a copy
             model = ModelManager.copy(model);
         }
 
-        return compileMap(modelManager.getProjectPath(), gui, mapCopy, origMap, runArgs, model);
+        return compileMap(modelManager.getProjectPath(), gui, mapCopy, origMap, runArgs, model, modelChecked,
+                buildExecutor(modelManager, model));
     }
 
 }
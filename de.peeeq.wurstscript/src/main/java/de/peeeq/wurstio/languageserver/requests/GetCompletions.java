@@ -158,11 +158,13 @@ public class GetCompletions extends UserRequest<CompletionList> {
             }
 
             isMemberAccess = true;
+            Set<Object> receiverKeys = MemberNameLinks.receiverKeys(leftType);
             WScope scope = elem.attrNearestScope();
             // add member vars
             while (scope != null) {
                 ImmutableMultimap<String, DefLink> visibleNames = scope.attrNameLinks();
-                completionsAddVisibleNames(alreadyEntered, completions, visibleNames, leftType, isMemberAccess, elem);
+                ImmutableMultimap<String, DefLink> memberNames = scope.attrMemberNameLinks().getAll(receiverKeys);
+                completionsAddVisibleNames(alreadyEntered, completions, memberNames, leftType, isMemberAccess, elem);
                 completionsAddVisibleExtensionFunctions(completions, visibleNames, leftType);
                 scope = scope.attrNextScope();
             }
@@ -1,8 +1,10 @@
 package de.peeeq.wurstio.languageserver.requests;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.io.Files;
-import de.peeeq.wurstio.Pjass;
+import de.peeeq.wurstio.TimeTaker;
 import de.peeeq.wurstio.UtilsIO;
 import de.peeeq.wurstio.WurstCompilerJassImpl;
 import de.peeeq.wurstio.languageserver.ModelManager;
@@ -22,23 +24,37 @@ import de.peeeq.wurstscript.jassprinter.JassPrinter;
 import de.peeeq.wurstscript.parser.WPos;
 import de.peeeq.wurstscript.utils.LineOffsets;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.MessageType;
 import org.eclipse.lsp4j.services.LanguageClient;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public abstract class MapRequest extends UserRequest<Object> {
+    /**
+     * runs the stages of map builds, which do not use the model of the language server,
+     * so that the language worker can handle other requests in the meantime
+     */
+    private static final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Wurst map build");
+        t.setDaemon(true);
+        return t;
+    });
+    private static volatile CompletableFuture<?> runningBuild = CompletableFuture.completedFuture(null);
+
     protected final File map;
     protected final List<String> compileArgs;
     protected final WFile workspaceRoot;
@@ -49,6 +65,19 @@ public abstract class MapRequest extends UserRequest<Object> {
         this.workspaceRoot = workspaceRoot;
     }
 
+    @Override
+    public Object execute(ModelManager modelManager) throws IOException {
+        try {
+            return executeAsync(modelManager).join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public abstract CompletableFuture<Object> executeAsync(ModelManager modelManager) throws IOException;
+
     @Override
     public void handleException(LanguageClient languageClient, Throwable err, CompletableFuture<Object> resFut) {
         if (err instanceof RequestFailedException) {
@@ -102,7 +131,15 @@ public abstract class MapRequest extends UserRequest<Object> {
         modelManager.syncCompilationUnit(WFile.create(existingScript));
     }
 
-    protected File compileMap(File projectFolder, WurstGui gui, File mapCopy, File origMap, RunArgs runArgs, WurstModel model) {
+    /**
+     * Compiles the map script.
+     * The stages, which use the model, run on the calling thread.
+     * The translation to Jass and printing run on the given executor, the generated Jass code is validated in parallel.
+     *
+     * @param modelChecked true, if the model was already checked without errors, so that it does not have to be validated again
+     */
+    protected CompletableFuture<File> compileMap(File projectFolder, WurstGui gui, File mapCopy, File origMap, RunArgs runArgs, WurstModel model,
+                                                 boolean modelChecked, Executor executor) {
         try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(mapCopy)) {
             //WurstGui gui = new WurstGuiLogger();
             if (!mpqEditor.canWrite()) {
@@ -110,29 +147,51 @@ public abstract class MapRequest extends UserRequest<Object> {
                         "Please supply a valid .w3x input map that can be opened in the world editor.");
                 throw new NonWritableChannelException();
             }
-            WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(projectFolder, gui, mpqEditor, runArgs);
+            TimeTaker timeTaker = runArgs.isMeasureTimes() ? new TimeTaker.Recording() : new TimeTaker.Default();
+            WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(timeTaker, projectFolder, gui, mpqEditor, runArgs);
             compiler.setMapFile(mapCopy);
             purgeUnimportedFiles(model);
 
-            gui.sendProgress("Check program");
-            compiler.checkProg(model);
+            if (modelChecked) {
+                gui.sendProgress("Prepare program");
+                timeTaker.measure("Prepare checked program",
+                        () -> compiler.prepareCheckedProg(model));
+            } else {
+                gui.sendProgress("Check program");
+                timeTaker.measure("Typecheck program",
+                        () -> compiler.checkProg(model));
+            }
 
             if (gui.getErrorCount() > 0) {
                 throw new RequestFailedException(MessageType.Warning, "Could not compile project: " + gui.getErrorList().get(0));
             }
 
             print("translating program ... ");
-            compiler.translateProgToIm(model);
+            timeTaker.measure("Translate program to Im",
+                    () -> compiler.translateProgToIm(model));
 
             if (gui.getErrorCount() > 0) {
                 throw new RequestFailedException(MessageType.Error, "Could not compile project (error in translation): " + gui.getErrorList().get(0));
             }
 
 
-            compiler.runCompiletime();
+            timeTaker.measure("Run compiletime functions",
+                    () -> compiler.runCompiletime());
+
+            return CompletableFuture.supplyAsync(() -> translateToJass(compiler, gui, runArgs, timeTaker), executor);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    /**
+     * the stages of the compilation after the translation to the intermediate language, which do not use the model
+     */
+    private @Nullable File translateToJass(WurstCompilerJassImpl compiler, WurstGui gui, RunArgs runArgs, TimeTaker timeTaker) {
+        try {
             print("translating program to jass ... ");
-            compiler.transformProgToJass();
+            timeTaker.measure("Transform program to Jass",
+                    () -> compiler.transformProgToJass());
 
             JassProg jassProg = compiler.getProg();
             if (jassProg == null) {
@@ -140,30 +199,69 @@ public abstract class MapRequest extends UserRequest<Object> {
                 throw new RuntimeException("Could not compile project (error in JASS translation)");
             }
 
+            // the validation runs in parallel with printing:
+            CompletableFuture<List<CompileError>> validation = runArgs.isDisablePjass()
+                    ? CompletableFuture.completedFuture(Collections.emptyList())
+                    : compiler.startJassValidation(jassProg);
+
             gui.sendProgress("Printing program");
             JassPrinter printer = new JassPrinter(!runArgs.isOptimize(), jassProg);
-            String compiledMapScript = printer.printProg();
+            String compiledMapScript = timeTaker.measure("Print Jass",
+                    () -> printer.printProg());
 
             File buildDir = getBuildDir();
             File outFile = new File(buildDir, "compiled.j.txt");
             Files.write(compiledMapScript.getBytes(Charsets.UTF_8), outFile);
 
-            if (!runArgs.isDisablePjass()) {
-                Pjass.Result pJassResult = Pjass.runPjass(outFile);
-                WLogger.info(pJassResult.getMessage());
-                if (!pJassResult.isOk()) {
-                    for (CompileError err : pJassResult.getErrors()) {
-                        gui.sendError(err);
-                    }
-                    return null;
+            List<CompileError> jassErrors = timeTaker.measure("Validate Jass",
+                    () -> validation.join());
+
+            if (timeTaker instanceof TimeTaker.Recording) {
+                // the standard output is used by the language server protocol, so the report is only logged
+                WLogger.info(((TimeTaker.Recording) timeTaker).report());
+                timeTaker.writeProfile(buildDir);
+            }
+
+            if (!jassErrors.isEmpty()) {
+                for (CompileError err : jassErrors) {
+                    gui.sendError(err);
                 }
+                return null;
             }
             return outFile;
-        } catch (Exception e) {
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * @return the executor for the stages of a map build, which do not use the model
+     */
+    protected Executor buildExecutor(ModelManager modelManager, WurstModel model) {
+        if (model == modelManager.getModel()) {
+            // the model of the language server must only be used by the language worker
+            return MoreExecutors.directExecutor();
+        }
+        return buildExecutor;
+    }
+
+    /**
+     * Waits until the previous map build is finished, since all map builds use the same files.
+     * Has to be called by the language worker before starting a build.
+     */
+    protected static void waitForRunningBuild() {
+        try {
+            runningBuild.join();
+        } catch (CancellationException | CompletionException e) {
+            // already reported by the previous request
+        }
+    }
+
+    protected static <T> CompletableFuture<T> setRunningBuild(CompletableFuture<T> build) {
+        runningBuild = build;
+        return build;
+    }
+
     /**
      * removes everything compilation unit which is neither
      * - inside a wurst folder
@@ -7,6 +7,7 @@ import de.peeeq.wurstio.languageserver.ModelManager;
 import de.peeeq.wurstio.languageserver.WFile;
 import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstio.mpq.MpqEditorFactory;
+import de.peeeq.wurstio.mpq.MpqTransaction;
 import de.peeeq.wurstio.utils.W3Utils;
 import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.WLogger;
@@ -23,6 +24,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Stream;
 
 import static net.moonlightflower.wc3libs.bin.GameExe.VERSION_1_29;
@@ -49,14 +52,16 @@ public class RunMap extends MapRequest {
     }
 
     @Override
-    public Object execute(ModelManager modelManager) {
+    public CompletableFuture<Object> executeAsync(ModelManager modelManager) {
         if (modelManager.hasErrors()) {
             throw new RequestFailedException(MessageType.Error, "Fix errors in your code before running.");
         }
+        waitForRunningBuild();
 
         // TODO use normal compiler for this, avoid code duplication
         WLogger.info("received runMap command: map=" + map.getAbsolutePath() + ", wc3dir=" + wc3Path + ", args=" + compileArgs);
         WurstGui gui = new WurstGuiImpl(getWorkspaceAbsolute());
+        CompletableFuture<Object> result;
         try {
             if (wc3Path != null) {
                 W3Utils.parsePatchVersion(new File(wc3Path));
@@ -84,7 +89,7 @@ public class RunMap extends MapRequest {
             Files.copy(map, testMap);
 
             // first compile the script:
-            File compiledScript = compileScript(gui, modelManager, compileArgs, testMap, map);
+            CompletableFuture<File> compiledScript = compileScript(gui, modelManager, compileArgs, testMap, map);
 
             WurstModel model = modelManager.getModel();
             if (model == null || model.stream().noneMatch((CompilationUnit cu) -> cu.getFile().endsWith("war3map.j"))) {
@@ -93,50 +98,74 @@ public class RunMap extends MapRequest {
                 println("We will try to start the map now, but it will probably fail. ");
             }
 
-            gui.sendProgress("preparing testmap ... ");
-
-            // then inject the script into the map
-            gui.sendProgress("Injecting mapscript");
-            try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(testMap)) {
-                mpqEditor.deleteFile("war3map.j");
-                mpqEditor.insertFile("war3map.j", compiledScript);
+            result = compiledScript.thenApply(script -> {
+                try {
+                    startMap(gui, gameExe, testMap, script);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+                return "ok"; // TODO
+            });
+        } catch (Throwable e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+        return setRunningBuild(result.handle((res, err) -> {
+            if (gui.getErrorCount() == 0) {
+                gui.sendFinished();
             }
+            if (err == null) {
+                return res;
+            }
+            Throwable e = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            if (e instanceof CompileError) {
+                throw new RequestFailedException(MessageType.Error, "There was an error when compiling the map: " + e.getMessage());
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else if (e instanceof Error) {
+                throw (Error) e;
+            }
+            throw new RuntimeException(e);
+        }));
+    }
 
+    /**
+     * injects the compiled script into the test map and starts the game
+     */
+    private void startMap(WurstGui gui, File gameExe, File testMap, File compiledScript) throws Exception {
+        gui.sendProgress("preparing testmap ... ");
+
+        // then inject the script into the map
+        gui.sendProgress("Injecting mapscript");
+        try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(testMap)) {
+            MpqTransaction transaction = mpqEditor.beginTransaction();
+            transaction.insertFile("war3map.j", compiledScript);
+            transaction.commit();
+        }
 
-            File mapCopy = copyToWarcraftMapDir(testMap);
 
-            WLogger.info("Starting wc3 ... ");
-            String path = "";
-            if(customTarget != null) {
-                path = new File(customTarget, testMap.getName()).getAbsolutePath();
-            } else if(mapCopy != null) {
-                path = mapCopy.getAbsolutePath();
-            }
+        File mapCopy = copyToWarcraftMapDir(testMap);
 
-            if (path.length() > 0) {
-                // now start the map
-                List<String> cmd = Lists.newArrayList(gameExe.getAbsolutePath(), "-window", "-loadfile", path);
+        WLogger.info("Starting wc3 ... ");
+        String path = "";
+        if(customTarget != null) {
+            path = new File(customTarget, testMap.getName()).getAbsolutePath();
+        } else if(mapCopy != null) {
+            path = mapCopy.getAbsolutePath();
+        }
 
-                if (!System.getProperty("os.name").startsWith("Windows")) {
-                    // run with wine
-                    cmd.add(0, "wine");
-                }
+        if (path.length() > 0) {
+            // now start the map
+            List<String> cmd = Lists.newArrayList(gameExe.getAbsolutePath(), "-window", "-loadfile", path);
 
-                gui.sendProgress("running " + cmd);
-                Process p = Runtime.getRuntime().exec(cmd.toArray(new String[0]));
-            }
-        } catch (CompileError e) {
-            throw new RequestFailedException(MessageType.Error, "There was an error when compiling the map: " + e.getMessage());
-        } catch (RuntimeException e) {
-            throw e;
-        } catch (final Exception e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (gui.getErrorCount() == 0) {
-                gui.sendFinished();
+            if (!System.getProperty("os.name").startsWith("Windows")) {
+                // run with wine
+                cmd.add(0, "wine");
             }
+
+            gui.sendProgress("running " + cmd);
+            Process p = Runtime.getRuntime().exec(cmd.toArray(new String[0]));
         }
-        return "ok"; // TODO
     }
 
     @NotNull
@@ -223,7 +252,7 @@ public class RunMap extends MapRequest {
     }
 
 
-    private File compileScript(WurstGui gui, ModelManager modelManager, List<String> compileArgs, File mapCopy, File origMap) throws Exception {
+    private CompletableFuture<File> compileScript(WurstGui gui, ModelManager modelManager, List<String> compileArgs, File mapCopy, File origMap) throws Exception {
         RunArgs runArgs = new RunArgs(compileArgs);
         print("Compile Script : ");
         for (File dep : modelManager.getDependencyWurstFiles()) {
@@ -248,13 +277,16 @@ public class RunMap extends MapRequest {
         }
 
         WurstModel model = modelManager.getModel();
+        // the model is not validated again, if it did not change since it was last checked without errors
+        boolean modelChecked = modelManager.isCheckedWithoutErrors();
         if (safeCompilation != SafetyLevel.QuickAndDirty) {
             // compilation will alter the model (e.g. remove unused imports), 
             // so it is safer to create a copy
             model = ModelManager.copy(model);
         }
 
-        return compileMap(modelManager.getProjectPath(), gui, mapCopy, origMap, runArgs, model);
+        return compileMap(modelManager.getProjectPath(), gui, mapCopy, origMap, runArgs, model, modelChecked,
+                buildExecutor(modelManager, model));
     }
 
 
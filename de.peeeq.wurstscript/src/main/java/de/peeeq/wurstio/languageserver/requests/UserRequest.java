@@ -7,6 +7,7 @@ import org.eclipse.lsp4j.services.LanguageClient;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public abstract class UserRequest<Res> {
 
@@ -14,6 +15,15 @@ public abstract class UserRequest<Res> {
 
     public abstract Res execute(ModelManager modelManager) throws IOException;
 
+    /**
+     * Executes the request on the language worker thread.
+     * Requests can return a future, which is completed later, to continue work, which does not use the model,
+     * in a different thread. By default the whole request is executed by {@link #execute(ModelManager)}.
+     */
+    public CompletableFuture<Res> executeAsync(ModelManager modelManager) throws IOException {
+        return CompletableFuture.completedFuture(execute(modelManager));
+    }
+
     public boolean keepDuplicateRequests() {
         return false;
     }
@@ -28,8 +38,15 @@ public abstract class UserRequest<Res> {
 
     public void run(ModelManager modelManager) {
         try {
-            Res res = execute(modelManager);
-            fut.complete(res);
+            executeAsync(modelManager).whenComplete((res, e) -> {
+                if (e instanceof CompletionException && e.getCause() != null) {
+                    fut.completeExceptionally(e.getCause());
+                } else if (e != null) {
+                    fut.completeExceptionally(e);
+                } else {
+                    fut.complete(res);
+                }
+            });
         } catch (Exception e) {
             fut.completeExceptionally(e);
         }
@@ -4,6 +4,7 @@ import com.google.common.io.Files;
 import com.google.common.io.LittleEndianDataInputStream;
 import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstio.mpq.MpqEditorFactory;
+import de.peeeq.wurstio.mpq.MpqTransaction;
 import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.utils.TempDir;
@@ -159,6 +160,8 @@ public class ImportFile {
         LinkedList<File> files = new LinkedList<>();
         getFilesOfDirectory(directory, files);
 
+        MpqTransaction transaction = mpq.beginTransaction();
+
         ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
         DataOutputStream dataOut = new DataOutputStream(byteOut);
         dataOut.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(FILE_VERSION).array());
@@ -171,10 +174,11 @@ public class ImportFile {
             dataOut.write(normalizedWc3Path.getBytes("UTF-8"));
             dataOut.write((byte) 0);
             WLogger.info("importing file: " + normalizedWc3Path);
-            mpq.insertFile(normalizedWc3Path, f);
+            transaction.insertFile(normalizedWc3Path, f);
         }
         dataOut.flush();
-        mpq.insertFile("war3map.imp", byteOut.toByteArray());
+        transaction.insertFile("war3map.imp", byteOut.toByteArray());
+        transaction.commit();
     }
 
     public static void importFilesFromImportDirectory(File projectFolder, MpqEditor ed) {
@@ -71,11 +71,21 @@ class Jmpq3BasedEditor implements MpqEditor {
         return getEditor().hasFile(fileName);
     }
 
+    @Override
+    public long getFileSize(String fileName) throws Exception {
+        return getEditor().getMpqFile(fileName).getNormalSize();
+    }
+
     @Override
     public void setKeepHeaderOffset(boolean flag) {
         editor.setKeepHeaderOffset(flag);
     }
 
+    @Override
+    public MpqTransaction beginTransaction() {
+        return new MpqTransaction(this);
+    }
+
     @Override
     protected void finalize() throws Throwable {
         if (editor != null) {
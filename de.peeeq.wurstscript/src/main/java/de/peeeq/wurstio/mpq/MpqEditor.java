@@ -17,5 +17,16 @@ public interface MpqEditor extends Closeable {
 
     boolean hasFile(String fileName) throws Exception;
 
+    /**
+     * @return the uncompressed size of a file in the archive
+     */
+    long getFileSize(String fileName) throws Exception;
+
     void setKeepHeaderOffset(boolean flag);
+
+    /**
+     * Starts a batch of inserts and deletes,
+     * which are applied to the archive in one pass when the transaction is committed.
+     */
+    MpqTransaction beginTransaction();
 }
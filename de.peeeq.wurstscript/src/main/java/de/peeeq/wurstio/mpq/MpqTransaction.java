@@ -0,0 +1,128 @@
+package de.peeeq.wurstio.mpq;
+
+import de.peeeq.wurstscript.WLogger;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A batch of modifications to an mpq archive.
+ * <p>
+ * Inserts and deletes are only staged and are applied to the archive together
+ * when {@link #commit()} is called. Later modifications of the same file replace earlier ones.
+ * Files which are already contained in the archive with the same content are not inserted again,
+ * so that the archive keeps the existing compressed entry.
+ * Inserted files are only read when the archive contains a file of the same size.
+ */
+public class MpqTransaction {
+
+    private final MpqEditor editor;
+    private final Map<String, Change> changes = new LinkedHashMap<>();
+    private boolean committed = false;
+
+    MpqTransaction(MpqEditor editor) {
+        this.editor = editor;
+    }
+
+    public void insertFile(String filenameInMpq, byte[] contents) {
+        stage(filenameInMpq, new Change(contents, null));
+    }
+
+    public void insertFile(String filenameInMpq, File contents) {
+        stage(filenameInMpq, new Change(null, contents));
+    }
+
+    public void deleteFile(String filenameInMpq) {
+        stage(filenameInMpq, new Change(null, null));
+    }
+
+    private void stage(String filenameInMpq, Change change) {
+        if (committed) {
+            throw new IllegalStateException("transaction already committed");
+        }
+        changes.remove(filenameInMpq);
+        changes.put(filenameInMpq, change);
+    }
+
+    /**
+     * applies all staged changes to the archive
+     *
+     * @return the number of files which were actually inserted or deleted
+     */
+    public int commit() throws Exception {
+        if (committed) {
+            throw new IllegalStateException("transaction already committed");
+        }
+        int modified = 0;
+        for (Map.Entry<String, Change> e : changes.entrySet()) {
+            String filename = e.getKey();
+            Change change = e.getValue();
+            boolean exists = editor.hasFile(filename);
+            if (change.isDelete()) {
+                if (exists) {
+                    editor.deleteFile(filename);
+                    modified++;
+                }
+                continue;
+            }
+            if (exists) {
+                if (change.hasSameContents(editor, filename)) {
+                    // unchanged, keep the existing entry
+                    continue;
+                }
+                editor.deleteFile(filename);
+            }
+            change.insert(editor, filename);
+            modified++;
+        }
+        committed = true;
+        WLogger.info("Committed mpq transaction: " + modified + " of " + changes.size() + " files changed");
+        changes.clear();
+        return modified;
+    }
+
+    private static class Change {
+        private final byte @Nullable [] contents;
+        private final @Nullable File file;
+
+        Change(byte @Nullable [] contents, @Nullable File file) {
+            this.contents = contents;
+            this.file = file;
+        }
+
+        boolean isDelete() {
+            return contents == null && file == null;
+        }
+
+        /**
+         * Compares the sizes first, so that the file in the archive is only extracted
+         * and files on disk are only read, when the sizes match.
+         */
+        boolean hasSameContents(MpqEditor editor, String filename) throws Exception {
+            byte[] c = contents;
+            File f = file;
+            long size = c != null ? c.length : f != null ? f.length() : -1;
+            if (editor.getFileSize(filename) != size) {
+                return false;
+            }
+            if (c == null && f != null) {
+                c = Files.readAllBytes(f.toPath());
+            }
+            return Arrays.equals(editor.extractFile(filename), c);
+        }
+
+        void insert(MpqEditor editor, String filename) throws Exception {
+            byte[] c = contents;
+            File f = file;
+            if (c != null) {
+                editor.insertFile(filename, c);
+            } else if (f != null) {
+                editor.insertFile(filename, f);
+            }
+        }
+    }
+}
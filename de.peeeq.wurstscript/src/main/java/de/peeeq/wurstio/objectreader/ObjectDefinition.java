@@ -1,15 +1,21 @@
 package de.peeeq.wurstio.objectreader;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class ObjectDefinition {
 
     private int origObjectId;
     private int newObjectId;
     private List<ObjectModification<?>> modifications = Lists.newArrayList();
+    private Map<ModificationKey, ObjectModification<?>> modificationsByKey = Maps.newHashMap();
     private final ObjectTable parent;
 
     public ObjectDefinition(ObjectTable parent, int origObjectId, int newObjectId) {
@@ -20,6 +26,14 @@ public class ObjectDefinition {
 
     public void add(ObjectModification<?> mod) {
         modifications.add(mod);
+        modificationsByKey.putIfAbsent(new ModificationKey(mod.getModificationId(), mod.getLevelCount()), mod);
+    }
+
+    /**
+     * returns the first modification with the given modification id and level
+     */
+    public @Nullable ObjectModification<?> getModification(String modificationId, int level) {
+        return modificationsByKey.get(new ModificationKey(modificationId, level));
     }
 
     static ObjectDefinition readFromStream(BinaryDataInputStream in, ObjectTable parent) throws IOException {
@@ -56,7 +70,7 @@ public class ObjectDefinition {
     }
 
     public List<ObjectModification<?>> getModifications() {
-        return modifications;
+        return Collections.unmodifiableList(modifications);
     }
 
     public void prettyPrint(StringBuilder sb) {
@@ -103,5 +117,31 @@ public class ObjectDefinition {
         return sb.toString();
     }
 
+    /**
+     * a modification is identified by its four-character id and its level,
+     * the data pointer is determined by the modification id
+     */
+    private static final class ModificationKey {
+        private final String modificationId;
+        private final int level;
+
+        ModificationKey(String modificationId, int level) {
+            this.modificationId = modificationId;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ModificationKey)) return false;
+            ModificationKey that = (ModificationKey) o;
+            return level == that.level && modificationId.equals(that.modificationId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(modificationId, level);
+        }
+    }
 
 }
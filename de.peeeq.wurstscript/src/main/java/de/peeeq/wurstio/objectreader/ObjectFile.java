@@ -1,5 +1,9 @@
 package de.peeeq.wurstio.objectreader;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
 import de.peeeq.wurstscript.WLogger;
 
 import java.io.*;
@@ -78,6 +82,21 @@ public class ObjectFile {
         }
     }
 
+    /**
+     * computes a hash of the binary representation of this file,
+     * without materializing the encoded bytes
+     */
+    public HashCode contentHash() {
+        HashingOutputStream os = new HashingOutputStream(Hashing.sha256(), ByteStreams.nullOutputStream());
+        try (BinaryDataOutputStream out = new BinaryDataOutputStream(os, true)) {
+            writeTo(out);
+        } catch (IOException e) {
+            WLogger.severe(e);
+            throw new Error(e);
+        }
+        return os.hash();
+    }
+
     public void writeTo(BinaryDataOutputStream out) throws IOException {
         out.writeInt(version);
         this.origTable.writeToStream(out, fileType);
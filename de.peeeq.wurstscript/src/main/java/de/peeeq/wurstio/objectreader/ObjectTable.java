@@ -1,13 +1,22 @@
 package de.peeeq.wurstio.objectreader;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 public class ObjectTable {
 
     private List<ObjectDefinition> objectDefinitions = Lists.newArrayList();
+    /**
+     * index from object id to definition, see {@link #indexKey(ObjectDefinition)}
+     */
+    private Map<Integer, ObjectDefinition> objectDefinitionsById = Maps.newHashMap();
     private ObjectFileType fileType;
 
     public ObjectTable(ObjectFileType fileType2) {
@@ -16,6 +25,40 @@ public class ObjectTable {
 
     public void add(ObjectDefinition objDef) {
         objectDefinitions.add(objDef);
+        objectDefinitionsById.putIfAbsent(indexKey(objDef), objDef);
+    }
+
+    /**
+     * the key used for looking up definitions:
+     * custom objects are identified by their new id,
+     * modified standard objects (which have no new id) by their original id
+     */
+    private static int indexKey(ObjectDefinition objDef) {
+        int newObjectId = objDef.getNewObjectId();
+        return newObjectId != 0 ? newObjectId : objDef.getOrigObjectId();
+    }
+
+    /**
+     * returns the first definition with the given (new or original) object id
+     */
+    public @Nullable ObjectDefinition get(int objectId) {
+        return objectDefinitionsById.get(objectId);
+    }
+
+    public boolean contains(int objectId) {
+        return objectDefinitionsById.containsKey(objectId);
+    }
+
+    /**
+     * removes all definitions matching the given predicate in a single pass
+     */
+    public void removeIf(Predicate<ObjectDefinition> pred) {
+        if (objectDefinitions.removeIf(pred)) {
+            objectDefinitionsById.clear();
+            for (ObjectDefinition od : objectDefinitions) {
+                objectDefinitionsById.putIfAbsent(indexKey(od), od);
+            }
+        }
     }
 
     static ObjectTable readFromStream(BinaryDataInputStream in, ObjectFileType fileType) throws IOException {
@@ -34,7 +77,7 @@ public class ObjectTable {
 
 
     public List<ObjectDefinition> getObjectDefinitions() {
-        return objectDefinitions;
+        return Collections.unmodifiableList(objectDefinitions);
     }
 
     public void writeToStream(BinaryDataOutputStream out, ObjectFileType fileType) throws IOException {
@@ -1,6 +1,8 @@
 package de.peeeq.wurstscript;
 
 import com.google.common.collect.Lists;
+import de.peeeq.wurstscript.translation.imtranslation.ClassFieldLayout;
+import de.peeeq.wurstscript.translation.imtranslation.RecycleCodeGenerator;
 import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.File;
@@ -18,6 +20,11 @@ public class RunArgs {
     private @Nullable String mapFile = null;
     private @Nullable String outFile = null;
     private @Nullable String testDir = null;
+    private String diagnosticsCacheFile = "./temp/diagnosticsCache.json";
+    private @Nullable String packageCostsFile = null;
+    private @Nullable String astCacheFolder = null;
+    private String recyclingStrategy = RecycleCodeGenerator.DEFAULT_STRATEGY;
+    private String fieldLayout = ClassFieldLayout.DEFAULT_STRATEGY;
     private List<RunOption> options = Lists.newArrayList();
     private List<File> libDirs = Lists.newArrayList();
     private RunOption optionHelp;
@@ -43,6 +50,9 @@ public class RunArgs {
     private RunOption optionDisablePjass;
     private RunOption optionShowVersion;
     private RunOption optionMeasureTimes;
+    private RunOption optionCheckOnly;
+    private RunOption optionCycleIndirection;
+    private RunOption optionLua;
 
     public RunArgs with(String... additionalArgs) {
         return new RunArgs(Stream.concat(Stream.of(args), Stream.of(additionalArgs))
@@ -89,7 +99,31 @@ public class RunArgs {
         uncheckedDispatch = addOption("uncheckedDispatch", "(dangerous) Removes checks from method-dispatch code. With unchecked dispatch "
                 + "some programming errors like null-pointer-dereferences or accessing of destroyed objects can no longer be detected. "
                 + "It is strongly recommended to not use this option, but it can give some performance benefits.");
-        optionMeasureTimes = addOption("measure", "Measure how long each step of the translation process takes.");
+        addOptionWithArg("recycling", "The strategy used to recycle the ids of destroyed objects: "
+                + String.join(", ", RecycleCodeGenerator.STRATEGIES) + " (default: " + RecycleCodeGenerator.DEFAULT_STRATEGY + "). "
+                + "'freelist' is the fastest, but does not detect double frees. 'checkedFreelist' only detects them without -nodebug. "
+                + "Single classes can choose a strategy with the annotation @recycling(\"...\").", arg -> {
+            if (!RecycleCodeGenerator.STRATEGIES.contains(arg)) {
+                throw new RuntimeException("Unknown recycling strategy: " + arg);
+            }
+            recyclingStrategy = arg;
+        });
+        addOptionWithArg("fieldLayout", "The strategy used to store the fields of classes: "
+                + String.join(", ", ClassFieldLayout.STRATEGIES) + " (default: " + ClassFieldLayout.DEFAULT_STRATEGY + "). "
+                + "'arrays' stores every field in a global array. 'sparse' stores rarely used fields in a hashtable, "
+                + "which saves global variables and memory, but makes accessing these fields slower.", arg -> {
+            if (!ClassFieldLayout.STRATEGIES.contains(arg)) {
+                throw new RuntimeException("Unknown field layout: " + arg);
+            }
+            fieldLayout = arg;
+        });
+        optionCycleIndirection = addOption("cycleIndirection", "Breaks cycles between mutually recursive functions by calling "
+                + "only some of the functions indirectly via TriggerEvaluate, instead of merging all functions of the cycle into one function.");
+        optionLua = addOption("lua", "Translates the program to Lua instead of Jass (for maps using the Lua scripting mode). "
+                + "The Lua script is written to the file given by -out or inserted into the map as war3map.lua.");
+        optionMeasureTimes = addOption("measure", "Measure how long each step of the translation process takes. "
+                + "The profile is written next to the output script (or to the _build folder, when compiling via the language server) "
+                + "as wurst-profile.json in the Chrome trace event format and as wurst-profile.folded in the collapsed stack format for flame graphs.");
         // tools
         optionAbout = addOption("-about", "Show the 'about' window.");
         optionFixInstall = addOption("-fixInstallation", "Checks your wc3 installation and applies compatibility fixes");
@@ -111,7 +145,14 @@ public class RunArgs {
                 + "like code completion, validations, and find declaration. The communication to the language server is via standard input output.");
 
         optionHelp = addOption("help", "Prints this help message.");
-        optionDisablePjass = addOption("noPJass", "Disables PJass checks for the generated code.");
+        optionDisablePjass = addOption("noPJass", "Disables the validation of the generated Jass code.");
+        optionCheckOnly = addOption("checkOnly", "Only typechecks the program and prints the errors and warnings as JSON. "
+                + "Packages which did not change since the last run (including their imports) are not checked again.");
+        addOptionWithArg("diagnosticsCache", "The file in which -checkOnly caches the diagnostics of each package.", arg -> diagnosticsCacheFile = arg);
+        addOptionWithArg("packageCosts", "Writes the check and translation time, the number of generated elements "
+                + "and the size of the generated Jass code of each package to the given CSV file.", arg -> packageCostsFile = arg);
+        addOptionWithArg("astCache", "The folder in which the parse results of common.j, blizzard.j and library packages are cached.",
+                arg -> astCacheFolder = arg);
 
         nextArg:
         for (int i = 0; i < args.length; i++) {
@@ -280,6 +321,22 @@ public class RunArgs {
         return optionShowVersion.isSet;
     }
 
+    public String getRecyclingStrategy() {
+        return recyclingStrategy;
+    }
+
+    public String getFieldLayout() {
+        return fieldLayout;
+    }
+
+    public boolean isCycleIndirection() {
+        return optionCycleIndirection.isSet;
+    }
+
+    public boolean isLua() {
+        return optionLua.isSet;
+    }
+
     public boolean isUncheckedDispatch() {
         return uncheckedDispatch.isSet;
     }
@@ -308,4 +365,20 @@ public class RunArgs {
         return optionMeasureTimes.isSet;
     }
 
+    public boolean isCheckOnly() {
+        return optionCheckOnly.isSet;
+    }
+
+    public String getDiagnosticsCacheFile() {
+        return diagnosticsCacheFile;
+    }
+
+    public @Nullable String getPackageCostsFile() {
+        return packageCostsFile;
+    }
+
+    public @Nullable String getAstCacheFolder() {
+        return astCacheFolder;
+    }
+
 }
@@ -1,11 +1,13 @@
 package de.peeeq.wurstscript;
 
 import com.google.common.base.Preconditions;
+import de.peeeq.wurstio.PackageCosts;
 import de.peeeq.wurstscript.ast.CompilationUnit;
 import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.attributes.ErrorHandler;
 import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.validation.WurstValidator;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.List;
 
@@ -13,38 +15,69 @@ public class WurstChecker {
 
     private final WurstGui gui;
     private ErrorHandler errorHandler;
+    private @Nullable PackageCosts packageCosts = null;
 
     public WurstChecker(WurstGui gui, ErrorHandler errorHandler) {
         this.gui = gui;
         this.errorHandler = errorHandler;
     }
 
-    public void checkProg(WurstModel root, List<CompilationUnit> toCheck) {
+    /**
+     * sets the costs to which the check time of each compilation unit is added
+     */
+    public void setPackageCosts(@Nullable PackageCosts packageCosts) {
+        this.packageCosts = packageCosts;
+    }
+
+    /**
+     * @return false, if the checks were aborted before validating the compilation units because of earlier errors
+     */
+    public boolean checkProg(WurstModel root, List<CompilationUnit> toCheck) {
         Preconditions.checkNotNull(root);
         Preconditions.checkNotNull(toCheck);
         if (root.isEmpty()) {
-            return;
+            return true;
         }
         gui.sendProgress("Checking Files");
 
-        if (errorHandler.getErrorCount() > 0) return;
+        if (errorHandler.getErrorCount() > 0) return false;
 
         attachErrorHandler(root);
 
         expandModules(root);
 
-        if (errorHandler.getErrorCount() > 0) return;
+        if (errorHandler.getErrorCount() > 0) return false;
 
         // compute the flow attributes
         for (CompilationUnit cu : toCheck) {
+            long start = System.nanoTime();
             WurstValidator.computeFlowAttributes(cu);
+            PackageCosts costs = packageCosts;
+            if (costs != null) {
+                costs.addCheckTime(cu, System.nanoTime() - start);
+            }
         }
 
 
         // validate the resource:
         WurstValidator validator = new WurstValidator(root);
+        validator.setPackageCosts(packageCosts);
         validator.validate(toCheck);
         WLogger.info("debug - finished checkProg");
+        return true;
+    }
+
+    /**
+     * Prepares a model, which was already checked without errors, for the translation.
+     * This does the same transformations as {@link #checkProg(WurstModel, List)}, but skips the validation.
+     */
+    public void prepareCheckedProg(WurstModel root) {
+        Preconditions.checkNotNull(root);
+        attachErrorHandler(root);
+        expandModules(root);
+        for (CompilationUnit cu : root) {
+            WurstValidator.computeFlowAttributes(cu);
+        }
     }
 
     private void attachErrorHandler(WurstModel root) {
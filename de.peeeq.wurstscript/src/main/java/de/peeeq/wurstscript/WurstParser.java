@@ -18,11 +18,13 @@ import de.peeeq.wurstscript.parser.antlr.AntlrWurstParseTreeTransformer;
 import de.peeeq.wurstscript.parser.antlr.ExtendedWurstLexer;
 import de.peeeq.wurstscript.utils.LineOffsets;
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
+import java.util.function.Function;
 
 public class WurstParser {
     private static final int MAX_SYNTAX_ERRORS = 15;
@@ -35,11 +37,7 @@ public class WurstParser {
     }
 
     public CompilationUnit parse(Reader reader, String source, boolean hasCommonJ) {
-        try (java.util.Scanner s = new java.util.Scanner(reader)) {
-            s.useDelimiter("\\A");
-            String input = s.hasNext() ? s.next() : "";
-            return parseWithAntlr(new StringReader(input), source, hasCommonJ);
-        }
+        return parseWithAntlr(reader, source, hasCommonJ);
     }
 
 
@@ -102,10 +100,8 @@ public class WurstParser {
 
             };
             lexer.setErrorListener(l);
-            parser.removeErrorListeners();
-            parser.addErrorListener(l);
 
-            CompilationUnitContext cu = parser.compilationUnit(); // begin parsing at init rule
+            CompilationUnitContext cu = parseTwoStage(parser, l, de.peeeq.wurstscript.antlr.WurstParser::compilationUnit);
 
             if (lexer.getTabWarning() != null) {
                 CompileError warning = lexer.getTabWarning();
@@ -178,10 +174,8 @@ public class WurstParser {
 
             };
             lexer.addErrorListener(l);
-            parser.removeErrorListeners();
-            parser.addErrorListener(l);
 
-            de.peeeq.wurstscript.jurst.antlr.JurstParser.CompilationUnitContext cu = parser.compilationUnit(); // begin parsing at init rule
+            de.peeeq.wurstscript.jurst.antlr.JurstParser.CompilationUnitContext cu = parseTwoStage(parser, l, JurstParser::compilationUnit);
             CompilationUnit root = new AntlrJurstParseTreeTransformer(source, errorHandler, lexer.getLineOffsets()).transform(cu);
             removeSyntacticSugar(root, hasCommonJ);
             return root;
@@ -246,10 +240,8 @@ public class WurstParser {
 
             };
             lexer.addErrorListener(l);
-            parser.removeErrorListeners();
-            parser.addErrorListener(l);
 
-            JassParser.CompilationUnitContext cu = parser.compilationUnit(); // begin parsing at init rule
+            JassParser.CompilationUnitContext cu = parseTwoStage(parser, l, JassParser::compilationUnit);
             CompilationUnit root = new AntlrJassParseTreeTransformer(source, errorHandler, lexer.getLineOffsets()).transform(cu);
             removeSyntacticSugar(root, hasCommonJ);
             return root;
@@ -264,6 +256,30 @@ public class WurstParser {
     }
 
 
+    /**
+     * Parses the input with the fast SLL prediction mode first.
+     * Only if this fails, the input is parsed again with full LL prediction and error reporting.
+     * SLL succeeds for almost all correct inputs and gives the same parse tree in this case.
+     * <p>
+     * The DFA used for prediction is stored in static fields of the generated parser
+     * and thus shared across all files and reparses.
+     */
+    private static <P extends Parser, T extends ParserRuleContext> T parseTwoStage(P parser, ANTLRErrorListener errorListener, Function<P, T> startRule) {
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return startRule.apply(parser);
+        } catch (ParseCancellationException e) {
+            // rewinds the token stream, tokens are not lexed again
+            parser.reset();
+            parser.addErrorListener(errorListener);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return startRule.apply(parser);
+        }
+    }
+
     public CompilationUnit emptyCompilationUnit() {
         return Ast.CompilationUnit("<empty compilation unit>", errorHandler, Ast.JassToplevelDeclarations(), Ast.WPackages());
     }
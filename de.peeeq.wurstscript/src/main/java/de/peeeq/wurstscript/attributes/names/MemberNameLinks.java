@@ -0,0 +1,162 @@
+package de.peeeq.wurstscript.attributes.names;
+
+import com.google.common.collect.*;
+import de.peeeq.wurstscript.ast.NamedScope;
+import de.peeeq.wurstscript.ast.WScope;
+import de.peeeq.wurstscript.types.*;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.*;
+
+/**
+ * Index of the name links with a receiver type (member functions and variables, extension functions)
+ * visible in a scope, grouped by a coarse key of the receiver type.
+ * <p>
+ * The key of a type is its definition for classes, interfaces and enums,
+ * the name for native types and the type class for primitive types.
+ * Receiver types without such a key (type parameters, unions, modules, ...) are stored
+ * in a separate group, which is always considered.
+ * For a lookup, all keys of the receiver type and its supertypes are calculated
+ * (see {@link #receiverKeys(WurstType)}), so only links which can possibly match
+ * the receiver type have to be checked with the (expensive) subtype relation.
+ */
+public class MemberNameLinks {
+
+    private static final Object OTHER = new Object();
+
+    /** for each name: the links grouped by receiver type key, each link with its position in {@link WScope#attrNameLinks()} */
+    private final ImmutableMap<String, ImmutableListMultimap<Object, IndexedLink>> index;
+
+    private MemberNameLinks(ImmutableMap<String, ImmutableListMultimap<Object, IndexedLink>> index) {
+        this.index = index;
+    }
+
+    public static MemberNameLinks calculate(WScope scope) {
+        Map<String, ImmutableListMultimap.Builder<Object, IndexedLink>> builders = new HashMap<>();
+        int pos = 0;
+        for (Map.Entry<String, DefLink> e : scope.attrNameLinks().entries()) {
+            DefLink link = e.getValue();
+            WurstType receiverType = link.getReceiverType();
+            if (receiverType != null) {
+                Object key = indexKey(receiverType);
+                builders.computeIfAbsent(e.getKey(), n -> ImmutableListMultimap.builder())
+                        .put(key == null ? OTHER : key, new IndexedLink(pos, link));
+            }
+            pos++;
+        }
+        ImmutableMap.Builder<String, ImmutableListMultimap<Object, IndexedLink>> index = ImmutableMap.builder();
+        builders.forEach((name, b) -> index.put(name, b.build()));
+        return new MemberNameLinks(index.build());
+    }
+
+    /**
+     * returns the links with the given name, whose receiver type might be a supertype of a type with the given keys
+     * (in the same order as in {@link WScope#attrNameLinks()})
+     *
+     * @param receiverKeys the result of {@link #receiverKeys(WurstType)}
+     */
+    public List<DefLink> get(String name, @Nullable Set<Object> receiverKeys) {
+        ImmutableListMultimap<Object, IndexedLink> byKey = index.get(name);
+        if (byKey == null) {
+            return Collections.emptyList();
+        }
+        List<IndexedLink> candidates;
+        if (receiverKeys == null) {
+            candidates = new ArrayList<>(byKey.values());
+        } else {
+            candidates = new ArrayList<>(byKey.get(OTHER));
+            for (Object key : receiverKeys) {
+                candidates.addAll(byKey.get(key));
+            }
+        }
+        return sortedLinks(candidates);
+    }
+
+    /**
+     * returns all links, whose receiver type might be a supertype of a type with the given keys
+     */
+    public ImmutableMultimap<String, DefLink> getAll(@Nullable Set<Object> receiverKeys) {
+        ImmutableListMultimap.Builder<String, DefLink> result = ImmutableListMultimap.builder();
+        for (String name : index.keySet()) {
+            result.putAll(name, get(name, receiverKeys));
+        }
+        return result.build();
+    }
+
+    private static List<DefLink> sortedLinks(List<IndexedLink> candidates) {
+        candidates.sort(Comparator.comparingInt(l -> l.pos));
+        List<DefLink> result = new ArrayList<>(candidates.size());
+        for (IndexedLink l : candidates) {
+            result.add(l.link);
+        }
+        return result;
+    }
+
+    /**
+     * the key under which links with the given receiver type are stored, or null if the type has no key
+     */
+    private static @Nullable Object indexKey(WurstType t) {
+        if (t instanceof WurstTypePrimitive && !(t instanceof WurstTypeNull)) {
+            return t.getClass();
+        } else if (t instanceof WurstNativeType) {
+            return t.getName();
+        } else if (t instanceof WurstTypeClassOrInterface || t instanceof WurstTypeEnum) {
+            return ((WurstTypeNamedScope) t).getDef();
+        }
+        return null;
+    }
+
+    /**
+     * Calculates the keys of all types, which the given type can be a subtype of.
+     *
+     * @return the keys or null, if any receiver type might match
+     */
+    public static @Nullable Set<Object> receiverKeys(WurstType t) {
+        if (t instanceof WurstTypeBoundTypeParam) {
+            return receiverKeys(((WurstTypeBoundTypeParam) t).getBaseType());
+        } else if (t instanceof WurstTypeNull) {
+            return null;
+        } else if (t instanceof WurstTypePrimitive) {
+            // int can be used as real in jass code and int literals can be used as reals,
+            // so simply consider all primitive types:
+            return ImmutableSet.<Object>of(WurstTypeInt.class, WurstTypeIntLiteral.class, WurstTypeReal.class,
+                    WurstTypeString.class, WurstTypeBool.class, WurstTypeCode.class, WurstTypeHandle.class);
+        } else if (t instanceof WurstNativeType) {
+            WurstNativeType nt = (WurstNativeType) t;
+            Set<Object> superKeys = receiverKeys(nt.getSuperType());
+            if (superKeys == null) {
+                return null;
+            }
+            return ImmutableSet.<Object>builder().add(nt.getName()).addAll(superKeys).build();
+        } else if (t instanceof WurstTypeEnum) {
+            NamedScope def = ((WurstTypeEnum) t).getDef();
+            return def == null ? null : ImmutableSet.<Object>of(def);
+        } else if (t instanceof WurstTypeClassOrInterface) {
+            Set<Object> result = new HashSet<>();
+            Deque<WurstTypeClassOrInterface> todo = new ArrayDeque<>();
+            todo.add((WurstTypeClassOrInterface) t);
+            while (!todo.isEmpty()) {
+                WurstTypeClassOrInterface ct = todo.poll();
+                NamedScope def = ct.getDef();
+                if (def == null) {
+                    return null;
+                }
+                if (result.add(def)) {
+                    todo.addAll(ct.directSupertypes());
+                }
+            }
+            return result;
+        }
+        return null;
+    }
+
+    private static class IndexedLink {
+        private final int pos;
+        private final DefLink link;
+
+        IndexedLink(int pos, DefLink link) {
+            this.pos = pos;
+            this.link = link;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public class NameResolution {
 
@@ -82,9 +83,10 @@ public class NameResolution {
         List<FuncLink> result = Lists.newArrayList();
         addMemberMethods(node, receiverType, name, result);
 
+        Set<Object> receiverKeys = MemberNameLinks.receiverKeys(receiverType);
         WScope scope = node.attrNearestScope();
         while (scope != null) {
-            for (DefLink n : scope.attrNameLinks().get(name)) {
+            for (DefLink n : scope.attrMemberNameLinks().get(name, receiverKeys)) {
                 if (!(n instanceof FuncLink)) {
                     continue;
                 }
@@ -166,9 +168,10 @@ public class NameResolution {
     }
 
     public static NameLink lookupMemberVar(Element node, WurstType receiverType, String name, boolean showErrors) {
+        Set<Object> receiverKeys = MemberNameLinks.receiverKeys(receiverType);
         WScope scope = node.attrNearestScope();
         while (scope != null) {
-            for (DefLink n : scope.attrNameLinks().get(name)) {
+            for (DefLink n : scope.attrMemberNameLinks().get(name, receiverKeys)) {
                 if (!(n instanceof VarLink)) {
                     continue;
                 }
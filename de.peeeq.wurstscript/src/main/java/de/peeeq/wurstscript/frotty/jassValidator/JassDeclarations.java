@@ -0,0 +1,268 @@
+package de.peeeq.wurstscript.frotty.jassValidator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.frotty.jassAttributes.JassConstants;
+import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The types, functions and global variables, which can be used by a Jass program.
+ * <p>
+ * Declarations can be layered: lookups which fail are passed on to the parent declarations.
+ * This way the declarations of common.j and blizzard.j are only read once and shared by all validations.
+ */
+public class JassDeclarations {
+
+    public static final String TYPE_HANDLE = "handle";
+    public static final String TYPE_NOTHING = "nothing";
+
+    private static final List<String> BUILTIN_TYPES = ImmutableList.of(
+            JassConstants.TYPE_INTEGER, JassConstants.TYPE_REAL, JassConstants.TYPE_STRING,
+            JassConstants.TYPE_CODE, JassConstants.TYPE_BOOLEAN, TYPE_HANDLE);
+
+    public static class Signature {
+        private final List<String> paramTypes;
+        private final String returnType;
+
+        public Signature(List<String> paramTypes, String returnType) {
+            this.paramTypes = paramTypes;
+            this.returnType = returnType;
+        }
+
+        public List<String> getParamTypes() {
+            return paramTypes;
+        }
+
+        public String getReturnType() {
+            return returnType;
+        }
+    }
+
+    public static class Global {
+        private final String type;
+        private final boolean isArray;
+        private final boolean isConstant;
+
+        public Global(String type, boolean isArray, boolean isConstant) {
+            this.type = type;
+            this.isArray = isArray;
+            this.isConstant = isConstant;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public boolean isArray() {
+            return isArray;
+        }
+
+        public boolean isConstant() {
+            return isConstant;
+        }
+    }
+
+    private final @Nullable JassDeclarations parent;
+    /** maps type names to the name of their super type */
+    private final Map<String, String> types = new HashMap<>();
+    private final Map<String, Signature> functions = new HashMap<>();
+    private final Map<String, Global> globals = new HashMap<>();
+
+    private static final Map<String, JassDeclarations> standardDeclarations = new ConcurrentHashMap<>();
+
+    /**
+     * creates declarations which only contain the builtin types
+     */
+    public JassDeclarations() {
+        this.parent = null;
+        for (String t : BUILTIN_TYPES) {
+            types.put(t, "");
+        }
+    }
+
+    /**
+     * creates empty declarations, which extend the given declarations
+     */
+    public JassDeclarations(JassDeclarations parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Returns the declarations of the given common.j and blizzard.j files.
+     * If a file is null or does not exist, the version bundled with the compiler is used instead.
+     * The result is cached until one of the files changes.
+     */
+    public static JassDeclarations standard(@Nullable File commonJ, @Nullable File blizzardJ) {
+        String key = cacheKey(commonJ, "common.j") + "|" + cacheKey(blizzardJ, "blizzard.j");
+        return standardDeclarations.computeIfAbsent(key, k -> {
+            JassDeclarations result = new JassDeclarations();
+            result.read(readStandardFile(commonJ, "common.j"));
+            result.read(readStandardFile(blizzardJ, "blizzard.j"));
+            return result;
+        });
+    }
+
+    private static String cacheKey(@Nullable File file, String resource) {
+        if (file == null || !file.exists()) {
+            return resource;
+        }
+        return file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+    }
+
+    private static String readStandardFile(@Nullable File file, String resource) {
+        try {
+            if (file != null && file.exists()) {
+                return Files.toString(file, Charsets.UTF_8);
+            }
+            try (InputStream is = JassDeclarations.class.getClassLoader().getResourceAsStream(resource)) {
+                if (is == null) {
+                    throw new IOException("Could not find resource file " + resource);
+                }
+                return new String(Utils.convertStreamToBytes(is), Charsets.UTF_8);
+            }
+        } catch (IOException e) {
+            WLogger.severe(e);
+            throw new Error(e);
+        }
+    }
+
+    private static final Pattern TYPE_DECL = Pattern.compile("type\\s+(\\w+)\\s+extends\\s+(\\w+)");
+    private static final Pattern FUNCTION_DECL = Pattern.compile(
+            "(?:constant\\s+)?(?:native|function)\\s+(\\w+)\\s+takes\\s+(.*?)\\s+returns\\s+(\\w+)");
+    private static final Pattern GLOBAL_DECL = Pattern.compile("(constant\\s+)?(\\w+)\\s+(array\\s+)?(\\w+)\\s*(?:=.*)?");
+
+    /**
+     * Reads the declarations of a Jass file.
+     * Only the declarations are considered, the bodies of functions are skipped,
+     * so the file is expected to be valid Jass code like common.j and blizzard.j.
+     */
+    public void read(String jassCode) {
+        boolean inGlobals = false;
+        for (String line : jassCode.split("\r?\n")) {
+            line = stripComment(line).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (inGlobals) {
+                if (line.equals("endglobals")) {
+                    inGlobals = false;
+                    continue;
+                }
+                Matcher m = GLOBAL_DECL.matcher(line);
+                if (m.matches()) {
+                    addGlobal(m.group(4), new Global(m.group(2), m.group(3) != null, m.group(1) != null));
+                }
+            } else if (line.equals("globals")) {
+                inGlobals = true;
+            } else {
+                Matcher m = TYPE_DECL.matcher(line);
+                if (m.matches()) {
+                    addType(m.group(1), m.group(2));
+                    continue;
+                }
+                m = FUNCTION_DECL.matcher(line);
+                if (m.matches()) {
+                    addFunction(m.group(1), new Signature(parseParamTypes(m.group(2)), m.group(3)));
+                }
+            }
+        }
+    }
+
+    private static String stripComment(String line) {
+        int pos = line.indexOf("//");
+        int quote = line.indexOf('"');
+        if (pos < 0 || quote >= 0 && quote < pos) {
+            // comments after strings do not matter, since the initial values of globals are not used
+            return line;
+        }
+        return line.substring(0, pos);
+    }
+
+    private static List<String> parseParamTypes(String params) {
+        if (params.equals(TYPE_NOTHING)) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        for (String param : params.split(",")) {
+            String[] parts = param.trim().split("\\s+");
+            result.add(parts[0]);
+        }
+        return result;
+    }
+
+    public void addType(String name, String superType) {
+        types.put(name, superType);
+    }
+
+    public void addFunction(String name, Signature signature) {
+        functions.put(name, signature);
+    }
+
+    public void addGlobal(String name, Global global) {
+        globals.put(name, global);
+    }
+
+    /**
+     * @return the super type of the given type, the empty string for builtin types or null if the type is not declared
+     */
+    public @Nullable String getSuperType(String type) {
+        String result = types.get(type);
+        if (result != null) {
+            return result;
+        }
+        JassDeclarations p = parent;
+        return p == null ? null : p.getSuperType(type);
+    }
+
+    public boolean isType(String type) {
+        return getSuperType(type) != null;
+    }
+
+    public @Nullable Signature getFunction(String name) {
+        Signature result = functions.get(name);
+        if (result != null) {
+            return result;
+        }
+        JassDeclarations p = parent;
+        return p == null ? null : p.getFunction(name);
+    }
+
+    public @Nullable Global getGlobal(String name) {
+        Global result = globals.get(name);
+        if (result != null) {
+            return result;
+        }
+        JassDeclarations p = parent;
+        return p == null ? null : p.getGlobal(name);
+    }
+
+    /**
+     * @return true, if sub is the same type as sup or (transitively) extends sup
+     */
+    public boolean isSubtype(String sub, String sup) {
+        Set<String> visited = new HashSet<>();
+        @Nullable String t = sub;
+        while (t != null && !t.isEmpty() && visited.add(t)) {
+            if (t.equals(sup)) {
+                return true;
+            }
+            t = getSuperType(t);
+        }
+        return false;
+    }
+
+    public boolean isHandleType(String type) {
+        return isSubtype(type, TYPE_HANDLE);
+    }
+}
@@ -1,56 +1,546 @@
 package de.peeeq.wurstscript.frotty.jassValidator;
 
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.frotty.jassAttributes.JassConstants;
+import de.peeeq.wurstscript.frotty.jassValidator.JassDeclarations.Global;
+import de.peeeq.wurstscript.frotty.jassValidator.JassDeclarations.Signature;
 import de.peeeq.wurstscript.jassAst.*;
+import de.peeeq.wurstscript.parser.WPos;
+import de.peeeq.wurstscript.utils.LineOffsets;
+import org.eclipse.jdt.annotation.Nullable;
 
+import java.util.*;
+
+/**
+ * Checks a Jass program for the errors, which would prevent the game from loading the map script.
+ * <p>
+ * The checks correspond to the checks done by pjass: declarations before use, name resolution,
+ * types of expressions, assignments, calls and return values, constant globals, exitwhen outside of loops,
+ * division by zero, missing returns and functions passed to Filter or Condition, which do not return a boolean.
+ * <p>
+ * The validator only reads the program, so it can run in parallel with the JassPrinter.
+ */
 public class JassValidator {
 
-    @SuppressWarnings("null")
-    public static void validate(JassProg p) {
-        p.accept(new JassProg.DefaultVisitor() {
+    private static final String ERROR_TYPE = "<error>";
+
+    private final JassDeclarations declarations;
+    private final Map<JassFunction, WPos> functionSources;
+    private final WPos progSource;
+    private final List<CompileError> errors = new ArrayList<>();
+
+    private @Nullable JassFunction currentFunction;
+    private final Map<String, JassVar> locals = new HashMap<>();
+    private int loopDepth;
+
+    /**
+     * @param standardDeclarations the declarations of common.j and blizzard.j
+     * @param functionSources      the positions at which errors in a function are reported
+     * @param progSource           the position at which errors outside of functions are reported
+     */
+    public JassValidator(JassDeclarations standardDeclarations, Map<JassFunction, WPos> functionSources, WPos progSource) {
+        this.declarations = new JassDeclarations(standardDeclarations);
+        this.functionSources = functionSources;
+        this.progSource = progSource;
+    }
+
+    /**
+     * validates the program against the bundled common.j and blizzard.j
+     */
+    public static List<CompileError> validate(JassProg p) {
+        JassValidator validator = new JassValidator(JassDeclarations.standard(null, null), Collections.emptyMap(),
+                new WPos("war3map.j", LineOffsets.dummy, 0, 0));
+        return validator.validateProg(p);
+    }
+
+    public List<CompileError> validateProg(JassProg p) {
+        for (JassTypeDef t : p.getDefs()) {
+            checkTypeDef(t);
+        }
+        for (JassVar v : p.getGlobals()) {
+            checkGlobal(v);
+        }
+        for (JassNative n : p.getNatives()) {
+            checkNative(n);
+        }
+        for (JassFunction f : p.getFunctions()) {
+            checkFunction(f);
+        }
+        return errors;
+    }
+
+    private void error(String msg) {
+        JassFunction f = currentFunction;
+        if (f == null) {
+            errors.add(new CompileError(progSource, msg));
+        } else {
+            WPos source = functionSources.get(f);
+            errors.add(new CompileError(source == null ? progSource : source, "In function " + f.getName() + ": " + msg));
+        }
+    }
+
+    private void checkTypeDef(JassTypeDef t) {
+        if (declarations.isType(t.getName())) {
+            error("Type " + t.getName() + " is already defined.");
+        } else if (!declarations.isHandleType(t.getExt())) {
+            error("Type " + t.getName() + " must extend a handle type, but extends " + t.getExt() + ".");
+        }
+        declarations.addType(t.getName(), t.getExt());
+    }
+
+    private void checkGlobal(JassVar v) {
+        if (v instanceof JassInitializedVar && ((JassInitializedVar) v).getIsBj()) {
+            // already defined in blizzard.j, only printed as a comment
+            return;
+        }
+        if (declarations.getGlobal(v.getName()) != null) {
+            error("Global variable " + v.getName() + " is already defined.");
+        }
+        checkVarType(v);
+        if (v instanceof JassInitializedVar) {
+            checkAssignment(v.getType(), ((JassInitializedVar) v).getVal(), "global variable " + v.getName());
+        }
+        declarations.addGlobal(v.getName(), new Global(v.getType(), v instanceof JassArrayVar, false));
+    }
+
+    private void checkVarType(JassVar v) {
+        if (!declarations.isType(v.getType())) {
+            error("Variable " + v.getName() + " has the undefined type " + v.getType() + ".");
+        } else if (v instanceof JassArrayVar && v.getType().equals(JassConstants.TYPE_CODE)) {
+            error("Code arrays are not allowed: " + v.getName());
+        }
+    }
+
+    private Signature checkSignature(String name, JassSimpleVars params, String returnType) {
+        if (declarations.getFunction(name) != null) {
+            error("Function " + name + " is already defined.");
+        }
+        List<String> paramTypes = new ArrayList<>();
+        for (JassSimpleVar p : params) {
+            checkVarType(p);
+            paramTypes.add(p.getType());
+        }
+        if (!returnType.equals(JassDeclarations.TYPE_NOTHING) && !declarations.isType(returnType)) {
+            error("Function " + name + " has the undefined return type " + returnType + ".");
+        }
+        Signature signature = new Signature(paramTypes, returnType);
+        declarations.addFunction(name, signature);
+        return signature;
+    }
 
-            @Override
-            public void visit(JassExprVarAccess e) {
-                super.visit(e);
-                e.attrVariableDefinition();
+    private void checkNative(JassNative n) {
+        checkSignature(n.getName(), n.getParams(), n.getReturnType());
+    }
+
+    private void checkFunction(JassFunction f) {
+        // the function is declared before its body, so that it can call itself
+        checkSignature(f.getName(), f.getParams(), f.getReturnType());
+        currentFunction = f;
+        locals.clear();
+        loopDepth = 0;
+        for (JassSimpleVar p : f.getParams()) {
+            addLocal(p);
+        }
+        for (JassVar v : f.getLocals()) {
+            checkVarType(v);
+            if (v instanceof JassInitializedVar) {
+                checkAssignment(v.getType(), ((JassInitializedVar) v).getVal(), "local variable " + v.getName());
             }
+            addLocal(v);
+        }
+        checkStatements(f.getBody());
+        if (!f.getReturnType().equals(JassDeclarations.TYPE_NOTHING) && canCompleteNormally(f.getBody())) {
+            error("Missing return at the end of the function.");
+        }
+        currentFunction = null;
+    }
+
+    private void addLocal(JassVar v) {
+        if (locals.put(v.getName(), v) != null) {
+            error("Local variable " + v.getName() + " is already defined.");
+        }
+    }
 
-            @Override
-            public void visit(JassExprVarArrayAccess e) {
-                super.visit(e);
-                e.attrVariableDefinition();
+    private void checkStatements(JassStatements stmts) {
+        for (JassStatement s : stmts) {
+            checkStatement(s);
+        }
+    }
+
+    private void checkStatement(JassStatement s) {
+        if (s instanceof JassStmtIf) {
+            JassStmtIf stmtIf = (JassStmtIf) s;
+            checkCondition(stmtIf.getCond(), "if");
+            checkStatements(stmtIf.getThenBlock());
+            checkStatements(stmtIf.getElseBlock());
+        } else if (s instanceof JassStmtLoop) {
+            loopDepth++;
+            checkStatements(((JassStmtLoop) s).getBody());
+            loopDepth--;
+        } else if (s instanceof JassStmtExitwhen) {
+            if (loopDepth == 0) {
+                error("exitwhen is only allowed inside of loops.");
             }
+            checkCondition(((JassStmtExitwhen) s).getCond(), "exitwhen");
+        } else if (s instanceof JassStmtSet) {
+            JassStmtSet set = (JassStmtSet) s;
+            String type = checkAssignedVar(set.getLeft(), false);
+            checkAssignment(type, set.getRight(), "variable " + set.getLeft());
+        } else if (s instanceof JassStmtSetArray) {
+            JassStmtSetArray set = (JassStmtSetArray) s;
+            String type = checkAssignedVar(set.getLeft(), true);
+            checkIndex(set.getIndex());
+            checkAssignment(type, set.getRight(), "variable " + set.getLeft());
+        } else if (s instanceof JassStmtCall) {
+            JassStmtCall call = (JassStmtCall) s;
+            checkCall(call.getFuncName(), call.getArguments());
+        } else if (s instanceof JassStmtReturn) {
+            checkReturn(((JassStmtReturn) s).getReturnValue());
+        } else if (s instanceof JassStmtReturnVoid) {
+            JassFunction f = currentFunction;
+            if (f != null && !f.getReturnType().equals(JassDeclarations.TYPE_NOTHING)) {
+                error("Missing return value, the function returns " + f.getReturnType() + ".");
+            }
+        } else {
+            throw new Error("unhandled case: " + s.getClass());
+        }
+    }
 
+    private void checkReturn(JassExpr value) {
+        JassFunction f = currentFunction;
+        if (f == null) {
+            return;
+        }
+        if (f.getReturnType().equals(JassDeclarations.TYPE_NOTHING)) {
+            error("Cannot return a value from a function returning nothing.");
+            checkExpr(value);
+        } else {
+            checkAssignment(f.getReturnType(), value, "return value");
+        }
+    }
+
+    private void checkCondition(JassExpr cond, String keyword) {
+        String type = checkExpr(cond);
+        if (!isAssignable(JassConstants.TYPE_BOOLEAN, type)) {
+            error("The condition of " + keyword + " must be a boolean, but has type " + type + ".");
+        }
+    }
+
+    private void checkIndex(JassExpr index) {
+        String type = checkExpr(index);
+        if (!isAssignable(JassConstants.TYPE_INTEGER, type)) {
+            error("Array index must be an integer, but has type " + type + ".");
+        }
+    }
 
-            @Override
-            public void visit(JassExprFunctionCall e) {
-                super.visit(e);
-                e.attrFunctionCall();
+    private void checkAssignment(String targetType, JassExpr value, String target) {
+        String type = checkExpr(value);
+        if (!isAssignable(targetType, type)) {
+            error("Cannot assign a value of type " + type + " to " + target + " of type " + targetType + ".");
+        }
+    }
+
+    /**
+     * @return the type of the assigned variable
+     */
+    private String checkAssignedVar(String name, boolean withIndex) {
+        JassVar local = locals.get(name);
+        boolean isArray;
+        String type;
+        if (local != null) {
+            isArray = local instanceof JassArrayVar;
+            type = local.getType();
+        } else {
+            Global global = declarations.getGlobal(name);
+            if (global == null) {
+                error("Variable " + name + " is not defined.");
+                return ERROR_TYPE;
             }
+            if (global.isConstant()) {
+                error("Cannot assign to the constant " + name + ".");
+            }
+            isArray = global.isArray();
+            type = global.getType();
+        }
+        checkArrayAccess(name, isArray, withIndex);
+        return type;
+    }
 
-            @Override
-            public void visit(JassExprFuncRef e) {
-                super.visit(e);
-                e.attrFuncRef();
+    private void checkArrayAccess(String name, boolean isArray, boolean withIndex) {
+        if (isArray && !withIndex) {
+            error("Variable " + name + " is an array and can only be used with an index.");
+        } else if (!isArray && withIndex) {
+            error("Variable " + name + " is not an array.");
+        }
+    }
+
+    private String checkVarAccess(String name, boolean withIndex) {
+        JassVar local = locals.get(name);
+        if (local != null) {
+            checkArrayAccess(name, local instanceof JassArrayVar, withIndex);
+            return local.getType();
+        }
+        Global global = declarations.getGlobal(name);
+        if (global == null) {
+            error("Variable " + name + " is not defined.");
+            return ERROR_TYPE;
+        }
+        checkArrayAccess(name, global.isArray(), withIndex);
+        return global.getType();
+    }
+
+    /**
+     * @return the return type of the called function
+     */
+    private String checkCall(String funcName, JassExprlist args) {
+        List<String> argTypes = new ArrayList<>();
+        for (JassExpr arg : args) {
+            argTypes.add(checkExpr(arg));
+        }
+        Signature signature = declarations.getFunction(funcName);
+        if (signature == null) {
+            error("Function " + funcName + " is not defined.");
+            return ERROR_TYPE;
+        }
+        if ((funcName.equals("Filter") || funcName.equals("Condition"))
+                && args.size() == 1 && args.get(0) instanceof JassExprFuncRef) {
+            checkBoolexprFunction(funcName, ((JassExprFuncRef) args.get(0)).getFuncName());
+        }
+        List<String> paramTypes = signature.getParamTypes();
+        if (paramTypes.size() != argTypes.size()) {
+            error("Function " + funcName + " expects " + paramTypes.size() + " arguments, but was called with " + argTypes.size() + ".");
+        } else {
+            for (int i = 0; i < paramTypes.size(); i++) {
+                if (!isAssignable(paramTypes.get(i), argTypes.get(i))) {
+                    error("Argument " + (i + 1) + " of " + funcName + " must have type " + paramTypes.get(i) + ", but has type " + argTypes.get(i) + ".");
+                }
+            }
+        }
+        return signature.getReturnType();
+    }
+
+    /**
+     * the game crashes, when a function used as a boolexpr does not return a boolean
+     */
+    private void checkBoolexprFunction(String funcName, String argFuncName) {
+        Signature argSignature = declarations.getFunction(argFuncName);
+        if (argSignature != null && !argSignature.getReturnType().equals(JassConstants.TYPE_BOOLEAN)) {
+            error("Function " + argFuncName + " passed to " + funcName + " must return a boolean.");
+        }
+    }
+
+    /**
+     * @return the type of the expression
+     */
+    private String checkExpr(JassExpr e) {
+        if (e instanceof JassExprIntVal) {
+            return JassConstants.TYPE_INTEGER;
+        } else if (e instanceof JassExprRealVal) {
+            return JassConstants.TYPE_REAL;
+        } else if (e instanceof JassExprStringVal) {
+            return JassConstants.TYPE_STRING;
+        } else if (e instanceof JassExprBoolVal) {
+            return JassConstants.TYPE_BOOLEAN;
+        } else if (e instanceof JassExprNull) {
+            return JassConstants.TYPE_NULL;
+        } else if (e instanceof JassExprVarAccess) {
+            return checkVarAccess(((JassExprVarAccess) e).getVarName(), false);
+        } else if (e instanceof JassExprVarArrayAccess) {
+            JassExprVarArrayAccess ae = (JassExprVarArrayAccess) e;
+            checkIndex(ae.getIndex());
+            return checkVarAccess(ae.getVarName(), true);
+        } else if (e instanceof JassExprFuncRef) {
+            String funcName = ((JassExprFuncRef) e).getFuncName();
+            Signature signature = declarations.getFunction(funcName);
+            if (signature == null) {
+                error("Function " + funcName + " is not defined.");
+            } else if (!signature.getParamTypes().isEmpty()) {
+                error("Function " + funcName + " must not take any arguments when used as code.");
+            }
+            return JassConstants.TYPE_CODE;
+        } else if (e instanceof JassExprFunctionCall) {
+            JassExprFunctionCall call = (JassExprFunctionCall) e;
+            String type = checkCall(call.getFuncName(), call.getArguments());
+            if (type.equals(JassDeclarations.TYPE_NOTHING)) {
+                error("Function " + call.getFuncName() + " returns nothing and cannot be used as an expression.");
+                return ERROR_TYPE;
+            }
+            return type;
+        } else if (e instanceof JassExprUnary) {
+            return checkUnary((JassExprUnary) e);
+        } else if (e instanceof JassExprBinary) {
+            return checkBinary((JassExprBinary) e);
+        }
+        throw new Error("unhandled case: " + e.getClass());
+    }
+
+    private String checkUnary(JassExprUnary e) {
+        String type = checkExpr(e.getRight());
+        if (type.equals(ERROR_TYPE)) {
+            return ERROR_TYPE;
+        }
+        if (e.getOpU() instanceof JassOpNot) {
+            if (!type.equals(JassConstants.TYPE_BOOLEAN)) {
+                error("Operator not is not defined for type " + type + ".");
+            }
+            return JassConstants.TYPE_BOOLEAN;
+        }
+        if (!isNumeric(type)) {
+            error("Operator - is not defined for type " + type + ".");
+            return ERROR_TYPE;
+        }
+        return type;
+    }
+
+    private String checkBinary(JassExprBinary e) {
+        String left = checkExpr(e.getLeftExpr());
+        String right = checkExpr(e.getRight());
+        JassOpBinary op = e.getOp();
+        if (op instanceof JassOpAnd || op instanceof JassOpOr) {
+            if (!isAssignable(JassConstants.TYPE_BOOLEAN, left) || !isAssignable(JassConstants.TYPE_BOOLEAN, right)) {
+                binaryError(op, left, right);
+            }
+            return JassConstants.TYPE_BOOLEAN;
+        }
+        if (left.equals(ERROR_TYPE) || right.equals(ERROR_TYPE)) {
+            return ERROR_TYPE;
+        }
+        if (op instanceof JassOpEquals || op instanceof JassOpUnequals) {
+            if (!isComparable(left, right)) {
+                binaryError(op, left, right);
+            }
+            return JassConstants.TYPE_BOOLEAN;
+        } else if (op instanceof JassOpLess || op instanceof JassOpLessEq
+                || op instanceof JassOpGreater || op instanceof JassOpGreaterEq) {
+            if (!isNumeric(left) || !isNumeric(right)) {
+                binaryError(op, left, right);
             }
+            return JassConstants.TYPE_BOOLEAN;
+        } else if (op instanceof JassOpPlus && isStringOperand(left) && isStringOperand(right)) {
+            return JassConstants.TYPE_STRING;
+        }
+        // arithmetic
+        if (!isNumeric(left) || !isNumeric(right)) {
+            binaryError(op, left, right);
+            return ERROR_TYPE;
+        }
+        if (op instanceof JassOpDiv && isZero(e.getRight())) {
+            error("Division by zero.");
+        }
+        if (left.equals(JassConstants.TYPE_REAL) || right.equals(JassConstants.TYPE_REAL)) {
+            return JassConstants.TYPE_REAL;
+        }
+        return JassConstants.TYPE_INTEGER;
+    }
+
+    private void binaryError(JassOpBinary op, String left, String right) {
+        if (!left.equals(ERROR_TYPE) && !right.equals(ERROR_TYPE)) {
+            error("Operator " + op.asString() + " is not defined for the types " + left + " and " + right + ".");
+        }
+    }
 
-            @Override
-            public void visit(JassStmtCall e) {
-                super.visit(e);
-                e.attrFunctionCall();
+    private static boolean isZero(JassExpr e) {
+        if (e instanceof JassExprIntVal) {
+            return ((JassExprIntVal) e).getValI().equals("0");
+        } else if (e instanceof JassExprRealVal) {
+            try {
+                return Double.parseDouble(((JassExprRealVal) e).getValR()) == 0;
+            } catch (NumberFormatException ex) {
+                return false;
             }
+        }
+        return false;
+    }
+
+    private static boolean isNumeric(String type) {
+        return type.equals(JassConstants.TYPE_INTEGER) || type.equals(JassConstants.TYPE_REAL);
+    }
+
+    private static boolean isStringOperand(String type) {
+        return type.equals(JassConstants.TYPE_STRING) || type.equals(JassConstants.TYPE_NULL);
+    }
+
+    private boolean isNullable(String type) {
+        return type.equals(JassConstants.TYPE_STRING) || type.equals(JassConstants.TYPE_CODE)
+                || declarations.isHandleType(type);
+    }
+
+    /**
+     * @return true, if a value of type 'from' can be used where a value of type 'to' is expected
+     */
+    private boolean isAssignable(String to, String from) {
+        if (to.equals(ERROR_TYPE) || from.equals(ERROR_TYPE) || to.equals(from)) {
+            return true;
+        }
+        if (from.equals(JassConstants.TYPE_NULL)) {
+            return isNullable(to);
+        }
+        if (to.equals(JassConstants.TYPE_REAL) && from.equals(JassConstants.TYPE_INTEGER)) {
+            return true;
+        }
+        return declarations.isSubtype(from, to);
+    }
+
+    private boolean isComparable(String left, String right) {
+        if (isNumeric(left) && isNumeric(right)) {
+            return true;
+        }
+        if (declarations.isHandleType(left) && declarations.isHandleType(right)) {
+            return true;
+        }
+        return isAssignable(left, right) || isAssignable(right, left);
+    }
 
-            @Override
-            public void visit(JassStmtSet e) {
-                super.visit(e);
-                e.attrVariableDefinition();
+    /**
+     * @return true, if the execution can reach the end of the given statements
+     */
+    private static boolean canCompleteNormally(JassStatements stmts) {
+        for (JassStatement s : stmts) {
+            if (!canCompleteNormally(s)) {
+                return false;
             }
+        }
+        return true;
+    }
+
+    private static boolean canCompleteNormally(JassStatement s) {
+        if (s instanceof JassStmtReturn || s instanceof JassStmtReturnVoid) {
+            return false;
+        } else if (s instanceof JassStmtIf) {
+            JassStmtIf stmtIf = (JassStmtIf) s;
+            return canCompleteNormally(stmtIf.getThenBlock()) || canCompleteNormally(stmtIf.getElseBlock());
+        } else if (s instanceof JassStmtLoop) {
+            return canExitLoop(((JassStmtLoop) s).getBody());
+        }
+        return true;
+    }
 
-            @Override
-            public void visit(JassStmtSetArray e) {
-                super.visit(e);
-                e.attrVariableDefinition();
+    /**
+     * @return true, if the statements contain an exitwhen for the enclosing loop, which might be taken
+     */
+    private static boolean canExitLoop(JassStatements stmts) {
+        for (JassStatement s : stmts) {
+            if (s instanceof JassStmtExitwhen) {
+                if (!isConstantFalse(((JassStmtExitwhen) s).getCond())) {
+                    return true;
+                }
+            } else if (s instanceof JassStmtIf) {
+                JassStmtIf stmtIf = (JassStmtIf) s;
+                if (canExitLoop(stmtIf.getThenBlock()) || canExitLoop(stmtIf.getElseBlock())) {
+                    return true;
+                }
             }
+        }
+        return false;
+    }
 
-        });
+    private static boolean isConstantFalse(JassExpr e) {
+        if (e instanceof JassExprBoolVal) {
+            return !((JassExprBoolVal) e).getValB();
+        } else if (e instanceof JassExprUnary && ((JassExprUnary) e).getOpU() instanceof JassOpNot) {
+            JassExpr right = ((JassExprUnary) e).getRight();
+            return right instanceof JassExprBoolVal && ((JassExprBoolVal) right).getValB();
+        }
+        return false;
     }
 }
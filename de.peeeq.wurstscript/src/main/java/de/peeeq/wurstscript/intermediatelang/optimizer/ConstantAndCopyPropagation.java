@@ -7,8 +7,10 @@ import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -210,6 +212,15 @@ public class ConstantAndCopyPropagation implements OptimizerPass {
                         // a = 5; [y->b, a->5] // here [x->a] has been invalidated
                         newOut.entrySet().removeIf(entry -> entry.getValue().equalValue(new Value(var)));
                     }
+                } else {
+                    // tuples are only eliminated in Jass mode, in Lua mode setting
+                    // a tuple component replaces the whole tuple variable
+                    for (ImVar var : tupleVars(imSet.getLeft())) {
+                        if (!var.isGlobal()) {
+                            newOut.remove(var);
+                            newOut.entrySet().removeIf(entry -> entry.getValue().equalValue(new Value(var)));
+                        }
+                    }
                 }
             }
 
@@ -226,4 +237,29 @@ public class ConstantAndCopyPropagation implements OptimizerPass {
         return knowledge;
     }
 
+    /**
+     * @return the variables, which are changed by assigning to the tuple components in e
+     */
+    private static List<ImVar> tupleVars(ImLExpr e) {
+        List<ImVar> result = new ArrayList<>();
+        if (e instanceof ImTupleSelection) {
+            Element tuple = ((ImTupleSelection) e).getTupleExpr();
+            while (tuple instanceof ImTupleSelection) {
+                tuple = ((ImTupleSelection) tuple).getTupleExpr();
+            }
+            if (tuple instanceof ImVarAccess) {
+                result.add(((ImVarAccess) tuple).getVar());
+            }
+        } else if (e instanceof ImTupleExpr) {
+            for (ImExpr component : ((ImTupleExpr) e).getExprs()) {
+                if (component instanceof ImVarAccess) {
+                    result.add(((ImVarAccess) component).getVar());
+                } else if (component instanceof ImLExpr) {
+                    result.addAll(tupleVars((ImLExpr) component));
+                }
+            }
+        }
+        return result;
+    }
+
 }
@@ -0,0 +1,369 @@
+package de.peeeq.wurstscript.intermediatelang.optimizer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import de.peeeq.wurstscript.WurstOperator;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+import de.peeeq.wurstscript.types.TypesHelper;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Optimizes loops by moving loop invariant expressions in front of the loop
+ * and by replacing multiplications of induction variables with additions.
+ * <p>
+ * An expression is loop invariant, when it only reads variables which are not changed in the loop.
+ * Only expressions which cannot fail are moved (no division by a non-constant value and only calls of pure natives),
+ * so evaluating them before the loop is correct, even if they are not evaluated in every iteration.
+ * Global variables are only considered unchanged, when no function called in the loop sets them
+ * and the loop does not call any natives which might run arbitrary code (e.g. ForGroup or TriggerEvaluate).
+ * <p>
+ * An induction variable is a local integer variable, which is only changed by statements of the form i = i + c.
+ * A product i * k with a constant k, which appears at least {@link #MIN_REDUCED_USES} times in the loop,
+ * is stored in a new variable, which is updated after each change of i.
+ * <p>
+ * Unlike the other data flow passes, this pass does not use the {@link ControlFlowGraph}.
+ * In the intermediate language every loop is an {@link ImLoop} statement, so the loops do not have to be
+ * detected from back edges of the graph and the loop body is simply the body of the statement.
+ * This makes the analysis flow insensitive, which is more conservative than necessary:
+ * <ul>
+ * <li>a variable counts as changed in the whole loop, when it is set anywhere in the loop,
+ * even if the expression is only evaluated before the assignment</li>
+ * <li>expressions in branches are hoisted like all others, which is why only expressions which cannot fail are hoisted</li>
+ * <li>induction variables are only found when every change is an increment by a constant,
+ * a single other assignment in some branch excludes the variable</li>
+ * <li>the analysis of called functions is not flow sensitive either, every global set by a called function
+ * counts as changed</li>
+ * </ul>
+ * <p>
+ * the input must be a flattened program
+ */
+public class LoopOptimizer implements OptimizerPass {
+
+    /**
+     * a product of an induction variable must appear at least this often to be replaced,
+     * otherwise the additional update statement costs more than the multiplication
+     */
+    static final int MIN_REDUCED_USES = 2;
+
+    private SideEffectAnalyzer sideEffectAnalyzer;
+    private final Map<ImFunction, Set<ImVar>> setGlobals = Maps.newHashMap();
+    private int optimized = 0;
+
+    @Override
+    public int optimize(ImTranslator trans) {
+        ImProg prog = trans.getImProg();
+        sideEffectAnalyzer = new SideEffectAnalyzer(prog);
+        setGlobals.clear();
+        optimized = 0;
+        for (ImFunction f : prog.getFunctions()) {
+            if (f.isNative()) {
+                continue;
+            }
+            // outer loops first, so that expressions are moved out of all loops where they are invariant:
+            List<ImLoop> loops = Lists.newArrayList();
+            f.getBody().accept(new Element.DefaultVisitor() {
+                @Override
+                public void visit(ImLoop loop) {
+                    loops.add(loop);
+                    super.visit(loop);
+                }
+            });
+            for (ImLoop loop : loops) {
+                hoistInvariants(f, loop);
+                reduceInductionVariables(f, loop);
+            }
+        }
+        return optimized;
+    }
+
+    @Override
+    public String getName() {
+        return "Loop optimizations";
+    }
+
+    /**
+     * moves loop invariant expressions in front of the loop
+     */
+    private void hoistInvariants(ImFunction f, ImLoop loop) {
+        Set<ImVar> changedVars = sideEffectAnalyzer.directlySetVariables(loop);
+        boolean globalsUnknown = false;
+        for (ImFunction called : sideEffectAnalyzer.calledFunctions(loop)) {
+            if (called.isNative()) {
+                if (!PureFunctionEvaluator.PURE_NATIVES.contains(called.getName())) {
+                    globalsUnknown = true;
+                }
+            } else {
+                changedVars.addAll(getSetGlobals(called));
+            }
+        }
+
+        List<ImExpr> invariants = Lists.newArrayList();
+        collectInvariants(loop.getBody(), changedVars, globalsUnknown, invariants);
+
+        List<ImExpr> hoisted = Lists.newArrayList();
+        List<ImVar> temps = Lists.newArrayList();
+        ImStmts parent = (ImStmts) loop.getParent();
+        for (ImExpr e : invariants) {
+            ImType type = e.attrTyp();
+            if (!(type instanceof ImSimpleType)) {
+                continue;
+            }
+            ImVar temp = null;
+            for (int i = 0; i < hoisted.size(); i++) {
+                if (hoisted.get(i).structuralEquals(e)) {
+                    temp = temps.get(i);
+                    break;
+                }
+            }
+            if (temp == null) {
+                temp = JassIm.ImVar(e.attrTrace(), type, "loopInvariant", false);
+                f.getLocals().add(temp);
+                parent.add(parent.indexOf(loop), JassIm.ImSet(e.attrTrace(), JassIm.ImVarAccess(temp), (ImExpr) e.copy()));
+                hoisted.add(e);
+                temps.add(temp);
+            }
+            e.replaceBy(JassIm.ImVarAccess(temp));
+            optimized++;
+        }
+    }
+
+    /**
+     * global variables directly set by the given function (called functions are handled separately)
+     */
+    private Set<ImVar> getSetGlobals(ImFunction f) {
+        return setGlobals.computeIfAbsent(f, func -> {
+            Set<ImVar> result = Sets.newHashSet();
+            for (ImVar v : sideEffectAnalyzer.directlySetVariables(func)) {
+                if (v.isGlobal()) {
+                    result.add(v);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * collects the largest loop invariant subexpressions of e, which are worth moving
+     */
+    private void collectInvariants(Element e, Set<ImVar> changedVars, boolean globalsUnknown, List<ImExpr> result) {
+        if (e instanceof ImSet) {
+            ImLExpr left = ((ImSet) e).getLeft();
+            if (left instanceof ImVarArrayAccess) {
+                // the indexes of the assigned array are read:
+                collectInvariants(((ImVarArrayAccess) left).getIndexes(), changedVars, globalsUnknown, result);
+            }
+            collectInvariants(((ImSet) e).getRight(), changedVars, globalsUnknown, result);
+            return;
+        }
+        if (e instanceof ImExpr
+                && !(e.getParent() instanceof ImStmts)
+                && isWorthHoisting((ImExpr) e)
+                && isInvariant((ImExpr) e, changedVars, globalsUnknown)) {
+            result.add((ImExpr) e);
+            return;
+        }
+        for (int i = 0; i < e.size(); i++) {
+            collectInvariants(e.get(i), changedVars, globalsUnknown, result);
+        }
+    }
+
+    /**
+     * constants and variables are already cheap, so only expressions reading some variable are worth moving
+     */
+    private static boolean isWorthHoisting(ImExpr e) {
+        if (e instanceof ImConst || e instanceof ImVarAccess) {
+            return false;
+        }
+        return readsVariable(e);
+    }
+
+    private static boolean readsVariable(Element e) {
+        if (e instanceof ImVarRead) {
+            return true;
+        }
+        for (int i = 0; i < e.size(); i++) {
+            if (readsVariable(e.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInvariant(ImExpr e, Set<ImVar> changedVars, boolean globalsUnknown) {
+        if (e instanceof ImConst) {
+            return true;
+        } else if (e instanceof ImVarAccess) {
+            return isUnchanged(((ImVarAccess) e).getVar(), changedVars, globalsUnknown);
+        } else if (e instanceof ImVarArrayAccess) {
+            ImVarArrayAccess va = (ImVarArrayAccess) e;
+            return isUnchanged(va.getVar(), changedVars, globalsUnknown)
+                    && areInvariant(va.getIndexes(), changedVars, globalsUnknown);
+        } else if (e instanceof ImOperatorCall) {
+            ImOperatorCall opCall = (ImOperatorCall) e;
+            return !canFail(opCall)
+                    && areInvariant(opCall.getArguments(), changedVars, globalsUnknown);
+        } else if (e instanceof ImFunctionCall) {
+            ImFunction func = ((ImFunctionCall) e).getFunc();
+            return func.isNative()
+                    && PureFunctionEvaluator.PURE_NATIVES.contains(func.getName())
+                    && areInvariant(((ImFunctionCall) e).getArguments(), changedVars, globalsUnknown);
+        }
+        return false;
+    }
+
+    private static boolean areInvariant(ImExprs exprs, Set<ImVar> changedVars, boolean globalsUnknown) {
+        for (ImExpr e : exprs) {
+            if (!isInvariant(e, changedVars, globalsUnknown)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUnchanged(ImVar v, Set<ImVar> changedVars, boolean globalsUnknown) {
+        return !changedVars.contains(v) && !(v.isGlobal() && globalsUnknown);
+    }
+
+    /**
+     * divisions crash the thread when dividing by zero, so they are only moved when dividing by a non-zero constant
+     */
+    private static boolean canFail(ImOperatorCall opCall) {
+        WurstOperator op = opCall.getOp();
+        if (op != WurstOperator.DIV_INT && op != WurstOperator.DIV_REAL
+                && op != WurstOperator.MOD_INT && op != WurstOperator.MOD_REAL) {
+            return false;
+        }
+        ImExpr divisor = opCall.getArguments().get(1);
+        if (divisor instanceof ImIntVal) {
+            return ((ImIntVal) divisor).getValI() == 0;
+        } else if (divisor instanceof ImRealVal) {
+            try {
+                return Float.parseFloat(((ImRealVal) divisor).getValR()) == 0;
+            } catch (NumberFormatException ex) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * replaces products i * k of an induction variable i and a constant k with a new variable,
+     * which is initialized before the loop and increased by c * k after each statement i = i + c
+     */
+    private void reduceInductionVariables(ImFunction f, ImLoop loop) {
+        Map<ImVar, List<ImSet>> increments = Maps.newLinkedHashMap();
+        Set<ImVar> otherwiseChanged = Sets.newHashSet();
+        loop.getBody().accept(new Element.DefaultVisitor() {
+            @Override
+            public void visit(ImSet set) {
+                super.visit(set);
+                if (set.getLeft() instanceof ImVarAccess) {
+                    ImVar v = ((ImVarAccess) set.getLeft()).getVar();
+                    if (getIncrement(v, set.getRight()) != null) {
+                        increments.computeIfAbsent(v, x -> Lists.newArrayList()).add(set);
+                        return;
+                    }
+                }
+                otherwiseChanged.addAll(sideEffectAnalyzer.directlySetVariables(set));
+            }
+
+            @Override
+            public void visit(ImVarargLoop va) {
+                super.visit(va);
+                otherwiseChanged.add(va.getLoopVar());
+            }
+        });
+        increments.keySet().removeAll(otherwiseChanged);
+        if (increments.isEmpty()) {
+            return;
+        }
+
+        // group the products by induction variable and factor:
+        Map<ImVar, Map<Integer, List<ImOperatorCall>>> products = Maps.newLinkedHashMap();
+        loop.getBody().accept(new Element.DefaultVisitor() {
+            @Override
+            public void visit(ImOperatorCall opCall) {
+                super.visit(opCall);
+                if (opCall.getOp() != WurstOperator.MULT || opCall.getParent() instanceof ImStmts) {
+                    return;
+                }
+                ImExpr left = opCall.getArguments().get(0);
+                ImExpr right = opCall.getArguments().get(1);
+                if (right instanceof ImVarAccess && left instanceof ImIntVal) {
+                    ImExpr t = left;
+                    left = right;
+                    right = t;
+                }
+                if (left instanceof ImVarAccess && right instanceof ImIntVal) {
+                    ImVar v = ((ImVarAccess) left).getVar();
+                    if (increments.containsKey(v)) {
+                        products.computeIfAbsent(v, x -> Maps.newLinkedHashMap())
+                                .computeIfAbsent(((ImIntVal) right).getValI(), x -> Lists.newArrayList())
+                                .add(opCall);
+                    }
+                }
+            }
+        });
+
+        ImStmts parent = (ImStmts) loop.getParent();
+        products.forEach((v, byFactor) -> byFactor.forEach((factor, uses) -> {
+            if (uses.size() < MIN_REDUCED_USES) {
+                return;
+            }
+            de.peeeq.wurstscript.ast.Element trace = uses.get(0).attrTrace();
+            ImVar temp = JassIm.ImVar(trace, TypesHelper.imInt(), v.getName() + "Times" + (factor < 0 ? "Minus" + (-factor) : factor), false);
+            f.getLocals().add(temp);
+            parent.add(parent.indexOf(loop), JassIm.ImSet(trace, JassIm.ImVarAccess(temp),
+                    JassIm.ImOperatorCall(WurstOperator.MULT, JassIm.ImExprs(JassIm.ImVarAccess(v), JassIm.ImIntVal(factor)))));
+            for (ImSet increment : increments.get(v)) {
+                // integer overflow wraps around in the same way for the product and the sum:
+                int step = getIncrement(v, increment.getRight()) * factor;
+                ImStmts stmts = (ImStmts) increment.getParent();
+                stmts.add(stmts.indexOf(increment) + 1, JassIm.ImSet(increment.getTrace(), JassIm.ImVarAccess(temp),
+                        JassIm.ImOperatorCall(WurstOperator.PLUS, JassIm.ImExprs(JassIm.ImVarAccess(temp), JassIm.ImIntVal(step)))));
+            }
+            for (ImOperatorCall use : uses) {
+                use.replaceBy(JassIm.ImVarAccess(temp));
+                optimized++;
+            }
+        }));
+    }
+
+    /**
+     * @return c, if v is a local integer variable and e has the form v + c, c + v or v - c for an integer constant c
+     */
+    private static @Nullable Integer getIncrement(ImVar v, ImExpr e) {
+        if (v.isGlobal() || !v.getType().equalsType(TypesHelper.imInt()) || !(e instanceof ImOperatorCall)) {
+            return null;
+        }
+        ImOperatorCall opCall = (ImOperatorCall) e;
+        if (opCall.getArguments().size() != 2) {
+            return null;
+        }
+        ImExpr left = opCall.getArguments().get(0);
+        ImExpr right = opCall.getArguments().get(1);
+        if (opCall.getOp() == WurstOperator.PLUS) {
+            if (isRead(left, v) && right instanceof ImIntVal) {
+                return ((ImIntVal) right).getValI();
+            } else if (left instanceof ImIntVal && isRead(right, v)) {
+                return ((ImIntVal) left).getValI();
+            }
+        } else if (opCall.getOp() == WurstOperator.MINUS) {
+            if (isRead(left, v) && right instanceof ImIntVal) {
+                return -((ImIntVal) right).getValI();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isRead(ImExpr e, ImVar v) {
+        return e instanceof ImVarAccess && ((ImVarAccess) e).getVar() == v;
+    }
+}
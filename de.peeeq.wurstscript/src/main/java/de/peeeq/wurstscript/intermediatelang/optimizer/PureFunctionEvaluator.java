@@ -0,0 +1,231 @@
+package de.peeeq.wurstscript.intermediatelang.optimizer;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import de.peeeq.wurstio.jassinterpreter.InterpreterException;
+import de.peeeq.wurstio.jassinterpreter.ReflectionNativeProvider;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.intermediatelang.*;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
+import de.peeeq.wurstscript.intermediatelang.interpreter.LocalState;
+import de.peeeq.wurstscript.intermediatelang.interpreter.NativesProvider;
+import de.peeeq.wurstscript.intermediatelang.interpreter.NoSuchNativeException;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ProgramState;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+import de.peeeq.wurstscript.translation.imtranslation.purity.FunctionPurity;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evaluates calls of pure functions with constant arguments at compile time
+ * and replaces them with the result.
+ * <p>
+ * A function is pure, when it only reads and writes local variables and only calls pure functions
+ * (see {@link FunctionPurity}). The calls are evaluated with the {@link ILInterpreter}.
+ * Each evaluation may run at most {@link #MAX_STEPS} statements, otherwise the call is kept.
+ * Calls which fail (for example because of a division by zero) are also kept, so that the error happens at runtime.
+ * <p>
+ * The interpreter uses Java strings, whereas the game uses UTF-8 encoded byte strings.
+ * Therefore the string natives are only evaluated, when all strings they get and return are ASCII.
+ */
+public class PureFunctionEvaluator implements OptimizerPass {
+
+    /**
+     * natives, which always return the same result for the same arguments and have no side effects.
+     * Floating point natives like Sin or SquareRoot are not included,
+     * because the game might round their results differently than Java.
+     */
+    static final Set<String> PURE_NATIVES = ImmutableSet.of(
+            "I2S", "S2I", "I2R", "R2I", "StringLength", "SubString", "StringCase");
+
+    /**
+     * natives, which are only evaluated for ASCII strings, because the game works on the bytes of the UTF-8 encoding
+     * and the interpreter on Java characters, so the results only match for ASCII strings
+     */
+    private static final Set<String> ASCII_ONLY_NATIVES = ImmutableSet.of(
+            "StringLength", "SubString", "StringCase");
+
+    /**
+     * maximum number of statements executed for evaluating one call
+     */
+    static final int MAX_STEPS = 100_000;
+    /**
+     * maximum number of statements executed in one run of the pass
+     */
+    static final int MAX_TOTAL_STEPS = 5_000_000;
+    /**
+     * longer strings are not inlined, because string literals in Jass are limited in length
+     */
+    private static final int MAX_STRING_LENGTH = 1000;
+
+    /**
+     * program state, which counts the executed statements and aborts the evaluation when the budget is used up
+     */
+    private static class BudgetedProgramState extends ProgramState {
+        private int steps = 0;
+        private int totalSteps = 0;
+
+        BudgetedProgramState(ImProg prog) {
+            super(new WurstGuiLogger(), prog, false);
+        }
+
+        @Override
+        public void setLastStatement(ImStmt s) {
+            super.setLastStatement(s);
+            steps++;
+            totalSteps++;
+            if (steps > MAX_STEPS) {
+                throw new InterpreterException(this, "Evaluation budget exceeded");
+            }
+        }
+
+        @Override
+        public void compilationError(String errorMessage) {
+            // errors only mean that the call cannot be evaluated at compile time
+            throw new InterpreterException(this, errorMessage);
+        }
+    }
+
+    /**
+     * provides the natives of the interpreter,
+     * but aborts the evaluation when a string native gets or returns a string which is not ASCII
+     */
+    private static class AsciiOnlyNativesProvider implements NativesProvider {
+        private final NativesProvider natives;
+
+        AsciiOnlyNativesProvider(NativesProvider natives) {
+            this.natives = natives;
+        }
+
+        @Override
+        public ILconst invoke(String funcname, ILconst[] args) throws NoSuchNativeException {
+            if (!ASCII_ONLY_NATIVES.contains(funcname)) {
+                return natives.invoke(funcname, args);
+            }
+            for (ILconst arg : args) {
+                checkAscii(funcname, arg);
+            }
+            ILconst result = natives.invoke(funcname, args);
+            checkAscii(funcname, result);
+            return result;
+        }
+
+        private static void checkAscii(String funcname, ILconst value) {
+            if (value instanceof ILconstString && !isAscii(((ILconstString) value).getVal())) {
+                throw new InterpreterException(funcname + " is only evaluated for ASCII strings");
+            }
+        }
+
+        private static boolean isAscii(@Nullable String s) {
+            return s != null && CharMatcher.ascii().matchesAllOf(s);
+        }
+
+        @Override
+        public void setOutStream(PrintStream outStream) {
+            natives.setOutStream(outStream);
+        }
+    }
+
+    @Override
+    public int optimize(ImTranslator trans) {
+        ImProg prog = trans.getImProg();
+        FunctionPurity purity = new FunctionPurity(prog, PURE_NATIVES);
+        List<ImFunctionCall> calls = Lists.newArrayList();
+        prog.accept(new ImProg.DefaultVisitor() {
+            @Override
+            public void visit(ImFunctionCall e) {
+                super.visit(e);
+                if (!(e.getFunc().getReturnType() instanceof ImVoid)
+                        && purity.isPure(e.getFunc())
+                        && hasConstantArguments(e)) {
+                    calls.add(e);
+                }
+            }
+        });
+        if (calls.isEmpty()) {
+            return 0;
+        }
+
+        BudgetedProgramState state = new BudgetedProgramState(prog);
+        ILInterpreter interpreter = new ILInterpreter(prog, state.getGui(), null, state);
+        interpreter.addNativeProvider(new AsciiOnlyNativesProvider(new ReflectionNativeProvider(interpreter)));
+        int evaluated = 0;
+        for (ImFunctionCall call : calls) {
+            if (state.totalSteps > MAX_TOTAL_STEPS) {
+                break;
+            }
+            ImExpr result = evaluate(state, call);
+            if (result != null) {
+                call.replaceBy(result);
+                evaluated++;
+            }
+        }
+        return evaluated;
+    }
+
+    @Override
+    public String getName() {
+        return "Pure Function Evaluation";
+    }
+
+    private static boolean hasConstantArguments(ImFunctionCall call) {
+        for (ImExpr arg : call.getArguments()) {
+            if (!(arg instanceof ImIntVal
+                    || arg instanceof ImRealVal
+                    || arg instanceof ImStringVal
+                    || arg instanceof ImBoolVal
+                    || arg instanceof ImNull)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static @Nullable ImExpr evaluate(BudgetedProgramState state, ImFunctionCall call) {
+        ILconst value;
+        state.steps = 0;
+        state.resetStackframes();
+        try {
+            value = call.evaluate(state, new LocalState());
+        } catch (InterpreterException e) {
+            return null;
+        }
+        return toConstant(value, call.getFunc().getReturnType());
+    }
+
+    private static @Nullable ImExpr toConstant(@Nullable ILconst value, ImType type) {
+        if (value instanceof ILconstBool) {
+            return JassIm.ImBoolVal(((ILconstBool) value).getVal());
+        } else if (value instanceof ILconstInt && !isRealType(type)) {
+            return JassIm.ImIntVal(((ILconstInt) value).getVal());
+        } else if (value instanceof ILconstReal || value instanceof ILconstInt) {
+            float f = value instanceof ILconstReal ? ((ILconstReal) value).getVal() : ((ILconstInt) value).getVal();
+            if (Float.isNaN(f) || Float.isInfinite(f)) {
+                return null;
+            }
+            // only use the result, if the string representation is exact:
+            for (int digits : new int[]{4, 9}) {
+                String s = SimpleRewrites.floatToStringWithDecimalDigits(f, digits);
+                if (Float.parseFloat(s) == f) {
+                    return JassIm.ImRealVal(s);
+                }
+            }
+        } else if (value instanceof ILconstString) {
+            String s = ((ILconstString) value).getVal();
+            if (s != null && s.length() <= MAX_STRING_LENGTH) {
+                return JassIm.ImStringVal(s);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isRealType(ImType t) {
+        return t instanceof ImSimpleType && ((ImSimpleType) t).getTypename().equals("real");
+    }
+}
@@ -23,7 +23,7 @@ public class SideEffectAnalyzer {
     private Multimap<ImFunction, ImFunction> callRelation;
     // f -> set of functions directly and transitively called by f
     private TransitiveClosure<ImFunction> callRelationTr;
-    // f -> global variables directly used in f
+    // f -> global variables and class fields directly used in f
     private Multimap<ImFunction, ImVar> usedGlobals;
 
     public SideEffectAnalyzer(ImProg prog) {
@@ -184,7 +184,7 @@ public class SideEffectAnalyzer {
     }
 
     /**
-     * @return f -> global variables directly used in f
+     * @return f -> global variables and class fields directly used in f
      */
     public Multimap<ImFunction, ImVar> getUsedGlobals() {
         if (usedGlobals != null) {
@@ -193,7 +193,7 @@ public class SideEffectAnalyzer {
         usedGlobals = LinkedHashMultimap.create();
         for (ImFunction function : prog.getFunctions()) {
             for (ImVar v : directlyUsedVariables(function)) {
-                if (v.isGlobal()) {
+                if (v.isGlobal() || isField(v)) {
                     usedGlobals.put(function, v);
                 }
             }
@@ -241,6 +241,7 @@ public class SideEffectAnalyzer {
 
     /**
      * Functions directly called in e
+     * (for method calls all implementations, which might be called by dynamic dispatch)
      */
     public Set<ImFunction> directlyCalledFunctions(Element e) {
         Set<ImFunction> calledFunctions = new LinkedHashSet<>();
@@ -251,11 +252,33 @@ public class SideEffectAnalyzer {
                 super.visit(c);
                 calledFunctions.add(c.getFunc());
             }
+
+            @Override
+            public void visit(ImMethodCall c) {
+                super.visit(c);
+                addImplementations(calledFunctions, c.getMethod());
+            }
         });
         return calledFunctions;
 
     }
 
+    private void addImplementations(Set<ImFunction> calledFunctions, ImMethod m) {
+        if (!m.getIsAbstract()) {
+            calledFunctions.add(m.getImplementation());
+        }
+        for (ImMethod sub : m.getSubMethods()) {
+            addImplementations(calledFunctions, sub);
+        }
+    }
+
+    /**
+     * class fields only exist before the class translation, which happens after the optimizations in Jass mode
+     */
+    private static boolean isField(ImVar v) {
+        return v.getParent() != null && v.getParent().getParent() instanceof ImClass;
+    }
+
     /**
      * Variables directly used in e
      */
@@ -323,7 +346,7 @@ public class SideEffectAnalyzer {
 
             @Override
             public void case_ImMemberAccess(ImMemberAccess v) {
-                throw new RuntimeException("Should run after objects");
+                imVars.add(v.getVar());
             }
 
             @Override
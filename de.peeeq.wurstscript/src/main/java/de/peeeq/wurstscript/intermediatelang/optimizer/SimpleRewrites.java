@@ -515,7 +515,7 @@ public class SimpleRewrites implements OptimizerPass {
         }
     }
 
-    private static String floatToStringWithDecimalDigits(float resultVal, int digits) {
+    static String floatToStringWithDecimalDigits(float resultVal, int digits) {
         DecimalFormat format = new DecimalFormat();
         // use a fixed locale, so that it does not randomly replace a dot by
         // comma on German PCs
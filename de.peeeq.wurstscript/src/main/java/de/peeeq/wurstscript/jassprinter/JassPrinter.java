@@ -115,7 +115,7 @@ public class JassPrinter {
     }
 
 
-    private void printFunction(StringBuilder sb, JassFunction f) {
+    public void printFunction(StringBuilder sb, JassFunction f) {
         if (prog.attrIgnoredFunctions().contains(f)) {
             return;
         }
@@ -19,16 +19,28 @@ public class ImOptimizer {
     private int totalGlobalsRemoved = 0;
 
     private static final ArrayList<OptimizerPass> localPasses = new ArrayList<>();
+    private static final ArrayList<OptimizerPass> luaLocalPasses = new ArrayList<>();
     private static final HashMap<String, Integer> totalCount = new HashMap<>();
 
     static {
         localPasses.add(new ConstantAndCopyPropagation());
         localPasses.add(new UselessFunctionCallsRemover());
         localPasses.add(new GlobalsInliner());
+        localPasses.add(new PureFunctionEvaluator());
         localPasses.add(new BranchMerger());
         localPasses.add(new SimpleRewrites());
+        localPasses.add(new LoopOptimizer());
         localPasses.add(new TempMerger());
         localPasses.add(new LocalMerger());
+
+        // in Lua mode classes and tuples are not eliminated before the optimizations.
+        // TempMerger requires a program without tuples and does not consider method calls,
+        // so it is left out.
+        for (OptimizerPass pass : localPasses) {
+            if (!(pass instanceof TempMerger)) {
+                luaLocalPasses.add(pass);
+            }
+        }
     }
 
 
@@ -40,6 +52,13 @@ public class ImOptimizer {
         this.trans = trans;
     }
 
+    /**
+     * the passes used by the local optimizations in the order in which they are run
+     */
+    public static List<OptimizerPass> getLocalPasses() {
+        return Collections.unmodifiableList(localPasses);
+    }
+
     public void optimize() {
         removeGarbage();
         ImCompressor compressor = new ImCompressor(trans);
@@ -61,14 +80,26 @@ public class ImOptimizer {
     private int optCount = 1;
 
     public void localOptimizations() {
+        localOptimizations(localPasses);
+    }
+
+    /**
+     * runs the local optimizations, which can handle classes and tuples, so that they can be used before the Lua translation
+     */
+    public void localOptimizationsLua() {
+        localOptimizations(luaLocalPasses);
+    }
+
+    private void localOptimizations(List<OptimizerPass> passes) {
         totalCount.clear();
         removeGarbage();
 
         int finalItr = 0;
         for (int i = 1; i <= 10 && optCount > 0; i++) {
             optCount = 0;
-            localPasses.forEach(pass -> {
+            passes.forEach(pass -> {
                 int count = timeTaker.measure(pass.getName(), () -> pass.optimize(trans));
+                timeTaker.addCounter(pass.getName(), count);
                 optCount += count;
                 totalCount.put(pass.getName(), totalCount.getOrDefault(pass.getName(), 0) + count);
             });
@@ -108,6 +139,8 @@ public class ImOptimizer {
             int functionsAfter = prog.getFunctions().size();
             int functionsRemoved = functionsBefore - functionsAfter;
             totalFunctionsRemoved += functionsRemoved;
+            timeTaker.addCounter("globals removed", globalsRemoved);
+            timeTaker.addCounter("functions removed", functionsRemoved);
             for (ImFunction f : prog.getFunctions()) {
                 // remove set statements to unread variables
                 final List<Pair<ImStmt, List<ImExpr>>> replacements = Lists.newArrayList();
@@ -256,6 +256,13 @@ public class ImToJassTranslator {
 
     private Map<ImFunction, JassFunctionOrNative> jassFuncs = Maps.newLinkedHashMap();
 
+    /**
+     * @return the jass function generated for the given function or null, if the function was not translated
+     */
+    public @Nullable JassFunctionOrNative getTranslatedFunction(ImFunction func) {
+        return jassFuncs.get(func);
+    }
+
     public JassFunctionOrNative getJassFuncFor(ImFunction func) {
         JassFunctionOrNative f = jassFuncs.get(func);
         if (f == null) {
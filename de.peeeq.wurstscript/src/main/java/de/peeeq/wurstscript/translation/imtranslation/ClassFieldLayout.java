@@ -0,0 +1,57 @@
+package de.peeeq.wurstscript.translation.imtranslation;
+
+import com.google.common.collect.ImmutableList;
+import de.peeeq.wurstscript.jassIm.ImClass;
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.jassIm.ImMemberAccess;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Decides how the fields of objects are stored, when classes are eliminated.
+ */
+public interface ClassFieldLayout {
+
+    /**
+     * the names of the available strategies, which can be selected with the -fieldLayout option
+     */
+    List<String> STRATEGIES = ImmutableList.of("arrays", "sparse");
+
+    String DEFAULT_STRATEGY = "arrays";
+
+    /**
+     * creates the global variables storing the fields of the given class
+     */
+    void createFields(ImClass c);
+
+    /**
+     * replaces an access to a field of a class by an access to the storage created in {@link #createFields(ImClass)}
+     */
+    void replaceMemberAccess(ImMemberAccess ma);
+
+    /**
+     * adds code to the dealloc function of the class, which releases the storage of the destroyed object
+     */
+    void freeFields(ImClass c, ImFunction deallocFunc);
+
+    /**
+     * @return a short description of the generated globals and their estimated memory usage
+     */
+    String report();
+
+    /**
+     * @return the layout for the given strategy or null, if there is no strategy with the given name
+     */
+    static @Nullable ClassFieldLayout forStrategy(String name, ImTranslator translator, ImProg prog) {
+        switch (name) {
+            case "arrays":
+                return new ClassFieldLayoutArrays(translator, prog);
+            case "sparse":
+                return new ClassFieldLayoutSparse(translator, prog);
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,74 @@
+package de.peeeq.wurstscript.translation.imtranslation;
+
+import com.google.common.collect.Maps;
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.utils.Constants;
+
+import java.util.Map;
+
+/**
+ * Stores every field in a global array, which is indexed by the object id.
+ * <p>
+ * Accessing a field is a single array access, but every field needs a global variable
+ * and the array grows with the highest object id of the class hierarchy, even if the field is rarely set.
+ */
+public class ClassFieldLayoutArrays implements ClassFieldLayout {
+
+    /**
+     * estimated memory of one array slot in bytes
+     */
+    static final int ARRAY_SLOT_BYTES = 8;
+
+    protected final ImTranslator translator;
+    protected final ImProg prog;
+    private final Map<ImVar, ImVar> fieldToArray = Maps.newLinkedHashMap();
+
+    public ClassFieldLayoutArrays(ImTranslator translator, ImProg prog) {
+        this.translator = translator;
+        this.prog = prog;
+    }
+
+    @Override
+    public void createFields(ImClass c) {
+        for (ImVar f : c.getFields()) {
+            createField(c, f);
+        }
+    }
+
+    protected void createField(ImClass c, ImVar f) {
+        ImType type = ImHelper.toArray(f.getType());
+        ImVar v = JassIm.ImVar(f.getTrace(), type, f.getName(), false);
+        prog.getGlobals().add(v);
+        fieldToArray.put(f, v);
+    }
+
+    @Override
+    public void replaceMemberAccess(ImMemberAccess ma) {
+        ImExpr receiver = ma.getReceiver();
+        receiver.setParent(null);
+
+        ImVar fieldArray = fieldToArray.get(ma.getVar());
+        if (fieldArray == null) {
+            throw new CompileError(ma, "Could not find field array for " + ma);
+        }
+        ImExprs indexes = JassIm.ImExprs(receiver);
+        indexes.addAll(ma.getIndexes().removeAll());
+        ma.replaceBy(JassIm.ImVarArrayAccess(ma.attrTrace(), fieldArray, indexes));
+    }
+
+    @Override
+    public void freeFields(ImClass c, ImFunction deallocFunc) {
+        // array slots are reused by the next object with the same id
+    }
+
+    protected int getGlobalCount() {
+        return fieldToArray.size();
+    }
+
+    @Override
+    public String report() {
+        long maxKb = (long) fieldToArray.size() * Constants.MAX_ARRAY_SIZE * ARRAY_SLOT_BYTES / 1024;
+        return getGlobalCount() + " globals, " + fieldToArray.size() + " field arrays (up to " + maxKb + " KB)";
+    }
+}
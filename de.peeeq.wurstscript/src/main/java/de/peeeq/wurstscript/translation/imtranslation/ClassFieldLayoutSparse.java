@@ -0,0 +1,188 @@
+package de.peeeq.wurstscript.translation.imtranslation;
+
+import com.google.common.collect.Maps;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.jassIm.*;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores rarely used fields in a hashtable and all other fields in global arrays.
+ * <p>
+ * The object id is used as parent key and each field gets its own child key.
+ * A field is rarely used, when it is accessed in at most {@link #MAX_USES} places in the program.
+ * Such fields are often only set for some objects, so a hashtable only stores the values which were actually set,
+ * instead of reserving an array slot for every object, and needs no global variable per field.
+ * Only fields of type integer, real, boolean and string and references to other objects can be stored in the hashtable.
+ */
+public class ClassFieldLayoutSparse extends ClassFieldLayoutArrays {
+
+    /**
+     * fields accessed in at most this many places are stored in the hashtable
+     */
+    static final int MAX_USES = 3;
+    /**
+     * estimated memory of one hashtable entry in bytes
+     */
+    static final int HASHTABLE_ENTRY_BYTES = 32;
+
+    private enum StoredType {
+        INTEGER("SaveInteger", "LoadInteger", "RemoveSavedInteger"),
+        REAL("SaveReal", "LoadReal", "RemoveSavedReal"),
+        BOOLEAN("SaveBoolean", "LoadBoolean", "RemoveSavedBoolean"),
+        STRING("SaveStr", "LoadStr", "RemoveSavedString");
+
+        private final String save;
+        private final String load;
+        private final String remove;
+
+        StoredType(String save, String load, String remove) {
+            this.save = save;
+            this.load = load;
+            this.remove = remove;
+        }
+    }
+
+    private final Map<ImVar, Integer> useCounts = Maps.newHashMap();
+    private final Map<ImVar, Integer> fieldKeys = Maps.newLinkedHashMap();
+    private final Map<ImVar, StoredType> fieldTypes = Maps.newHashMap();
+    /**
+     * the fields stored in the hashtable for each class hierarchy
+     */
+    private final Map<ClassManagementVars, List<ImVar>> hierarchyFields = Maps.newHashMap();
+    private @Nullable ImVar table;
+
+    public ClassFieldLayoutSparse(ImTranslator translator, ImProg prog) {
+        super(translator, prog);
+        prog.accept(new ImProg.DefaultVisitor() {
+            @Override
+            public void visit(ImMemberAccess e) {
+                super.visit(e);
+                useCounts.merge(e.getVar(), 1, Integer::sum);
+            }
+        });
+    }
+
+    @Override
+    protected void createField(ImClass c, ImVar f) {
+        StoredType type = storedType(f.getType());
+        if (type == null
+                || useCounts.getOrDefault(f, 0) > MAX_USES
+                || !hasNatives(type)
+                || getTable(c.getTrace()) == null) {
+            super.createField(c, f);
+            return;
+        }
+        fieldKeys.put(f, fieldKeys.size() + 1);
+        fieldTypes.put(f, type);
+        hierarchyFields.computeIfAbsent(translator.getClassManagementVarsFor(c), v -> new ArrayList<>()).add(f);
+    }
+
+    private static @Nullable StoredType storedType(ImType t) {
+        if (t instanceof ImClassType) {
+            return StoredType.INTEGER;
+        } else if (t instanceof ImSimpleType) {
+            switch (((ImSimpleType) t).getTypename()) {
+                case "integer":
+                    return StoredType.INTEGER;
+                case "real":
+                    return StoredType.REAL;
+                case "boolean":
+                    return StoredType.BOOLEAN;
+                case "string":
+                    return StoredType.STRING;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasNatives(StoredType type) {
+        return translator.getNativeFunc(type.save) != null
+                && translator.getNativeFunc(type.load) != null
+                && translator.getNativeFunc(type.remove) != null;
+    }
+
+    /**
+     * @return the global hashtable, which is created on first use, or null if the hashtable natives are not available
+     */
+    private @Nullable ImVar getTable(Element trace) {
+        ImVar t = table;
+        if (t == null) {
+            ImFunction initHashtable = translator.getNativeFunc("InitHashtable");
+            if (initHashtable == null) {
+                return null;
+            }
+            t = JassIm.ImVar(trace, initHashtable.getReturnType(), "wurst_fieldTable", false);
+            translator.addGlobalWithInitalizer(t, JassIm.ImFunctionCall(trace, initHashtable, JassIm.ImTypeArguments(),
+                    JassIm.ImExprs(), false, CallType.NORMAL));
+            table = t;
+        }
+        return t;
+    }
+
+    @Override
+    public void replaceMemberAccess(ImMemberAccess ma) {
+        Integer key = fieldKeys.get(ma.getVar());
+        ImVar t = table;
+        if (key == null || t == null) {
+            super.replaceMemberAccess(ma);
+            return;
+        }
+        StoredType type = fieldTypes.get(ma.getVar());
+        ImExpr receiver = ma.getReceiver();
+        receiver.setParent(null);
+        Element trace = ma.attrTrace();
+        ImExprs args = JassIm.ImExprs(JassIm.ImVarAccess(t), receiver, JassIm.ImIntVal(key));
+        if (ma.getParent() instanceof ImSet && ((ImSet) ma.getParent()).getLeft() == ma) {
+            // obj.f = v  -->  SaveX(table, obj, key, v)
+            ImSet set = (ImSet) ma.getParent();
+            ImExpr right = set.getRight();
+            right.setParent(null);
+            args.add(right);
+            set.replaceBy(call(trace, type.save, args));
+        } else {
+            // obj.f  -->  LoadX(table, obj, key)
+            ma.replaceBy(call(trace, type.load, args));
+        }
+    }
+
+    /**
+     * Objects of a subclass can be deallocated by the dealloc function of the superclass,
+     * so the fields of the whole class hierarchy are removed.
+     */
+    @Override
+    public void freeFields(ImClass c, ImFunction deallocFunc) {
+        ImVar t = table;
+        List<ImVar> fields = hierarchyFields.get(translator.getClassManagementVarsFor(c));
+        if (t == null || fields == null) {
+            return;
+        }
+        Element trace = c.getTrace();
+        ImVar thisVar = deallocFunc.getParameters().get(0);
+        for (ImVar f : fields) {
+            deallocFunc.getBody().add(call(trace, fieldTypes.get(f).remove,
+                    JassIm.ImExprs(JassIm.ImVarAccess(t), JassIm.ImVarAccess(thisVar), JassIm.ImIntVal(fieldKeys.get(f)))));
+        }
+    }
+
+    private ImFunctionCall call(Element trace, String nativeName, ImExprs args) {
+        ImFunction f = translator.getNativeFunc(nativeName);
+        if (f == null) {
+            throw new Error("Could not find native " + nativeName);
+        }
+        return JassIm.ImFunctionCall(trace, f, JassIm.ImTypeArguments(), args, false, CallType.NORMAL);
+    }
+
+    @Override
+    protected int getGlobalCount() {
+        return super.getGlobalCount() + (table == null ? 0 : 1);
+    }
+
+    @Override
+    public String report() {
+        return super.report() + ", " + fieldKeys.size() + " fields in a hashtable (about " + HASHTABLE_ENTRY_BYTES + " bytes per stored value)";
+    }
+}
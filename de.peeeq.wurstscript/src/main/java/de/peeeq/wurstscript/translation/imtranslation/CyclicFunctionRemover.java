@@ -1,41 +1,301 @@
 package de.peeeq.wurstscript.translation.imtranslation;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import de.peeeq.datastructures.GraphInterpreter;
 import de.peeeq.wurstscript.WurstOperator;
 import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.types.WurstTypeBool;
 import de.peeeq.wurstscript.types.WurstTypeInt;
 
 import java.util.*;
 
 /**
  * Removes cyclic functions from a program
- * by putting cyclic functions into one big function
+ * by putting cyclic functions into one big function.
+ * <p>
+ * Alternatively (useIndirection) only the calls on the back-edges of a depth first search are replaced
+ * by an indirect call via TriggerEvaluate, so all other calls stay direct calls:
+ * <pre>
+ * function cycCall_f takes (params of f) returns (return type of f)
+ *     set f_arg_i = param_i
+ *     call TriggerEvaluate(cycTrig_f)
+ *     return f_result
+ *
+ * function cycBridge_f takes nothing returns boolean
+ *     set f_result = f(f_arg_i...)
+ *     return true
+ * </pre>
+ * The triggers are created at the start of the main function.
+ * The called function then runs inside of a trigger condition, where waits do not work and event responses
+ * refer to the condition's trigger. So the cycle is merged into one function as before, when the required natives
+ * are not available, when the cycle might call waits or event responses, or when it is reachable from the config
+ * function, which runs before main.
  */
 public class CyclicFunctionRemover {
 
+    /**
+     * natives, which must not be called inside of a trigger condition
+     */
+    private static final Set<String> WAIT_NATIVES = ImmutableSet.of(
+            "TriggerSleepAction", "TriggerWaitForSound", "TriggerSyncReady", "TriggerSyncStart", "SyncSelections");
 
     private ImProg prog;
     private ImTranslator tr;
     private ImFuncGraph graph;
+    private final boolean useIndirection;
+    private final Map<ImFunction, ImFunction> indirectCallFuncs = Maps.newLinkedHashMap();
+    private int components = 0;
+    private int cyclicFunctions = 0;
+    private int mergedCalls = 0;
+    private int indirectCalls = 0;
+    private int codeSizeBefore = 0;
+    private int codeSizeAfter = 0;
 
     public CyclicFunctionRemover(ImTranslator tr, ImProg prog) {
+        this(tr, prog, false);
+    }
+
+    public CyclicFunctionRemover(ImTranslator tr, ImProg prog, boolean useIndirection) {
         this.tr = tr;
         this.prog = prog;
         this.graph = new ImFuncGraph();
+        this.useIndirection = useIndirection;
     }
 
     public void work() {
         tr.calculateCallRelationsAndUsedVariables();
         Set<Set<ImFunction>> components = graph.findStronglyConnectedComponents(prog.getFunctions());
 
+        codeSizeBefore = codeSize();
         for (Set<ImFunction> component : components) {
             if (component.size() > 1) {
-                removeCycle(ImmutableList.copyOf(component));
+                this.components++;
+                cyclicFunctions += component.size();
+                if (useIndirection && canUseIndirection(component)) {
+                    replaceBackEdges(component);
+                } else {
+                    removeCycle(ImmutableList.copyOf(component));
+                }
             }
         }
+        codeSizeAfter = codeSize();
+    }
+
+    /**
+     * a summary of the removed cycles, used to compare the strategies
+     */
+    public String report() {
+        return cyclicFunctions + " functions in " + components + " cycles, "
+                + mergedCalls + " calls via merged functions, "
+                + indirectCalls + " calls via TriggerEvaluate, "
+                + "code size " + codeSizeBefore + " -> " + codeSizeAfter + " im elements";
+    }
+
+    private int codeSize() {
+        int size = 0;
+        for (ImFunction f : prog.getFunctions()) {
+            size += countElements(f.getBody());
+        }
+        return size;
+    }
+
+    private static int countElements(Element e) {
+        int count = 1;
+        for (int i = 0; i < e.size(); i++) {
+            count += countElements(e.get(i));
+        }
+        return count;
+    }
+
+    private boolean hasTriggerNatives() {
+        return tr.getNativeFunc("CreateTrigger") != null
+                && tr.getNativeFunc("TriggerAddCondition") != null
+                && tr.getNativeFunc("Condition") != null
+                && tr.getNativeFunc("TriggerEvaluate") != null;
+    }
+
+    private boolean canUseIndirection(Set<ImFunction> component) {
+        if (!hasTriggerNatives()) {
+            return false;
+        }
+        if (tr.getConfFunc() != null
+                && !Collections.disjoint(reachableFunctions(Collections.singleton(tr.getConfFunc())), component)) {
+            // the triggers do not exist yet, when config runs
+            return false;
+        }
+        for (ImFunction f : reachableFunctions(component)) {
+            if (f.isNative() && (WAIT_NATIVES.contains(f.getName()) || isEventResponse(f))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * event responses like GetTriggerUnit or GetEnumUnit are natives without parameters starting with Get.
+     * This also includes some natives, which are no event responses (like GetLocalPlayer), but then the cycle is
+     * just merged.
+     */
+    private static boolean isEventResponse(ImFunction f) {
+        return f.getName().startsWith("Get") && f.getParameters().isEmpty();
+    }
+
+    /**
+     * @return the given functions and all functions directly or indirectly called by them
+     */
+    private Set<ImFunction> reachableFunctions(Collection<ImFunction> start) {
+        Set<ImFunction> result = new HashSet<>();
+        Deque<ImFunction> todo = new ArrayDeque<>(start);
+        while (!todo.isEmpty()) {
+            ImFunction f = todo.pop();
+            if (result.add(f)) {
+                todo.addAll(tr.getCalledFunctions().get(f));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * replaces the calls on back-edges of a depth first search through the component by indirect calls,
+     * so that the remaining call graph is acyclic
+     */
+    private void replaceBackEdges(Set<ImFunction> component) {
+        List<ImFunction> funcs = Lists.newArrayList(component);
+        // sort by name to get deterministic results
+        funcs.sort(Comparator.comparing(ImFunction::getName));
+        Set<ImFunction> visited = new HashSet<>();
+        Set<ImFunction> onStack = new HashSet<>();
+        for (ImFunction f : funcs) {
+            findBackEdges(f, component, visited, onStack);
+        }
+    }
+
+    private void findBackEdges(ImFunction f, Set<ImFunction> component, Set<ImFunction> visited, Set<ImFunction> onStack) {
+        if (!visited.add(f)) {
+            return;
+        }
+        onStack.add(f);
+        List<ImFunction> called = Lists.newArrayList(tr.getCalledFunctions().get(f));
+        called.sort(Comparator.comparing(ImFunction::getName));
+        Set<ImFunction> backEdgeTargets = new HashSet<>();
+        for (ImFunction g : called) {
+            if (g == f || !component.contains(g)) {
+                // direct recursion is allowed in Jass
+                continue;
+            }
+            if (onStack.contains(g)) {
+                backEdgeTargets.add(g);
+            } else {
+                findBackEdges(g, component, visited, onStack);
+            }
+        }
+        onStack.remove(f);
+        if (!backEdgeTargets.isEmpty()) {
+            replaceCallsWithIndirectCalls(f, backEdgeTargets);
+        }
+    }
+
+    private void replaceCallsWithIndirectCalls(ImFunction f, Set<ImFunction> targets) {
+        f.getBody().accept(new ImStmts.DefaultVisitor() {
+            @Override
+            public void visit(ImFunctionCall fc) {
+                super.visit(fc);
+                if (targets.contains(fc.getFunc())) {
+                    fc.setFunc(getIndirectCallFunc(fc.getFunc()));
+                    indirectCalls++;
+                }
+            }
+
+            @Override
+            public void visit(ImFuncRef fr) {
+                super.visit(fr);
+                if (targets.contains(fr.getFunc())) {
+                    fr.setFunc(getIndirectCallFunc(fr.getFunc()));
+                }
+            }
+        });
+        Collection<ImFunction> called = tr.getCalledFunctions().get(f);
+        for (ImFunction target : targets) {
+            called.remove(target);
+            called.add(getIndirectCallFunc(target));
+        }
+    }
+
+    /**
+     * creates the function cycCall_f, which calls f indirectly, and the corresponding bridge function
+     */
+    private ImFunction getIndirectCallFunc(ImFunction f) {
+        ImFunction existing = indirectCallFuncs.get(f);
+        if (existing != null) {
+            return existing;
+        }
+        de.peeeq.wurstscript.ast.Element trace = f.getTrace();
+
+        ImVar trigger = JassIm.ImVar(trace, JassIm.ImSimpleType("trigger"), "cycTrig_" + f.getName(), false);
+        prog.getGlobals().add(trigger);
+        List<ImVar> argVars = Lists.newArrayList();
+        for (ImVar p : f.getParameters()) {
+            ImVar v = JassIm.ImVar(p.getTrace(), (ImType) p.getType().copy(), f.getName() + "_" + p.getName(), false);
+            prog.getGlobals().add(v);
+            argVars.add(v);
+        }
+        ImVar resultVar = null;
+        if (!(f.getReturnType() instanceof ImVoid)) {
+            resultVar = JassIm.ImVar(trace, (ImType) f.getReturnType().copy(), f.getName() + "_result", false);
+            prog.getGlobals().add(resultVar);
+        }
+
+        // bridge function, which is used as trigger condition
+        ImFunction bridge = JassIm.ImFunction(trace, "cycBridge_" + f.getName(), JassIm.ImTypeVars(), JassIm.ImVars(),
+                WurstTypeBool.instance().imTranslateType(tr), JassIm.ImVars(), JassIm.ImStmts(), Collections.<FunctionFlag>emptyList());
+        prog.getFunctions().add(bridge);
+        ImExprs bridgeArgs = JassIm.ImExprs();
+        for (ImVar v : argVars) {
+            bridgeArgs.add(JassIm.ImVarAccess(v));
+        }
+        ImFunctionCall call = JassIm.ImFunctionCall(trace, f, JassIm.ImTypeArguments(), bridgeArgs, true, CallType.NORMAL);
+        if (resultVar == null) {
+            bridge.getBody().add(call);
+        } else {
+            bridge.getBody().add(JassIm.ImSet(trace, JassIm.ImVarAccess(resultVar), call));
+        }
+        bridge.getBody().add(JassIm.ImReturn(trace, JassIm.ImBoolVal(true)));
+
+        // function replacing the direct calls
+        ImFunction indirectCall = JassIm.ImFunction(trace, "cycCall_" + f.getName(), JassIm.ImTypeVars(), f.getParameters().copy(),
+                (ImType) f.getReturnType().copy(), JassIm.ImVars(), JassIm.ImStmts(), Collections.<FunctionFlag>emptyList());
+        prog.getFunctions().add(indirectCall);
+        for (int i = 0; i < argVars.size(); i++) {
+            indirectCall.getBody().add(JassIm.ImSet(trace, JassIm.ImVarAccess(argVars.get(i)),
+                    JassIm.ImVarAccess(indirectCall.getParameters().get(i))));
+        }
+        ImFunction triggerEvaluate = tr.getNativeFunc("TriggerEvaluate");
+        indirectCall.getBody().add(JassIm.ImFunctionCall(trace, triggerEvaluate, JassIm.ImTypeArguments(),
+                JassIm.ImExprs(JassIm.ImVarAccess(trigger)), true, CallType.NORMAL));
+        if (resultVar != null) {
+            indirectCall.getBody().add(JassIm.ImReturn(trace, JassIm.ImVarAccess(resultVar)));
+        }
+
+        // at the start of main:
+        // cycTrig_f = CreateTrigger()
+        // TriggerAddCondition(cycTrig_f, Condition(function cycBridge_f))
+        ImStmts mainBody = tr.getMainFunc().getBody();
+        mainBody.add(0, JassIm.ImSet(trace, JassIm.ImVarAccess(trigger),
+                JassIm.ImFunctionCall(trace, tr.getNativeFunc("CreateTrigger"), JassIm.ImTypeArguments(), JassIm.ImExprs(), true, CallType.NORMAL)));
+        mainBody.add(1, JassIm.ImFunctionCall(trace, tr.getNativeFunc("TriggerAddCondition"), JassIm.ImTypeArguments(), JassIm.ImExprs(
+                JassIm.ImVarAccess(trigger),
+                JassIm.ImFunctionCall(trace, tr.getNativeFunc("Condition"), JassIm.ImTypeArguments(), JassIm.ImExprs(
+                        JassIm.ImFuncRef(trace, bridge)), true, CallType.NORMAL)
+        ), true, CallType.NORMAL));
+
+        tr.getCalledFunctions().put(bridge, f);
+        tr.getCalledFunctions().put(indirectCall, triggerEvaluate);
+        tr.getCalledFunctions().put(tr.getMainFunc(), bridge);
+        indirectCallFuncs.put(f, indirectCall);
+        return indirectCall;
     }
 
     private void removeCycle(List<ImFunction> funcs) {
@@ -169,6 +429,7 @@ public class CyclicFunctionRemover {
 
 
                 ImFunctionCall newCall = JassIm.ImFunctionCall(fc.getTrace(), newFunc, JassIm.ImTypeArguments(), arguments, true, CallType.NORMAL);
+                mergedCalls++;
 
                 Element ret;
                 if (oldFunc.getReturnType() instanceof ImVoid) {
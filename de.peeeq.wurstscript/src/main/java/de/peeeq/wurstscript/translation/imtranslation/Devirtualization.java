@@ -0,0 +1,320 @@
+package de.peeeq.wurstscript.translation.imtranslation;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import de.peeeq.wurstscript.WurstOperator;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.utils.Pair;
+
+import java.util.*;
+
+/**
+ * Class hierarchy analysis for method calls.
+ * <p>
+ * An object can only have the type of a class, which is instantiated in a function reachable from
+ * the main or config function.
+ * So for each method call only the implementations of the instantiated subclasses of the receiver type
+ * have to be considered:
+ * <ul>
+ * <li>If there is only one implementation, the method call is replaced by a direct call.</li>
+ * <li>If there are two implementations, the method call is replaced by an inline type check.</li>
+ * <li>Otherwise the dispatch function is called, which also only distinguishes the instantiated classes.</li>
+ * </ul>
+ * With checked dispatch, method calls are not rewritten, so that calls on null or destroyed objects
+ * are still reported by the dispatch function.
+ * <p>
+ * This must run before the classes are eliminated.
+ */
+public class Devirtualization {
+
+    private final ImTranslator translator;
+    private final ImProg prog;
+    private final boolean checkedDispatch;
+    private final Set<ImClass> instantiatedClasses = new HashSet<>();
+    private int methodCalls = 0;
+    private int monomorphicCalls = 0;
+    private int bimorphicCalls = 0;
+    private int directCalls = 0;
+    private int typeCheckCalls = 0;
+
+    public Devirtualization(ImTranslator translator, ImProg prog, boolean checkedDispatch) {
+        this.translator = translator;
+        this.prog = prog;
+        this.checkedDispatch = checkedDispatch;
+    }
+
+    public void devirtualize() {
+        calculateInstantiatedClasses();
+
+        List<ImMethodCall> calls = Lists.newArrayList();
+        prog.accept(new ImProg.DefaultVisitor() {
+            @Override
+            public void visit(ImMethodCall e) {
+                super.visit(e);
+                calls.add(e);
+            }
+        });
+
+        // inner calls come first, so the receiver and arguments of a call are already rewritten when it is replaced
+        for (ImMethodCall mc : calls) {
+            devirtualizeCall(mc);
+        }
+    }
+
+    /**
+     * collects the classes allocated in reachable functions,
+     * where all implementations of a called method are considered to be reachable
+     */
+    private void calculateInstantiatedClasses() {
+        Set<ImFunction> reachable = new HashSet<>();
+        Set<ImMethod> calledMethods = new HashSet<>();
+        Deque<ImFunction> todo = new ArrayDeque<>();
+        todo.add(translator.getMainFunc());
+        todo.add(translator.getConfFunc());
+        while (!todo.isEmpty()) {
+            ImFunction f = todo.poll();
+            if (!reachable.add(f)) {
+                continue;
+            }
+            f.accept(new ImFunction.DefaultVisitor() {
+                @Override
+                public void visit(ImFunctionCall e) {
+                    super.visit(e);
+                    todo.add(e.getFunc());
+                }
+
+                @Override
+                public void visit(ImFuncRef e) {
+                    super.visit(e);
+                    todo.add(e.getFunc());
+                }
+
+                @Override
+                public void visit(ImMethodCall e) {
+                    super.visit(e);
+                    addCalledMethod(e.getMethod());
+                }
+
+                private void addCalledMethod(ImMethod m) {
+                    if (calledMethods.add(m)) {
+                        if (!m.getIsAbstract()) {
+                            todo.add(m.getImplementation());
+                        }
+                        for (ImMethod sm : m.getSubMethods()) {
+                            addCalledMethod(sm);
+                        }
+                    }
+                }
+
+                @Override
+                public void visit(ImAlloc e) {
+                    super.visit(e);
+                    instantiatedClasses.add(e.getClazz().getClassDef());
+                }
+            });
+        }
+    }
+
+    private void devirtualizeCall(ImMethodCall mc) {
+        methodCalls++;
+        ImMethod m = mc.getMethod();
+        List<Pair<IntRange, ImMethod>> ranges = calculateTypeIdRanges(receiverClass(mc), m);
+        Set<ImMethod> implementations = new HashSet<>();
+        for (Pair<IntRange, ImMethod> range : ranges) {
+            implementations.add(range.getB());
+        }
+        if (implementations.size() == 1) {
+            monomorphicCalls++;
+            if (!checkedDispatch) {
+                replaceByDirectCall(mc, ranges.get(0).getB());
+                directCalls++;
+            }
+        } else if (implementations.size() == 2) {
+            bimorphicCalls++;
+            if (!checkedDispatch && ranges.size() == 2 && canUseTypeCheck(mc, ranges)) {
+                replaceByTypeCheck(mc, ranges);
+                typeCheckCalls++;
+            }
+        }
+    }
+
+    /**
+     * the static type of the receiver, if it is more precise than the class of the method
+     */
+    private ImClass receiverClass(ImMethodCall mc) {
+        ImClass methodClass = mc.getMethod().getMethodClass().getClassDef();
+        ImType receiverType = mc.getReceiver().attrTyp();
+        if (receiverType instanceof ImClassType) {
+            ImClass c = ((ImClassType) receiverType).getClassDef();
+            if (c.isSubclassOf(methodClass)) {
+                return c;
+            }
+        }
+        return methodClass;
+    }
+
+    private void replaceByDirectCall(ImMethodCall mc, ImMethod m) {
+        ImExpr receiver = mc.getReceiver();
+        receiver.setParent(null);
+        ImExprs arguments = JassIm.ImExprs(receiver);
+        arguments.addAll(mc.getArguments().removeAll());
+        mc.replaceBy(JassIm.ImFunctionCall(mc.getTrace(), m.getImplementation(), JassIm.ImTypeArguments(), arguments, false, CallType.NORMAL));
+    }
+
+    private boolean canUseTypeCheck(ImMethodCall mc, List<Pair<IntRange, ImMethod>> ranges) {
+        List<ImFunction> functions = Lists.newArrayList(mc.getMethod().getImplementation());
+        for (Pair<IntRange, ImMethod> range : ranges) {
+            functions.add(range.getB().getImplementation());
+        }
+        for (ImFunction impl : functions) {
+            if (impl.hasFlag(FunctionFlagEnum.IS_VARARG)
+                    || impl.getParameters().size() != mc.getArguments().size() + 1) {
+                return false;
+            }
+        }
+        return mc.getNearestFunc() != null;
+    }
+
+    /**
+     * replaces the call by
+     * <pre>
+     * temp_this = receiver
+     * temp_arg_i = arg_i
+     * if typeId(temp_this) <= end of first range
+     *     impl1(temp_this, temp_arg_i...)
+     * else
+     *     impl2(temp_this, temp_arg_i...)
+     * </pre>
+     */
+    private void replaceByTypeCheck(ImMethodCall mc, List<Pair<IntRange, ImMethod>> ranges) {
+        ImFunction f = mc.getNearestFunc();
+        Element trace = mc.getTrace();
+        ImMethod m = mc.getMethod();
+        ImVars params = m.getImplementation().getParameters();
+
+        List<ImExpr> args = Lists.newArrayList();
+        ImExpr receiver = mc.getReceiver();
+        receiver.setParent(null);
+        args.add(receiver);
+        args.addAll(mc.getArguments().removeAll());
+
+        ImStmts stmts = JassIm.ImStmts();
+        List<ImVar> tempVars = Lists.newArrayList();
+        for (int i = 0; i < args.size(); i++) {
+            ImVar v = JassIm.ImVar(trace, params.get(i).getType(), m.getName() + "_" + params.get(i).getName(), false);
+            f.getLocals().add(v);
+            tempVars.add(v);
+            stmts.add(JassIm.ImSet(trace, JassIm.ImVarAccess(v), args.get(i)));
+        }
+
+        ImType returnType = m.getImplementation().getReturnType();
+        ImVar resultVar = null;
+        if (!(returnType instanceof ImVoid)) {
+            resultVar = JassIm.ImVar(trace, returnType, m.getName() + "_result", false);
+            f.getLocals().add(resultVar);
+        }
+
+        ImExpr typeId = JassIm.ImTypeIdOfObj(JassIm.ImVarAccess(tempVars.get(0)), m.getMethodClass());
+        ImExpr condition = JassIm.ImOperatorCall(WurstOperator.LESS_EQ,
+                JassIm.ImExprs(typeId, JassIm.ImIntVal(ranges.get(0).getA().end)));
+        stmts.add(JassIm.ImIf(trace, condition,
+                JassIm.ImStmts(callStmt(trace, ranges.get(0).getB(), tempVars, resultVar)),
+                JassIm.ImStmts(callStmt(trace, ranges.get(1).getB(), tempVars, resultVar))));
+
+        if (resultVar == null) {
+            mc.replaceBy(ImHelper.statementExprVoid(stmts));
+        } else {
+            mc.replaceBy(JassIm.ImStatementExpr(stmts, JassIm.ImVarAccess(resultVar)));
+        }
+    }
+
+    private ImStmt callStmt(Element trace, ImMethod m, List<ImVar> tempVars, ImVar resultVar) {
+        ImExprs arguments = JassIm.ImExprs();
+        for (ImVar v : tempVars) {
+            arguments.add(JassIm.ImVarAccess(v));
+        }
+        ImFunctionCall call = JassIm.ImFunctionCall(trace, m.getImplementation(), JassIm.ImTypeArguments(), arguments, false, CallType.NORMAL);
+        if (resultVar == null) {
+            return call;
+        }
+        return JassIm.ImSet(trace, JassIm.ImVarAccess(resultVar), call);
+    }
+
+    /**
+     * Calculates which implementation of method m is called for each instantiated subclass of the given class.
+     * <p>
+     * The result is sorted by the intrange and the intervals are disjunct.
+     * Adjacent intervals with the same implementation are merged, even if there are
+     * type ids of classes, which are not instantiated, in between.
+     */
+    public List<Pair<IntRange, ImMethod>> calculateTypeIdRanges(ImClass receiverClass, ImMethod m) {
+        List<ImMethod> methods = Lists.newArrayList();
+        addSubMethods(m, methods);
+        Map<ImClass, ImMethod> classToMethod = Maps.newLinkedHashMap();
+        calculateClassToMethod(m.getMethodClass().getClassDef(), methods, null, classToMethod);
+
+        TreeMap<Integer, ImMethod> typeIdToMethod = new TreeMap<>();
+        classToMethod.forEach((c, f) -> {
+            if (instantiatedClasses.contains(c) && c.isSubclassOf(receiverClass)) {
+                typeIdToMethod.put(c.attrTypeId(), f);
+            }
+        });
+
+        List<Pair<IntRange, ImMethod>> result = Lists.newArrayList();
+        ImMethod current = null;
+        int start = 0;
+        int end = 0;
+        for (Map.Entry<Integer, ImMethod> e : typeIdToMethod.entrySet()) {
+            if (e.getValue() != current) {
+                if (current != null) {
+                    result.add(Pair.create(new IntRange(start, end), current));
+                }
+                current = e.getValue();
+                start = e.getKey();
+            }
+            end = e.getKey();
+        }
+        if (current != null) {
+            result.add(Pair.create(new IntRange(start, end), current));
+        }
+        return result;
+    }
+
+    private void addSubMethods(ImMethod m, List<ImMethod> methods) {
+        if (!m.getIsAbstract()) {
+            methods.add(m);
+        }
+        for (ImMethod mm : m.getSubMethods()) {
+            addSubMethods(mm, methods);
+        }
+    }
+
+    private void calculateClassToMethod(ImClass c, List<ImMethod> methods, ImMethod current,
+                                        Map<ImClass, ImMethod> classToMethod) {
+        for (ImMethod m : methods) {
+            if (m.attrClass() == c) {
+                current = m;
+                break;
+            }
+        }
+        if (current != null) {
+            classToMethod.put(c, current);
+        }
+        // process subclasses:
+        for (ImClass sc : c.attrSubclasses()) {
+            calculateClassToMethod(sc, methods, current, classToMethod);
+        }
+    }
+
+    /**
+     * a summary of the devirtualized method calls
+     */
+    public String report() {
+        int devirtualized = directCalls + typeCheckCalls;
+        String rate = methodCalls == 0 ? "0" : String.valueOf(100 * devirtualized / methodCalls);
+        return devirtualized + " of " + methodCalls + " method calls (" + rate + "%), "
+                + directCalls + " direct calls, " + typeCheckCalls + " inline type checks, "
+                + monomorphicCalls + " monomorphic, " + bimorphicCalls + " bimorphic";
+    }
+}
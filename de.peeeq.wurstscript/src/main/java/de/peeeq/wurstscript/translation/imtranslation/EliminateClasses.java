@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import de.peeeq.wurstscript.WurstOperator;
 import de.peeeq.wurstscript.ast.AstElementWithNameId;
+import de.peeeq.wurstscript.ast.ClassDef;
 import de.peeeq.wurstscript.ast.Element;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.jassIm.*;
@@ -11,6 +12,7 @@ import de.peeeq.wurstscript.translation.imtojass.TypeRewriteMatcher;
 import de.peeeq.wurstscript.translation.imtojass.TypeRewriter;
 import de.peeeq.wurstscript.types.TypesHelper;
 import de.peeeq.wurstscript.utils.Pair;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,22 +28,50 @@ public class EliminateClasses {
 
     private final ImTranslator translator;
     private final ImProg prog;
-    private final Map<ImVar, ImVar> fieldToArray = Maps.newLinkedHashMap();
     private final Map<ImMethod, ImFunction> dispatchFuncs = Maps.newLinkedHashMap();
-    private final RecycleCodeGenerator recycleCodeGen = new RecycleCodeGeneratorQueue();
+    private final Map<ClassManagementVars, RecycleCodeGenerator> recycleCodeGens = Maps.newHashMap();
+    private final String recyclingStrategy;
+    private final String fieldLayoutStrategy;
+    private @Nullable ClassFieldLayout fieldLayout;
+    private final boolean debug;
+    private final Devirtualization devirtualization;
     private boolean checkedDispatch;
 
     public EliminateClasses(ImTranslator tr, ImProg prog, boolean checkedDispatch) {
+        this(tr, prog, checkedDispatch, RecycleCodeGenerator.DEFAULT_STRATEGY, ClassFieldLayout.DEFAULT_STRATEGY, true);
+    }
+
+    /**
+     * @param recyclingStrategy   the strategy for classes without @recycling annotation, see {@link RecycleCodeGenerator#STRATEGIES}
+     * @param fieldLayoutStrategy the strategy used to store the fields of classes, see {@link ClassFieldLayout#STRATEGIES}
+     * @param debug               whether debug checks should be generated in the alloc and dealloc functions
+     */
+    public EliminateClasses(ImTranslator tr, ImProg prog, boolean checkedDispatch, String recyclingStrategy, String fieldLayoutStrategy, boolean debug) {
         translator = tr;
         this.prog = prog;
         this.checkedDispatch = checkedDispatch;
+        this.recyclingStrategy = recyclingStrategy;
+        this.fieldLayoutStrategy = fieldLayoutStrategy;
+        this.debug = debug;
+        this.devirtualization = new Devirtualization(tr, prog, checkedDispatch);
     }
 
     public void eliminateClasses() {
         moveFunctionsOutOfClasses();
 
+        devirtualization.devirtualize();
+
+        ClassFieldLayout layout = ClassFieldLayout.forStrategy(fieldLayoutStrategy, translator, prog);
+        if (layout == null) {
+            throw new RuntimeException("Unknown field layout: " + fieldLayoutStrategy);
+        }
+        fieldLayout = layout;
+        // the fields of all classes are created first, so that dealloc functions can free the fields of the whole hierarchy
         for (ImClass c : prog.getClasses()) {
-            eliminateClass(c);
+            layout.createFields(c);
+        }
+        for (ImClass c : prog.getClasses()) {
+            eliminateClass(c, layout);
         }
 
         // for each method, create a dispatch function
@@ -51,7 +81,7 @@ public class EliminateClasses {
         }
 
         for (ImFunction f : prog.getFunctions()) {
-            eliminateClassRelatedExprs(f);
+            eliminateClassRelatedExprs(f, layout);
         }
 
         prog.getClasses().clear();
@@ -60,6 +90,17 @@ public class EliminateClasses {
         eliminateClassTypes();
     }
 
+    public Devirtualization getDevirtualization() {
+        return devirtualization;
+    }
+
+    /**
+     * @return the layout used for the fields of classes, only available after {@link #eliminateClasses()}
+     */
+    public @Nullable ClassFieldLayout getFieldLayout() {
+        return fieldLayout;
+    }
+
     private void eliminateClassTypes() {
         TypeRewriter.rewriteTypes(prog, this::eliminateClassTypes);
     }
@@ -84,32 +125,54 @@ public class EliminateClasses {
     }
 
 
-    private void eliminateClass(ImClass c) {
-        // for each field, create a global array variable
-        for (ImVar f : c.getFields()) {
-            ImType type = ImHelper.toArray(f.getType());
-            ImVar v = JassIm
-                    .ImVar(f.getTrace(), type, f.getName(), false);
-            prog.getGlobals().add(v);
-            fieldToArray.put(f, v);
-        }
+    private void eliminateClass(ImClass c, ClassFieldLayout layout) {
         // for each method, create a dispatch function
         for (ImMethod m : c.getMethods()) {
             createDispatchFunc(c, m);
         }
 
         // create management functions
+        RecycleCodeGenerator recycleCodeGen = getRecycleCodeGenerator(c);
         recycleCodeGen.createAllocFunc(translator, prog, c);
         recycleCodeGen.createDeallocFunc(translator, prog, c);
+        layout.freeFields(c, translator.deallocFunc.getFor(c));
     }
 
+    /**
+     * Classes in the same hierarchy share their free list, so they must use the same recycling strategy.
+     * A @recycling annotation on one of the classes overrides the global strategy for the whole hierarchy.
+     */
+    private RecycleCodeGenerator getRecycleCodeGenerator(ImClass c) {
+        ClassManagementVars mVars = translator.getClassManagementVarsFor(c);
+        return recycleCodeGens.computeIfAbsent(mVars, v -> {
+            String strategy = recyclingStrategy;
+            ImClass annotatedClass = null;
+            for (ImClass other : prog.getClasses()) {
+                if (translator.getClassManagementVarsFor(other) != v || !(other.getTrace() instanceof ClassDef)) {
+                    continue;
+                }
+                String s = RecycleCodeGenerator.annotatedStrategy((ClassDef) other.getTrace());
+                if (s == null) {
+                    continue;
+                }
+                if (annotatedClass != null && !s.equals(strategy)) {
+                    throw new CompileError(other.getTrace().attrSource(), "Class " + other.getName() + " uses recycling strategy " + s
+                            + ", but " + annotatedClass.getName() + " from the same type hierarchy uses " + strategy + ".");
+                }
+                strategy = s;
+                annotatedClass = other;
+            }
+            RecycleCodeGenerator gen = RecycleCodeGenerator.forStrategy(strategy, debug);
+            if (gen == null) {
+                throw new CompileError(c.getTrace().attrSource(), "Unknown recycling strategy: " + strategy);
+            }
+            return gen;
+        });
+    }
 
-    public void createDispatchFunc(ImClass c, ImMethod m) {
-        List<ImMethod> methods = Lists.newArrayList();
-        addSubMethods(m, methods);
 
-        List<Pair<IntRange, ImMethod>> ranges = calculateTypeIdRanges(c,
-                methods);
+    public void createDispatchFunc(ImClass c, ImMethod m) {
+        List<Pair<IntRange, ImMethod>> ranges = devirtualization.calculateTypeIdRanges(c, m);
 
 
         List<FunctionFlag> flags = new ArrayList<>();
@@ -232,70 +295,7 @@ public class EliminateClasses {
         }
     }
 
-    private void addSubMethods(ImMethod m, List<ImMethod> methods) {
-        if (!m.getIsAbstract()) {
-            methods.add(m);
-        }
-        for (ImMethod mm : m.getSubMethods()) {
-            addSubMethods(mm, methods);
-        }
-    }
-
-    /**
-     * returns a mapping from classdefs to functions into a mapping from typeid
-     * ranges to functions
-     * <p>
-     * the resulting list is sorted by the intrange and the intervals are
-     * disjunct
-     */
-    private List<Pair<IntRange, ImMethod>> calculateTypeIdRanges(ImClass c,
-                                                                 List<ImMethod> methods) {
-        Map<Integer, ImMethod> typeIdToMethod = Maps.newLinkedHashMap();
-        calculateTypeIdToMethodHelper(c, methods, null, typeIdToMethod);
-
-        int min = Integer.MAX_VALUE;
-        int max = 0;
-        for (int i : typeIdToMethod.keySet()) {
-            min = Math.min(min, i);
-            max = Math.max(max, i);
-        }
-
-        List<Pair<IntRange, ImMethod>> result = Lists.newArrayList();
-
-        for (int i = min; i <= max; i++) {
-            ImMethod f = typeIdToMethod.get(i);
-            if (f == null) {
-                continue;
-            }
-            int j = i;
-            while (typeIdToMethod.get(j) == f) {
-                j++;
-            }
-            result.add(Pair.create(new IntRange(i, j - 1), f));
-            i = j - 1;
-        }
-        return result;
-    }
-
-    private void calculateTypeIdToMethodHelper(ImClass c,
-                                               List<ImMethod> methods, ImMethod current,
-                                               Map<Integer, ImMethod> typeIdToMethod) {
-        for (ImMethod m : methods) {
-            if (m.attrClass() == c) {
-                current = m;
-                break;
-            }
-        }
-        if (current != null) {
-            typeIdToMethod.put(c.attrTypeId(), current);
-        }
-        // process subclasses:
-        for (ImClass sc : c.attrSubclasses()) {
-            calculateTypeIdToMethodHelper(sc, methods, current, typeIdToMethod);
-        }
-    }
-
-    private void eliminateClassRelatedExprs(ImFunction f) {
+    private void eliminateClassRelatedExprs(ImFunction f, ClassFieldLayout layout) {
         final List<ImMemberAccess> mas = Lists.newArrayList();
         final List<ImMethodCall> mcs = Lists.newArrayList();
         final List<ImAlloc> allocs = Lists.newArrayList();
@@ -347,7 +347,7 @@ public class EliminateClasses {
             }
         });
         for (ImMemberAccess ma : mas) {
-            replaceMemberAccess(ma);
+            layout.replaceMemberAccess(ma);
         }
         for (ImMethodCall mc : mcs) {
             replaceMethodCall(mc);
@@ -472,18 +472,4 @@ public class EliminateClasses {
 
     }
 
-    private void replaceMemberAccess(ImMemberAccess ma) {
-        ImExpr receiver = ma.getReceiver();
-        receiver.setParent(null);
-
-        ImVar fieldArray = fieldToArray.get(ma.getVar());
-        if (fieldArray == null) {
-            throw new CompileError(ma, "Could not find field array for " + ma);
-        }
-        ImExprs indexes = JassIm.ImExprs(receiver);
-        indexes.addAll(ma.getIndexes().removeAll());
-        ma.replaceBy(JassIm.ImVarArrayAccess(ma.attrTrace(), fieldArray, indexes));
-
-    }
-
 }
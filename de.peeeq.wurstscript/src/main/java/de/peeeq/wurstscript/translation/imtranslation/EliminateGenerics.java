@@ -1,5 +1,6 @@
 package de.peeeq.wurstscript.translation.imtranslation;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
@@ -48,6 +49,24 @@ public class EliminateGenerics {
 
     }
 
+    /**
+     * the specialized copies of each generic function
+     */
+    public Multimap<ImFunction, ImFunction> getSpecializedFunctions() {
+        Multimap<ImFunction, ImFunction> result = ArrayListMultimap.create();
+        specializedFunctions.cellSet().forEach(cell -> result.put(cell.getRowKey(), cell.getValue()));
+        return result;
+    }
+
+    /**
+     * the specialized copies of each generic class
+     */
+    public Multimap<ImClass, ImClass> getSpecializedClasses() {
+        Multimap<ImClass, ImClass> result = ArrayListMultimap.create();
+        specializedClasses.cellSet().forEach(cell -> result.put(cell.getRowKey(), cell.getValue()));
+        return result;
+    }
+
     private void onSpecializeClass(ImClass orig, BiConsumer<GenericTypes, ImClass> action) {
         onSpecializedClassTriggers.put(orig, action);
         specializedClasses.row(orig).forEach(action);
@@ -473,14 +473,57 @@ public class Flatten {
         throw new RuntimeException("Eliminate method calls before calling flatten.");
     }
 
+    // class related expressions are only flattened when the classes are kept (Lua backend)
+
+    public static Result flatten(ImMethodCall e, ImTranslator t, ImFunction f) {
+        List<ImExpr> exprs = new ArrayList<>();
+        exprs.add(e.getReceiver());
+        exprs.addAll(e.getArguments());
+        MultiResult r = flattenExprs(t, f, exprs);
+        ImExprs args = ImExprs();
+        args.addAll(r.exprs.subList(1, r.exprs.size()));
+        return new Result(r.stmts, ImMethodCall(e.getTrace(), e.getMethod(), ImTypeArguments(), r.expr(0), args, e.getTuplesEliminated()));
+    }
+
     public static Result flatten(ImMemberAccess e,
                                  ImTranslator translator, ImFunction f) {
-        throw new RuntimeException("Eliminate method calls before calling flatten.");
+        return flattenL(e, translator, f);
     }
 
     public static ResultL flattenL(ImMemberAccess e,
                                    ImTranslator translator, ImFunction f) {
-        throw new RuntimeException("Eliminate method calls before calling flatten.");
+        List<ImExpr> exprs = new ArrayList<>();
+        exprs.add(e.getReceiver());
+        exprs.addAll(e.getIndexes());
+        MultiResult r = flattenExprs(translator, f, exprs);
+        ImExprs indexes = ImExprs();
+        indexes.addAll(r.exprs.subList(1, r.exprs.size()));
+        return new ResultL(r.stmts, ImMemberAccess(e.getTrace(), r.expr(0), ImTypeArguments(), e.getVar(), indexes));
+    }
+
+    public static Result flatten(ImAlloc e, ImTranslator translator, ImFunction f) {
+        e.setParent(null);
+        return new Result(e);
+    }
+
+    public static Result flatten(ImDealloc e, ImTranslator translator, ImFunction f) {
+        Result obj = e.getObj().flatten(translator, f);
+        return new Result(obj.stmts, ImDealloc(e.getTrace(), e.getClazz(), obj.expr));
+    }
+
+    public static Result flatten(ImInstanceof e, ImTranslator translator, ImFunction f) {
+        Result obj = e.getObj().flatten(translator, f);
+        return new Result(obj.stmts, ImInstanceof(obj.expr, e.getClazz()));
+    }
+
+    public static Result flatten(ImTypeIdOfObj e, ImTranslator translator, ImFunction f) {
+        Result obj = e.getObj().flatten(translator, f);
+        return new Result(obj.stmts, ImTypeIdOfObj(obj.expr, e.getClazz()));
+    }
+
+    public static Result flatten(ImTypeIdOfClass e, ImTranslator translator, ImFunction f) {
+        e.setParent(null);
+        return new Result(e);
     }
 
 
@@ -5,6 +5,7 @@ import com.google.common.collect.*;
 import com.google.common.collect.ImmutableList.Builder;
 import de.peeeq.datastructures.Partitions;
 import de.peeeq.datastructures.TransitiveClosure;
+import de.peeeq.wurstio.PackageCosts;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.WurstOperator;
 import de.peeeq.wurstscript.ast.*;
@@ -100,6 +101,8 @@ public class ImTranslator {
     de.peeeq.wurstscript.ast.Element lasttranslatedThing;
     private boolean debug = false;
 
+    private @Nullable PackageCosts packageCosts = null;
+
     public ImTranslator(WurstModel wurstProg, boolean isUnitTestMode) {
         this.wurstProg = wurstProg;
         this.lasttranslatedThing = wurstProg;
@@ -108,6 +111,13 @@ public class ImTranslator {
     }
 
 
+    /**
+     * sets the costs to which the translation time of each compilation unit is added
+     */
+    public void setPackageCosts(@Nullable PackageCosts packageCosts) {
+        this.packageCosts = packageCosts;
+    }
+
     /**
      * translates a program
      */
@@ -121,7 +131,12 @@ public class ImTranslator {
             calculateCompiletimeOrder();
 
             for (CompilationUnit cu : wurstProg) {
+                long start = System.nanoTime();
                 translateCompilationUnit(cu);
+                PackageCosts costs = packageCosts;
+                if (costs != null) {
+                    costs.addTranslationTime(cu, System.nanoTime() - start);
+                }
             }
 
             if (mainFunc == null) {
@@ -358,7 +373,7 @@ public class ImTranslator {
     }
 
 
-    private ImFunction getNativeFunc(String funcName) {
+    @Nullable ImFunction getNativeFunc(String funcName) {
         ImmutableCollection<FuncLink> wurstFunc = wurstProg.lookupFuncs(funcName);
         if (wurstFunc.isEmpty()) {
             return null;
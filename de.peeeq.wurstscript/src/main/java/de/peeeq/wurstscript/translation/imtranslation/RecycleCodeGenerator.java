@@ -1,12 +1,57 @@
 package de.peeeq.wurstscript.translation.imtranslation;
 
+import com.google.common.collect.ImmutableList;
+import de.peeeq.wurstscript.ast.Annotation;
+import de.peeeq.wurstscript.ast.ClassDef;
 import de.peeeq.wurstscript.jassIm.ImClass;
 import de.peeeq.wurstscript.jassIm.ImProg;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.List;
 
 public interface RecycleCodeGenerator {
 
+    /**
+     * the names of the available strategies,
+     * which can be selected with the -recycling option or the @recycling("...") annotation on a class
+     */
+    List<String> STRATEGIES = ImmutableList.of("queue", "freelist", "checkedFreelist");
+
+    String DEFAULT_STRATEGY = "queue";
+
     void createAllocFunc(ImTranslator translator, ImProg prog, ImClass c);
 
     void createDeallocFunc(ImTranslator translator, ImProg prog, ImClass c);
 
+    /**
+     * @param debug whether debug checks should be generated (used by checkedFreelist)
+     * @return the code generator for the given strategy or null, if there is no strategy with the given name
+     */
+    static @Nullable RecycleCodeGenerator forStrategy(String name, boolean debug) {
+        switch (name) {
+            case "queue":
+                return new RecycleCodeGeneratorQueue();
+            case "freelist":
+                return new RecycleCodeGeneratorFreeList(false);
+            case "checkedFreelist":
+                return new RecycleCodeGeneratorFreeList(debug);
+        }
+        return null;
+    }
+
+    /**
+     * @return the strategy given in the @recycling annotation of the class or null, if the class has no such annotation
+     */
+    static @Nullable String annotatedStrategy(ClassDef c) {
+        if (!c.attrHasAnnotation("recycling")) {
+            return null;
+        }
+        Annotation annotation = c.attrGetAnnotation("recycling");
+        String msg = annotation.getAnnotationMessage();
+        if (msg == null || msg.length() < 2) {
+            return "";
+        }
+        return msg.substring(1, msg.length() - 1);
+    }
+
 }
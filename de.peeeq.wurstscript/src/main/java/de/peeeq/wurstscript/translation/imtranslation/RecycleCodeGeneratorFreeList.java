@@ -0,0 +1,106 @@
+package de.peeeq.wurstscript.translation.imtranslation;
+
+import de.peeeq.wurstscript.WurstOperator;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.utils.Constants;
+
+/**
+ * Manages free object ids in a linked list (LIFO), where the next pointers are stored in the nextFree array.
+ * The most recently freed object is reused first, which keeps the used part of the arrays small.
+ * <p>
+ * Compared to {@link RecycleCodeGeneratorQueue} no index arithmetic is needed to reuse an object:
+ * <ul>
+ * <li>alloc (reused object): 1 comparison, 1 array read, 1 array write</li>
+ * <li>alloc (new object): 2 comparisons, 1 addition, 1 array write</li>
+ * <li>dealloc: 2 array writes (plus 1 array read and 1 comparison with double free check)</li>
+ * </ul>
+ * The double free check is optional, because without it a double free corrupts the list of free objects.
+ */
+public class RecycleCodeGeneratorFreeList implements RecycleCodeGenerator {
+
+    private final boolean checkDoubleFree;
+
+    public RecycleCodeGeneratorFreeList(boolean checkDoubleFree) {
+        this.checkDoubleFree = checkDoubleFree;
+    }
+
+    @Override
+    public void createAllocFunc(ImTranslator translator, ImProg prog, ImClass c) {
+        ImFunction f = translator.allocFunc.getFor(c);
+        prog.getFunctions().add(f);
+        ImVars locals = f.getLocals();
+        ImStmts body = f.getBody();
+        Element tr = c.getTrace();
+
+        ImVar thisVar = JassIm.ImVar(tr, translator.selfType(c), "this", false);
+        locals.add(thisVar);
+
+        ClassManagementVars mVars = translator.getClassManagementVarsFor(c);
+
+        int maxSize = Constants.MAX_ARRAY_SIZE;
+        // this = firstFree
+        body.add(JassIm.ImSet(tr, JassIm.ImVarAccess(thisVar), JassIm.ImVarAccess(mVars.freeCount)));
+        // if this == 0 then
+        ImStmts thenBlock = JassIm.ImStmts();
+        ImStmts elseBlock = JassIm.ImStmts();
+        body.add(JassIm.ImIf(tr,
+                JassIm.ImOperatorCall(WurstOperator.EQ, JassIm.ImExprs(JassIm.ImVarAccess(thisVar), JassIm.ImIntVal(0))),
+                thenBlock, elseBlock));
+        ImStmts ifEnoughMemory = JassIm.ImStmts();
+        ImStmts ifNotEnoughMemory = JassIm.ImStmts();
+        //     if maxIndex < 8191
+        thenBlock.add(JassIm.ImIf(tr,
+                JassIm.ImOperatorCall(WurstOperator.LESS, JassIm.ImExprs(JassIm.ImVarAccess(mVars.maxIndex), JassIm.ImIntVal(maxSize))),
+                ifEnoughMemory, ifNotEnoughMemory));
+        //         maxIndex = maxIndex + 1
+        ifEnoughMemory.add(JassIm.ImSet(tr, JassIm.ImVarAccess(mVars.maxIndex), JassIm.ImOperatorCall(WurstOperator.PLUS, JassIm.ImExprs(JassIm.ImVarAccess(mVars.maxIndex), JassIm.ImIntVal(1)))));
+        //         this = maxIndex
+        ifEnoughMemory.add(JassIm.ImSet(tr, JassIm.ImVarAccess(thisVar), JassIm.ImVarAccess(mVars.maxIndex)));
+        //         typeId[this] = ...
+        ifEnoughMemory.add(JassIm.ImSet(tr, JassIm.ImVarArrayAccess(tr, mVars.typeId, JassIm.ImExprs((ImExpr) JassIm.ImVarAccess(thisVar))), JassIm.ImIntVal(c.attrTypeId())));
+        //     else:
+        //         error("out of memory")
+        ifNotEnoughMemory.add(translator.imError(c.getTrace(), JassIm.ImStringVal("Out of memory: Could not create " + c.getName() + ".")));
+        // else:
+        //     firstFree = nextFree[this]
+        elseBlock.add(JassIm.ImSet(tr, JassIm.ImVarAccess(mVars.freeCount), JassIm.ImVarArrayAccess(tr, mVars.free, JassIm.ImExprs((ImExpr) JassIm.ImVarAccess(thisVar)))));
+        //     typeId[this] = ...
+        elseBlock.add(JassIm.ImSet(tr, JassIm.ImVarArrayAccess(tr, mVars.typeId, JassIm.ImExprs((ImExpr) JassIm.ImVarAccess(thisVar))), JassIm.ImIntVal(c.attrTypeId())));
+        // endif
+
+        // return this
+        body.add(JassIm.ImReturn(tr, JassIm.ImVarAccess(thisVar)));
+    }
+
+    @Override
+    public void createDeallocFunc(ImTranslator translator, ImProg prog, ImClass c) {
+        Element tr = c.getTrace();
+        ImFunction f = translator.deallocFunc.getFor(c);
+        prog.getFunctions().add(f);
+        ImStmts body = f.getBody();
+        ImVar thisVar = f.getParameters().get(0);
+
+        ClassManagementVars mVars = translator.getClassManagementVarsFor(c);
+
+        ImStmts freeStmts = JassIm.ImStmts(
+                // nextFree[this] = firstFree
+                JassIm.ImSet(tr, JassIm.ImVarArrayAccess(tr, mVars.free, JassIm.ImExprs((ImExpr) JassIm.ImVarAccess(thisVar))), JassIm.ImVarAccess(mVars.freeCount)),
+                // firstFree = this
+                JassIm.ImSet(tr, JassIm.ImVarAccess(mVars.freeCount), JassIm.ImVarAccess(thisVar)),
+                // typeId[this] = 0
+                JassIm.ImSet(tr, JassIm.ImVarArrayAccess(tr, mVars.typeId, JassIm.ImExprs((ImExpr) JassIm.ImVarAccess(thisVar))), JassIm.ImIntVal(0))
+        );
+
+        if (checkDoubleFree) {
+            // if typeId[this] == 0 then error else free
+            body.add(JassIm.ImIf(tr,
+                    JassIm.ImOperatorCall(WurstOperator.EQ,
+                            JassIm.ImExprs(JassIm.ImVarArrayAccess(tr, mVars.typeId, JassIm.ImExprs((ImExpr) JassIm.ImVarAccess(thisVar))), JassIm.ImIntVal(0))),
+                    JassIm.ImStmts(translator.imError(c.getTrace(), JassIm.ImStringVal("Double free: object of type " + c.getName()))),
+                    freeStmts));
+        } else {
+            body.addAll(freeStmts.removeAll());
+        }
+    }
+}
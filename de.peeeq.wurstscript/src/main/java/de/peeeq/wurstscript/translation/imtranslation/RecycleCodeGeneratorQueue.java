@@ -9,6 +9,11 @@ import de.peeeq.wurstscript.utils.Constants;
 /**
  * Manages object ids in a queue. This way the time each object is
  * inactive is maximized and thus errors should be easier to detect
+ * <ul>
+ * <li>alloc (reused object): 1 comparison, 1 subtraction, 1 array read, 1 array write</li>
+ * <li>alloc (new object): 2 comparisons, 1 addition, 1 array write</li>
+ * <li>dealloc: 1 array read, 1 comparison, 1 addition, 2 array writes</li>
+ * </ul>
  */
 public class RecycleCodeGeneratorQueue implements RecycleCodeGenerator {
 
@@ -4,6 +4,8 @@ import com.google.common.collect.Sets;
 import de.peeeq.wurstscript.jassIm.ImFuncRef;
 import de.peeeq.wurstscript.jassIm.ImFunction;
 import de.peeeq.wurstscript.jassIm.ImFunctionCall;
+import de.peeeq.wurstscript.jassIm.ImMethod;
+import de.peeeq.wurstscript.jassIm.ImMethodCall;
 
 import java.util.Set;
 
@@ -12,6 +14,7 @@ public class UsedFunctions {
 
     public static Set<ImFunction> calculate(ImFunction imFunction) {
         final Set<ImFunction> result = Sets.newLinkedHashSet();
+        final Set<ImMethod> visitedMethods = Sets.newHashSet();
         imFunction.accept(new ImFunction.DefaultVisitor() {
             @Override
             public void visit(ImFunctionCall e) {
@@ -24,8 +27,27 @@ public class UsedFunctions {
                 super.visit(e);
                 result.add(e.getFunc());
             }
+
+            @Override
+            public void visit(ImMethodCall e) {
+                super.visit(e);
+                // a dynamic call can use the implementation of the method or of any overriding method
+                addImplementations(result, visitedMethods, e.getMethod());
+            }
         });
         return result;
     }
 
+    private static void addImplementations(Set<ImFunction> result, Set<ImMethod> visitedMethods, ImMethod m) {
+        if (!visitedMethods.add(m)) {
+            return;
+        }
+        if (!m.getIsAbstract()) {
+            result.add(m.getImplementation());
+        }
+        for (ImMethod sub : m.getSubMethods()) {
+            addImplementations(result, visitedMethods, sub);
+        }
+    }
+
 }
@@ -0,0 +1,113 @@
+package de.peeeq.wurstscript.translation.imtranslation.purity;
+
+import de.peeeq.wurstscript.jassIm.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Calculates the purity level of whole functions.
+ * <p>
+ * Unlike the purity of single statements, calls are not treated as changing the world,
+ * but get the purity level of the called function.
+ * Assignments to local variables are pure and natives are only pure, when they are in the given set of pure natives.
+ * Constructs which are not handled explicitly (function references, class related expressions, ...) change the world.
+ */
+public class FunctionPurity {
+
+    private final Set<String> pureNatives;
+    private final Map<ImFunction, PurityLevel> levels = new HashMap<>();
+
+    public FunctionPurity(ImProg prog, Set<String> pureNatives) {
+        this.pureNatives = pureNatives;
+        for (ImFunction f : prog.getFunctions()) {
+            levels.put(f, f.isNative() ? nativeLevel(f) : Pure.instance);
+        }
+        // the levels only grow, so this terminates, also for recursive functions:
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (ImFunction f : prog.getFunctions()) {
+                if (f.isNative()) {
+                    continue;
+                }
+                PurityLevel before = levels.get(f);
+                PurityLevel after = before.merge(calculate(f.getBody()));
+                if (after != before) {
+                    levels.put(f, after);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the purity level of the function, functions which are not part of the program change the world
+     */
+    public PurityLevel get(ImFunction f) {
+        return levels.getOrDefault(f, ChangesTheWorld.instance);
+    }
+
+    public boolean isPure(ImFunction f) {
+        return get(f) instanceof Pure;
+    }
+
+    private PurityLevel nativeLevel(ImFunction f) {
+        return pureNatives.contains(f.getName()) ? Pure.instance : ChangesTheWorld.instance;
+    }
+
+    private PurityLevel calculate(Element e) {
+        PurityLevel level = Pure.instance;
+        if (e instanceof ImFunctionCall) {
+            level = get(((ImFunctionCall) e).getFunc());
+        } else if (e instanceof ImSet) {
+            ImLExpr left = ((ImSet) e).getLeft();
+            if (!isLocal(left)) {
+                level = WritesGlobals.instance;
+            }
+            // indexes of the left hand side:
+            for (int i = 0; i < left.size(); i++) {
+                level = level.merge(calculate(left.get(i)));
+            }
+            return level.merge(calculate(((ImSet) e).getRight()));
+        } else if (e instanceof ImVarAccess || e instanceof ImVarArrayAccess) {
+            if (!isLocal((ImLExpr) e)) {
+                level = ReadsGlobals.instance;
+            }
+        } else if (!isHarmless(e)) {
+            return ChangesTheWorld.instance;
+        }
+        for (int i = 0; i < e.size(); i++) {
+            level = level.merge(calculate(e.get(i)));
+        }
+        return level;
+    }
+
+    private static boolean isLocal(ImLExpr e) {
+        if (e instanceof ImVarAccess) {
+            return !((ImVarAccess) e).getVar().isGlobal();
+        } else if (e instanceof ImVarArrayAccess) {
+            return !((ImVarArrayAccess) e).getVar().isGlobal();
+        }
+        return false;
+    }
+
+    private static boolean isHarmless(Element e) {
+        return e instanceof ImStmts
+                || e instanceof ImExprs
+                || e instanceof ImIf
+                || e instanceof ImLoop
+                || e instanceof ImExitwhen
+                || e instanceof ImReturn
+                || e instanceof ImNoExpr
+                || e instanceof ImOperatorCall
+                || e instanceof ImStatementExpr
+                || e instanceof ImTupleExpr
+                || e instanceof ImTupleSelection
+                || e instanceof ImCast
+                || e instanceof ImConst
+                || e instanceof ImTypeArguments
+                || e instanceof ImTypeArgument;
+    }
+}
@@ -0,0 +1,121 @@
+package de.peeeq.wurstscript.translation.lua.optimizer;
+
+import de.peeeq.wurstscript.luaAst.*;
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Caches functions and global tables in local variables, when they are used several times in a function.
+ * <p>
+ * Reading a global variable in Lua is a table lookup, whereas a local variable is stored in a register.
+ * The local variables get the same name as the global ones, so the uses in the function do not have to be changed:
+ * <pre>
+ * local GetUnitX = GetUnitX
+ * </pre>
+ * Only values, which are never changed after the script was loaded, are cached:
+ * functions, natives and the tables of arrays and classes, which are marked as constant by the translator.
+ */
+class LocalCaching {
+
+    /**
+     * Lua allows at most 200 local variables per function, some are left for the for loops and temporary values
+     */
+    private static final int MAX_LOCALS = 180;
+    /**
+     * uses inside of loops are counted this many times
+     */
+    private static final int LOOP_WEIGHT = 10;
+    private static final int MAX_WEIGHT = 1000;
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    private final Set<LuaVariable> constantTables;
+    private int count = 0;
+
+    private static class Candidate {
+        private final String name;
+        private final Supplier<LuaExpr> value;
+        private int weight;
+
+        Candidate(String name, Supplier<LuaExpr> value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    LocalCaching(Set<LuaVariable> constantTables) {
+        this.constantTables = constantTables;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void optimize(LuaFunction f) {
+        Map<String, Candidate> candidates = new LinkedHashMap<>();
+        collectUses(f.getBody(), 1, candidates);
+
+        int freeLocals = MAX_LOCALS - f.getParams().size() - countLocals(f.getBody());
+        List<Candidate> cached = new ArrayList<>();
+        for (Candidate c : candidates.values()) {
+            if (c.weight >= 2) {
+                cached.add(c);
+            }
+        }
+        // the most used values are cached first
+        cached.sort(Comparator.comparingInt((Candidate c) -> c.weight).reversed());
+        if (cached.size() > freeLocals) {
+            cached = cached.subList(0, Math.max(0, freeLocals));
+        }
+
+        int pos = 0;
+        for (Candidate c : cached) {
+            f.getBody().add(pos++, LuaAst.LuaLocal(LuaAst.LuaVariable(c.name, LuaAst.LuaNoExpr()), c.value.get()));
+        }
+        count += cached.size();
+    }
+
+    private void collectUses(Element e, int weight, Map<String, Candidate> candidates) {
+        if (e instanceof LuaExprFunctionCall) {
+            LuaFunction func = ((LuaExprFunctionCall) e).getFunc();
+            addUse(candidates, func.getName(), weight, () -> LuaAst.LuaExprFuncRef(func));
+        } else if (e instanceof LuaExprFuncRef) {
+            LuaFunction func = ((LuaExprFuncRef) e).getFunc();
+            addUse(candidates, func.getName(), weight, () -> LuaAst.LuaExprFuncRef(func));
+        } else if (e instanceof LuaExprFunctionCallByName) {
+            String name = ((LuaExprFunctionCallByName) e).getFuncName();
+            if (IDENTIFIER.matcher(name).matches()) {
+                addUse(candidates, name, weight, () -> LuaAst.LuaLiteral(name));
+            }
+        } else if (e instanceof LuaExprVarAccess) {
+            LuaVariable v = ((LuaExprVarAccess) e).getVar();
+            if (constantTables.contains(v)) {
+                addUse(candidates, v.getName(), weight, () -> LuaAst.LuaExprVarAccess(v));
+            }
+        }
+        int childWeight = e instanceof LuaWhile || e instanceof LuaFor
+                ? Math.min(weight * LOOP_WEIGHT, MAX_WEIGHT)
+                : weight;
+        for (int i = 0; i < e.size(); i++) {
+            collectUses(e.get(i), childWeight, candidates);
+        }
+    }
+
+    private static void addUse(Map<String, Candidate> candidates, String name, int weight, Supplier<LuaExpr> value) {
+        candidates.computeIfAbsent(name, n -> new Candidate(n, value)).weight += weight;
+    }
+
+    private static int countLocals(LuaStatements body) {
+        int[] result = {0};
+        LuaOptimizer.forEachElement(body, e -> {
+            if (e instanceof LuaLocal) {
+                result[0]++;
+            } else if (e instanceof LuaFor) {
+                // the loop variable and the hidden state of the loop
+                result[0] += 4;
+            }
+        });
+        return result[0];
+    }
+}
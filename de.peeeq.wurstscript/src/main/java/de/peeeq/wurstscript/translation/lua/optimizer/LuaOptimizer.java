@@ -0,0 +1,66 @@
+package de.peeeq.wurstscript.translation.lua.optimizer;
+
+import de.peeeq.wurstio.TimeTaker;
+import de.peeeq.wurstscript.luaAst.Element;
+import de.peeeq.wurstscript.luaAst.LuaCompilationUnit;
+import de.peeeq.wurstscript.luaAst.LuaDefinition;
+import de.peeeq.wurstscript.luaAst.LuaFunction;
+import de.peeeq.wurstscript.luaAst.LuaVariable;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Optimizations on the generated Lua code, which cannot be expressed on the intermediate language:
+ * <ul>
+ * <li>loops counting a local variable are translated to numeric for loops</li>
+ * <li>functions and tables, which are used several times in a function, are cached in local variables</li>
+ * </ul>
+ */
+public class LuaOptimizer {
+
+    private final TimeTaker timeTaker;
+
+    public LuaOptimizer(TimeTaker timeTaker) {
+        this.timeTaker = timeTaker;
+    }
+
+    /**
+     * @param constantTables the global tables, which are never replaced (see {@link de.peeeq.wurstscript.translation.lua.translation.LuaTranslator#getConstantTables()})
+     */
+    public void optimize(LuaCompilationUnit cu, Set<LuaVariable> constantTables) {
+        NumericForLoops forLoops = new NumericForLoops();
+        LocalCaching localCaching = new LocalCaching(constantTables);
+        timeTaker.measure("numeric for loops", () -> forEachFunction(cu, forLoops::optimize));
+        timeTaker.measure("local caching", () -> forEachFunction(cu, localCaching::optimize));
+        timeTaker.addCounter("numeric for loops", forLoops.getCount());
+        timeTaker.addCounter("cached globals", localCaching.getCount());
+    }
+
+    private static void forEachFunction(LuaCompilationUnit cu, Consumer<LuaFunction> action) {
+        for (LuaDefinition d : cu) {
+            if (d instanceof LuaFunction) {
+                action.accept((LuaFunction) d);
+            }
+        }
+    }
+
+    /**
+     * calls the action for the element and all its descendants
+     */
+    static void forEachElement(Element e, Consumer<Element> action) {
+        action.accept(e);
+        for (int i = 0; i < e.size(); i++) {
+            forEachElement(e.get(i), action);
+        }
+    }
+
+    static boolean isDescendant(Element e, Element ancestor) {
+        for (Element p = e; p != null; p = p.getParent()) {
+            if (p == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
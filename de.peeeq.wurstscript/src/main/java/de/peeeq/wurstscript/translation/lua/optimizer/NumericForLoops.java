@@ -0,0 +1,216 @@
+package de.peeeq.wurstscript.translation.lua.optimizer;
+
+import de.peeeq.wurstscript.luaAst.*;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Translates counting loops to numeric for loops, which are faster in Lua than a while loop with a break:
+ * <pre>
+ * while true do
+ *     if i > limit then break end
+ *     ...
+ *     i = i + step
+ * end
+ * </pre>
+ * becomes {@code for i = i, limit, step do ... end}.
+ * <p>
+ * This is only done, when the loop variable is a local variable, which is not changed in the loop body and not
+ * read after the loop, and when the limit does not change while the loop runs.
+ */
+class NumericForLoops {
+
+    private int count = 0;
+
+    public int getCount() {
+        return count;
+    }
+
+    public void optimize(LuaFunction f) {
+        optimizeStatements(f, f.getBody());
+    }
+
+    private void optimizeStatements(LuaFunction f, LuaStatements stmts) {
+        ListIterator<LuaStatement> it = stmts.listIterator();
+        while (it.hasNext()) {
+            LuaStatement s = it.next();
+            // optimize inner loops first:
+            for (LuaStatements nested : nestedBlocks(s)) {
+                optimizeStatements(f, nested);
+            }
+            if (s instanceof LuaWhile) {
+                LuaFor forLoop = toForLoop(f, (LuaWhile) s);
+                if (forLoop != null) {
+                    it.set(forLoop);
+                    count++;
+                }
+            }
+        }
+    }
+
+    private static List<LuaStatements> nestedBlocks(LuaStatement s) {
+        if (s instanceof LuaWhile) {
+            return Collections.singletonList(((LuaWhile) s).getBody());
+        } else if (s instanceof LuaFor) {
+            return Collections.singletonList(((LuaFor) s).getBody());
+        } else if (s instanceof LuaIf) {
+            LuaIf luaIf = (LuaIf) s;
+            return Arrays.asList(luaIf.getThenStmts(), luaIf.getElseStmts());
+        }
+        return Collections.emptyList();
+    }
+
+    private @Nullable LuaFor toForLoop(LuaFunction f, LuaWhile w) {
+        if (!(w.getCond() instanceof LuaExprBoolVal) || !((LuaExprBoolVal) w.getCond()).getValB()) {
+            return null;
+        }
+        LuaStatements body = w.getBody();
+        if (body.size() < 2) {
+            return null;
+        }
+        // exit condition:
+        LuaExprBinary cond = exitCondition(body.get(0));
+        if (cond == null) {
+            return null;
+        }
+        boolean up;
+        if (cond.getOp() instanceof LuaOpGreater) {
+            up = true;
+        } else if (cond.getOp() instanceof LuaOpLess) {
+            up = false;
+        } else {
+            return null;
+        }
+        LuaVariable loopVar = localVar(cond.getLeftExpr());
+        if (loopVar == null || !isLoopInvariant(cond.getRight(), w)) {
+            return null;
+        }
+        // increment at the end of the loop:
+        LuaStatement last = body.get(body.size() - 1);
+        if (!(last instanceof LuaAssignment)) {
+            return null;
+        }
+        LuaAssignment inc = (LuaAssignment) last;
+        if (localVar(inc.getLeft()) != loopVar || !(inc.getRight() instanceof LuaExprBinary)) {
+            return null;
+        }
+        LuaExprBinary incExpr = (LuaExprBinary) inc.getRight();
+        if (localVar(incExpr.getLeftExpr()) != loopVar
+                || !(up ? incExpr.getOp() instanceof LuaOpPlus : incExpr.getOp() instanceof LuaOpMinus)
+                || !isPositiveInt(incExpr.getRight())) {
+            return null;
+        }
+        String step = ((LuaExprIntVal) incExpr.getRight()).getValI();
+        // the loop variable must only be changed by the increment and must not be read after the loop:
+        for (int i = 1; i < body.size() - 1; i++) {
+            if (assigns(body.get(i), loopVar)) {
+                return null;
+            }
+        }
+        if (isReadOutside(f, loopVar, w)) {
+            return null;
+        }
+
+        LuaExpr limit = cond.getRight().copy();
+        List<LuaStatement> stmts = body.removeAll();
+        LuaStatements forBody = LuaAst.LuaStatements();
+        forBody.addAll(stmts.subList(1, stmts.size() - 1));
+        return LuaAst.LuaFor(loopVar, LuaAst.LuaExprVarAccess(loopVar), limit,
+                LuaAst.LuaExprIntVal(up ? step : "-" + step), forBody);
+    }
+
+    /**
+     * @return the condition of a statement of the form "if cond then break end"
+     */
+    private static @Nullable LuaExprBinary exitCondition(LuaStatement s) {
+        if (!(s instanceof LuaIf)) {
+            return null;
+        }
+        LuaIf exit = (LuaIf) s;
+        if (exit.getThenStmts().size() != 1
+                || !(exit.getThenStmts().get(0) instanceof LuaBreak)
+                || !exit.getElseStmts().isEmpty()
+                || !(exit.getCond() instanceof LuaExprBinary)) {
+            return null;
+        }
+        return (LuaExprBinary) exit.getCond();
+    }
+
+    /**
+     * @return the variable, if the expression reads a local variable or parameter
+     */
+    private static @Nullable LuaVariable localVar(LuaExpr e) {
+        if (!(e instanceof LuaExprVarAccess)) {
+            return null;
+        }
+        LuaVariable v = ((LuaExprVarAccess) e).getVar();
+        if (v.getParent() instanceof LuaLocal || v.getParent() instanceof LuaParams) {
+            return v;
+        }
+        return null;
+    }
+
+    private static boolean isPositiveInt(LuaExpr e) {
+        if (!(e instanceof LuaExprIntVal)) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(((LuaExprIntVal) e).getValI()) > 0;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * the limit of a for loop is only evaluated once, so it must be a constant or a local variable, which is not changed by the loop
+     */
+    private static boolean isLoopInvariant(LuaExpr e, LuaWhile w) {
+        if (e instanceof LuaExprIntVal || e instanceof LuaExprRealVal) {
+            return true;
+        } else if (e instanceof LuaExprUnary) {
+            LuaExprUnary u = (LuaExprUnary) e;
+            return u.getOpU() instanceof LuaOpMinus
+                    && (u.getRight() instanceof LuaExprIntVal || u.getRight() instanceof LuaExprRealVal);
+        }
+        LuaVariable v = localVar(e);
+        return v != null && !assigns(w.getBody(), v);
+    }
+
+    private static boolean assigns(Element e, LuaVariable v) {
+        boolean[] result = {false};
+        LuaOptimizer.forEachElement(e, elem -> {
+            if (elem instanceof LuaAssignment) {
+                LuaExpr left = ((LuaAssignment) elem).getLeft();
+                if (left instanceof LuaExprVarAccess && ((LuaExprVarAccess) left).getVar() == v) {
+                    result[0] = true;
+                }
+            } else if (elem instanceof LuaFor && ((LuaFor) elem).getLoopVar() == v) {
+                result[0] = true;
+            } else if (elem instanceof LuaLocal && ((LuaLocal) elem).getDefinedVar() == v) {
+                result[0] = true;
+            }
+        });
+        return result[0];
+    }
+
+    private static boolean isReadOutside(LuaFunction f, LuaVariable v, LuaWhile w) {
+        boolean[] result = {false};
+        LuaOptimizer.forEachElement(f.getBody(), elem -> {
+            if (elem instanceof LuaExprVarAccess
+                    && ((LuaExprVarAccess) elem).getVar() == v
+                    && !isWrite((LuaExprVarAccess) elem)
+                    && !LuaOptimizer.isDescendant(elem, w)) {
+                result[0] = true;
+            }
+        });
+        return result[0];
+    }
+
+    private static boolean isWrite(LuaExprVarAccess e) {
+        return e.getParent() instanceof LuaAssignment && ((LuaAssignment) e.getParent()).getLeft() == e;
+    }
+}
@@ -0,0 +1,3 @@
+@org.eclipse.jdt.annotation.NonNullByDefault
+package de.peeeq.wurstscript.translation.lua.optimizer;
+
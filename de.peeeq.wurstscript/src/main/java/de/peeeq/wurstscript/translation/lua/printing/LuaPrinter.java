@@ -3,8 +3,25 @@ package de.peeeq.wurstscript.translation.lua.printing;
 import de.peeeq.wurstscript.luaAst.*;
 import de.peeeq.wurstscript.utils.Utils;
 
+import java.io.IOException;
+
 public class LuaPrinter {
 
+    /**
+     * Prints the compilation unit to the given output.
+     * Each definition is printed into a small buffer, which is then written out,
+     * so the whole script is never held in memory as one string.
+     */
+    public static void printProg(LuaCompilationUnit cu, Appendable out) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (LuaDefinition d : cu) {
+            sb.setLength(0);
+            d.print(sb, 0);
+            sb.append("\n\n");
+            out.append(sb);
+        }
+    }
+
     public static void print(LuaAssignment s, StringBuilder sb, int indent) {
         s.getLeft().print(sb, indent);
         sb.append(" = ");
@@ -47,6 +64,7 @@ public class LuaPrinter {
 
     public static void print(LuaExprFieldAccess e, StringBuilder sb, int indent) {
         e.getReceiver().print(sb, indent);
+        sb.append(".");
         sb.append(e.getFieldName());
     }
 
@@ -155,9 +173,11 @@ public class LuaPrinter {
         s.getCond().print(sb, indent);
         sb.append(" then\n");
         s.getThenStmts().print(sb, indent + 1);
-        printIndent(sb, indent);
-        sb.append("else\n"); // TODO special case for else if
-        s.getElseStmts().print(sb, indent);
+        if (!s.getElseStmts().isEmpty()) {
+            printIndent(sb, indent);
+            sb.append("else\n"); // TODO special case for else if
+            s.getElseStmts().print(sb, indent + 1);
+        }
         printIndent(sb, indent);
         sb.append("end");
     }
@@ -275,7 +295,7 @@ public class LuaPrinter {
     public static void print(LuaTableExprField e, StringBuilder sb, int indent) {
         sb.append("[");
         e.getFieldKey().print(sb, indent);
-        sb.append("])");
+        sb.append("]=");
         e.getVal().print(sb, indent);
     }
 
@@ -316,6 +336,23 @@ public class LuaPrinter {
         sb.append("end");
     }
 
+    public static void print(LuaFor s, StringBuilder sb, int indent) {
+        sb.append("for ");
+        sb.append(s.getLoopVar().getName());
+        sb.append(" = ");
+        s.getFrom().print(sb, indent);
+        sb.append(", ");
+        s.getTo().print(sb, indent);
+        if (!(s.getStep() instanceof LuaExprIntVal && ((LuaExprIntVal) s.getStep()).getValI().equals("1"))) {
+            sb.append(", ");
+            s.getStep().print(sb, indent);
+        }
+        sb.append(" do\n");
+        s.getBody().print(sb, indent + 1);
+        printIndent(sb, indent);
+        sb.append("end");
+    }
+
     public static void print(LuaLiteral e, StringBuilder sb, int indent) {
         sb.append(e.getLuaCode());
     }
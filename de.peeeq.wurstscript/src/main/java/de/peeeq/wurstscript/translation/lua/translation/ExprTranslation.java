@@ -6,17 +6,17 @@ import de.peeeq.wurstscript.luaAst.*;
 
 public class ExprTranslation {
 
-    private static final String TYPE_ID = "__typeId__";
-
     public static LuaExpr translate(ImAlloc e, LuaTranslator tr) {
-        LuaTableFields fields = LuaAst.LuaTableFields();
         ImClass clazz = e.getClazz().getClassDef();
-        fields.add(LuaAst.LuaTableNamedField("wurst_typeId", LuaAst.LuaExprIntVal("" + clazz.attrTypeId())));
-//        for (ImMethod m : clazz.getMethods()) {
-//            LuaFunction luaMethod = tr.luaMethod.getFor(m);
-//            fields.add(LuaAst.LuaTableNamedField(luaMethod.getName(), LuaAst.LuaExprFuncRef(tr.luaFunc.getFor(m.getImplementation()))));
-//        }
-        return LuaAst.LuaTableConstructor(fields); // TODO any fields required? typeid?
+        // array fields need a new table for each object, other fields use the default from the class table
+        LuaTableFields fields = LuaAst.LuaTableFields();
+        for (ImVar f : tr.getAllFields(clazz)) {
+            if (LuaTranslator.isArrayType(f.getType())) {
+                fields.add(LuaAst.LuaTableNamedField(tr.luaVar.getFor(f).getName(), tr.defaultValue(f.getType())));
+            }
+        }
+        return LuaAst.LuaExprFunctionCallByName("setmetatable", LuaAst.LuaExprlist(
+                LuaAst.LuaTableConstructor(fields), LuaAst.LuaExprVarAccess(tr.luaClass.getFor(clazz))));
     }
 
     public static LuaExpr translate(ImBoolVal e, LuaTranslator tr) {
@@ -28,8 +28,7 @@ public class ExprTranslation {
     }
 
     public static LuaExpr translate(ImFuncRef e, LuaTranslator tr) {
-        // functions are just referenced by name
-        return LuaAst.LuaExprStringVal(tr.luaFunc.getFor(e.getFunc()).getName());
+        return LuaAst.LuaExprFuncRef(tr.luaFunc.getFor(e.getFunc()));
     }
 
     public static LuaExpr translate(ImFunctionCall e, LuaTranslator tr) {
@@ -37,8 +36,8 @@ public class ExprTranslation {
     }
 
     public static LuaExpr translate(ImInstanceof e, LuaTranslator tr) {
-        // what is the object layout?
-        throw new Error("not implemented");
+        return LuaAst.LuaExprFunctionCall(tr.instanceofFunc, LuaAst.LuaExprlist(
+                e.getObj().translateToLua(tr), LuaAst.LuaExprIntVal("" + e.getClazz().getClassDef().attrTypeId())));
     }
 
     public static LuaExpr translate(ImIntVal e, LuaTranslator tr) {
@@ -46,12 +45,15 @@ public class ExprTranslation {
     }
 
     public static LuaExpr translate(ImMemberAccess e, LuaTranslator tr) {
-        return LuaAst.LuaExprFieldAccess(e.getReceiver().translateToLua(tr), e.getVar().getName());
-        // TODO can name be used here directly?
+        LuaExpr field = LuaAst.LuaExprFieldAccess(e.getReceiver().translateToLua(tr), tr.luaVar.getFor(e.getVar()).getName());
+        if (e.getIndexes().isEmpty()) {
+            return field;
+        }
+        return LuaAst.LuaExprArrayAccess(field, tr.translateExprList(e.getIndexes()));
     }
 
     public static LuaExpr translate(ImMethodCall e, LuaTranslator tr) {
-        return LuaAst.LuaExprMethodCall(e.getReceiver().translateToLua(tr), tr.luaMethod.getFor(e.getMethod()), tr.translateExprList(e.getArguments()));
+        return LuaAst.LuaExprMethodCall(e.getReceiver().translateToLua(tr), tr.luaMethodSlot(e.getMethod()), tr.translateExprList(e.getArguments()));
     }
 
     public static LuaExpr translate(ImNull e, LuaTranslator tr) {
@@ -65,7 +67,12 @@ public class ExprTranslation {
             LuaExpr leftExpr = left.translateToLua(tr);
             LuaExpr rightExpr = right.translateToLua(tr);
             LuaOpBinary op;
-            if (e.getOp() == WurstOperator.PLUS
+            if ((e.getOp() == WurstOperator.EQ || e.getOp() == WurstOperator.NOTEQ)
+                    && left.attrTyp() instanceof ImTupleType) {
+                // tuples are compared by value
+                LuaExpr eq = LuaAst.LuaExprFunctionCall(tr.tupleEqualsFunc, LuaAst.LuaExprlist(leftExpr, rightExpr));
+                return e.getOp() == WurstOperator.EQ ? eq : LuaAst.LuaExprUnary(LuaAst.LuaOpNot(), eq);
+            } else if (e.getOp() == WurstOperator.PLUS
                     && isStringType(left.attrTyp())
                     && isStringType(right.attrTyp())) {
                 // special case for string concatenation
@@ -139,20 +146,19 @@ public class ExprTranslation {
     }
 
     public static LuaExpr translate(ImTupleSelection e, LuaTranslator tr) {
-        return LuaAst.LuaExprArrayAccess(e.getTupleExpr().translateToLua(tr), LuaAst.LuaExprlist(LuaAst.LuaExprIntVal("" + e.getTupleIndex())));
+        return LuaAst.LuaExprArrayAccess(e.getTupleExpr().translateToLua(tr), LuaAst.LuaExprlist(LuaAst.LuaExprIntVal("" + (e.getTupleIndex() + 1))));
     }
 
     public static LuaExpr translate(ImTypeIdOfClass e, LuaTranslator tr) {
-        int i = tr.typeId.getFor(e.getClazz().getClassDef());
-        return LuaAst.LuaExprIntVal("" + i);
+        return LuaAst.LuaExprIntVal("" + e.getClazz().getClassDef().attrTypeId());
     }
 
     public static LuaExpr translate(ImTypeIdOfObj e, LuaTranslator tr) {
-        return LuaAst.LuaExprFieldAccess(e.getObj().translateToLua(tr), TYPE_ID);
+        return LuaAst.LuaExprFieldAccess(e.getObj().translateToLua(tr), LuaTranslator.TYPE_ID);
     }
 
     public static LuaExpr translate(ImVarAccess e, LuaTranslator tr) {
-        return LuaAst.LuaExprVarAccess(tr.luaVar.getFor(e.getVar()));
+        return tr.varAccess(e.getVar());
     }
 
     public static LuaExpr translate(ImVarArrayAccess e, LuaTranslator tr) {
@@ -160,11 +166,12 @@ public class ExprTranslation {
         for (ImExpr ie : e.getIndexes()) {
             indexes.add(ie.translateToLua(tr));
         }
-        return LuaAst.LuaExprArrayAccess(LuaAst.LuaExprVarAccess(tr.luaVar.getFor(e.getVar())), indexes);
+        return LuaAst.LuaExprArrayAccess(tr.varAccess(e.getVar()), indexes);
     }
 
     public static LuaExpr translate(ImGetStackTrace e, LuaTranslator tr) {
-        throw new Error("not implemented");
+        // stack traces are not supported in Lua yet
+        return LuaAst.LuaExprStringVal("");
     }
 
     public static LuaExpr translate(ImCompiletimeExpr imCompiletimeExpr, LuaTranslator tr) {
@@ -15,16 +15,21 @@ public class LuaNatives {
         f.getBody().add(LuaAst.LuaLiteral("error()"));
     }
 
-    public static void get(LuaFunction f) {
+    /**
+     * Adds the implementation of a native, which is not provided by the game.
+     *
+     * @return false, if the native is provided by the game
+     */
+    public static boolean get(LuaFunction f) {
         switch (f.getName()) {
             case "testSuccess":
                 native_testSuccess(f);
-                break;
+                return true;
             case "testFail":
                 native_testFail(f);
-                break;
+                return true;
             default:
-                throw new RuntimeException("native not implemented: " + f.getName());
+                return false;
         }
     }
 
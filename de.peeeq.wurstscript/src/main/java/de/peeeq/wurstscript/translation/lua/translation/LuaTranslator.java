@@ -1,21 +1,82 @@
 package de.peeeq.wurstscript.translation.lua.translation;
 
-import de.peeeq.wurstscript.ast.AstElementWithArgs;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
 import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.luaAst.*;
 import de.peeeq.wurstscript.translation.imtranslation.GetAForB;
+import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
+import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+import org.eclipse.jdt.annotation.Nullable;
 
-import java.util.ListIterator;
+import java.util.*;
 
+/**
+ * Translates an intermediate program to Lua.
+ * <p>
+ * Unlike the Jass translation, classes are not eliminated first.
+ * Each class becomes a table containing the method implementations, the type information and the default values of
+ * the fields. Objects are tables, which use their class table as metatable, so methods are dispatched by Lua method calls
+ * and a field is stored in the object only after it was assigned.
+ * <p>
+ * Natives, blizzard.j functions and blizzard.j variables are provided by the Lua runtime of the game,
+ * so they keep their names and are not defined in the generated code.
+ */
 public class LuaTranslator {
 
+    static final String TYPE_ID = "__typeId__";
+    /**
+     * Lua allows at most 200 local variables per function, further variables of a function are stored in a table.
+     * Some locals are left for loops and for the values cached by the Lua optimizer.
+     */
+    static final int MAX_LOCALS = 150;
+    static final String INSTANCEOF = "__instanceof";
+
+    private static final Set<String> RESERVED_NAMES = ImmutableSet.of(
+            // keywords:
+            "and", "break", "do", "else", "elseif", "end", "false", "for", "function", "goto", "if", "in",
+            "local", "nil", "not", "or", "repeat", "return", "then", "true", "until", "while",
+            // names used by the generated code:
+            "_G", "_ENV", "setmetatable", "getmetatable", "rawset", "rawget", "pairs", "ipairs", "next", "type",
+            "print", "error", "select", "tostring", "tonumber", "math", "string", "table", "wurstExpr",
+            "__index", TYPE_ID, INSTANCEOF);
+
     private final ImProg prog;
+    private final ImTranslator imTr;
     private final LuaCompilationUnit luaModel;
+    private final Set<String> usedNames = new HashSet<>();
+    /**
+     * methods which override each other are dispatched via the same slot of the class tables,
+     * this union-find structure maps each method to a method of its slot
+     */
+    private final Map<ImMethod, ImMethod> slotParent = new HashMap<>();
+    private final Multimap<ImClass, ImMethod> classMethods = LinkedHashMultimap.create();
+    private final Map<ImClass, Map<ImMethod, ImFunction>> classSlots = new HashMap<>();
+    private final Set<ImFunction> functions = new HashSet<>();
+    /**
+     * global tables created by the translation, which are never replaced after the script was loaded
+     */
+    private final Set<LuaVariable> constantTables = new HashSet<>();
+    /**
+     * the locals of the current function, which do not fit into Lua locals
+     */
+    private final Set<ImVar> spilledLocals = new HashSet<>();
+    private @Nullable LuaVariable spillTable;
+    private int localCount;
+
+    LuaFunction defaultArrayFunc;
+    LuaFunction nestedArrayFunc;
+    LuaFunction classFunc;
+    LuaFunction instanceofFunc;
+    LuaFunction tupleSetFunc;
+    LuaFunction tupleEqualsFunc;
 
     GetAForB<ImVar, LuaVariable> luaVar = new GetAForB<ImVar, LuaVariable>() {
         @Override
         public LuaVariable initFor(ImVar a) {
-            return LuaAst.LuaVariable(uniqueName(a.getName()), LuaAst.LuaNoExpr());
+            String name = a.getIsBJ() ? a.getName() : uniqueName(a.getName());
+            return LuaAst.LuaVariable(name, LuaAst.LuaNoExpr());
         }
     };
 
@@ -23,9 +84,11 @@ public class LuaTranslator {
 
         @Override
         public LuaFunction initFor(ImFunction a) {
-            return LuaAst.LuaFunction(uniqueName(a.getName()), LuaAst.LuaParams(), LuaAst.LuaStatements());
+            String name = keepsName(a) ? a.getName() : uniqueName(a.getName());
+            return LuaAst.LuaFunction(name, LuaAst.LuaParams(), LuaAst.LuaStatements());
         }
     };
+
     public GetAForB<ImMethod, LuaFunction> luaMethod = new GetAForB<ImMethod, LuaFunction>() {
 
         @Override
@@ -33,41 +96,170 @@ public class LuaTranslator {
             return LuaAst.LuaFunction(uniqueName(a.getName()), LuaAst.LuaParams(), LuaAst.LuaStatements());
         }
     };
-    public GetAForB<ImClass, Integer> typeId = new GetAForB<ImClass, Integer>() {
-        int idCounter = 0;
 
+    GetAForB<ImClass, LuaVariable> luaClass = new GetAForB<ImClass, LuaVariable>() {
         @Override
-        public Integer initFor(ImClass a) {
-            return ++idCounter;
+        public LuaVariable initFor(ImClass a) {
+            return LuaAst.LuaVariable(uniqueName(a.getName()), LuaAst.LuaNoExpr());
         }
     };
 
-    public LuaTranslator(ImProg prog) {
+    public LuaTranslator(ImProg prog, ImTranslator imTr) {
         this.prog = prog;
+        this.imTr = imTr;
         luaModel = LuaAst.LuaCompilationUnit();
     }
 
+    /**
+     * @return a name, which is not used for any other definition and is a valid Lua identifier
+     */
     protected String uniqueName(String name) {
-        return name;
+        String base = name.replaceAll("[^a-zA-Z0-9_]", "_");
+        if (base.isEmpty() || Character.isDigit(base.charAt(0))) {
+            base = "_" + base;
+        }
+        String result = base;
+        int i = 1;
+        while (RESERVED_NAMES.contains(result) || !usedNames.add(result)) {
+            result = base + "_" + i++;
+        }
+        return result;
+    }
+
+    /**
+     * functions which are called by the game or provided by the runtime keep their original name
+     */
+    private boolean keepsName(ImFunction f) {
+        return f.isNative() || f.isBj() || f.isExtern()
+                || f == imTr.getMainFunc() || f == imTr.getConfFunc();
     }
 
     public LuaCompilationUnit translate() {
+        functions.addAll(prog.getFunctions());
+        reserveNames();
+
+        collectMethods();
+
+        createPrelude();
 
         for (ImVar v : prog.getGlobals()) {
             translateGlobal(v);
         }
 
+        for (ImFunction f : prog.getFunctions()) {
+            translateFunc(f);
+        }
+
+        // class tables reference the method implementations, so they are created after the functions
         for (ImClass c : prog.getClasses()) {
             translateClass(c);
         }
 
+        cleanStatements();
+
+        return luaModel;
+    }
+
+    /**
+     * @return the global array and class tables, which are never replaced, so they can be cached in local variables
+     */
+    public Set<LuaVariable> getConstantTables() {
+        return Collections.unmodifiableSet(constantTables);
+    }
+
+    private void reserveNames() {
         for (ImFunction f : prog.getFunctions()) {
-            translateFunc(f);
+            if (keepsName(f)) {
+                usedNames.add(f.getName());
+            }
         }
+        for (ImVar v : prog.getGlobals()) {
+            if (v.getIsBJ()) {
+                usedNames.add(v.getName());
+            }
+        }
+    }
 
-        cleanStatements();
+    private void collectMethods() {
+        List<ImMethod> methods = new ArrayList<>(prog.getMethods());
+        for (ImClass c : prog.getClasses()) {
+            methods.addAll(c.getMethods());
+        }
+        for (ImMethod m : methods) {
+            classMethods.put(m.getMethodClass().getClassDef(), m);
+            for (ImMethod sub : m.getSubMethods()) {
+                ImMethod a = slotRoot(m);
+                ImMethod b = slotRoot(sub);
+                if (a != b) {
+                    slotParent.put(b, a);
+                }
+            }
+        }
+    }
 
-        return luaModel;
+    private ImMethod slotRoot(ImMethod m) {
+        ImMethod p = slotParent.get(m);
+        if (p == null) {
+            return m;
+        }
+        ImMethod root = slotRoot(p);
+        slotParent.put(m, root);
+        return root;
+    }
+
+    /**
+     * @return the function, which represents the name of the slot used to dispatch the given method
+     */
+    LuaFunction luaMethodSlot(ImMethod m) {
+        return luaMethod.getFor(slotRoot(m));
+    }
+
+    private void createPrelude() {
+        defaultArrayFunc = preludeFunction("wurst_defaultArray", Collections.singletonList("d"),
+                "return setmetatable({}, {__index = function() return d end})");
+        nestedArrayFunc = preludeFunction("wurst_nestedArray", Arrays.asList("depth", "d"),
+                "if depth <= 1 then return wurst_defaultArray(d) end",
+                "return setmetatable({}, {__index = function(t, k)",
+                "\tlocal v = wurst_nestedArray(depth - 1, d)",
+                "\trawset(t, k, v)",
+                "\treturn v",
+                "end})");
+        classFunc = preludeFunction("wurst_class", Collections.singletonList("c"),
+                "c.__index = c",
+                "return c");
+        instanceofFunc = preludeFunction("wurst_instanceof", Arrays.asList("obj", "id"),
+                "return obj ~= nil and obj." + INSTANCEOF + "[id] == true");
+        // tuples are immutable, so changing a component creates a copy:
+        tupleSetFunc = preludeFunction("wurst_tupleSet", Arrays.asList("t", "i", "v"),
+                "local r = {}",
+                "for k, x in pairs(t) do r[k] = x end",
+                "r[i] = v",
+                "return r");
+        tupleEqualsFunc = preludeFunction("wurst_tupleEquals", Arrays.asList("a", "b"),
+                "for k, x in pairs(a) do",
+                "\tlocal y = b[k]",
+                "\tif type(x) == \"table\" and getmetatable(x) == nil and type(y) == \"table\" then",
+                "\t\tif not wurst_tupleEquals(x, y) then return false end",
+                "\telseif x ~= y then",
+                "\t\treturn false",
+                "\tend",
+                "end",
+                "for k, y in pairs(b) do",
+                "\tif a[k] == nil then return false end",
+                "end",
+                "return true");
+    }
+
+    private LuaFunction preludeFunction(String name, List<String> params, String... body) {
+        LuaFunction f = LuaAst.LuaFunction(uniqueName(name), LuaAst.LuaParams(), LuaAst.LuaStatements());
+        for (String p : params) {
+            f.getParams().add(LuaAst.LuaVariable(p, LuaAst.LuaNoExpr()));
+        }
+        for (String line : body) {
+            f.getBody().add(LuaAst.LuaLiteral(line));
+        }
+        luaModel.add(f);
+        return f;
     }
 
     private void cleanStatements() {
@@ -81,13 +273,16 @@ public class LuaTranslator {
         });
     }
 
+    /**
+     * Lua only allows function calls as expression statements
+     */
     private void cleanStatements(LuaStatements stmts) {
         ListIterator<LuaStatement> it = stmts.listIterator();
         while (it.hasNext()) {
             LuaStatement s = it.next();
             if (s instanceof LuaExprNull) {
                 it.remove();
-            } else if (s instanceof LuaExpr && !(s instanceof AstElementWithArgs)) {
+            } else if (s instanceof LuaExpr && !isCall((LuaExpr) s) && !(s instanceof LuaLiteral)) {
                 LuaExpr e = (LuaExpr) s;
                 e.setParent(null);
                 LuaVariable exprTemp = LuaAst.LuaVariable("wurstExpr", LuaAst.LuaNoExpr());
@@ -97,23 +292,87 @@ public class LuaTranslator {
         }
     }
 
+    private static boolean isCall(LuaExpr e) {
+        return e instanceof LuaExprFunctionCall
+                || e instanceof LuaExprMethodCall
+                || e instanceof LuaExprFunctionCallByName
+                || e instanceof LuaExprFunctionCallE;
+    }
+
     private void translateFunc(ImFunction f) {
-        if (f.isExtern()) {
+        if (f.isExtern() || f.isBj()) {
             return;
         }
+        LuaFunction lf = luaFunc.getFor(f);
         if (f.isNative()) {
-            LuaFunction nf = luaFunc.getFor(f);
-            LuaNatives.get(nf);
+            // natives are provided by the game, only natives used for testing are defined here
+            if (LuaNatives.get(lf)) {
+                luaModel.add(lf);
+            }
+            return;
         }
 
-        LuaFunction lf = luaFunc.getFor(f);
         luaModel.add(lf);
         // translate parameters
         for (ImVar p : f.getParameters()) {
             lf.getParams().add(luaVar.getFor(p));
         }
+        spilledLocals.clear();
+        spillTable = null;
+        // one local is reserved for the spill table
+        localCount = f.getParameters().size() + 1;
+        // declare locals:
+        for (ImVar v : f.getLocals()) {
+            if (localCount < MAX_LOCALS) {
+                LuaExprOpt initialValue = isArrayType(v.getType()) ? defaultValue(v.getType()) : LuaAst.LuaNoExpr();
+                lf.getBody().add(LuaAst.LuaLocal(luaVar.getFor(v), initialValue));
+                localCount++;
+            } else {
+                spilledLocals.add(v);
+                if (isArrayType(v.getType())) {
+                    lf.getBody().add(LuaAst.LuaAssignment(varAccess(v), defaultValue(v.getType())));
+                }
+            }
+        }
         // translate body:
         translateStatements(lf.getBody(), f.getBody());
+        if (spillTable != null) {
+            lf.getBody().add(0, LuaAst.LuaLocal(spillTable, LuaAst.LuaTableConstructor(LuaAst.LuaTableFields())));
+        }
+    }
+
+    /**
+     * @return an expression reading or writing the given variable
+     */
+    LuaExpr varAccess(ImVar v) {
+        if (spilledLocals.contains(v)) {
+            return spilledAccess(luaVar.getFor(v).getName());
+        }
+        return LuaAst.LuaExprVarAccess(luaVar.getFor(v));
+    }
+
+    private LuaExpr spilledAccess(String name) {
+        if (spillTable == null) {
+            spillTable = LuaAst.LuaVariable(uniqueName("locals"), LuaAst.LuaNoExpr());
+        }
+        return LuaAst.LuaExprFieldAccess(LuaAst.LuaExprVarAccess(spillTable), name);
+    }
+
+    /**
+     * stores a value in a new temporary variable of the current function
+     *
+     * @return an expression reading the temporary variable
+     */
+    private LuaExpr newTemp(List<LuaStatement> res, String name, LuaExpr value) {
+        LuaVariable temp = LuaAst.LuaVariable(uniqueName(name), LuaAst.LuaNoExpr());
+        if (localCount < MAX_LOCALS) {
+            res.add(LuaAst.LuaLocal(temp, value));
+            localCount++;
+            return LuaAst.LuaExprVarAccess(temp);
+        }
+        LuaExpr access = spilledAccess(temp.getName());
+        res.add(LuaAst.LuaAssignment(access, value));
+        return access.copy();
     }
 
     void translateStatements(LuaStatements res, ImStmts stmts) {
@@ -129,17 +388,214 @@ public class LuaTranslator {
     }
 
     private void translateClass(ImClass c) {
-        // TODO
-        throw new RuntimeException("TODO translate class " + c.getName());
+        LuaTableFields fields = LuaAst.LuaTableFields();
+        for (Map.Entry<ImMethod, ImFunction> slot : getClassSlots(c).entrySet()) {
+            fields.add(LuaAst.LuaTableNamedField(luaMethodSlot(slot.getKey()).getName(),
+                    LuaAst.LuaExprFuncRef(luaFunc.getFor(slot.getValue()))));
+        }
+        // default values of fields are looked up in the class table until the field is assigned:
+        for (ImVar f : getAllFields(c)) {
+            if (isArrayType(f.getType())) {
+                continue;
+            }
+            LuaExpr d = defaultValue(f.getType());
+            if (!(d instanceof LuaExprNull)) {
+                fields.add(LuaAst.LuaTableNamedField(luaVar.getFor(f).getName(), d));
+            }
+        }
+        fields.add(LuaAst.LuaTableNamedField(TYPE_ID, LuaAst.LuaExprIntVal("" + c.attrTypeId())));
+        LuaTableFields instanceofFields = LuaAst.LuaTableFields();
+        for (ImClass sc : getClassAndSuperClasses(c)) {
+            instanceofFields.add(LuaAst.LuaTableExprField(LuaAst.LuaExprIntVal("" + sc.attrTypeId()), LuaAst.LuaExprBoolVal(true)));
+        }
+        fields.add(LuaAst.LuaTableNamedField(INSTANCEOF, LuaAst.LuaTableConstructor(instanceofFields)));
+
+        LuaVariable cv = luaClass.getFor(c);
+        cv.setInitialValue(LuaAst.LuaExprFunctionCall(classFunc, LuaAst.LuaExprlist(LuaAst.LuaTableConstructor(fields))));
+        luaModel.add(cv);
+        constantTables.add(cv);
+    }
+
+    /**
+     * @return the implementation for each method slot of the class, including inherited implementations
+     */
+    private Map<ImMethod, ImFunction> getClassSlots(ImClass c) {
+        Map<ImMethod, ImFunction> result = classSlots.get(c);
+        if (result != null) {
+            return result;
+        }
+        result = new LinkedHashMap<>();
+        for (ImClassType sc : c.getSuperClasses()) {
+            result.putAll(getClassSlots(sc.getClassDef()));
+        }
+        for (ImMethod m : classMethods.get(c)) {
+            // implementations of unused methods might have been removed
+            if (!m.getIsAbstract() && functions.contains(m.getImplementation())) {
+                result.put(slotRoot(m), m.getImplementation());
+            }
+        }
+        classSlots.put(c, result);
+        return result;
+    }
+
+    private Set<ImClass> getClassAndSuperClasses(ImClass c) {
+        Set<ImClass> result = new LinkedHashSet<>();
+        collectClassAndSuperClasses(c, result);
+        return result;
+    }
+
+    private void collectClassAndSuperClasses(ImClass c, Set<ImClass> result) {
+        if (result.add(c)) {
+            for (ImClassType sc : c.getSuperClasses()) {
+                collectClassAndSuperClasses(sc.getClassDef(), result);
+            }
+        }
+    }
+
+    /**
+     * @return the fields of the class and of all its super classes
+     */
+    Set<ImVar> getAllFields(ImClass c) {
+        Set<ImVar> result = new LinkedHashSet<>();
+        for (ImClass sc : getClassAndSuperClasses(c)) {
+            result.addAll(sc.getFields());
+        }
+        return result;
     }
 
     private void translateGlobal(ImVar v) {
-        LuaVariable lv = luaVar.getFor(v);
-        if (v.getType() instanceof ImArrayType
-                || v.getType() instanceof ImArrayTypeMulti) {
-            lv.setInitialValue(LuaAst.LuaTableConstructor(LuaAst.LuaTableFields()));
+        if (v.getIsBJ()) {
+            // defined by blizzard.j
+            return;
         }
+        LuaVariable lv = luaVar.getFor(v);
+        lv.setInitialValue(defaultValue(v.getType()));
         luaModel.add(lv);
+        if (isArrayType(v.getType())) {
+            // arrays cannot be assigned as a whole, only their elements change
+            constantTables.add(lv);
+        }
+    }
+
+    static boolean isArrayType(ImType t) {
+        return t instanceof ImArrayType || t instanceof ImArrayTypeMulti;
+    }
+
+    /**
+     * @return the value of uninitialized variables and array elements of the given type
+     */
+    LuaExpr defaultValue(ImType type) {
+        return type.match(new ImType.Matcher<LuaExpr>() {
+            @Override
+            public LuaExpr case_ImArrayType(ImArrayType t) {
+                return LuaAst.LuaExprFunctionCall(defaultArrayFunc, LuaAst.LuaExprlist(defaultValue(t.getEntryType())));
+            }
+
+            @Override
+            public LuaExpr case_ImArrayTypeMulti(ImArrayTypeMulti t) {
+                return LuaAst.LuaExprFunctionCall(nestedArrayFunc, LuaAst.LuaExprlist(
+                        LuaAst.LuaExprIntVal("" + t.getArraySize().size()), defaultValue(t.getEntryType())));
+            }
+
+            @Override
+            public LuaExpr case_ImTupleType(ImTupleType t) {
+                LuaTableFields fields = LuaAst.LuaTableFields();
+                for (ImType ct : t.getTypes()) {
+                    fields.add(LuaAst.LuaTableSingleField(defaultValue(ct)));
+                }
+                return LuaAst.LuaTableConstructor(fields);
+            }
+
+            @Override
+            public LuaExpr case_ImSimpleType(ImSimpleType t) {
+                return ImHelper.defaultValueForType(t).translateToLua(LuaTranslator.this);
+            }
+
+            @Override
+            public LuaExpr case_ImClassType(ImClassType t) {
+                return LuaAst.LuaExprNull();
+            }
+
+            @Override
+            public LuaExpr case_ImTypeVarRef(ImTypeVarRef t) {
+                return LuaAst.LuaExprNull();
+            }
+
+            @Override
+            public LuaExpr case_ImVoid(ImVoid t) {
+                return LuaAst.LuaExprNull();
+            }
+        });
+    }
+
+    /**
+     * Translates an assignment.
+     * Tuples are shared between variables, so the component of a tuple is changed by replacing the whole tuple.
+     */
+    void translateAssignment(List<LuaStatement> res, ImLExpr left, LuaExpr value) {
+        if (left instanceof ImTupleSelection) {
+            ImTupleSelection ts = (ImTupleSelection) left;
+            LuaExprArrayAccess target = (LuaExprArrayAccess) stableLExpr(res, ts);
+            assignTupleSelection(res, ts, target, value);
+        } else if (left instanceof ImTupleExpr) {
+            LuaExpr temp = newTemp(res, "tuple_temp", value);
+            ImExprs exprs = ((ImTupleExpr) left).getExprs();
+            for (int i = 0; i < exprs.size(); i++) {
+                translateAssignment(res, (ImLExpr) exprs.get(i), LuaAst.LuaExprArrayAccess(temp.copy(),
+                        LuaAst.LuaExprlist(LuaAst.LuaExprIntVal("" + (i + 1)))));
+            }
+        } else {
+            res.add(LuaAst.LuaAssignment(left.translateToLua(this), value));
+        }
+    }
+
+    private void assignTupleSelection(List<LuaStatement> res, ImTupleSelection ts, LuaExprArrayAccess target, LuaExpr value) {
+        LuaExpr tuple = target.getLeft();
+        LuaExpr newTuple = LuaAst.LuaExprFunctionCall(tupleSetFunc, LuaAst.LuaExprlist(
+                tuple.copy(), LuaAst.LuaExprIntVal("" + (ts.getTupleIndex() + 1)), value));
+        if (ts.getTupleExpr() instanceof ImTupleSelection) {
+            assignTupleSelection(res, (ImTupleSelection) ts.getTupleExpr(), (LuaExprArrayAccess) tuple, newTuple);
+        } else {
+            res.add(LuaAst.LuaAssignment(tuple.copy(), newTuple));
+        }
+    }
+
+    /**
+     * Translates an l-value, which is read and written afterwards.
+     * Indexes and receivers are stored in temporary variables, so that they are only evaluated once.
+     */
+    private LuaExpr stableLExpr(List<LuaStatement> res, ImLExpr e) {
+        if (e instanceof ImTupleSelection) {
+            ImTupleSelection ts = (ImTupleSelection) e;
+            return LuaAst.LuaExprArrayAccess(stableLExpr(res, (ImLExpr) ts.getTupleExpr()),
+                    LuaAst.LuaExprlist(LuaAst.LuaExprIntVal("" + (ts.getTupleIndex() + 1))));
+        } else if (e instanceof ImVarArrayAccess) {
+            ImVarArrayAccess va = (ImVarArrayAccess) e;
+            return LuaAst.LuaExprArrayAccess(varAccess(va.getVar()), stableExprs(res, va.getIndexes()));
+        } else if (e instanceof ImMemberAccess) {
+            ImMemberAccess ma = (ImMemberAccess) e;
+            LuaExpr r = LuaAst.LuaExprFieldAccess(stableExpr(res, ma.getReceiver()), luaVar.getFor(ma.getVar()).getName());
+            if (ma.getIndexes().isEmpty()) {
+                return r;
+            }
+            return LuaAst.LuaExprArrayAccess(r, stableExprs(res, ma.getIndexes()));
+        }
+        return e.translateToLua(this);
+    }
+
+    private LuaExprlist stableExprs(List<LuaStatement> res, ImExprs exprs) {
+        LuaExprlist r = LuaAst.LuaExprlist();
+        for (ImExpr e : exprs) {
+            r.add(stableExpr(res, e));
+        }
+        return r;
+    }
+
+    private LuaExpr stableExpr(List<LuaStatement> res, ImExpr e) {
+        if (e instanceof ImConst || e instanceof ImVarAccess) {
+            return e.translateToLua(this);
+        }
+        return newTemp(res, "temp", e.translateToLua(this));
     }
 
     public LuaExprOpt translateOptional(ImExprOpt e) {
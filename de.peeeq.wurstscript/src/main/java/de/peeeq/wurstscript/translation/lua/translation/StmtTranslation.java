@@ -37,7 +37,7 @@ public class StmtTranslation {
     }
 
     public static void translate(ImSet s, List<LuaStatement> res, LuaTranslator tr) {
-        res.add(LuaAst.LuaAssignment(s.getLeft().translateToLua(tr), s.getRight().translateToLua(tr)));
+        tr.translateAssignment(res, s.getLeft(), s.getRight().translateToLua(tr));
     }
 
 
@@ -0,0 +1,104 @@
+package de.peeeq.wurstscript.types;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.peeeq.wurstscript.ast.AstElementWithTypeParameters;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.ast.NamedScope;
+import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Caches the results of subtype checks between ground types.
+ * <p>
+ * Types are created freshly by the attributes, so they cannot be used as keys directly.
+ * Instead each type without type variables is mapped to a canonical key:
+ * the instance itself for primitive and native types and the definition for
+ * non-generic classes, interfaces and enums.
+ * Matching two such types never binds a type variable, so the result of
+ * {@link WurstType#matchAgainstSupertype} is either the input mapping or null
+ * and it is enough to remember a boolean.
+ * <p>
+ * The cache must be cleared whenever the attributes of the program are cleared,
+ * because the type hierarchy might have changed.
+ */
+public class SubtypeCache {
+
+    private static final Cache<Key, Boolean> cache = CacheBuilder.newBuilder()
+            .maximumSize(50_000)
+            .build();
+
+    public static void clear() {
+        cache.invalidateAll();
+    }
+
+    static @Nullable Key key(WurstType sub, WurstType sup, @Nullable Element location) {
+        Object subKey = canonicalKey(sub);
+        if (subKey == null) {
+            return null;
+        }
+        Object supKey = canonicalKey(sup);
+        if (supKey == null) {
+            return null;
+        }
+        return new Key(subKey, supKey, Utils.isJassCode(location));
+    }
+
+    static @Nullable Boolean get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    static void put(Key key, boolean isSubtype) {
+        cache.put(key, isSubtype);
+    }
+
+    private static @Nullable Object canonicalKey(WurstType t) {
+        if (t instanceof WurstTypePrimitive
+                || t instanceof WurstNativeType) {
+            return t;
+        } else if (t instanceof WurstTypeClass
+                || t instanceof WurstTypeInterface
+                || t instanceof WurstTypeEnum) {
+            WurstTypeNamedScope ns = (WurstTypeNamedScope) t;
+            NamedScope def = ns.getDef();
+            if (def == null || ns.isStaticRef() || !ns.getTypeParameters().isEmpty()) {
+                return null;
+            }
+            if (def instanceof AstElementWithTypeParameters
+                    && !((AstElementWithTypeParameters) def).getTypeParameters().isEmpty()) {
+                // generic definitions might bind type variables in their supertypes
+                return null;
+            }
+            return def;
+        }
+        return null;
+    }
+
+    static final class Key {
+        private final Object sub;
+        private final Object sup;
+        private final boolean jassCode;
+
+        Key(Object sub, Object sup, boolean jassCode) {
+            this.sub = sub;
+            this.sup = sup;
+            this.jassCode = jassCode;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            // canonical keys are compared by identity
+            return sub == key.sub && sup == key.sup && jassCode == key.jassCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(sub), System.identityHashCode(sup), jassCode);
+        }
+    }
+}
@@ -36,6 +36,10 @@ public class WurstNativeType extends WurstType {
         return name;
     }
 
+    public WurstType getSuperType() {
+        return superType;
+    }
+
     public static WurstNativeType instance(String name, WurstType superType) {
         WurstNativeType t = new WurstNativeType();
         t.name = name;
@@ -36,6 +36,20 @@ public abstract class WurstType {
      * Will try to instantiate type variables from the set typeParams
      */
     public final @Nullable VariableBinding matchAgainstSupertype(WurstType other, @Nullable Element location, VariableBinding mapping, VariablePosition variablePosition) {
+        SubtypeCache.Key key = SubtypeCache.key(this, other, location);
+        if (key == null) {
+            return matchAgainstSupertypeUncached(other, location, mapping, variablePosition);
+        }
+        Boolean cached = SubtypeCache.get(key);
+        if (cached != null) {
+            return cached ? mapping : null;
+        }
+        VariableBinding result = matchAgainstSupertypeUncached(other, location, mapping, variablePosition);
+        SubtypeCache.put(key, result != null);
+        return result;
+    }
+
+    private @Nullable VariableBinding matchAgainstSupertypeUncached(WurstType other, @Nullable Element location, VariableBinding mapping, VariablePosition variablePosition) {
         if (other instanceof WurstTypeUnknown || this instanceof WurstTypeUnknown) {
             // everything is a subtype of unknown (stops error cascades)
             return mapping;
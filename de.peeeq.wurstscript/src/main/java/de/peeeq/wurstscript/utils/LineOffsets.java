@@ -1,5 +1,7 @@
 package de.peeeq.wurstscript.utils;
 
+import java.util.Arrays;
+
 public class LineOffsets {
     int[] offsets = new int[128];
     int maxLine = 0;
@@ -60,4 +62,22 @@ public class LineOffsets {
         int line = getLine(offset);
         return offset - get(line - 1);
     }
+
+    /**
+     * the offset of each line, used to store the line offsets in a snapshot
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(offsets, maxLine + 1);
+    }
+
+    public static LineOffsets fromArray(int[] offsets) {
+        LineOffsets result = new LineOffsets();
+        for (int line = 0; line < offsets.length; line++) {
+            if (offsets[line] != 0) {
+                result.set(line, offsets[line]);
+            }
+        }
+        result.maxLine = Math.max(result.maxLine, offsets.length - 1);
+        return result;
+    }
 }
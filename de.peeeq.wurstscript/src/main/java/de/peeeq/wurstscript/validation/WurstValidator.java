@@ -1,6 +1,7 @@
 package de.peeeq.wurstscript.validation;
 
 import com.google.common.collect.*;
+import de.peeeq.wurstio.PackageCosts;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.ast.*;
 import de.peeeq.wurstscript.attributes.CofigOverridePackages;
@@ -11,6 +12,7 @@ import de.peeeq.wurstscript.attributes.names.FuncLink;
 import de.peeeq.wurstscript.attributes.names.NameLink;
 import de.peeeq.wurstscript.attributes.names.VarLink;
 import de.peeeq.wurstscript.gui.ProgressHelper;
+import de.peeeq.wurstscript.translation.imtranslation.RecycleCodeGenerator;
 import de.peeeq.wurstscript.types.*;
 import de.peeeq.wurstscript.utils.Utils;
 import de.peeeq.wurstscript.validation.controlflow.DataflowAnomalyAnalysis;
@@ -43,11 +45,19 @@ public class WurstValidator {
     private int visitedFunctions;
     private Multimap<WScope, WScope> calledFunctions = HashMultimap.create();
     private @Nullable Element lastElement = null;
+    private @Nullable PackageCosts packageCosts = null;
 
     public WurstValidator(WurstModel root) {
         this.prog = root;
     }
 
+    /**
+     * sets the costs to which the check time of each compilation unit is added
+     */
+    public void setPackageCosts(@Nullable PackageCosts packageCosts) {
+        this.packageCosts = packageCosts;
+    }
+
     public void validate(List<CompilationUnit> toCheck) {
         try {
             functionCount = countFunctions();
@@ -56,7 +66,12 @@ public class WurstValidator {
             prog.getErrorHandler().setProgress("Checking wurst types",
                     ProgressHelper.getValidatorPercent(visitedFunctions, functionCount));
             for (CompilationUnit cu : toCheck) {
+                long start = System.nanoTime();
                 walkTree(cu);
+                PackageCosts costs = packageCosts;
+                if (costs != null) {
+                    costs.addCheckTime(cu, System.nanoTime() - start);
+                }
             }
             prog.getErrorHandler().setProgress("Post checks", 0.55);
             postChecks(toCheck);
@@ -1742,7 +1757,15 @@ public class WurstValidator {
 
                 @Override
                 public void case_ClassDef(ClassDef classDef) {
-                    check(VisibilityPublic.class, ModAbstract.class, ModStatic.class);
+                    if (m instanceof Annotation && ((Annotation) m).getAnnotationType().equals("@recycling")) {
+                        String strategy = RecycleCodeGenerator.annotatedStrategy(classDef);
+                        if (!RecycleCodeGenerator.STRATEGIES.contains(strategy)) {
+                            error.append("Unknown recycling strategy '").append(strategy).append("', available strategies are: ")
+                                    .append(String.join(", ", RecycleCodeGenerator.STRATEGIES));
+                        }
+                    } else {
+                        check(VisibilityPublic.class, ModAbstract.class, ModStatic.class);
+                    }
                     if (!classDef.isInnerClass() && classDef.attrIsStatic()) {
                         classDef.addError("Top-level class " + classDef.getName() + " cannot be static. "
                                 + "Only inner classes can be declared static.");
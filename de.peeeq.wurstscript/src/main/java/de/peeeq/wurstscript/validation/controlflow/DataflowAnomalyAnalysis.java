@@ -1,7 +1,5 @@
 package de.peeeq.wurstscript.validation.controlflow;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Sets;
@@ -10,6 +8,11 @@ import de.peeeq.wurstscript.ast.*;
 import de.peeeq.wurstscript.attributes.names.NameLink;
 import de.peeeq.wurstscript.types.WurstTypeArray;
 import de.peeeq.wurstscript.utils.Utils;
+import fj.Ord;
+import fj.Ordering;
+import fj.P2;
+import fj.data.Option;
+import fj.data.TreeMap;
 import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.*;
@@ -17,16 +20,37 @@ import java.util.Map.Entry;
 
 //w(11)->{r(17), r(19)} & w(19)->{r(17), r(19)} & w(22)
 class VarStates {
-    final ImmutableMap<LocalVarDef, VState> states;
+    /**
+     * persistent map, so that updating the state of a single variable only copies
+     * a logarithmic number of nodes instead of the complete map
+     */
+    final TreeMap<LocalVarDef, VState> states;
     final boolean thisDestroyed;
 
-    public VarStates(ImmutableMap<LocalVarDef, VState> states, boolean thisDestroyed) {
+    public VarStates(TreeMap<LocalVarDef, VState> states, boolean thisDestroyed) {
         this.states = states;
         this.thisDestroyed = thisDestroyed;
     }
 
     VarStates merge(VarStates other) {
-        ImmutableMap<LocalVarDef, VState> merged = Utils.mergeMaps(states, other.states, VState::merge);
+        if (states == other.states) {
+            return thisDestroyed || !other.thisDestroyed ? this : other;
+        }
+        // insert the entries of the smaller map into the larger one:
+        TreeMap<LocalVarDef, VState> merged = states;
+        TreeMap<LocalVarDef, VState> smaller = other.states;
+        if (smaller.size() > merged.size()) {
+            merged = other.states;
+            smaller = states;
+        }
+        for (P2<LocalVarDef, VState> e : smaller) {
+            Option<VState> existing = merged.get(e._1());
+            if (existing.isNone()) {
+                merged = merged.set(e._1(), e._2());
+            } else if (existing.some() != e._2()) {
+                merged = merged.set(e._1(), existing.some().merge(e._2()));
+            }
+        }
         return new VarStates(merged, thisDestroyed || other.thisDestroyed);
     }
 
@@ -36,7 +60,7 @@ class VarStates {
         if (o == null || getClass() != o.getClass()) return false;
         VarStates varStates = (VarStates) o;
         return thisDestroyed == varStates.thisDestroyed &&
-                Objects.equals(states, varStates.states);
+                (states == varStates.states || states.equals(varStates.states));
     }
 
     @Override
@@ -44,21 +68,21 @@ class VarStates {
         return Objects.hash(states, thisDestroyed);
     }
 
-    public static VarStates initial(Set<LocalVarDef> r) {
-        ImmutableMap.Builder<LocalVarDef, VState> s = ImmutableMap.builder();
+    public static VarStates initial(Ord<LocalVarDef> varOrd, Set<LocalVarDef> r) {
+        TreeMap<LocalVarDef, VState> s = TreeMap.empty(varOrd);
         for (LocalVarDef v : r) {
-            s.put(v, VState.initial);
+            s = s.set(v, VState.initial);
         }
-        return new VarStates(s.build(), false);
+        return new VarStates(s, false);
     }
 
     public boolean destroyed(NameDef v) {
-        VState s = states.get(v);
+        VState s = getVarState(v);
         return s != null && s.mightBeDestroyed;
     }
 
     public boolean uninitialized(NameDef v) {
-        VState s = states.get(v);
+        VState s = getVarState(v);
         return s != null && s.mightBeUninitialized;
     }
 
@@ -68,21 +92,12 @@ class VarStates {
             s = VState.initialDefined;
         }
         s = s.addRead(r);
-        Builder<LocalVarDef, VState> builder = ImmutableMap.builder();
-        for (Entry<LocalVarDef, VState> e : states.entrySet()) {
-            if (e.getKey() != v) {
-                builder.put(e);
-            }
-        }
-        ImmutableMap<LocalVarDef, VState> rs = builder
-                .put(v, s)
-                .build();
-        return new VarStates(rs, thisDestroyed);
+        return new VarStates(states.set(v, s), thisDestroyed);
     }
 
     public ImmutableSet<WStatement> getUnreadWrites(NameDef var) {
         ImmutableSet.Builder<WStatement> res = ImmutableSet.builder();
-        VState vState = states.get(var);
+        VState vState = getVarState(var);
         if (vState == null) return ImmutableSet.of();
         for (WStatement wr : vState.allWrites) {
             if (vState.writesAndReads.get(wr).isEmpty()) {
@@ -94,44 +109,33 @@ class VarStates {
     }
 
     public VarStates addWrite(LocalVarDef var, WStatement s) {
-        ImmutableMap.Builder<LocalVarDef, VState> res = ImmutableMap.builder();
-        for (Entry<LocalVarDef, VState> e : states.entrySet()) {
-            if (e.getKey() != var) {
-                res.put(e);
-            }
-        }
         VState vState = getVarState(var);
         if (vState == null) {
             vState = VState.initialDefined;
         }
         vState = vState.addWrite(s);
-        res.put(var, vState);
-        return new VarStates(res.build(), thisDestroyed);
+        return new VarStates(states.set(var, vState), thisDestroyed);
     }
 
     public VarStates addDestroy(LocalVarDef var) {
-        ImmutableMap.Builder<LocalVarDef, VState> res = ImmutableMap.builder();
-        for (Entry<LocalVarDef, VState> e : states.entrySet()) {
-            if (e.getKey() != var) {
-                res.put(e);
-            }
-        }
-        res.put(var, VState.destroyed);
-        return new VarStates(res.build(), thisDestroyed);
+        return new VarStates(states.set(var, VState.destroyed), thisDestroyed);
     }
 
 
 
-    private @Nullable VState getVarState(LocalVarDef var) {
-        return states.get(var);
+    private @Nullable VState getVarState(NameDef var) {
+        if (!(var instanceof LocalVarDef)) {
+            return null;
+        }
+        return states.get((LocalVarDef) var).toNull();
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("VarStates [");
-        for (Entry<LocalVarDef, VState> e : this.states.entrySet()) {
+        for (P2<LocalVarDef, VState> e : this.states) {
             sb.append("\n\t");
-            sb.append(e.getKey().getName()).append(" -> ").append(e.getValue());
+            sb.append(e._1().getName()).append(" -> ").append(e._2());
 
         }
         sb.append("]");
@@ -189,6 +193,9 @@ class VState {
     }
 
     public VState merge(VState other) {
+        if (this == other) {
+            return this;
+        }
         return new VState(mightBeUninitialized || other.mightBeUninitialized,
                 mightBeDestroyed || other.mightBeDestroyed,
                 Utils.mergeMultiMaps(writesAndReads, other.writesAndReads),
@@ -249,18 +256,26 @@ public class DataflowAnomalyAnalysis extends ForwardMethod<VarStates, AstElement
 
 
     private final boolean jassCode;
+    /** dense index for the local variables, used to order the keys of {@link VarStates#states} */
+    private final Map<LocalVarDef, Integer> varIndex = new HashMap<>();
+    private final Ord<LocalVarDef> varOrd = Ord.ord((LocalVarDef x, LocalVarDef y) ->
+            Ordering.fromInt(Integer.compare(indexOf(x), indexOf(y))));
 
     public DataflowAnomalyAnalysis(boolean jassCode) {
         this.jassCode = jassCode;
     }
 
+    private int indexOf(LocalVarDef v) {
+        return varIndex.computeIfAbsent(v, x -> varIndex.size());
+    }
+
     @Override
     VarStates calculate(WStatement s, VarStates incoming) {
         if (s instanceof StartFunctionStatement) {
             // initially all vars are uninitialized
-            final Set<LocalVarDef> r = Sets.newHashSet();
+            final Set<LocalVarDef> r = Sets.newLinkedHashSet();
             collectLocalVars(r, getFuncDef());
-            return VarStates.initial(r);
+            return VarStates.initial(varOrd, r);
         }
 
 
@@ -473,7 +488,7 @@ public class DataflowAnomalyAnalysis extends ForwardMethod<VarStates, AstElement
 
     @Override
     void checkFinal(VarStates fin) {
-        for (LocalVarDef var : fin.states.keySet()) {
+        for (LocalVarDef var : fin.states.keys()) {
             if (var.getName().startsWith("_")) {
                 // ignore warning, if name starts with "_"
                 continue;
@@ -495,7 +510,7 @@ public class DataflowAnomalyAnalysis extends ForwardMethod<VarStates, AstElement
 
     @Override
     public VarStates startValue() {
-        return VarStates.initial(Collections.emptySet());
+        return VarStates.initial(varOrd, Collections.emptySet());
     }
 
 
@@ -10,10 +10,13 @@ import java.util.*;
 public class ForwardExecution<T, Target extends AstElementWithBody> {
 
     private ForwardMethod<T, Target> method;
-    private Map<WStatement, T> currentValues = Maps.newLinkedHashMap();
+    private Map<WStatement, T> currentValues = Maps.newHashMap();
     private AstElementWithBody f;
 
-    private PriorityQueue<WStatement> todo = new PriorityQueue<>(11, (o1, o2) -> o2.getSource().getLeftPos() - o1.getSource().getLeftPos());
+    /** position of each statement in reverse postorder of the control flow graph */
+    private final Map<WStatement, Integer> order = new HashMap<>();
+    private final PriorityQueue<WStatement> todo = new PriorityQueue<>(11, Comparator.comparingInt(this::orderOf));
+    private final Set<WStatement> inTodo = new HashSet<>();
 
     ForwardExecution(Target f, ForwardMethod<T, Target> method) {
         this.f = f;
@@ -26,6 +29,7 @@ public class ForwardExecution<T, Target extends AstElementWithBody> {
         if (f.getBody().isEmpty()) {
             throw new Error("" + f);
         }
+        computeReversePostorder(f.getBody().get(0));
         addTodo(f.getBody().get(0));
         while (!todo.isEmpty()) {
             checkStmt(fromTodo());
@@ -34,15 +38,52 @@ public class ForwardExecution<T, Target extends AstElementWithBody> {
     }
 
 
+    /**
+     * Processing the statements in reverse postorder ensures, that all predecessors
+     * of a statement (except for loop back edges) are handled before the statement itself,
+     * so most statements only have to be calculated once.
+     */
+    private void computeReversePostorder(WStatement start) {
+        List<WStatement> postorder = new ArrayList<>();
+        Set<WStatement> visited = new HashSet<>();
+        // iterative depth first search, so that long functions do not overflow the stack:
+        Deque<WStatement> stack = new ArrayDeque<>();
+        Deque<Iterator<WStatement>> successors = new ArrayDeque<>();
+        visited.add(start);
+        stack.push(start);
+        successors.push(start.attrNextStatements().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<WStatement> it = successors.peek();
+            if (it.hasNext()) {
+                WStatement next = it.next();
+                if (visited.add(next)) {
+                    stack.push(next);
+                    successors.push(next.attrNextStatements().iterator());
+                }
+            } else {
+                postorder.add(stack.pop());
+                successors.pop();
+            }
+        }
+        for (int i = 0; i < postorder.size(); i++) {
+            order.put(postorder.get(i), postorder.size() - 1 - i);
+        }
+    }
+
+    private int orderOf(WStatement s) {
+        return order.getOrDefault(s, Integer.MAX_VALUE);
+    }
+
     private WStatement fromTodo() {
-        return todo.poll();
+        WStatement s = todo.poll();
+        inTodo.remove(s);
+        return s;
     }
 
     private void addTodo(WStatement s) {
-        if (todo.contains(s)) {
-            return;
+        if (inTodo.add(s)) {
+            todo.add(s);
         }
-        todo.add(s);
     }
 
     private void checkStmt(WStatement s) {
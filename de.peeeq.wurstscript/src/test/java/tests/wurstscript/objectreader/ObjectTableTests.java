@@ -0,0 +1,67 @@
+package tests.wurstscript.objectreader;
+
+import de.peeeq.wurstio.objectreader.*;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class ObjectTableTests {
+
+    private static final int HFOO = ObjectHelper.objectIdStringToInt("hfoo");
+    private static final int H000 = ObjectHelper.objectIdStringToInt("h000");
+    private static final int H001 = ObjectHelper.objectIdStringToInt("h001");
+
+    @Test
+    public void lookupByNewId() {
+        ObjectTable table = new ObjectTable(ObjectFileType.UNITS);
+        ObjectDefinition a = new ObjectDefinition(table, HFOO, H000);
+        ObjectDefinition b = new ObjectDefinition(table, HFOO, H001);
+        table.add(a);
+        table.add(b);
+
+        assertSame(table.get(H000), a);
+        assertSame(table.get(H001), b);
+        assertTrue(table.contains(H001));
+        assertFalse(table.contains(HFOO));
+    }
+
+    @Test
+    public void lookupByOrigId() {
+        ObjectTable table = new ObjectTable(ObjectFileType.UNITS);
+        ObjectDefinition a = new ObjectDefinition(table, HFOO, 0);
+        table.add(a);
+
+        assertSame(table.get(HFOO), a);
+    }
+
+    @Test
+    public void removeIfUpdatesIndex() {
+        ObjectTable table = new ObjectTable(ObjectFileType.UNITS);
+        ObjectDefinition a = new ObjectDefinition(table, HFOO, H000);
+        ObjectDefinition b = new ObjectDefinition(table, HFOO, H001);
+        table.add(a);
+        table.add(b);
+
+        table.removeIf(od -> od.getNewObjectId() == H000);
+
+        assertFalse(table.contains(H000));
+        assertSame(table.get(H001), b);
+        assertEquals(table.getObjectDefinitions().size(), 1);
+    }
+
+    @Test
+    public void lookupModification() {
+        ObjectTable table = new ObjectTable(ObjectFileType.ABILITIES);
+        ObjectDefinition a = new ObjectDefinition(table, HFOO, H000);
+        ObjectModificationInt lvl1 = new ObjectModificationInt(a, "Hbz1", 1, 1, 10);
+        ObjectModificationInt lvl2 = new ObjectModificationInt(a, "Hbz1", 2, 1, 20);
+        a.add(lvl1);
+        a.add(lvl2);
+
+        assertSame(a.getModification("Hbz1", 1), lvl1);
+        assertSame(a.getModification("Hbz1", 2), lvl2);
+        assertNull(a.getModification("Hbz1", 3));
+        assertNull(a.getModification("Hbz2", 1));
+    }
+
+}
@@ -0,0 +1,85 @@
+package tests.wurstscript.objectreader;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import de.peeeq.wurstio.intermediateLang.interpreter.CompiletimeNatives;
+import de.peeeq.wurstio.intermediateLang.interpreter.ProgramStateIO;
+import de.peeeq.wurstio.objectreader.ObjectHelper;
+import de.peeeq.wurstscript.ast.Ast;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.intermediatelang.ILconstInt;
+import de.peeeq.wurstscript.intermediatelang.ILconstString;
+import de.peeeq.wurstscript.intermediatelang.ILconstTuple;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import de.peeeq.wurstscript.jassIm.JassIm;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.HashMap;
+
+import static org.testng.Assert.*;
+
+public class ObjectWritebackTests {
+
+    private static final int HFOO = ObjectHelper.objectIdStringToInt("hfoo");
+    private static final int H000 = ObjectHelper.objectIdStringToInt("h000");
+    private static final long OLD_TIMESTAMP = 1_000_000_000_000L;
+
+    private File mapFile;
+    private File outputFolder;
+
+    @BeforeMethod
+    public void setUp() {
+        File dir = Files.createTempDir();
+        mapFile = new File(dir, "test.w3x");
+        outputFolder = new File(dir, "objectEditingOutput");
+    }
+
+    @Test
+    public void unchangedObjectsAreNotRewritten() {
+        writeBack(100);
+        File export = new File(outputFolder, "WurstExportedObjects_w3u.wurst.txt");
+        File w3o = new File(outputFolder, "wurstCreatedObjects.w3o");
+        assertTrue(export.exists());
+        assertTrue(w3o.exists());
+        assertTrue(export.setLastModified(OLD_TIMESTAMP));
+        assertTrue(w3o.setLastModified(OLD_TIMESTAMP));
+
+        writeBack(100);
+
+        assertEquals(export.lastModified(), OLD_TIMESTAMP);
+        assertEquals(w3o.lastModified(), OLD_TIMESTAMP);
+    }
+
+    @Test
+    public void changedObjectsAreRewritten() throws Exception {
+        writeBack(100);
+        File export = new File(outputFolder, "WurstExportedObjects_w3u.wurst.txt");
+        File w3o = new File(outputFolder, "wurstCreatedObjects.w3o");
+        String oldExport = Files.asCharSource(export, Charsets.UTF_8).read();
+        assertTrue(export.setLastModified(OLD_TIMESTAMP));
+        assertTrue(w3o.setLastModified(OLD_TIMESTAMP));
+
+        writeBack(200);
+
+        assertNotEquals(export.lastModified(), OLD_TIMESTAMP);
+        assertNotEquals(w3o.lastModified(), OLD_TIMESTAMP);
+        String newExport = Files.asCharSource(export, Charsets.UTF_8).read();
+        assertNotEquals(newExport, oldExport);
+        assertTrue(newExport.contains("200"));
+    }
+
+    /**
+     * simulates a build, which creates one unit with the given hit points at compiletime
+     */
+    private void writeBack(int hitPoints) {
+        ImProg prog = JassIm.ImProg(Ast.NoExpr(), JassIm.ImVars(), JassIm.ImFunctions(), JassIm.ImMethods(),
+                JassIm.ImClasses(), JassIm.ImTypeClassFuncs(), new HashMap<>());
+        ProgramStateIO state = new ProgramStateIO(mapFile, null, new WurstGuiLogger(), prog, true);
+        CompiletimeNatives natives = new CompiletimeNatives(state);
+        ILconstTuple unit = natives.createObjectDefinition(new ILconstString("w3u"), new ILconstInt(H000), new ILconstInt(HFOO));
+        natives.ObjectDefinition_setInt(unit, new ILconstString("uhpm"), new ILconstInt(hitPoints));
+        state.writeBack(false);
+    }
+}
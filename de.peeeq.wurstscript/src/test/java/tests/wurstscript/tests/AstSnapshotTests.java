@@ -0,0 +1,192 @@
+package tests.wurstscript.tests;
+
+import com.google.common.io.Files;
+import de.peeeq.wurstio.AstSnapshot;
+import de.peeeq.wurstio.AstSnapshotCache;
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.AstElementWithSource;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.ast.WPackage;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import de.peeeq.wurstscript.parser.WPos;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.*;
+
+public class AstSnapshotTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "package Test",
+            "import NoWurst",
+            "/** a tuple */",
+            "public tuple vec(real x, real y)",
+            "class A",
+            "    int i = 1 + 2 * 3",
+            "    string s = \"hello\"",
+            "    function foo() returns boolean",
+            "        let f = (int x) -> x mod 2",
+            "        return not i < 3 and s != null",
+            "init",
+            "    for i = 1 to 10",
+            "        new A.foo()",
+            "");
+
+    private CompilationUnit parse(String file) {
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, new WurstGuiCliImpl(), null, new RunArgs());
+        return compiler.parse(file, new StringReader(PROGRAM));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        CompilationUnit cu = parse("test.wurst");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstSnapshot.write(cu, out);
+        CompilationUnit read = AstSnapshot.read(new ByteArrayInputStream(out.toByteArray()), "test.wurst",
+                new ErrorHandler(new WurstGuiCliImpl()));
+
+        assertEquals(read.getPackages().toString(), cu.getPackages().toString());
+        assertSameStructure(read, cu);
+        WPackage p = read.getPackages().get(0);
+        assertEquals(p.getSource().getLine(), cu.getPackages().get(0).getSource().getLine());
+        assertEquals(p.getSource().getFile(), "test.wurst");
+    }
+
+    @Test
+    public void fileIsReplaced() throws IOException {
+        CompilationUnit cu = parse("old/test.wurst");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstSnapshot.write(cu, out);
+        CompilationUnit read = AstSnapshot.read(new ByteArrayInputStream(out.toByteArray()), "new/test.wurst",
+                new ErrorHandler(new WurstGuiCliImpl()));
+
+        assertEquals(read.getFile(), "new/test.wurst");
+        assertEquals(read.getPackages().get(0).getSource().getFile(), "new/test.wurst");
+    }
+
+    @Test
+    public void cache() throws IOException {
+        File folder = Files.createTempDir();
+        AstSnapshotCache cache = new AstSnapshotCache(folder);
+        String key = AstSnapshotCache.key(PROGRAM.getBytes(), false);
+        ErrorHandler errorHandler = new ErrorHandler(new WurstGuiCliImpl());
+        assertNull(cache.load(key, "test.wurst", errorHandler));
+
+        CompilationUnit cu = parse("test.wurst");
+        cache.store(key, cu);
+        CompilationUnit loaded = cache.load(key, "test.wurst", errorHandler);
+        assertNotNull(loaded);
+        assertEquals(loaded.getPackages().toString(), cu.getPackages().toString());
+
+        // the parse result depends on whether common.j is present:
+        assertNotEquals(AstSnapshotCache.key(PROGRAM.getBytes(), true), key);
+
+        // damaged snapshots are ignored:
+        for (File f : folder.listFiles()) {
+            Files.write(new byte[]{1, 2, 3}, f);
+        }
+        assertNull(cache.load(key, "test.wurst", errorHandler));
+    }
+
+    @Test
+    public void invalidLengths() throws IOException {
+        for (int length : new int[]{-1, Integer.MAX_VALUE}) {
+            SnapshotBuilder b = new SnapshotBuilder();
+            b.out.writeInt(0);
+            b.out.writeInt(length);
+            try {
+                AstSnapshot.read(new ByteArrayInputStream(b.bytes.toByteArray()), "test.wurst",
+                        new ErrorHandler(new WurstGuiCliImpl()));
+                fail("length " + length + " was accepted");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("Invalid length"), e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void cacheIgnoresSnapshotsWithWrongTypes() throws IOException {
+        File folder = Files.createTempDir();
+        AstSnapshotCache cache = new AstSnapshotCache(folder);
+        String key = AstSnapshotCache.key(PROGRAM.getBytes(), false);
+        ErrorHandler errorHandler = new ErrorHandler(new WurstGuiCliImpl());
+        cache.store(key, parse("test.wurst"));
+
+        // an argument list, where the left operand of a binary expression is expected:
+        SnapshotBuilder b = new SnapshotBuilder();
+        b.writeString("ExprBinary");
+        b.writePos();
+        b.writeString("Arguments");
+        b.out.writeInt(0);
+        b.writeString("PLUS");
+        b.writeString("ExprIntVal");
+        b.writePos();
+        b.writeString("1");
+        for (File f : folder.listFiles()) {
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(f))) {
+                out.write(b.bytes.toByteArray());
+            }
+        }
+        assertNull(cache.load(key, "test.wurst", errorHandler));
+        assertEquals(folder.listFiles().length, 0);
+    }
+
+    /**
+     * writes snapshots by hand, to create snapshots which cannot be read
+     */
+    private static class SnapshotBuilder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final List<String> strings = new ArrayList<>();
+
+        SnapshotBuilder() throws IOException {
+            out.writeInt(0x57415354);
+            out.writeInt(AstSnapshot.FORMAT_VERSION);
+            out.writeUTF("test.wurst");
+        }
+
+        void writeString(String s) throws IOException {
+            int index = strings.indexOf(s);
+            if (index >= 0) {
+                out.writeInt(index);
+            } else {
+                out.writeInt(strings.size());
+                strings.add(s);
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(b.length);
+                out.write(b);
+            }
+        }
+
+        void writePos() throws IOException {
+            writeString("test.wurst");
+            // no line offsets:
+            out.writeInt(-1);
+            out.writeInt(0);
+            out.writeInt(0);
+        }
+    }
+
+    private void assertSameStructure(Element a, Element b) {
+        assertEquals(a.getClass(), b.getClass());
+        assertEquals(a.size(), b.size());
+        if (a instanceof AstElementWithSource) {
+            WPos posA = ((AstElementWithSource) a).getSource();
+            WPos posB = ((AstElementWithSource) b).getSource();
+            assertEquals(posA.getLeftPos(), posB.getLeftPos());
+            assertEquals(posA.getRightPos(), posB.getRightPos());
+            assertEquals(posA.getLine(), posB.getLine());
+        }
+        for (int i = 0; i < a.size(); i++) {
+            assertSameStructure(a.get(i), b.get(i));
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package tests.wurstscript.tests;
 
 import de.peeeq.wurstio.jassinterpreter.DebugPrintError;
+import de.peeeq.wurstscript.RunArgs;
+import org.testng.Assert;
 import org.testng.annotations.Ignore;
 import org.testng.annotations.Test;
 
@@ -335,6 +337,109 @@ public class ClassesTests extends WurstScriptTest {
         );
     }
 
+    @Test
+    public void recycling_freelist() {
+        test().executeProg(true)
+                .executeProgOnlyAfterTransforms()
+                .lines(
+                "package test",
+                "	native testSuccess()",
+                "	@recycling(\"freelist\") class C",
+                "		int i",
+                "",
+                "	init",
+                "		C array cs",
+                "		for int i = 0 to 6000",
+                "			cs[i] = new C()",
+                "		for int j = 0 to 6000",
+                "			destroy cs[j]",
+                "		for int k = 0 to 6000",
+                "			cs[k] = new C()",
+                "		if cs[6000] castTo int <= 6001 and cs[0] != cs[1]",
+                "			testSuccess()",
+                "endpackage"
+        );
+    }
+
+    @Test
+    public void recycling_checkedFreelist() {
+        testAssertOkLines(true,
+                "package test",
+                "	native testSuccess()",
+                "	@recycling(\"checkedFreelist\") class A",
+                "	class B extends A",
+                "	init",
+                "		A a = new A",
+                "		A b = new B",
+                "		destroy a",
+                "		A c = new B",
+                "		A d = new A",
+                "		if c == a and d != b and c instanceof B",
+                "			testSuccess()",
+                "endpackage"
+        );
+    }
+
+    @Test
+    public void recycling_unknownStrategy() {
+        testAssertErrorsLines(false, "Unknown recycling strategy",
+                "package test",
+                "	@recycling(\"foo\") class C",
+                "endpackage"
+        );
+    }
+
+    @Test
+    public void fieldLayout_sparse() {
+        test().executeProg(true)
+                .executeProgOnlyAfterTransforms()
+                .withRunArgs("-fieldLayout", "sparse")
+                .lines(
+                "type agent extends handle",
+                "type hashtable extends agent",
+                "package test",
+                "	native testSuccess()",
+                "	native InitHashtable() returns hashtable",
+                "	native SaveInteger(hashtable h, int p, int c, int i)",
+                "	native LoadInteger(hashtable h, int p, int c) returns int",
+                "	native RemoveSavedInteger(hashtable h, int p, int c)",
+                "	native SaveStr(hashtable h, int p, int c, string s)",
+                "	native LoadStr(hashtable h, int p, int c) returns string",
+                "	native RemoveSavedString(hashtable h, int p, int c)",
+                "	class A",
+                "		int counter",
+                "		string name",
+                "		function count()",
+                "			counter = counter + 1",
+                "			counter = counter * 1",
+                "	class B extends A",
+                "		A other",
+                "	init",
+                "		B b = new B()",
+                "		b.name = \"b\"",
+                "		b.other = b",
+                "		b.count()",
+                "		b.count()",
+                "		let ok = b.counter == 2 and b.name == \"b\" and b.other == b",
+                "		destroy b",
+                "		// the new object gets the id of b, but the fields in the hashtable were removed:",
+                "		B c = new B()",
+                "		if ok and c.other == null",
+                "			testSuccess()",
+                "endpackage"
+        );
+    }
+
+    @Test
+    public void fieldLayout_unknownStrategy() {
+        try {
+            new RunArgs("-fieldLayout", "foo");
+            Assert.fail("unknown field layout was accepted");
+        } catch (RuntimeException e) {
+            Assert.assertEquals(e.getMessage(), "Unknown field layout: foo");
+        }
+    }
+
     @Test
     public void cast_class() {
         testAssertOkLines(true,
@@ -0,0 +1,90 @@
+package tests.wurstscript.tests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import de.peeeq.wurstio.CompilationProcess;
+import de.peeeq.wurstio.DiagnosticsCache;
+import de.peeeq.wurstio.DiagnosticsCache.Diagnostic;
+import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.gui.WurstGuiLogger;
+import de.peeeq.wurstscript.parser.WPos;
+import de.peeeq.wurstscript.utils.LineOffsets;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class DiagnosticsCacheTests {
+
+    @Test
+    public void roundTrip() throws IOException {
+        File cacheFile = File.createTempFile("diagnosticsCache", ".json");
+        cacheFile.deleteOnExit();
+        Diagnostic error = Diagnostic.fromError(new CompileError(new WPos("A.wurst", new LineOffsets(), 3, 5), "some error"));
+        Diagnostic warning = Diagnostic.fromError(new CompileError(new WPos("A.wurst", new LineOffsets(), 7, 9),
+                "some warning", CompileError.ErrorType.WARNING));
+
+        DiagnosticsCache cache = DiagnosticsCache.load(cacheFile);
+        cache.put("A.wurst", "hash1", ImmutableList.of(error, warning));
+        cache.put("B.wurst", "hash2", ImmutableList.of());
+        cache.save();
+
+        DiagnosticsCache loaded = DiagnosticsCache.load(cacheFile);
+        List<Diagnostic> diagnostics = loaded.get("A.wurst", "hash1");
+        assertEquals(diagnostics, ImmutableList.of(error, warning));
+        assertTrue(diagnostics.get(0).isError());
+        assertFalse(diagnostics.get(1).isError());
+        assertEquals(loaded.get("B.wurst", "hash2"), ImmutableList.of());
+    }
+
+    @Test
+    public void changedHash() throws IOException {
+        File cacheFile = File.createTempFile("diagnosticsCache", ".json");
+        cacheFile.deleteOnExit();
+        DiagnosticsCache cache = DiagnosticsCache.load(cacheFile);
+        cache.put("A.wurst", "hash1", ImmutableList.of());
+
+        assertNull(cache.get("A.wurst", "hash2"));
+        assertNull(cache.get("C.wurst", "hash1"));
+    }
+
+    @Test
+    public void invalidCacheFile() throws IOException {
+        File cacheFile = File.createTempFile("diagnosticsCache", ".json");
+        cacheFile.deleteOnExit();
+        FileUtils.write("not json", cacheFile);
+
+        DiagnosticsCache cache = DiagnosticsCache.load(cacheFile);
+        assertNull(cache.get("A.wurst", "hash1"));
+    }
+
+    @Test
+    public void checkOnlyReportsErrorsAsJson() throws IOException {
+        File dir = Files.createTempDir();
+        File cacheFile = new File(dir, "diagnosticsCache.json");
+        File fileA = new File(dir, "A.wurst");
+        FileUtils.write("package A\nfunction a()\n\tfoo()\n", fileA);
+        RunArgs runArgs = new RunArgs("-checkOnly", "-diagnosticsCache", cacheFile.getPath(), getFile("common.j").getPath(), fileA.getPath());
+
+        String json = DiagnosticsCache.toJson(new CompilationProcess(new WurstGuiLogger(), runArgs).doTypecheckOnly());
+        assertTrue(json.contains("Reference to function foo could not be resolved"), json);
+        assertTrue(json.contains("\"severity\": \"error\""), json);
+        assertTrue(json.contains("\"line\": 3"), json);
+        assertTrue(json.contains("\"column\": 2"), json);
+        assertTrue(cacheFile.exists());
+
+        // the second run takes the diagnostics from the cache:
+        String cachedJson = DiagnosticsCache.toJson(new CompilationProcess(new WurstGuiLogger(), runArgs).doTypecheckOnly());
+        assertEquals(cachedJson, json);
+    }
+
+    private static File getFile(String name) {
+        return new File(DiagnosticsCacheTests.class.getClassLoader().getResource(name).getFile());
+    }
+
+}
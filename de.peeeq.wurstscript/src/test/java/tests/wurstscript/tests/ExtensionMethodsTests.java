@@ -151,4 +151,34 @@ public class ExtensionMethodsTests extends WurstScriptTest {
         );
     }
 
+    @Test
+    public void sameNameDifferentReceivers() {
+        // extension functions with the same name are selected by the receiver type, including supertypes
+        testAssertOkLines(true,
+                "package test",
+                "	native testSuccess()",
+                "	interface I",
+                "	class A implements I",
+                "	class B extends A",
+                "	class C",
+                "	function int.kind() returns int",
+                "		return 1",
+                "	function string.kind() returns int",
+                "		return 2",
+                "	function C.kind() returns int",
+                "		return 3",
+                "	function I.kind() returns int",
+                "		return 4",
+                "	function T.generic<T>() returns int",
+                "		return 5",
+                "	init",
+                "		int i = 1",
+                "		string s = \"a\"",
+                "		B b = new B()",
+                "		if i.kind() == 1 and s.kind() == 2 and new C().kind() == 3 and b.kind() == 4 and b.generic() == 5",
+                "			testSuccess()",
+                "endpackage"
+        );
+    }
+
 }
@@ -1,9 +1,12 @@
 package tests.wurstscript.tests;
 
+import com.google.common.collect.Lists;
 import de.peeeq.wurstio.UtilsIO;
 import de.peeeq.wurstscript.utils.Utils;
 import org.testng.annotations.Test;
 
+import java.util.List;
+
 public class FlowAnalysisTests extends WurstScriptTest {
 
     @Test
@@ -133,4 +136,30 @@ public class FlowAnalysisTests extends WurstScriptTest {
         );
     }
 
+    @Test
+    public void uninitializedAlongBackEdge() {
+        testAssertErrorsLines(false, "Variable x may not have been initialized",
+                "package test",
+                "init",
+                "    int x",
+                "    var i = 0",
+                "    while i < 10",
+                "        if i > 0",
+                "            i = x",
+                "        x = i + 1",
+                "        i++"
+        );
+    }
+
+    @Test
+    public void manyLocals() {
+        List<String> lines = Lists.newArrayList("package test", "native testSuccess()", "init");
+        for (int i = 0; i < 300; i++) {
+            lines.add("    var x" + i + " = " + (i == 0 ? "0" : "x" + (i - 1) + " + 1"));
+        }
+        lines.add("    if x299 == 299");
+        lines.add("        testSuccess()");
+        testAssertOkLines(true, lines.toArray(new String[0]));
+    }
+
 }
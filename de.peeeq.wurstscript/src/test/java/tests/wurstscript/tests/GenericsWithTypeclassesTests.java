@@ -1,8 +1,16 @@
 package tests.wurstscript.tests;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
 import org.testng.annotations.Ignore;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
 public class GenericsWithTypeclassesTests extends WurstScriptTest {
 
 
@@ -22,6 +30,33 @@ public class GenericsWithTypeclassesTests extends WurstScriptTest {
         );
     }
 
+    @Test
+    public void packageCosts() throws IOException {
+        File costsFile = new File("./test-output/GenericsWithTypeclassesTests_packageCosts.csv");
+        test().withRunArgs("-packageCosts", costsFile.getPath()).executeProg().lines(
+                "package Lib",
+                "	public function identity<A:>(A a) returns A",
+                "		return a",
+                "endpackage",
+                "package test",
+                "	import Lib",
+                "	native testSuccess()",
+                "	init",
+                "		int x = identity(3)",
+                "		string s = identity(\"a\")",
+                "		if x == 3 and s == \"a\"",
+                "			testSuccess()",
+                "endpackage"
+        );
+        List<String> lines = Files.readLines(costsFile, Charsets.UTF_8);
+        assertEquals(lines.get(0), "package,check ms,translate ms,im elements,specialized functions,specialized classes,"
+                + "specialized im elements,optimized im elements,jass functions,jass chars");
+        String[] lib = lines.stream().filter(l -> l.startsWith("Lib,")).findFirst().get().split(",");
+        // identity is specialized for int and string:
+        assertEquals(lib[4], "2");
+        assertEquals(lib[5], "0");
+    }
+
     @Test
     public void identityTrans() {
         testAssertOkLines(true,
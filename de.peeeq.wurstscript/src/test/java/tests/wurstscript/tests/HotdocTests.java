@@ -0,0 +1,63 @@
+package tests.wurstscript.tests;
+
+import com.google.common.base.Charsets;
+import de.peeeq.wurstio.hotdoc.HotdocGenerator;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class HotdocTests {
+
+    private static void write(File file, String... lines) throws IOException {
+        Files.write(file.toPath(), String.join("\n", lines).concat("\n").getBytes(Charsets.UTF_8));
+    }
+
+    private static void generate(File inputFolder, File outputFolder) {
+        new HotdocGenerator(Arrays.asList(inputFolder.getPath(), outputFolder.getPath())).generateDoc();
+    }
+
+    @Test
+    public void unchangedPagesAreNotWrittenAgain() throws IOException {
+        File input = Files.createTempDirectory("hotdocInput").toFile();
+        File output = Files.createTempDirectory("hotdocOutput").toFile();
+        write(new File(input, "A.wurst"),
+                "package A",
+                "/** the answer */",
+                "public function answer() returns int",
+                "    return 42");
+        write(new File(input, "B.wurst"),
+                "package B",
+                "public constant x = 1");
+        generate(input, output);
+
+        File pageA = new File(output, "A.html");
+        File pageB = new File(output, "B.html");
+        assertTrue(new File(output, "index.html").exists());
+        assertTrue(new String(Files.readAllBytes(pageA.toPath()), Charsets.UTF_8).contains("the answer"));
+        String contentB = new String(Files.readAllBytes(pageB.toPath()), Charsets.UTF_8);
+
+        // mark the pages, so that we can see which pages were written again:
+        write(pageA, "old");
+        write(pageB, "old");
+        write(new File(input, "B.wurst"),
+                "package B",
+                "public constant y = 1");
+        generate(input, output);
+
+        assertEquals(new String(Files.readAllBytes(pageA.toPath()), Charsets.UTF_8), "old\n");
+        String newContentB = new String(Files.readAllBytes(pageB.toPath()), Charsets.UTF_8);
+        assertNotEquals(newContentB, contentB);
+        assertTrue(newContentB.contains("var_y"));
+
+        // pages of removed packages are deleted:
+        assertTrue(new File(input, "B.wurst").delete());
+        generate(input, output);
+        assertFalse(pageB.exists());
+        assertTrue(pageA.exists());
+    }
+}
@@ -539,6 +539,24 @@ public class InterfaceTests extends WurstScriptTest {
         );
     }
 
+    @Test
+    public void subtypeCheckNotSymmetric() {
+        // the subtype relation is cached, so check that both directions are still distinguished
+        testAssertErrorsLines(false, "Cannot assign I to B",
+                "package test",
+                "	interface I",
+                "		function foo() returns int",
+                "	class B implements I",
+                "		function foo() returns int",
+                "			return 2",
+                "	init",
+                "		I i1 = new B()",
+                "		I i2 = new B()",
+                "		B b = i1",
+                "endpackage"
+        );
+    }
+
     @Test
     public void testEmptyImplements() {
         CompilationResult res = test().executeProg(false)
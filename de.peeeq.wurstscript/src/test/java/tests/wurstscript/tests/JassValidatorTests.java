@@ -0,0 +1,133 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.frotty.jassValidator.JassDeclarations;
+import de.peeeq.wurstscript.frotty.jassValidator.JassValidator;
+import de.peeeq.wurstscript.jassAst.JassFunction;
+import de.peeeq.wurstscript.jassAst.JassProg;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static de.peeeq.wurstscript.jassAst.JassAst.*;
+import static org.testng.Assert.*;
+
+public class JassValidatorTests {
+
+    private List<String> validate(JassFunction... functions) {
+        JassProg prog = JassProg(JassTypeDefs(),
+                JassVars(JassArrayVar("integer", "a"), JassInitializedVar("integer", "g", JassExprIntVal("0"), false)),
+                JassNatives(),
+                JassFunctions(functions));
+        return JassValidator.validate(prog).stream()
+                .map(CompileError::getMessage)
+                .collect(Collectors.toList());
+    }
+
+    private void assertError(List<String> errors, String expected) {
+        assertTrue(errors.stream().anyMatch(e -> e.contains(expected)), errors.toString());
+    }
+
+    @Test
+    public void standardDeclarations() {
+        JassDeclarations d = JassDeclarations.standard(null, null);
+        assertTrue(d.isSubtype("unit", "handle"));
+        assertFalse(d.isSubtype("unit", "player"));
+        assertEquals(d.getFunction("GetUnitX").getReturnType(), "real");
+        assertEquals(d.getFunction("GetUnitX").getParamTypes().get(0), "unit");
+        // blizzard.j:
+        assertNotNull(d.getFunction("BJDebugMsg"));
+        assertTrue(d.getGlobal("bj_PI").isConstant());
+    }
+
+    @Test
+    public void validProgram() {
+        JassFunction foo = JassFunction("foo", JassSimpleVars(JassSimpleVar("integer", "x")), "real",
+                JassVars(JassInitializedVar("unit", "u", JassExprNull(), false)),
+                JassStatements(
+                        JassStmtSetArray("a", JassExprVarAccess("x"), JassExprIntVal("1")),
+                        JassStmtCall("BJDebugMsg", JassExprlist(JassExprBinary(JassExprStringVal("x = "),
+                                JassOpPlus(), JassExprFunctionCall("I2S", JassExprlist(JassExprVarAccess("g")))))),
+                        JassStmtLoop(JassStatements(
+                                JassStmtExitwhen(JassExprBinary(JassExprVarAccess("x"), JassOpGreater(), JassExprIntVal("3"))),
+                                JassStmtSet("x", JassExprBinary(JassExprVarAccess("x"), JassOpPlus(), JassExprIntVal("1"))))),
+                        JassStmtIf(JassExprBinary(JassExprVarAccess("u"), JassOpEquals(), JassExprNull()),
+                                // integers can be returned as reals:
+                                JassStatements(JassStmtReturn(JassExprVarAccess("x"))),
+                                JassStatements(JassStmtReturn(JassExprRealVal("1.5"))))),
+                false);
+        JassFunction main = JassFunction("main", JassSimpleVars(), "nothing", JassVars(),
+                JassStatements(JassStmtCall("TimerStart", JassExprlist(JassExprFunctionCall("CreateTimer", JassExprlist()),
+                        JassExprIntVal("1"), JassExprBoolVal(false), JassExprFuncRef("main")))),
+                false);
+        assertEquals(validate(foo, main), Collections.emptyList());
+    }
+
+    @Test
+    public void undefinedNames() {
+        JassFunction f = JassFunction("f", JassSimpleVars(), "nothing", JassVars(),
+                JassStatements(
+                        JassStmtSet("y", JassExprIntVal("1")),
+                        JassStmtCall("g", JassExprlist()),
+                        // functions have to be declared before they are used:
+                        JassStmtCall("later", JassExprlist())),
+                false);
+        JassFunction later = JassFunction("later", JassSimpleVars(), "nothing", JassVars(), JassStatements(), false);
+        List<String> errors = validate(f, later);
+        assertError(errors, "In function f: Variable y is not defined.");
+        assertError(errors, "Function g is not defined.");
+        assertError(errors, "Function later is not defined.");
+    }
+
+    @Test
+    public void typeErrors() {
+        JassFunction f = JassFunction("f", JassSimpleVars(), "integer", JassVars(),
+                JassStatements(
+                        JassStmtSet("g", JassExprRealVal("1.5")),
+                        JassStmtCall("GetUnitX", JassExprlist(JassExprIntVal("1"))),
+                        JassStmtIf(JassExprIntVal("1"), JassStatements(), JassStatements()),
+                        JassStmtSet("bj_PI", JassExprRealVal("3.0")),
+                        JassStmtSet("a", JassExprIntVal("1")),
+                        JassStmtExitwhen(JassExprBoolVal(true)),
+                        JassStmtSet("g", JassExprBinary(JassExprVarAccess("g"), JassOpDiv(), JassExprIntVal("0")))),
+                false);
+        List<String> errors = validate(f);
+        assertError(errors, "Cannot assign a value of type real to variable g of type integer.");
+        assertError(errors, "Argument 1 of GetUnitX must have type unit, but has type integer.");
+        assertError(errors, "The condition of if must be a boolean, but has type integer.");
+        assertError(errors, "Cannot assign to the constant bj_PI.");
+        assertError(errors, "Variable a is an array and can only be used with an index.");
+        assertError(errors, "exitwhen is only allowed inside of loops.");
+        assertError(errors, "Division by zero.");
+        assertError(errors, "Missing return at the end of the function.");
+    }
+
+    @Test
+    public void boolexprFunctionsMustReturnBoolean() {
+        JassFunction noBool = JassFunction("noBool", JassSimpleVars(), "nothing", JassVars(), JassStatements(), false);
+        JassFunction isBool = JassFunction("isBool", JassSimpleVars(), "boolean", JassVars(),
+                JassStatements(JassStmtReturn(JassExprBoolVal(true))), false);
+        JassFunction f = JassFunction("f", JassSimpleVars(), "nothing", JassVars(),
+                JassStatements(
+                        JassStmtCall("DestroyBoolExpr", JassExprlist(JassExprFunctionCall("Condition", JassExprlist(JassExprFuncRef("noBool"))))),
+                        JassStmtCall("DestroyBoolExpr", JassExprlist(JassExprFunctionCall("Filter", JassExprlist(JassExprFuncRef("isBool")))))),
+                false);
+        List<String> errors = validate(noBool, isBool, f);
+        assertEquals(errors.size(), 1, errors.toString());
+        assertError(errors, "Function noBool passed to Condition must return a boolean.");
+    }
+
+    @Test
+    public void infiniteLoopDoesNotNeedReturn() {
+        JassFunction f = JassFunction("f", JassSimpleVars(), "integer", JassVars(),
+                JassStatements(JassStmtLoop(JassStatements(
+                        JassStmtExitwhen(JassExprUnary(JassOpNot(), JassExprBoolVal(true))),
+                        JassStmtIf(JassExprBoolVal(true),
+                                JassStatements(JassStmtReturn(JassExprIntVal("1"))),
+                                JassStatements())))),
+                false);
+        assertEquals(validate(f), Collections.emptyList());
+    }
+}
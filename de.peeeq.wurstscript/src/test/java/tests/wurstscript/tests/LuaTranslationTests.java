@@ -0,0 +1,129 @@
+package tests.wurstscript.tests;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs the programs translated with the -lua option, including the optimizations of the generated Lua code.
+ */
+public class LuaTranslationTests extends WurstScriptTest {
+
+    @BeforeClass
+    public void checkLuaInstalled() {
+        try {
+            Runtime.getRuntime().exec(new String[]{"lua", "-v"}).waitFor();
+        } catch (IOException | InterruptedException e) {
+            throw new SkipException("lua interpreter not found");
+        }
+    }
+
+    @Test
+    public void countingLoopIsNumericFor() throws IOException {
+        test().withLua().executeProg().lines(
+                "package test",
+                "	native testSuccess()",
+                "	function sum(int n) returns int",
+                "		int s = 0",
+                "		for i = 1 to n",
+                "			s += i",
+                "		return s",
+                "	init",
+                "		if sum(10) == 55",
+                "			testSuccess()",
+                "endpackage");
+        String lua = readLua("countingLoopIsNumericFor");
+        assertTrue(Pattern.compile("for \\w+ = ").matcher(lua).find(), lua);
+    }
+
+    @Test
+    public void globalArrayIsCachedInLocal() throws IOException {
+        test().withLua().executeProg().lines(
+                "package test",
+                "	native testSuccess()",
+                "	int array squares",
+                "	init",
+                "		for i = 0 to 9",
+                "			squares[i] = i * i",
+                "		int s = 0",
+                "		for i = 0 to 9",
+                "			s += squares[i]",
+                "		if s == 285",
+                "			testSuccess()",
+                "endpackage");
+        String lua = readLua("globalArrayIsCachedInLocal");
+        assertTrue(Pattern.compile("local (\\w*squares\\w*) = \\1\\b").matcher(lua).find(), lua);
+    }
+
+    @Test
+    public void classDispatch() throws IOException {
+        test().withLua().executeProg().lines(
+                "package test",
+                "	native testSuccess()",
+                "	abstract class Shape",
+                "		abstract function area() returns int",
+                "	class Square extends Shape",
+                "		int s",
+                "		construct(int s)",
+                "			this.s = s",
+                "		override function area() returns int",
+                "			return s * s",
+                "	class Rect extends Shape",
+                "		int w",
+                "		int h",
+                "		construct(int w, int h)",
+                "			this.w = w",
+                "			this.h = h",
+                "		override function area() returns int",
+                "			return w * h",
+                "	function totalArea(Shape a, Shape b) returns int",
+                "		int total = 0",
+                "		for i = 1 to 3",
+                "			total += a.area() + b.area()",
+                "		return total",
+                "	init",
+                "		if totalArea(new Square(3), new Rect(2, 5)) == 57",
+                "			testSuccess()",
+                "endpackage");
+        String lua = readLua("classDispatch");
+        assertTrue(lua.contains("wurst_class("), lua);
+    }
+
+    @Test
+    public void moreThan200Locals() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("package test");
+        lines.add("	native testSuccess()");
+        lines.add("	function sum(int x) returns int");
+        for (int i = 0; i < 250; i++) {
+            lines.add("		int v" + i + " = x + " + i);
+        }
+        lines.add("		int s = 0");
+        for (int i = 0; i < 250; i++) {
+            lines.add("		s += v" + i);
+        }
+        lines.add("		return s");
+        lines.add("	init");
+        lines.add("		if sum(1) == 31375");
+        lines.add("			testSuccess()");
+        lines.add("endpackage");
+        test().withLua().executeProg().lines(lines.toArray(new String[0]));
+        String lua = readLua("moreThan200Locals");
+        assertTrue(Pattern.compile("local locals\\w* = \\{").matcher(lua).find(), lua);
+    }
+
+    private String readLua(String testName) throws IOException {
+        File f = new File("./test-output/lua/LuaTranslationTests_" + testName + ".lua");
+        return Files.toString(f, Charsets.UTF_8);
+    }
+}
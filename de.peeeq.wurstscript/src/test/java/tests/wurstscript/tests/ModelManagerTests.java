@@ -5,7 +5,11 @@ import de.peeeq.wurstio.languageserver.BufferManager;
 import de.peeeq.wurstio.languageserver.ModelManagerImpl;
 import de.peeeq.wurstio.languageserver.WFile;
 import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.ast.AstElementWithSource;
 import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.ast.ExprFunctionCall;
+import de.peeeq.wurstscript.ast.FuncDef;
 import de.peeeq.wurstscript.ast.FunctionCall;
 import de.peeeq.wurstscript.ast.FunctionDefinition;
 import de.peeeq.wurstscript.utils.Utils;
@@ -21,13 +25,17 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
 public class ModelManagerTests {
 
@@ -236,6 +244,192 @@ public class ModelManagerTests {
 
     }
 
+    @Test
+    public void incrementalReparse() throws IOException {
+        File projectFolder = new File("./temp/testProject3/");
+        File wurstFolder = new File(projectFolder, "wurst");
+        newCleanFolder(wurstFolder);
+
+        String packageA_v1 = string(
+                "package A",
+                "function a()",
+                "	skip",
+                "function b()",
+                "	skip"
+        );
+        String packageA_v2 = string(
+                "package A",
+                "function a()",
+                "	skip",
+                "	skip",
+                "	foo()",
+                "function b()",
+                "	skip"
+        );
+
+        WFile fileA = WFile.create(new File(wurstFolder, "A.wurst"));
+        WFile fileWurst = WFile.create(new File(wurstFolder, "Wurst.wurst"));
+        writeFile(fileA, packageA_v1);
+        writeFile(fileWurst, "package Wurst\n");
+
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, new BufferManager());
+        Map<WFile, String> errors = keepErrorsInMap(manager);
+        Map<WFile, List<Diagnostic>> diagnostics = new HashMap<>();
+        manager.onCompilationResult(res -> diagnostics.put(WFile.create(res.getUri()), res.getDiagnostics()));
+        manager.buildProject();
+        assertEquals(errors.get(fileA), "");
+        CompilationUnit cu = manager.getCompilationUnit(fileA);
+
+        // edit inside function a, only a should be reparsed
+        manager.syncCompilationUnitContent(fileA, packageA_v2);
+
+        CompilationUnit cu2 = manager.getCompilationUnit(fileA);
+        assertSame(cu2, cu);
+        assertThat(errors.get(fileA), containsString("Reference to function foo could not be resolved"));
+        // the error inside the edited function must point to the call of foo (line 5):
+        assertEquals(diagnostics.get(fileA).size(), 1);
+        Diagnostic error = diagnostics.get(fileA).get(0);
+        assertEquals(error.getRange().getStart().getLine(), 4);
+        assertEquals(error.getRange().getStart().getCharacter(), 1);
+        FuncDef a = (FuncDef) cu2.getPackages().get(0).getElements().get(0);
+        ExprFunctionCall callFoo = (ExprFunctionCall) a.getBody().get(2);
+        assertEquals(callFoo.getSource().getLeftPos(), packageA_v2.indexOf("foo()"));
+        assertEquals(callFoo.getSource().getLine(), 5);
+        FuncDef b = (FuncDef) cu2.getPackages().get(0).getElements().get(1);
+        assertEquals(b.getName(), "b");
+        assertEquals(b.getSource().getLine(), 6);
+        assertEquals(b.getSource().getLeftPos(), packageA_v2.indexOf("function b"));
+    }
+
+    private final String boundaryV1 = string(
+            "package A",
+            "function a()",
+            "	skip",
+            "function b()",
+            "	skip"
+    );
+
+    @Test
+    public void incrementalReparseInsertAtBoundary() throws IOException {
+        // a new declaration inserted right before function b:
+        String v2 = boundaryV1.replace("function b()", "function c()\n	skip\nfunction b()");
+        CompilationUnit cu = reparseAtBoundary("testProject3a", v2, false);
+        assertEquals(cu.getPackages().get(0).getElements().size(), 3);
+    }
+
+    @Test
+    public void incrementalReparseDeleteAtBoundary() throws IOException {
+        // the newline before function b is deleted, so "skipfunction b()" has to be parsed:
+        String v2 = boundaryV1.replace("skip\nfunction b()", "skipfunction b()");
+        reparseAtBoundary("testProject3b", v2, false);
+    }
+
+    @Test
+    public void incrementalReparseWhitespaceAtBoundary() throws IOException {
+        // function b is indented and no longer a top-level declaration:
+        String v2 = boundaryV1.replace("function b()", " function b()");
+        reparseAtBoundary("testProject3c", v2, false);
+    }
+
+    @Test
+    public void incrementalReparseWhitespaceBeforeBoundary() throws IOException {
+        // trailing whitespace in the last line of function a only changes a:
+        String v2 = boundaryV1.replace("skip\nfunction b()", "skip  \nfunction b()");
+        CompilationUnit cu = reparseAtBoundary("testProject3d", v2, true);
+        FuncDef b = (FuncDef) cu.getPackages().get(0).getElements().get(1);
+        assertEquals(b.getSource().getLeftPos(), v2.indexOf("function b"));
+    }
+
+    /**
+     * changes the file from boundaryV1 to v2 and checks whether the edit was handled incrementally
+     *
+     * @return the compilation unit after the edit
+     */
+    private CompilationUnit reparseAtBoundary(String projectName, String v2, boolean expectIncremental) throws IOException {
+        File projectFolder = new File("./temp/" + projectName + "/");
+        File wurstFolder = new File(projectFolder, "wurst");
+        newCleanFolder(wurstFolder);
+
+        WFile fileA = WFile.create(new File(wurstFolder, "A.wurst"));
+        WFile fileWurst = WFile.create(new File(wurstFolder, "Wurst.wurst"));
+        writeFile(fileA, boundaryV1);
+        writeFile(fileWurst, "package Wurst\n");
+
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, new BufferManager());
+        Map<WFile, String> errors = keepErrorsInMap(manager);
+        manager.buildProject();
+        assertEquals(errors.get(fileA), "");
+        CompilationUnit cu = manager.getCompilationUnit(fileA);
+
+        manager.syncCompilationUnitContent(fileA, v2);
+        CompilationUnit cu2 = manager.getCompilationUnit(fileA);
+        assertEquals(cu2 == cu, expectIncremental);
+
+        // the result must be the same as when parsing the new contents from scratch:
+        writeFile(fileA, v2);
+        ModelManagerImpl fresh = new ModelManagerImpl(projectFolder, new BufferManager());
+        Map<WFile, String> freshErrors = keepErrorsInMap(fresh);
+        fresh.buildProject();
+        assertEquals(errors.get(fileA), freshErrors.get(fileA));
+        assertEquals(describe(cu2), describe(fresh.getCompilationUnit(fileA)));
+        return cu2;
+    }
+
+    /**
+     * @return all elements of the tree with their positions
+     */
+    private static String describe(Element e) {
+        StringBuilder sb = new StringBuilder(Utils.printElementWithSource(e));
+        if (e instanceof AstElementWithSource) {
+            sb.append(" @").append(((AstElementWithSource) e).getSource().getLeftPos());
+        }
+        sb.append("\n");
+        for (int i = 0; i < e.size(); i++) {
+            sb.append(describe(e.get(i)));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void checkedWithoutErrors() throws IOException {
+        File projectFolder = new File("./temp/testProject4/");
+        File wurstFolder = new File(projectFolder, "wurst");
+        newCleanFolder(wurstFolder);
+
+        String packageA_v1 = string(
+                "package A",
+                "function a()",
+                "	skip"
+        );
+
+        WFile fileA = WFile.create(new File(wurstFolder, "A.wurst"));
+        WFile fileWurst = WFile.create(new File(wurstFolder, "Wurst.wurst"));
+        writeFile(fileA, packageA_v1);
+        writeFile(fileWurst, "package Wurst\n");
+
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, new BufferManager());
+        manager.buildProject();
+        assertTrue(manager.isCheckedWithoutErrors());
+
+        // changes without a check:
+        manager.replaceCompilationUnitContent(fileA, packageA_v1 + "\n	skip", false);
+        assertFalse(manager.isCheckedWithoutErrors());
+
+        // checked again:
+        manager.syncCompilationUnitContent(fileA, packageA_v1 + "\n	skip\n	skip");
+        assertTrue(manager.isCheckedWithoutErrors());
+
+        // errors:
+        manager.syncCompilationUnitContent(fileA, packageA_v1 + "\n	foo()");
+        assertFalse(manager.isCheckedWithoutErrors());
+
+        manager.syncCompilationUnitContent(fileA, packageA_v1);
+        assertTrue(manager.isCheckedWithoutErrors());
+
+        manager.clean();
+        assertFalse(manager.isCheckedWithoutErrors());
+    }
+
     @NotNull
     private Map<WFile, String> keepErrorsInMap(ModelManagerImpl manager) {
         // keep error messages in a map:
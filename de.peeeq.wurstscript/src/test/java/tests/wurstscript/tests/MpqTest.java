@@ -3,6 +3,7 @@ package tests.wurstscript.tests;
 import com.google.common.io.Files;
 import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstio.mpq.MpqEditorFactory;
+import de.peeeq.wurstio.mpq.MpqTransaction;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -56,4 +57,35 @@ public class MpqTest {
         Assert.assertTrue(true);
     }
 
+    @Test
+    public void test_transaction() throws Exception {
+        byte[] contents = "transaction test".getBytes();
+        try (MpqEditor edit = MpqEditorFactory.getEditor(new File(TEST_W3X))) {
+            MpqTransaction transaction = edit.beginTransaction();
+            transaction.insertFile("transaction1.txt", contents);
+            transaction.insertFile("transaction2.txt", new File("./testscripts/mpq/test.txt"));
+            transaction.insertFile("transaction3.txt", contents);
+            transaction.deleteFile("transaction3.txt");
+            Assert.assertEquals(transaction.commit(), 2);
+        }
+        try (MpqEditor edit = MpqEditorFactory.getEditor(new File(TEST_W3X))) {
+            Assert.assertEquals(edit.extractFile("transaction1.txt"), contents);
+            Assert.assertFalse(edit.hasFile("transaction3.txt"));
+
+            // inserting the same content again does not modify the archive:
+            MpqTransaction transaction = edit.beginTransaction();
+            transaction.insertFile("transaction1.txt", contents);
+            transaction.insertFile("transaction2.txt", new File("./testscripts/mpq/test.txt"));
+            Assert.assertEquals(transaction.commit(), 0);
+
+            // different content of the same size is inserted:
+            transaction = edit.beginTransaction();
+            transaction.insertFile("transaction1.txt", "transaction TEST".getBytes());
+            Assert.assertEquals(transaction.commit(), 1);
+        }
+        try (MpqEditor edit = MpqEditorFactory.getEditor(new File(TEST_W3X))) {
+            Assert.assertEquals(edit.extractFile("transaction1.txt"), "transaction TEST".getBytes());
+        }
+    }
+
 }
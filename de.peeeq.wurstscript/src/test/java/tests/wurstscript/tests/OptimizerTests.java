@@ -879,4 +879,274 @@ public class OptimizerTests extends WurstScriptTest {
         assertFalse(compiled.contains("cyc_cyc"));
     }
 
+    @Test
+    public void cyclicFunctionRemoverIndirection() throws IOException {
+        test().executeProg().withRunArgs("-cycleIndirection").lines(
+                "type trigger extends handle",
+                "type boolexpr extends handle",
+                "type conditionfunc extends boolexpr",
+                "native CreateTrigger takes nothing returns trigger",
+                "native Condition takes code func returns conditionfunc",
+                "native TriggerAddCondition takes trigger whichTrigger, boolexpr condition returns nothing",
+                "native TriggerEvaluate takes trigger whichTrigger returns boolean",
+                "package Test",
+                "native testSuccess()",
+                "function foo(int x) returns int",
+                "	if x > 1000",
+                "		return g(x)",
+                "	if x > 100",
+                "		return h(x)",
+                "	if x > 10",
+                "		return i(x)",
+                "	return x",
+                "function g(int x) returns int",
+                "	return foo(x div 1000)",
+                "function h(int x) returns int",
+                "	return foo(x div 100)",
+                "function i(int x) returns int",
+                "	return foo(x div 10)",
+                "init",
+                "	if foo(7531) == 7",
+                "		testSuccess()"
+        );
+        String compiled = Files.toString(new File("test-output/OptimizerTests_cyclicFunctionRemoverIndirection.j"), Charsets.UTF_8);
+        assertTrue(compiled.contains("cycBridge_"));
+        assertFalse(compiled.contains("funcChoice"));
+    }
+
+    @Test
+    public void cyclicFunctionRemoverIndirectionNotWithWaits() throws IOException {
+        cyclicFunctionRemoverFallback("cyclicFunctionRemoverIndirectionNotWithWaits",
+                "native TriggerSleepAction takes real timeout returns nothing",
+                "TriggerSleepAction(0.)");
+    }
+
+    @Test
+    public void cyclicFunctionRemoverIndirectionNotWithEventResponses() throws IOException {
+        cyclicFunctionRemoverFallback("cyclicFunctionRemoverIndirectionNotWithEventResponses",
+                "native GetTriggeringTrigger takes nothing returns trigger",
+                "GetTriggeringTrigger()");
+    }
+
+    /**
+     * a cycle, which calls the given native, must be merged even with -cycleIndirection, and the program must still run
+     */
+    private void cyclicFunctionRemoverFallback(String testName, String nativeDecl, String nativeCall) throws IOException {
+        test().executeProg().withRunArgs("-cycleIndirection").lines(
+                "type trigger extends handle",
+                "type boolexpr extends handle",
+                "type conditionfunc extends boolexpr",
+                "native CreateTrigger takes nothing returns trigger",
+                "native Condition takes code func returns conditionfunc",
+                "native TriggerAddCondition takes trigger whichTrigger, boolexpr condition returns nothing",
+                "native TriggerEvaluate takes trigger whichTrigger returns boolean",
+                nativeDecl,
+                "package Test",
+                "native testSuccess()",
+                "function foo(int x) returns int",
+                "	if x < 0",
+                "		" + nativeCall,
+                "	if x > 10",
+                "		return g(x)",
+                "	return x",
+                "function g(int x) returns int",
+                "	return foo(x div 10)",
+                "init",
+                "	if foo(753) == 7",
+                "		testSuccess()"
+        );
+        String compiled = Files.toString(new File("test-output/OptimizerTests_" + testName + ".j"), Charsets.UTF_8);
+        assertFalse(compiled.contains("cycBridge_"));
+        assertTrue(compiled.contains("funcChoice"));
+    }
+
+    @Test
+    public void devirtualizeMonomorphic() throws IOException {
+        test().executeProg().withRunArgs("-uncheckedDispatch").lines(
+                "package Test",
+                "native testSuccess()",
+                "interface I",
+                "	function foo() returns int",
+                "class B implements I",
+                "	function foo() returns int",
+                "		return 2",
+                "class C implements I",
+                "	function foo() returns int",
+                "		return 3",
+                "function get(I i) returns int",
+                "	return i.foo()",
+                "init",
+                "	if get(new B()) == 2",
+                "		testSuccess()"
+        );
+        String compiled = Files.toString(new File("test-output/OptimizerTests_devirtualizeMonomorphic.j"), Charsets.UTF_8);
+        assertFalse(compiled.matches("(?s).*dispatch_\\w*\\(.*"));
+    }
+
+    @Test
+    public void devirtualizeBimorphic() throws IOException {
+        test().executeProg().withRunArgs("-uncheckedDispatch").lines(
+                "package Test",
+                "native testSuccess()",
+                "abstract class A",
+                "	abstract function foo(int x) returns int",
+                "class B extends A",
+                "	function foo(int x) returns int",
+                "		return x + 1",
+                "class C extends A",
+                "	function foo(int x) returns int",
+                "		return x + 2",
+                "class D extends A",
+                "	function foo(int x) returns int",
+                "		return x + 3",
+                "function get(A a, int x) returns int",
+                "	return a.foo(x)",
+                "init",
+                "	if get(new B(), 10) == 11 and get(new C(), 20) == 22",
+                "		testSuccess()"
+        );
+        String compiled = Files.toString(new File("test-output/OptimizerTests_devirtualizeBimorphic.j"), Charsets.UTF_8);
+        assertFalse(compiled.matches("(?s).*dispatch_\\w*\\(.*"));
+    }
+
+    @Test
+    public void devirtualizeCheckedDispatch() throws IOException {
+        // classes which are never instantiated are not part of the dispatch
+        test().executeProg().lines(
+                "package Test",
+                "native testSuccess()",
+                "abstract class A",
+                "	abstract function foo() returns int",
+                "class B extends A",
+                "	function foo() returns int",
+                "		return 1",
+                "class C extends B",
+                "	function foo() returns int",
+                "		return 2",
+                "class D extends C",
+                "	function foo() returns int",
+                "		return 3",
+                "init",
+                "	A b = new B()",
+                "	A d = new D()",
+                "	if b.foo() == 1 and d.foo() == 3",
+                "		testSuccess()"
+        );
+        String compiled = Files.toString(new File("test-output/OptimizerTests_devirtualizeCheckedDispatch_opt.j"), Charsets.UTF_8);
+        // the dispatch function of A is kept to report calls on null and destroyed objects
+        assertTrue("dispatch function of A missing", compiled.contains("dispatch_A_"));
+        assertFalse("dispatch function of C should be removed", compiled.contains("dispatch_C_"));
+        assertTrue("direct call to B.foo missing", compiled.contains("B_foo("));
+        assertTrue("direct call to D.foo missing", compiled.contains("D_foo("));
+        assertFalse("C.foo should not be reachable", compiled.contains("C_foo"));
+    }
+
+    @Test
+    public void pureFunctionEvaluation() throws IOException {
+        test().executeProg().lines(
+                "package test",
+                "	@extern native I2S(int i) returns string",
+                "	native testSuccess()",
+                "	function sumTo(int n) returns int",
+                "		var sum = 0",
+                "		for i = 1 to n",
+                "			sum += i",
+                "		return sum",
+                "	function label(int n) returns string",
+                "		return \"#\" + I2S(sumTo(n))",
+                "	init",
+                "		if label(10) == \"#55\"",
+                "			testSuccess()",
+                "endpackage");
+        String compiledAndOptimized = Files.toString(new File("test-output/OptimizerTests_pureFunctionEvaluation_opt.j"), Charsets.UTF_8);
+        assertFalse("sumTo should be evaluated at compile time", compiledAndOptimized.contains("sumTo"));
+        assertFalse("label should be evaluated at compile time", compiledAndOptimized.contains("label"));
+    }
+
+    @Test
+    public void pureFunctionEvaluationOnlyAscii() throws IOException {
+        test().lines(
+                "package test",
+                "	@extern native StringLength(string s) returns int",
+                "	@extern native StringCase(string s, boolean upper) returns string",
+                "	native testSuccess()",
+                "	init",
+                "		if StringLength(\"ä\") > 0 and StringCase(\"abc\", true) == \"ABC\"",
+                "			testSuccess()",
+                "endpackage");
+        String compiledAndOptimized = Files.toString(new File("test-output/OptimizerTests_pureFunctionEvaluationOnlyAscii_opt.j"), Charsets.UTF_8);
+        assertTrue("the length of a non-ASCII string differs in the game", compiledAndOptimized.contains("StringLength"));
+        assertFalse("StringCase with ASCII strings should be evaluated", compiledAndOptimized.contains("StringCase"));
+    }
+
+    @Test
+    public void pureFunctionEvaluationBudget() throws IOException {
+        test().lines(
+                "package test",
+                "	int g = 0",
+                "	function spin(int n) returns int",
+                "		var x = 0",
+                "		while x < n",
+                "			x++",
+                "		return x",
+                "	function impure() returns int",
+                "		g++",
+                "		return g",
+                "	init",
+                "		g = spin(100000000) + impure()",
+                "endpackage");
+        String compiledAndOptimized = Files.toString(new File("test-output/OptimizerTests_pureFunctionEvaluationBudget_opt.j"), Charsets.UTF_8);
+        assertTrue("spin exceeds the budget and should not be evaluated", compiledAndOptimized.contains("spin"));
+        assertTrue("impure should not be evaluated", compiledAndOptimized.contains("impure"));
+    }
+
+    @Test
+    public void loopInvariantCodeMotion() throws IOException {
+        test().executeProg().lines(
+                "package test",
+                "	native testSuccess()",
+                "	int array data",
+                "	int counter = 0",
+                "	function sum(int n) returns int",
+                "		var s = 0",
+                "		for i = 0 to n",
+                "			s += data[5] * 3",
+                "		return s",
+                "	function bump()",
+                "		counter += 1",
+                "	function count() returns int",
+                "		var s = 0",
+                "		for i = 1 to 3",
+                "			bump()",
+                "			s += counter * 2",
+                "		return s",
+                "	init",
+                "		data[5] = 2",
+                "		if sum(9) == 60 and count() == 12",
+                "			testSuccess()",
+                "endpackage");
+        String compiledAndOptimized = Files.toString(new File("test-output/OptimizerTests_loopInvariantCodeMotion_opt.j"), Charsets.UTF_8);
+        assertTrue("data[5] * 3 should be moved out of the loop", compiledAndOptimized.contains("loopInvariant"));
+        assertTrue("counter is changed in the loop", compiledAndOptimized.contains("counter * 2"));
+    }
+
+    @Test
+    public void loopStrengthReduction() throws IOException {
+        test().executeProg().lines(
+                "package test",
+                "	native testSuccess()",
+                "	int array buf",
+                "	function fill(int n)",
+                "		for i = 0 to n",
+                "			buf[i * 4] = i",
+                "			buf[i * 4 + 1] = 4 * i",
+                "	init",
+                "		fill(10)",
+                "		if buf[40] == 10 and buf[41] == 40 and buf[5] == 4 and buf[2] == 0",
+                "			testSuccess()",
+                "endpackage");
+        String compiledAndOptimized = Files.toString(new File("test-output/OptimizerTests_loopStrengthReduction_opt.j"), Charsets.UTF_8);
+        assertTrue("i * 4 should be replaced by an induction variable", compiledAndOptimized.contains("iTimes4"));
+    }
+
 }
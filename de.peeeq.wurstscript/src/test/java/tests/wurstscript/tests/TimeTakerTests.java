@@ -0,0 +1,70 @@
+package tests.wurstscript.tests;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.peeeq.wurstio.TimeTaker;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class TimeTakerTests {
+
+    private TimeTaker.Recording record() {
+        TimeTaker.Recording t = new TimeTaker.Recording();
+        t.measure("translate", () -> {
+            t.beginPhase("phase 1");
+            t.measure("pass", () -> t.addCounter("optimizations", 2));
+            t.measure("pass", () -> t.addCounter("optimizations", 3));
+            t.beginPhase("phase 2");
+            t.endPhase();
+        });
+        return t;
+    }
+
+    @Test
+    public void report() {
+        String report = record().report();
+        assertTrue(report.contains("\ntranslate: "), report);
+        assertTrue(report.contains("\n phase 1: "), report);
+        // both measurements of pass are summed up:
+        assertTrue(report.contains("\n  pass: "), report);
+        assertTrue(report.contains("optimizations: 5"), report);
+        assertTrue(report.contains("\n phase 2: "), report);
+    }
+
+    @Test
+    public void chromeTrace() {
+        JsonObject trace = new JsonParser().parse(record().chromeTrace()).getAsJsonObject();
+        JsonArray events = trace.getAsJsonArray("traceEvents");
+        // total, translate, phase 1, 2x pass, phase 2
+        assertEquals(events.size(), 6);
+        JsonObject pass = events.get(3).getAsJsonObject();
+        assertEquals(pass.get("name").getAsString(), "pass");
+        assertEquals(pass.get("ph").getAsString(), "X");
+        assertEquals(pass.getAsJsonObject("args").get("optimizations").getAsLong(), 2);
+    }
+
+    @Test
+    public void collapsedStacks() {
+        String stacks = record().collapsedStacks();
+        for (String line : stacks.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            assertTrue(line.matches("total(;[^;]+)* \\d+"), line);
+        }
+        assertFalse(stacks.contains("phase 2;"), stacks);
+    }
+
+    @Test
+    public void unfinishedPhaseIsEndedWithEnclosingStep() {
+        TimeTaker.Recording t = new TimeTaker.Recording();
+        t.measure("translate", () -> t.beginPhase("phase 1"));
+        t.measure("print", () -> {
+        });
+        String report = t.report();
+        assertTrue(report.contains("\n phase 1: "), report);
+        assertTrue(report.contains("\nprint: "), report);
+    }
+}
@@ -0,0 +1,115 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.languageserver.WorkspaceSymbolIndex;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.Ast;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+public class WorkspaceSymbolIndexTests {
+
+    private CompilationUnit parse(String file, String... lines) {
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, new WurstGuiCliImpl(), null, new RunArgs());
+        return compiler.parse(new File(file).getAbsolutePath(), new StringReader(String.join("\n", lines) + "\n"));
+    }
+
+    private WurstModel model() {
+        return Ast.WurstModel(
+                parse("Units.wurst",
+                        "package Units",
+                        "public function getUnitX() returns real",
+                        "    return 0.",
+                        "public function getUnitY() returns real",
+                        "    return 0.",
+                        "public function unitCount() returns int",
+                        "    return 0",
+                        "class UnitGroup",
+                        "    int size",
+                        "    function getUnit() returns int",
+                        "        return 0"),
+                parse("Math.wurst",
+                        "package Math",
+                        "public function getUnitXWithOffset() returns real",
+                        "    return 0."));
+    }
+
+    private static List<String> names(List<SymbolInformation> symbols) {
+        return symbols.stream().map(SymbolInformation::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void score() {
+        assertTrue(WorkspaceSymbolIndex.score("GetUnitX", "GetUnitX") > WorkspaceSymbolIndex.score("GetUnitX", "getunitx"));
+        assertTrue(WorkspaceSymbolIndex.score("GetUnitX", "getunitx") > WorkspaceSymbolIndex.score("GetUnitX", "get"));
+        assertTrue(WorkspaceSymbolIndex.score("GetUnitX", "get") > WorkspaceSymbolIndex.score("GetUnitX", "gux"));
+        assertTrue(WorkspaceSymbolIndex.score("GetUnitX", "gux") > WorkspaceSymbolIndex.score("GetUnitX", "unit"));
+        assertTrue(WorkspaceSymbolIndex.score("GetUnitX", "unit") > WorkspaceSymbolIndex.score("GetUnitX", "gtx"));
+        assertTrue(WorkspaceSymbolIndex.score("GetUnitX", "gtx") >= 0);
+        assertEquals(WorkspaceSymbolIndex.score("GetUnitX", "xyz"), -1);
+        assertEquals(WorkspaceSymbolIndex.score("GetUnitX", "GetUnitXY"), -1);
+        // camel humps and underscores
+        assertTrue(WorkspaceSymbolIndex.score("CreateUnitAtLoc", "cual") >= 0);
+        assertTrue(WorkspaceSymbolIndex.score("bj_MAX_PLAYERS", "bmp") >= 0);
+    }
+
+    @Test
+    public void searchRanksAndLimits() {
+        WorkspaceSymbolIndex index = new WorkspaceSymbolIndex();
+        index.update(model(), 1);
+
+        List<String> result = names(index.search("getUnit", 10));
+        assertEquals(result.get(0), "getUnit");
+        assertTrue(result.indexOf("getUnitX") < result.indexOf("getUnitXWithOffset"), result.toString());
+
+        assertEquals(names(index.search("gux", 10)), Arrays.asList("getUnitX", "getUnitXWithOffset"));
+        assertEquals(index.search("unit", 2).size(), 2);
+        assertTrue(index.search("doesNotExist", 10).isEmpty());
+    }
+
+    @Test
+    public void searchWithContainer() {
+        WorkspaceSymbolIndex index = new WorkspaceSymbolIndex();
+        index.update(model(), 1);
+
+        List<SymbolInformation> result = index.search("UnitGroup.size", 10);
+        assertEquals(names(result), Collections.singletonList("size"));
+        assertEquals(result.get(0).getContainerName(), "Units.UnitGroup");
+        assertEquals(result.get(0).getKind(), SymbolKind.Field);
+        assertEquals(names(index.search("Math.", 10)), Collections.singletonList("getUnitXWithOffset"));
+    }
+
+    @Test
+    public void updateReplacesCompilationUnits() {
+        WorkspaceSymbolIndex index = new WorkspaceSymbolIndex();
+        WurstModel model = model();
+        index.update(model, 1);
+        int size = index.size();
+
+        model.set(1, parse("Math.wurst",
+                "package Math",
+                "public function sqrt(real x) returns real",
+                "    return x"));
+        // same revision, the index is not updated:
+        index.update(model, 1);
+        assertEquals(index.size(), size);
+
+        index.update(model, 2);
+        assertEquals(index.size(), size);
+        assertTrue(index.search("getUnitXWithOffset", 10).isEmpty());
+        assertEquals(names(index.search("sqrt", 10)), Collections.singletonList("sqrt"));
+    }
+}
@@ -22,9 +22,7 @@ import de.peeeq.wurstscript.jassIm.ImProg;
 import de.peeeq.wurstscript.jassinterpreter.TestFailException;
 import de.peeeq.wurstscript.jassinterpreter.TestSuccessException;
 import de.peeeq.wurstscript.jassprinter.JassPrinter;
-import de.peeeq.wurstscript.translation.lua.translation.LuaTranslator;
 import de.peeeq.wurstscript.luaAst.LuaCompilationUnit;
-import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import de.peeeq.wurstscript.utils.Utils;
 import org.testng.Assert;
 
@@ -60,6 +58,8 @@ public class WurstScriptTest {
         private List<CU> additionalCompilationUnits = new ArrayList<>();
         private boolean stopOnFirstError = true;
         private boolean runCompiletimeFunctions;
+        private boolean withLua = testLua;
+        private List<String> additionalRunArgs = new ArrayList<>();
 
         TestConfig(String name) {
             this.name = name;
@@ -75,6 +75,14 @@ public class WurstScriptTest {
             return this;
         }
 
+        /**
+         * also translates the program to Lua and runs it with the lua interpreter
+         */
+        TestConfig withLua() {
+            this.withLua = true;
+            return this;
+        }
+
         public TestConfig executeProg() {
             this.executeProg = true;
             return this;
@@ -158,6 +166,7 @@ public class WurstScriptTest {
             if (runCompiletimeFunctions) {
                 runArgs = runArgs.with("-runcompiletimefunctions");
             }
+            runArgs = runArgs.with(additionalRunArgs.toArray(new String[0]));
 
             WurstGui gui = new WurstGuiCliImpl();
             WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, runArgs);
@@ -203,10 +212,9 @@ public class WurstScriptTest {
 
             testWithInliningAndOptimizationsAndStacktraces(name, executeProg, executeTests, gui, compiler, model, executeProgOnlyAfterTransforms, runArgs);
 
-            if (testLua && !withStdLib) {
+            if (withLua && !withStdLib) {
                 // test lua translation
-                compiler.setRunArgs(new RunArgs("-lua"));
-                translateAndTestLua(name, executeProg, gui, model);
+                translateAndTestLua(name, executeProg, gui, compiler, model, runArgs);
             }
 
             return new CompilationResult(model, gui);
@@ -246,6 +254,11 @@ public class WurstScriptTest {
             this.runCompiletimeFunctions = b;
             return this;
         }
+
+        public TestConfig withRunArgs(String... args) {
+            additionalRunArgs.addAll(Arrays.asList(args));
+            return this;
+        }
     }
 
     static class CompilationResult {
@@ -367,15 +380,24 @@ public class WurstScriptTest {
         translateAndTest(name, executeProg, executeTests, gui, compiler, model, executeProgOnlyAfterTransforms);
     }
 
-    private void translateAndTestLua(String name, boolean executeProg, WurstGui gui, WurstModel model) {
+    /**
+     * translates the program in the same way as the -lua option with inlining and local optimizations
+     */
+    private void translateAndTestLua(String name, boolean executeProg, WurstGui gui, WurstCompilerJassImpl compiler,
+                                     WurstModel model, RunArgs runArgs) {
         try {
             name = name.replaceAll("[^a-zA-Z0-9_]", "_");
 
-            ImTranslator imTranslator = new ImTranslator(model, true);
-            ImProg imProg = imTranslator.translateProg();
-
-            LuaTranslator luaTranslator = new LuaTranslator(imProg);
-            LuaCompilationUnit luaCode = luaTranslator.translate();
+            compiler.setRunArgs(runArgs.with("-lua", "-inline", "-localOptimizations"));
+            compiler.translateProgToIm(model);
+            if (gui.getErrorCount() > 0) {
+                throw gui.getErrorList().get(0);
+            }
+            compiler.runCompiletime();
+            LuaCompilationUnit luaCode = compiler.transformProgToLua();
+            if (luaCode == null || gui.getErrorCount() > 0) {
+                throw gui.getErrorList().get(0);
+            }
             StringBuilder sb = new StringBuilder();
             luaCode.print(sb, 0);
 
@@ -478,7 +500,7 @@ public class WurstScriptTest {
 
         File outputFile = writeJassProg(name, gui, prog);
 
-        // run pjass:
+        validateJass(compiler, prog);
         runPjass(outputFile);
 
         if (executeProg) {
@@ -522,6 +544,21 @@ public class WurstScriptTest {
     }
 
 
+    /**
+     * validates the generated Jass code in the same way as the compiler does for map builds
+     */
+    private void validateJass(WurstCompilerJassImpl compiler, JassProg prog) throws Error {
+        List<CompileError> errors = compiler.startJassValidation(prog).join();
+        if (!errors.isEmpty()) {
+            throw new Error("Invalid Jass code:\n" + errors.stream()
+                    .map(CompileError::toString)
+                    .collect(Collectors.joining("\n")));
+        }
+    }
+
+    /**
+     * runs pjass as an independent check of the generated code, if it is available
+     */
     private void runPjass(File outputFile) throws Error {
         Result pJassResult = Pjass.runPjass(outputFile);
         WLogger.info(pJassResult.getMessage());